@@ -19,11 +19,18 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 
+import org.eclipse.cdt.core.parser.IToken;
+import org.eclipse.cdt.core.parser.tests.ast2.TestLexerLog;
 import org.eclipse.cdt.core.testplugin.util.BaseTestCase;
 import org.eclipse.cdt.internal.core.parser.scanner.AbstractCharArray;
 import org.eclipse.cdt.internal.core.parser.scanner.FileCharArray;
 import org.eclipse.cdt.internal.core.parser.scanner.LazyCharArray;
+import org.eclipse.cdt.internal.core.parser.scanner.Lexer;
+import org.eclipse.cdt.internal.core.parser.scanner.Lexer.LexerOptions;
+import org.eclipse.cdt.internal.core.parser.scanner.MappedCharArray;
 
 import junit.framework.TestSuite;
 
@@ -37,6 +44,7 @@ public class FileCharArrayTests extends BaseTestCase {
 
 	@Override
 	protected void tearDown() throws Exception {
+		System.clearProperty(FileCharArray.PROPERTY_MAPPED_INPUT);
 		if (fFile != null) {
 			fFile.delete();
 		}
@@ -87,6 +95,49 @@ public class FileCharArrayTests extends BaseTestCase {
 
 	}
 
+	public void testMappedFile() throws Exception {
+		final String content = "int a;\r\n#define MAX(x, y) x > y ? x : y\nlong b = MAX(1, 2);\n";
+		AbstractCharArray decoded = createFromContent(content.getBytes(StandardCharsets.UTF_8));
+		System.setProperty(FileCharArray.PROPERTY_MAPPED_INPUT, "true");
+		AbstractCharArray mapped = createFromContent(content.getBytes(StandardCharsets.UTF_8));
+		assertTrue(mapped instanceof MappedCharArray);
+		assertEquals(content, mapped.toString());
+		assertEquals(decoded.getContentsHash(), mapped.getContentsHash());
+
+		Lexer decodedLexer = new Lexer(decoded, new LexerOptions(), new TestLexerLog(), null);
+		Lexer mappedLexer = new Lexer(mapped, new LexerOptions(), new TestLexerLog(), null);
+		IToken expected;
+		do {
+			expected = decodedLexer.nextToken();
+			IToken actual = mappedLexer.nextToken();
+			assertEquals(expected.getType(), actual.getType());
+			assertEquals(expected.getOffset(), actual.getOffset());
+			assertEquals(expected.getImage(), actual.getImage());
+		} while (expected.getType() != IToken.tEND_OF_INPUT);
+	}
+
+	public void testMappedFileFallback() throws Exception {
+		System.setProperty(FileCharArray.PROPERTY_MAPPED_INPUT, "true");
+		// Byte order mark.
+		AbstractCharArray chars = createFromContent(new byte[] { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF, 'a', ';' });
+		assertTrue(chars instanceof MappedCharArray);
+		assertEquals("a;", chars.toString());
+		// Non-ASCII characters have to be decoded.
+		chars = createFromContent("char* s = \"\u00e4\";".getBytes(StandardCharsets.UTF_8));
+		assertFalse(chars instanceof MappedCharArray);
+		assertEquals("char* s = \"\u00e4\";", chars.toString());
+	}
+
+	private AbstractCharArray createFromContent(byte[] content) throws IOException {
+		if (fFile == null) {
+			fFile = File.createTempFile("data", ".txt");
+		}
+		Files.write(fFile.toPath(), content);
+		try (FileInputStream inputStream = new FileInputStream(fFile)) {
+			return FileCharArray.create(fFile.getPath(), "UTF-8", inputStream);
+		}
+	}
+
 	public void checkContent(AbstractCharArray charArray, int from, int to) {
 		for (int i = from; i < to; i++) {
 			assertEquals(i % 127, charArray.get(i));
@@ -25,6 +25,11 @@ public class FileCodeReaderFactory extends InternalFileContentProvider {
 	private FileCodeReaderFactory() {
 	}
 
+	@Override
+	public boolean isBackedByFileSystem() {
+		return true;
+	}
+
 	@Override
 	public InternalFileContent getContentForInclusion(String path, IMacroDictionary macroDictionary) {
 		return (InternalFileContent) FileContent.createForExternalFileLocation(path);
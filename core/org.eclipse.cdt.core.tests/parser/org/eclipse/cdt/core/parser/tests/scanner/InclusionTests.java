@@ -15,10 +15,15 @@
  *******************************************************************************/
 package org.eclipse.cdt.core.parser.tests.scanner;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.eclipse.cdt.core.dom.ast.IASTNode;
+import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit;
 import org.eclipse.cdt.core.model.ICProject;
 import org.eclipse.cdt.core.parser.ExtendedScannerInfo;
 import org.eclipse.cdt.core.parser.FileContent;
@@ -30,6 +35,7 @@ import org.eclipse.cdt.core.parser.ParserMode;
 import org.eclipse.cdt.core.parser.ScannerInfo;
 import org.eclipse.cdt.core.testplugin.CProjectHelper;
 import org.eclipse.cdt.core.testplugin.util.TestSourceReader;
+import org.eclipse.cdt.internal.core.parser.scanner.PreprocessedHeaderCache;
 import org.eclipse.cdt.internal.core.pdom.indexer.PDOMNullIndexer;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IFolder;
@@ -439,4 +445,163 @@ public class InclusionTests extends PreprocessorTestsBase {
 		validateInteger("2");
 		validateEOF();
 	}
+
+	// #include "a.h"
+	// #include "sub/b.h"
+	// #include "c.h"
+	public void testIncludeDirectoryIndex() throws Exception {
+		IFolder one = importFolder("one");
+		IFolder two = importFolder("two");
+		importFolder("two/sub");
+		importFile("two/a.h", "1");
+		importFile("two/sub/b.h", "2");
+		IFile base = importFile("base.cpp", getAboveComment());
+
+		String[] path = { one.getLocation().toOSString(), one.getLocation().append("missing").toOSString(),
+				two.getLocation().toOSString() };
+		IScannerInfo scannerInfo = new ExtendedScannerInfo(Collections.EMPTY_MAP, path, new String[] {}, null);
+		initializeScanner(FileContent.create(base), ParserLanguage.C, ParserMode.COMPLETE_PARSE, scannerInfo);
+		validateInteger("1");
+		validateInteger("2");
+		validateEOF();
+		validateProblemCount(1);
+		validateProblem(0, IProblem.PREPROCESSOR_INCLUSION_NOT_FOUND, null);
+
+		// The listings of the directories are shared, files added later have to be found.
+		importFile("one/a.h", "3");
+		importFile("two/c.h", "4");
+		initializeScanner(FileContent.create(base), ParserLanguage.C, ParserMode.COMPLETE_PARSE, scannerInfo);
+		validateInteger("3");
+		validateInteger("2");
+		validateInteger("4");
+		validateEOF();
+		validateProblemCount(0);
+	}
+
+	// #include "guarded.h"
+	// #include "guarded.h"
+	// 2
+	public void testIncludeGuardTable() throws Exception {
+		importFile("guarded.h", "#ifndef GUARDED_H\n#define GUARDED_H\n1\n#endif\n");
+		IFile base = importFile("base.cpp", getAboveComment());
+		IFile defined = importFile("defined.cpp", "#define GUARDED_H\n#include \"guarded.h\"\n");
+		IScannerInfo scannerInfo = new ExtendedScannerInfo(Collections.EMPTY_MAP, new String[] {}, new String[] {},
+				null);
+
+		// The second time the guard is taken from the table, the second inclusion is skipped either way.
+		for (int i = 0; i < 2; i++) {
+			initializeScanner(FileContent.create(base), ParserLanguage.C, ParserMode.COMPLETE_PARSE, scannerInfo);
+			validateInteger("1");
+			validateInteger("2");
+			validateEOF();
+		}
+
+		// A header with a defined guard is still read.
+		initializeScanner(FileContent.create(defined), ParserLanguage.C, ParserMode.COMPLETE_PARSE, scannerInfo);
+		validateEOF();
+		assertTrue(fLocationResolver.getIncludeDirectives()[0].createsAST());
+
+		// The guard of a modified header is detected again.
+		importFile("guarded.h", "3\n");
+		initializeScanner(FileContent.create(base), ParserLanguage.C, ParserMode.COMPLETE_PARSE, scannerInfo);
+		validateInteger("3");
+		validateInteger("3");
+		validateInteger("2");
+		validateEOF();
+	}
+
+	private static String[] getSignatures(IASTNode[] nodes) {
+		String[] result = new String[nodes.length];
+		for (int i = 0; i < nodes.length; i++) {
+			result[i] = nodes[i].getClass().getSimpleName() + ": " + nodes[i].getRawSignature();
+		}
+		return result;
+	}
+
+	private static void deleteCache(PreprocessedHeaderCache cache, File directory) {
+		PreprocessedHeaderCache.setShared(null);
+		if (cache != null) {
+			cache.clear();
+		}
+		directory.delete();
+	}
+
+	// #include "config.h"
+	// int x = VALUE;
+	public void testPreprocessedHeaderCache() throws Exception {
+		importFile("config.h", "// configuration\n#ifndef CONFIG_H\n#define CONFIG_H\n/* values */\n#define VALUE 42\n"
+				+ "#define MAX(a, ...) a\n#undef UNUSED\n#pragma pack(1)\n#endif\n");
+		IFile base = importFile("base.c", getAboveComment());
+		IFile guarded = importFile("guarded.c", "#define CONFIG_H\n#include \"config.h\"\nVALUE\n");
+		IScannerInfo scannerInfo = new ExtendedScannerInfo(Collections.EMPTY_MAP, new String[] {}, new String[] {},
+				null);
+
+		File directory = Files.createTempDirectory("headerCache").toFile();
+		PreprocessedHeaderCache cache = new PreprocessedHeaderCache(directory, 1024 * 1024);
+		try {
+			PreprocessedHeaderCache.setShared(cache);
+			initializeScanner(FileContent.create(base), ParserLanguage.C, ParserMode.COMPLETE_PARSE, scannerInfo);
+			IASTTranslationUnit tu = parse(ParserLanguage.C);
+			String[] statements = getSignatures(tu.getAllPreprocessorStatements());
+			String[] comments = getSignatures(tu.getComments());
+			assertEquals(0, cache.getHitCount());
+			assertEquals(1, cache.getMissCount());
+			assertTrue(cache.getSize() > 0);
+
+			// The recording is read from disk and replayed.
+			cache = new PreprocessedHeaderCache(directory, 1024 * 1024);
+			PreprocessedHeaderCache.setShared(cache);
+			initializeScanner(FileContent.create(base), ParserLanguage.C, ParserMode.COMPLETE_PARSE, scannerInfo);
+			tu = parse(ParserLanguage.C);
+			assertEquals(1, cache.getHitCount());
+			assertEquals(Arrays.asList(statements), Arrays.asList(getSignatures(tu.getAllPreprocessorStatements())));
+			assertEquals(Arrays.asList(comments), Arrays.asList(getSignatures(tu.getComments())));
+			assertEquals(0, tu.getPreprocessorProblemsCount());
+			validateDefinition("VALUE", 42);
+			validateDefinition("MAX", "a");
+
+			// The recording requires CONFIG_H to be undefined.
+			initializeScanner(FileContent.create(guarded), ParserLanguage.C, ParserMode.COMPLETE_PARSE, scannerInfo);
+			validateIdentifier("VALUE");
+			validateEOF();
+			assertEquals(1, cache.getHitCount());
+			assertEquals(1, cache.getMissCount());
+		} finally {
+			deleteCache(cache, directory);
+		}
+	}
+
+	public void testPreprocessedHeaderCacheEviction() throws Exception {
+		importFile("a.h", "#define A 1\n");
+		importFile("b.h", "#define B 2\n");
+		IFile base = importFile("base.c", "#include \"a.h\"\n#include \"b.h\"\n");
+		IScannerInfo scannerInfo = new ExtendedScannerInfo(Collections.EMPTY_MAP, new String[] {}, new String[] {},
+				null);
+
+		File directory = Files.createTempDirectory("headerCache").toFile();
+		PreprocessedHeaderCache cache = new PreprocessedHeaderCache(directory, 1024 * 1024);
+		long size;
+		try {
+			PreprocessedHeaderCache.setShared(cache);
+			initializeScanner(FileContent.create(base), ParserLanguage.C, ParserMode.COMPLETE_PARSE, scannerInfo);
+			fullyTokenize();
+			assertEquals(2, directory.list().length);
+			size = cache.getSize();
+		} finally {
+			deleteCache(cache, directory);
+		}
+
+		// The files of both headers have the same size, only one of them fits into the cache.
+		directory = Files.createTempDirectory("headerCache").toFile();
+		cache = new PreprocessedHeaderCache(directory, size * 3 / 4);
+		try {
+			PreprocessedHeaderCache.setShared(cache);
+			initializeScanner(FileContent.create(base), ParserLanguage.C, ParserMode.COMPLETE_PARSE, scannerInfo);
+			fullyTokenize();
+			assertEquals(1, directory.list().length);
+			assertTrue(cache.getSize() <= size * 3 / 4);
+		} finally {
+			deleteCache(cache, directory);
+		}
+	}
 }
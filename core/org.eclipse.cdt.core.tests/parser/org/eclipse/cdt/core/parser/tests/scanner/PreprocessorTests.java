@@ -21,6 +21,7 @@ import java.util.List;
 import org.eclipse.cdt.core.parser.IProblem;
 import org.eclipse.cdt.core.parser.IToken;
 import org.eclipse.cdt.core.parser.ParserLanguage;
+import org.eclipse.cdt.internal.core.parser.scanner.LocationMap;
 
 import junit.framework.TestSuite;
 
@@ -1363,4 +1364,184 @@ public class PreprocessorTests extends PreprocessorTestsBase {
 		validateProblem(0, IProblem.SCANNER_CONSTANT_WITH_BAD_SUFFIX, "ASDF");
 		validateProblem(1, IProblem.SCANNER_CONSTANT_WITH_BAD_SUFFIX, "xU");
 	}
+
+	// #define STR(x) #x
+	// #define CAT(a, b) a ## b
+	// #define F(x) CAT(x, 1) STR(x y)
+	// F(a) F(a) F( a ) F(b)
+	// #undef CAT
+	// #define CAT(a, b) b
+	// F(a) __LINE__ __LINE__
+	public void testMacroExpansionCache() throws Exception {
+		initializeScanner();
+		fScanner.setComputeImageLocations(false);
+		validateIdentifier("a1");
+		validateString("a y");
+		validateIdentifier("a1");
+		validateString("a y");
+		validateIdentifier("a1");
+		validateString("a y");
+		validateIdentifier("b1");
+		validateString("b y");
+		validateInteger("1");
+		validateString("a y");
+		validateInteger("7");
+		validateInteger("7");
+		validateEOF();
+		validateProblemCount(0);
+		LocationMap locationMap = (LocationMap) fLocationResolver;
+		// The argument of the third expansion is preceded by a space, the fifth one depends on
+		// a redefined macro and the expansions of __LINE__ are not cached.
+		assertEquals(1, locationMap.getMacroExpansionCacheHits());
+		assertEquals(6, locationMap.getMacroExpansionCacheMisses());
+	}
+
+	// #define LB <:
+	// #define ARR(x) x LB 0 :>
+	// #define STR(x) %:x
+	// #define XSTR(x) STR(x)
+	// #define CAT(a, b) a %:%: b
+	// ARR(v);
+	// XSTR(LB);
+	// CAT(a, b);
+	public void testDigraphsInReplacement() throws Exception {
+		initializeScanner();
+		validateIdentifier("v");
+		validateToken(IToken.tLBRACKET, "<:");
+		validateInteger("0");
+		validateToken(IToken.tRBRACKET, ":>");
+		validateToken(IToken.tSEMI);
+
+		validateString("<:");
+		validateToken(IToken.tSEMI);
+
+		validateIdentifier("ab");
+		validateToken(IToken.tSEMI);
+		validateEOF();
+		validateProblemCount(0);
+	}
+
+	// #define TWICE(x) x + x
+	// #define REV(a, b, c) c b a
+	// #define MIX(x) #x x ## 1 x
+	// #define PM(x) x x ## 2
+	// TWICE(f(y));
+	// TWICE(TWICE(z));
+	// REV(1, 2, 3);
+	// MIX(a);
+	// PM(b);
+	public void testParameterReferences() throws Exception {
+		initializeScanner();
+		for (int i = 0; i < 2; i++) {
+			validateIdentifier("f");
+			validateToken(IToken.tLPAREN);
+			validateIdentifier("y");
+			validateToken(IToken.tRPAREN);
+			if (i == 0) {
+				validateToken(IToken.tPLUS);
+			}
+		}
+		validateToken(IToken.tSEMI);
+
+		for (int i = 0; i < 4; i++) {
+			validateIdentifier("z");
+			if (i < 3) {
+				validateToken(IToken.tPLUS);
+			}
+		}
+		validateToken(IToken.tSEMI);
+
+		validateInteger("3");
+		validateInteger("2");
+		validateInteger("1");
+		validateToken(IToken.tSEMI);
+
+		validateString("a");
+		validateIdentifier("a1");
+		validateIdentifier("a");
+		validateToken(IToken.tSEMI);
+
+		validateIdentifier("b");
+		validateIdentifier("b2");
+		validateToken(IToken.tSEMI);
+		validateEOF();
+		validateProblemCount(0);
+	}
+
+	// #define STR(x) #x
+	// #define PASTE(a, b) a ## b
+	// #define PASTE3(a, b, c) a ## b ## c
+	// #define BOTH(x, y) STR(x) PASTE(x, y) #y
+	// STR(a + 1);
+	// PASTE3(x, 1, y);
+	// PASTE(<, <=);
+	// BOTH(u, v);
+	public void testStringifyAndPasteInReplacement() throws Exception {
+		initializeScanner();
+		validateString("a + 1");
+		validateToken(IToken.tSEMI);
+
+		validateIdentifier("x1y");
+		validateToken(IToken.tSEMI);
+
+		validateToken(IToken.tSHIFTLASSIGN);
+		validateToken(IToken.tSEMI);
+
+		validateString("u");
+		validateIdentifier("uv");
+		validateString("v");
+		validateToken(IToken.tSEMI);
+		validateEOF();
+		validateProblemCount(0);
+	}
+
+	// #define LOG(fmt, args...) printf(fmt, ## args)
+	// #define CALL(f, ...) f(__VA_ARGS__) g(0, ## __VA_ARGS__)
+	// LOG("a");
+	// LOG("b", 1);
+	// CALL(h);
+	// CALL(h, 1, 2);
+	public void testGccVariadicCommaInReplacement() throws Exception {
+		initializeScanner();
+		validateIdentifier("printf");
+		validateToken(IToken.tLPAREN);
+		validateString("a");
+		validateToken(IToken.tRPAREN);
+		validateToken(IToken.tSEMI);
+
+		validateIdentifier("printf");
+		validateToken(IToken.tLPAREN);
+		validateString("b");
+		validateToken(IToken.tCOMMA);
+		validateInteger("1");
+		validateToken(IToken.tRPAREN);
+		validateToken(IToken.tSEMI);
+
+		validateIdentifier("h");
+		validateToken(IToken.tLPAREN);
+		validateToken(IToken.tRPAREN);
+		validateIdentifier("g");
+		validateToken(IToken.tLPAREN);
+		validateInteger("0");
+		validateToken(IToken.tRPAREN);
+		validateToken(IToken.tSEMI);
+
+		validateIdentifier("h");
+		validateToken(IToken.tLPAREN);
+		validateInteger("1");
+		validateToken(IToken.tCOMMA);
+		validateInteger("2");
+		validateToken(IToken.tRPAREN);
+		validateIdentifier("g");
+		validateToken(IToken.tLPAREN);
+		validateInteger("0");
+		validateToken(IToken.tCOMMA);
+		validateInteger("1");
+		validateToken(IToken.tCOMMA);
+		validateInteger("2");
+		validateToken(IToken.tRPAREN);
+		validateToken(IToken.tSEMI);
+		validateEOF();
+		validateProblemCount(0);
+	}
 }
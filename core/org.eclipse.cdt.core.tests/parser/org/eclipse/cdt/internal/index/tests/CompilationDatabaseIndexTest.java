@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Eclipse CDT contributors and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+package org.eclipse.cdt.internal.index.tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.cdt.core.index.IIndexFileLocation;
+import org.eclipse.cdt.core.index.IIndexLocationConverter;
+import org.eclipse.cdt.core.index.IndexFilter;
+import org.eclipse.cdt.core.model.LanguageManager;
+import org.eclipse.cdt.core.parser.IExtendedScannerInfo;
+import org.eclipse.cdt.core.testplugin.util.BaseTestCase;
+import org.eclipse.cdt.internal.core.index.IWritableIndex;
+import org.eclipse.cdt.internal.core.index.IndexFileLocation;
+import org.eclipse.cdt.internal.core.indexer.CompilationDatabase;
+import org.eclipse.cdt.internal.core.indexer.StandaloneFastIndexer;
+import org.eclipse.cdt.internal.core.indexer.StdoutLogService;
+import org.eclipse.cdt.internal.core.pdom.WritablePDOM;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import junit.framework.Test;
+
+/**
+ * Tests for indexing the sources of a compilation database with the standalone indexer.
+ */
+public class CompilationDatabaseIndexTest extends BaseTestCase {
+	private File fDirectory;
+
+	public static Test suite() {
+		return suite(CompilationDatabaseIndexTest.class);
+	}
+
+	private static class FileLocationConverter implements IIndexLocationConverter {
+		@Override
+		public IIndexFileLocation fromInternalFormat(String raw) {
+			return new IndexFileLocation(new File(raw).toURI(), null);
+		}
+
+		@Override
+		public String toInternalFormat(IIndexFileLocation location) {
+			return new File(location.getURI()).getPath();
+		}
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		fDirectory = Files.createTempDirectory("compdb").toFile().getCanonicalFile();
+		write("inc/header.h", "int from_header;\n");
+		for (int i = 0; i < 6; i++) {
+			write("src/source" + i + ".cpp", "#include \"header.h\"\nint VALUE" + i + ";\n");
+		}
+		write("src/plain.c", "int from_c_source;\n");
+		StringBuilder json = new StringBuilder("[\n");
+		for (int i = 0; i < 6; i++) {
+			json.append("{ \"directory\": \"").append(jsonPath(fDirectory)).append("/src\", ");
+			json.append("\"command\": \"g++ -I../inc -D'VALUE").append(i).append("=defined_").append(i);
+			json.append("' -c source").append(i).append(".cpp\", \"file\": \"source").append(i);
+			json.append(".cpp\" },\n");
+		}
+		json.append("{ \"directory\": \"").append(jsonPath(fDirectory)).append("/src\", ");
+		json.append("\"arguments\": [\"cc\", \"-c\", \"plain.c\"], \"file\": \"plain.c\" }\n]\n");
+		write("compile_commands.json", json.toString());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		delete(fDirectory);
+		super.tearDown();
+	}
+
+	private void write(String path, String content) throws IOException {
+		File file = new File(fDirectory, path);
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String jsonPath(File file) {
+		return file.getPath().replace("\\", "\\\\");
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	private StandaloneFastIndexer index(CompilationDatabase database, File target, int threads) throws Exception {
+		StandaloneFastIndexer indexer = new StandaloneFastIndexer(target, new FileLocationConverter(),
+				LanguageManager.getInstance().getPDOMLinkageFactoryMappings(), database, null, database,
+				new StdoutLogService());
+		indexer.setParserThreads(threads);
+		indexer.setReproducible(true);
+		indexer.rebuild(database.getSourceFiles(), new NullProgressMonitor());
+		return indexer;
+	}
+
+	private static void close(StandaloneFastIndexer indexer) throws Exception {
+		WritablePDOM pdom = (WritablePDOM) indexer.getIndex().getWritableFragment();
+		pdom.acquireWriteLock(null);
+		try {
+			pdom.close();
+		} finally {
+			pdom.releaseWriteLock();
+		}
+	}
+
+	private static int countBindings(IWritableIndex index, String name) throws Exception {
+		index.acquireReadLock();
+		try {
+			return index.findBindings(name.toCharArray(), IndexFilter.ALL_DECLARED, new NullProgressMonitor()).length;
+		} finally {
+			index.releaseReadLock();
+		}
+	}
+
+	public void testSplitCommand() throws Exception {
+		File file = new File(fDirectory, "compile_commands.json");
+		write("compile_commands.json", "[{ \"directory\": \"" + jsonPath(fDirectory) + "\", \"file\": \"a.cpp\", "
+				+ "\"command\": \"c++ -I inc -isystem/usr/include -DA=\\\\\\\"text\\\\\\\" -D 'B=1 + 2' -UB "
+				+ "-include pre.h a.cpp\" }]");
+		CompilationDatabase database = CompilationDatabase.read(file);
+		List<String> sources = database.getSourceFiles();
+		assertEquals(1, sources.size());
+		IExtendedScannerInfo info = (IExtendedScannerInfo) database.getScannerInformation(sources.get(0));
+		assertEquals(Arrays.asList(new File(fDirectory, "inc").getPath(), "/usr/include"),
+				Arrays.asList(info.getIncludePaths()));
+		assertEquals("\"text\"", info.getDefinedSymbols().get("A"));
+		assertFalse(info.getDefinedSymbols().containsKey("B"));
+		assertEquals(Arrays.asList(new File(fDirectory, "pre.h").getPath()), Arrays.asList(info.getIncludeFiles()));
+	}
+
+	public void testIndexCompilationDatabase() throws Exception {
+		CompilationDatabase database = CompilationDatabase.read(new File(fDirectory, "compile_commands.json"));
+		assertEquals(7, database.getSourceFiles().size());
+		StandaloneFastIndexer indexer = index(database, new File(fDirectory, "index.pdom"), 3);
+		try {
+			IWritableIndex index = indexer.getIndex();
+			assertEquals(1, countBindings(index, "from_header"));
+			assertEquals(1, countBindings(index, "from_c_source"));
+			for (int i = 0; i < 6; i++) {
+				assertEquals(1, countBindings(index, "defined_" + i));
+			}
+			assertEquals(8, indexer.getStatistics().fIndexedFilesCount);
+		} finally {
+			close(indexer);
+		}
+	}
+
+	public void testReproducibleIndex() throws Exception {
+		CompilationDatabase database = CompilationDatabase.read(new File(fDirectory, "compile_commands.json"));
+		File first = new File(fDirectory, "first.pdom");
+		File second = new File(fDirectory, "second.pdom");
+		close(index(database, first, 2));
+		// Touch the files, the timestamps must not be stored.
+		for (String source : database.getSourceFiles()) {
+			new File(source).setLastModified(System.currentTimeMillis() + 10000);
+		}
+		close(index(database, second, 2));
+		assertTrue(Arrays.equals(Files.readAllBytes(first.toPath()), Files.readAllBytes(second.toPath())));
+	}
+}
@@ -17,6 +17,9 @@ package org.eclipse.cdt.internal.index.tests;
 import static org.eclipse.cdt.core.testplugin.util.TestSourceReader.createFile;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.regex.Pattern;
@@ -39,6 +42,8 @@ import org.eclipse.cdt.core.model.IPathEntry;
 import org.eclipse.cdt.core.testplugin.CProjectHelper;
 import org.eclipse.cdt.core.testplugin.TestScannerProvider;
 import org.eclipse.cdt.core.testplugin.util.TestSourceReader;
+import org.eclipse.cdt.internal.core.index.IIndexFragmentFile;
+import org.eclipse.cdt.internal.core.pdom.IndexerProfile;
 import org.eclipse.cdt.internal.core.pdom.indexer.IndexerPreferences;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
@@ -337,6 +342,246 @@ public class IndexIncludeTest extends IndexTestBase {
 		}
 	}
 
+	// #pragma once
+	// int shared_parallel;
+	public void testParserThreads() throws Exception {
+		IProject project = fProject.getProject();
+		IFile header = createFile(project, "shared_parallel.h", getContentsForTest(1)[0].toString());
+		for (int i = 0; i < 10; i++) {
+			createFile(project, "parallel" + i + ".cpp",
+					"#include \"shared_parallel.h\"\nint source_parallel" + i + ";\n");
+		}
+		IndexerPreferences.set(project, IndexerPreferences.KEY_PARSER_THREADS, "4");
+		try {
+			CCorePlugin.getIndexManager().reindex(fProject);
+			waitForIndexer();
+
+			fIndex.acquireReadLock();
+			try {
+				for (int i = 0; i < 10; i++) {
+					assertEquals(1, fIndex.findBindings(("source_parallel" + i).toCharArray(),
+							IndexFilter.ALL_DECLARED, npm()).length);
+				}
+				assertEquals(1,
+						fIndex.findBindings("shared_parallel".toCharArray(), IndexFilter.ALL_DECLARED, npm()).length);
+				// The header is stored once, it is included by all sources.
+				IIndexFile ifile = getIndexFile(header);
+				assertEquals(10, fIndex.findIncludedBy(ifile).length);
+			} finally {
+				fIndex.releaseReadLock();
+			}
+		} finally {
+			IndexerPreferences.set(project, IndexerPreferences.KEY_PARSER_THREADS, "1");
+		}
+	}
+
+	public void testMemoryCeiling() throws Exception {
+		IProject project = fProject.getProject();
+		createFile(project, "shared_ceiling.h", "#pragma once\nint shared_ceiling;\n");
+		for (int i = 0; i < 10; i++) {
+			createFile(project, "ceiling" + i + ".cpp",
+					"#include \"shared_ceiling.h\"\nint source_ceiling" + i + ";\n");
+		}
+		// The heap is always above the ceiling, the parser threads leave sources to the task.
+		IndexerPreferences.set(project, IndexerPreferences.KEY_PARSER_THREADS, "4");
+		IndexerPreferences.set(project, IndexerPreferences.KEY_MEMORY_CEILING_PERCENT, "1");
+		try {
+			CCorePlugin.getIndexManager().reindex(fProject);
+			waitForIndexer();
+			for (int i = 0; i < 10; i++) {
+				checkBinding("source_ceiling" + i, 1);
+			}
+			checkBinding("shared_ceiling", 1);
+		} finally {
+			IndexerPreferences.set(project, IndexerPreferences.KEY_PARSER_THREADS, "1");
+			IndexerPreferences.set(project, IndexerPreferences.KEY_MEMORY_CEILING_PERCENT, "0");
+		}
+	}
+
+	public void testMemoryCeilingWithOneThread() throws Exception {
+		IProject project = fProject.getProject();
+		createFile(project, "shared_ceiling1.h", "#pragma once\nint shared_ceiling1;\n");
+		for (int i = 0; i < 5; i++) {
+			createFile(project, "ceiling1_" + i + ".cpp",
+					"#include \"shared_ceiling1.h\"\nint source_ceiling1_" + i + ";\n");
+		}
+		// The heap is always above the ceiling, the caches are dropped before every file.
+		IndexerPreferences.set(project, IndexerPreferences.KEY_MEMORY_CEILING_PERCENT, "1");
+		try {
+			CCorePlugin.getIndexManager().reindex(fProject);
+			waitForIndexer();
+			for (int i = 0; i < 5; i++) {
+				checkBinding("source_ceiling1_" + i, 1);
+			}
+			checkBinding("shared_ceiling1", 1);
+		} finally {
+			IndexerPreferences.set(project, IndexerPreferences.KEY_MEMORY_CEILING_PERCENT, "0");
+		}
+	}
+
+	// #pragma once
+	// int shared_scheduled_a;
+
+	// #pragma once
+	// int shared_scheduled_b;
+	public void testScheduleByIncludes() throws Exception {
+		IProject project = fProject.getProject();
+		CharSequence[] contents = getContentsForTest(2);
+		IFile header = createFile(project, "shared_scheduled.h", contents[0].toString());
+		for (int i = 0; i < 5; i++) {
+			createFile(project, "scheduled" + i + ".cpp",
+					"#include \"shared_scheduled.h\"\nint source_scheduled" + i + ";\n");
+		}
+		IndexerPreferences.set(project, IndexerPreferences.KEY_SCHEDULE_BY_INCLUDES, "true");
+		try {
+			CCorePlugin.getIndexManager().reindex(fProject);
+			waitForIndexer();
+			checkBinding("shared_scheduled_a", 1);
+
+			// The header is outdated, the sources are ordered by the include graph.
+			Thread.sleep(1000);
+			header = createFile(project, "shared_scheduled.h", contents[1].toString());
+			for (int i = 0; i < 5; i++) {
+				createFile(project, "scheduled" + i + ".cpp",
+						"#include \"shared_scheduled.h\"\nint source_scheduled" + i + "_b;\n");
+			}
+			waitForIndexer();
+			checkBinding("shared_scheduled_a", 0);
+			checkBinding("shared_scheduled_b", 1);
+			fIndex.acquireReadLock();
+			try {
+				for (int i = 0; i < 5; i++) {
+					assertEquals(1, fIndex.findBindings(("source_scheduled" + i + "_b").toCharArray(),
+							IndexFilter.ALL_DECLARED, npm()).length);
+				}
+				assertEquals(5, fIndex.findIncludedBy(getIndexFile(header)).length);
+			} finally {
+				fIndex.releaseReadLock();
+			}
+		} finally {
+			IndexerPreferences.set(project, IndexerPreferences.KEY_SCHEDULE_BY_INCLUDES, "false");
+		}
+	}
+
+	public void testIndexerProfile() throws Exception {
+		IProject project = fProject.getProject();
+		File directory = Files.createTempDirectory("indexerProfile").toFile();
+		System.setProperty(IndexerProfile.PROPERTY_DIRECTORY, directory.getAbsolutePath());
+		try {
+			createFile(project, "profiled.h", "int profiled_header;\n");
+			createFile(project, "profiled.cpp", "#include \"profiled.h\"\nint profiled_source;\n");
+			waitForIndexer();
+			File[] json = directory.listFiles((dir, name) -> name.endsWith(".json"));
+			File[] csv = directory.listFiles((dir, name) -> name.endsWith(".csv"));
+			assertNotNull(json);
+			assertNotNull(csv);
+			assertTrue(json.length > 0);
+			assertEquals(json.length, csv.length);
+			StringBuilder content = new StringBuilder();
+			for (File file : json) {
+				content.append(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+			}
+			assertTrue(content.indexOf("profiled.cpp") >= 0);
+			assertTrue(content.indexOf("profiled.h") >= 0);
+			assertTrue(content.indexOf("nameResolution") >= 0);
+		} finally {
+			System.clearProperty(IndexerProfile.PROPERTY_DIRECTORY);
+			for (File file : directory.listFiles()) {
+				file.delete();
+			}
+			directory.delete();
+		}
+	}
+
+	// #define VALUE_20261017 old_20261017
+	// #define OTHER_20261017 other_20261017
+
+	// #define VALUE_20261017 new_20261017
+	// #define OTHER_20261017 other_20261017
+
+	// #include "macros_20261017.h"
+	// int VALUE_20261017;
+	public void testUpdateByContent() throws Exception {
+		IProject project = fProject.getProject();
+		CharSequence[] contents = getContentsForTest(3);
+		IndexerPreferences.set(project, IndexerPreferences.KEY_UPDATE_BY_CONTENT, "true");
+		try {
+			IFile header = createFile(project, "macros_20261017.h", contents[0].toString());
+			createFile(project, "source_20261017.cpp", contents[2].toString());
+			CCorePlugin.getIndexManager().reindex(fProject);
+			waitForIndexer();
+			checkBinding("old_20261017", 1);
+
+			// Touching the header without changing it refreshes the timestamp.
+			Thread.sleep(1000);
+			header = createFile(project, "macros_20261017.h", contents[0].toString());
+			waitForIndexer();
+			fIndex.acquireReadLock();
+			try {
+				assertTrue("Timestamp not ok", getIndexFile(header).getTimestamp() >= header.getLocalTimeStamp());
+			} finally {
+				fIndex.releaseReadLock();
+			}
+
+			// The source references the changed macro, it is parsed again.
+			Thread.sleep(1000);
+			header = createFile(project, "macros_20261017.h", contents[1].toString());
+			TestSourceReader.waitUntilFileIsIndexed(fIndex, header, INDEXER_TIMEOUT_MILLISEC);
+			waitForIndexer();
+			checkBinding("old_20261017", 0);
+			checkBinding("new_20261017", 1);
+		} finally {
+			IndexerPreferences.set(project, IndexerPreferences.KEY_UPDATE_BY_CONTENT, "false");
+		}
+	}
+
+	// #ifndef GUARD_20261017
+	// #define GUARD_20261017
+	// int guarded_20261017;
+	// #endif
+
+	// #include "guarded_20261017.h"
+
+	// #define GUARD_20261017
+	// #include "guarded_20261017.h"
+	public void testIncludeGuardFromIndex() throws Exception {
+		IProject project = fProject.getProject();
+		CharSequence[] contents = getContentsForTest(3);
+		IFile header = createFile(project, "guarded_20261017.h", contents[0].toString());
+		createFile(project, "guarded1_20261017.cpp", contents[1].toString());
+		waitForIndexer();
+		fIndex.acquireReadLock();
+		try {
+			IIndexFragmentFile file = (IIndexFragmentFile) getIndexFile(header);
+			assertEquals("GUARD_20261017", new String(file.getIncludeGuard()));
+		} finally {
+			fIndex.releaseReadLock();
+		}
+
+		// The guard is defined, the header is skipped without being read.
+		IFile source = createFile(project, "guarded2_20261017.cpp", contents[2].toString());
+		waitUntilFileIsIndexed(fIndex, source);
+		fIndex.acquireReadLock();
+		try {
+			IIndexFileLocation location = IndexLocationFactory.getWorkspaceIFL(header);
+			assertEquals(1, fIndex.getFiles(ILinkage.CPP_LINKAGE_ID, location).length);
+			IIndexInclude[] includes = fIndex.findIncludes(getIndexFile(source));
+			assertEquals(1, includes.length);
+			assertEquals(location, includes[0].getIncludesLocation());
+		} finally {
+			fIndex.releaseReadLock();
+		}
+	}
+
+	private void checkBinding(String name, int count) throws Exception {
+		fIndex.acquireReadLock();
+		try {
+			assertEquals(count, fIndex.findBindings(name.toCharArray(), IndexFilter.ALL_DECLARED, npm()).length);
+		} finally {
+			fIndex.releaseReadLock();
+		}
+	}
+
 	// #include "resolved20070426.h"
 	public void testFixedContext() throws Exception {
 		TestScannerProvider.sIncludes = new String[] { fProject.getProject().getLocation().toOSString() };
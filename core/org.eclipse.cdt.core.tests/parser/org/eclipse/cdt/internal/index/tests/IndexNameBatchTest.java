@@ -0,0 +1,219 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Eclipse CDT contributors and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+package org.eclipse.cdt.internal.index.tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.cdt.core.index.IIndex;
+import org.eclipse.cdt.core.index.IIndexBinding;
+import org.eclipse.cdt.core.index.IIndexFile;
+import org.eclipse.cdt.core.index.IIndexFileLocation;
+import org.eclipse.cdt.core.index.IIndexLocationConverter;
+import org.eclipse.cdt.core.index.IIndexName;
+import org.eclipse.cdt.core.model.LanguageManager;
+import org.eclipse.cdt.core.testplugin.util.BaseTestCase;
+import org.eclipse.cdt.internal.core.index.IWritableIndex;
+import org.eclipse.cdt.internal.core.index.IndexFileLocation;
+import org.eclipse.cdt.internal.core.indexer.CompilationDatabase;
+import org.eclipse.cdt.internal.core.indexer.StandaloneFastIndexer;
+import org.eclipse.cdt.internal.core.indexer.StdoutLogService;
+import org.eclipse.cdt.internal.core.pdom.WritablePDOM;
+import org.eclipse.cdt.internal.core.pdom.dom.PDOMFile;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import junit.framework.Test;
+
+/**
+ * Tests that the names of a file are stored the same way whether they are added to the index one
+ * by one or in batches.
+ */
+public class IndexNameBatchTest extends BaseTestCase {
+	private File fDirectory;
+
+	public static Test suite() {
+		return suite(IndexNameBatchTest.class);
+	}
+
+	private static class FileLocationConverter implements IIndexLocationConverter {
+		@Override
+		public IIndexFileLocation fromInternalFormat(String raw) {
+			return new IndexFileLocation(new File(raw).toURI(), null);
+		}
+
+		@Override
+		public String toInternalFormat(IIndexFileLocation location) {
+			return new File(location.getURI()).getPath();
+		}
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		fDirectory = Files.createTempDirectory("nameBatch").toFile().getCanonicalFile();
+		write("header.h", "" //
+				+ "#define CALL(f, x) f(x)\n" //
+				+ "int callee(int);\n" //
+				+ "int overloaded(int);\n" //
+				+ "int overloaded(char);\n" //
+				+ "struct Base { virtual int member(int x) { return callee(x); } };\n" //
+				+ "struct Derived : Base { int member(int x) override; Derived(); };\n" //
+				+ "template<typename T> T twice(T t) { return t + t; }\n" //
+				+ "extern \"C\" int from_c(int);\n");
+		for (int i = 0; i < 3; i++) {
+			StringBuilder source = new StringBuilder("#include \"header.h\"\n");
+			source.append("int caller").append(i).append("(int x) {\n");
+			for (int c = 0; c < 5; c++) {
+				source.append("  x += callee(x) + CALL(callee, x) + overloaded(x) + twice(x);\n");
+			}
+			source.append("  Derived d;\n");
+			source.append("  Base& b = d;\n");
+			source.append("  x += b.member(x) + d.member(x) + from_c(x);\n");
+			source.append("  return overloaded(1.0) + x;\n}\n");
+			if (i == 0) {
+				source.append("Derived::Derived() {}\n");
+				source.append("int Derived::member(int x) { return callee(x) + Base::member(x); }\n");
+			}
+			write("source" + i + ".cpp", source.toString());
+		}
+		write("plain.c", "int from_c(int x) { return x ? from_c(x - 1) : 0; }\n");
+		StringBuilder json = new StringBuilder("[\n");
+		for (int i = 0; i < 3; i++) {
+			json.append("{ \"directory\": \"").append(jsonPath(fDirectory)).append("\", ");
+			json.append("\"command\": \"g++ -std=c++11 -c source").append(i).append(".cpp\", ");
+			json.append("\"file\": \"source").append(i).append(".cpp\" },\n");
+		}
+		json.append("{ \"directory\": \"").append(jsonPath(fDirectory)).append("\", ");
+		json.append("\"command\": \"cc -c plain.c\", \"file\": \"plain.c\" }\n]\n");
+		write("compile_commands.json", json.toString());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		System.clearProperty(PDOMFile.PROPERTY_DISABLE_BATCH_NAME_INSERTION);
+		File[] files = fDirectory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		fDirectory.delete();
+		super.tearDown();
+	}
+
+	private void write(String name, String content) throws IOException {
+		Files.write(new File(fDirectory, name).toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String jsonPath(File file) {
+		return file.getPath().replace("\\", "\\\\");
+	}
+
+	/**
+	 * Indexes the sources and returns a description of every binding with its names, in the order
+	 * in which the index returns them.
+	 */
+	private List<String> index(boolean batched) throws Exception {
+		System.setProperty(PDOMFile.PROPERTY_DISABLE_BATCH_NAME_INSERTION, String.valueOf(!batched));
+		CompilationDatabase database = CompilationDatabase.read(new File(fDirectory, "compile_commands.json"));
+		File target = new File(fDirectory, batched ? "batched.pdom" : "single.pdom");
+		StandaloneFastIndexer indexer = new StandaloneFastIndexer(target, new FileLocationConverter(),
+				LanguageManager.getInstance().getPDOMLinkageFactoryMappings(), database, null, database,
+				new StdoutLogService());
+		indexer.setParserThreads(1);
+		indexer.setReproducible(true);
+		indexer.rebuild(database.getSourceFiles(), new NullProgressMonitor());
+		IWritableIndex index = indexer.getIndex();
+		try {
+			return describeBindings(index);
+		} finally {
+			WritablePDOM pdom = (WritablePDOM) index.getWritableFragment();
+			pdom.acquireWriteLock(null);
+			try {
+				pdom.close();
+			} finally {
+				pdom.releaseWriteLock();
+			}
+		}
+	}
+
+	private static List<String> describeBindings(IIndex index) throws Exception {
+		List<String> result = new ArrayList<>();
+		Set<IIndexBinding> bindings = new HashSet<>();
+		index.acquireReadLock();
+		try {
+			for (IIndexFile file : index.getAllFiles()) {
+				for (IIndexName name : file.findNames(0, Integer.MAX_VALUE)) {
+					IIndexBinding binding = index.findBinding(name);
+					if (binding == null || !bindings.add(binding))
+						continue;
+
+					StringBuilder buf = new StringBuilder();
+					buf.append(binding.getLinkage().getLinkageName()).append(' ');
+					buf.append(String.join("::", binding.getQualifiedName())).append(':');
+					for (IIndexName occurrence : index.findNames(binding, IIndex.FIND_ALL_OCCURRENCES)) {
+						buf.append(' ').append(describe(occurrence));
+					}
+					result.add(buf.toString());
+				}
+			}
+		} finally {
+			index.releaseReadLock();
+		}
+		Collections.sort(result);
+		return result;
+	}
+
+	private static String describe(IIndexName name) throws Exception {
+		StringBuilder buf = new StringBuilder();
+		buf.append(new File(name.getFile().getLocation().getURI()).getName());
+		buf.append('[').append(name.getNodeOffset()).append(',').append(name.getNodeLength()).append(']');
+		buf.append(name.isDefinition() ? 'D' : name.isDeclaration() ? 'd' : 'r');
+		if (name.isPotentialMatch()) {
+			buf.append('?');
+		}
+		IIndexName enclosing = name.getEnclosingDefinition();
+		if (enclosing != null) {
+			buf.append('<').append(enclosing.getNodeOffset());
+		}
+		return buf.toString();
+	}
+
+	public void testSameNamesWithAndWithoutBatches() throws Exception {
+		List<String> single = index(false);
+		List<String> batched = index(true);
+		assertFalse(single.isEmpty());
+		assertEquals(String.join("\n", single), String.join("\n", batched));
+	}
+
+	public void testReferencesInBatches() throws Exception {
+		List<String> batched = index(true);
+		String callee = null;
+		for (String binding : batched) {
+			if (binding.startsWith("C++ callee:")) {
+				assertNull(callee);
+				callee = binding;
+			}
+		}
+		assertNotNull(callee);
+		// Per source ten references, plus the ones from the definitions of the members.
+		int references = callee.split("\\]r").length - 1;
+		assertTrue(callee, references >= 3 * 10 + 1);
+		assertTrue(callee, callee.contains("header.h"));
+	}
+}
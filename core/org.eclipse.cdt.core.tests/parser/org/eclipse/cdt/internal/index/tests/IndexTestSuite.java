@@ -40,10 +40,12 @@ public class IndexTestSuite extends TestSuite {
 		suite.addTest(IndexUpdateMultiFileTest.suite());
 		suite.addTest(IndexBugsTests.suite());
 		suite.addTest(IndexNamesTests.suite());
+		suite.addTest(IndexNameBatchTest.suite());
 		suite.addTest(TeamSharedIndexTest.suite());
 		suite.addTest(IndexProviderManagerTest.suite());
 		suite.addTest(IndexMultiVariantHeaderTest.suite());
 		suite.addTest(IndexMultiFileTest.suite());
+		suite.addTest(CompilationDatabaseIndexTest.suite());
 
 		// C++14 index test suites
 		suite.addTestSuite(ReturnTypeDeductionIndexTests.class);
@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Eclipse CDT contributors and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+package org.eclipse.cdt.internal.index.tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+
+import org.eclipse.cdt.core.index.IIndexBinding;
+import org.eclipse.cdt.core.index.IIndexFileLocation;
+import org.eclipse.cdt.core.index.IIndexLocationConverter;
+import org.eclipse.cdt.core.index.IndexFilter;
+import org.eclipse.cdt.core.model.LanguageManager;
+import org.eclipse.cdt.core.testplugin.util.BaseTestCase;
+import org.eclipse.cdt.internal.core.index.IWritableIndex;
+import org.eclipse.cdt.internal.core.index.IndexFileLocation;
+import org.eclipse.cdt.internal.core.indexer.CompilationDatabase;
+import org.eclipse.cdt.internal.core.indexer.StandaloneFastIndexer;
+import org.eclipse.cdt.internal.core.indexer.StdoutLogService;
+import org.eclipse.cdt.internal.core.pdom.IndexerProfile;
+import org.eclipse.cdt.internal.core.pdom.WritablePDOM;
+import org.eclipse.cdt.internal.core.pdom.dom.PDOMFile;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+/**
+ * Compares the time it takes to write the names of translation units with many references to
+ * the index, with the names added one by one and in batches.
+ *
+ * n.b. this is intentionally not added to any test suite, it reports timings rather than
+ * testing anything but the equality of the results.
+ */
+public class NameInsertionBenchmark extends BaseTestCase {
+	private static final int SOURCES = 20;
+	private static final int FUNCTIONS = 200;
+	private static final int CALLS_PER_FUNCTION = 50;
+	private static final int ROUNDS = 3;
+
+	private File fDirectory;
+
+	private static class FileLocationConverter implements IIndexLocationConverter {
+		@Override
+		public IIndexFileLocation fromInternalFormat(String raw) {
+			return new IndexFileLocation(new File(raw).toURI(), null);
+		}
+
+		@Override
+		public String toInternalFormat(IIndexFileLocation location) {
+			return new File(location.getURI()).getPath();
+		}
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		fDirectory = Files.createTempDirectory("nameInsertion").toFile().getCanonicalFile();
+		StringBuilder header = new StringBuilder();
+		for (int i = 0; i < FUNCTIONS; i++) {
+			header.append("int callee").append(i).append("(int);\n");
+		}
+		write("callees.h", header.toString());
+		StringBuilder json = new StringBuilder("[\n");
+		for (int s = 0; s < SOURCES; s++) {
+			StringBuilder source = new StringBuilder("#include \"callees.h\"\n");
+			for (int i = 0; i < FUNCTIONS; i++) {
+				source.append("int caller").append(s).append('_').append(i).append("(int x) {\n");
+				for (int c = 0; c < CALLS_PER_FUNCTION; c++) {
+					source.append("  x += callee").append((i + c) % FUNCTIONS).append("(x);\n");
+				}
+				source.append("  return x;\n}\n");
+			}
+			write("source" + s + ".cpp", source.toString());
+			json.append(s == 0 ? "" : ",\n").append("{ \"directory\": \"")
+					.append(fDirectory.getPath().replace("\\", "\\\\")).append("\", \"command\": \"g++ -c source")
+					.append(s).append(".cpp\", \"file\": \"source").append(s).append(".cpp\" }");
+		}
+		write("compile_commands.json", json.append("\n]\n").toString());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		System.clearProperty(PDOMFile.PROPERTY_DISABLE_BATCH_NAME_INSERTION);
+		File[] files = fDirectory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		fDirectory.delete();
+		super.tearDown();
+	}
+
+	private void write(String name, String content) throws IOException {
+		Files.write(new File(fDirectory, name).toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public void testNameInsertion() throws Exception {
+		CompilationDatabase database = CompilationDatabase.read(new File(fDirectory, "compile_commands.json"));
+		int[] references = new int[2];
+		double[] writeTime = new double[2];
+		for (int round = 0; round < ROUNDS; round++) {
+			for (int batched = 0; batched < 2; batched++) {
+				System.setProperty(PDOMFile.PROPERTY_DISABLE_BATCH_NAME_INSERTION, String.valueOf(batched == 0));
+				IndexerProfile profile = new IndexerProfile();
+				File target = new File(fDirectory, "index" + round + "_" + batched + ".pdom");
+				StandaloneFastIndexer indexer = new StandaloneFastIndexer(target, new FileLocationConverter(),
+						LanguageManager.getInstance().getPDOMLinkageFactoryMappings(), database, null, database,
+						new StdoutLogService());
+				indexer.setProfile(profile);
+				indexer.rebuild(database.getSourceFiles(), new NullProgressMonitor());
+				// The first round warms up the parser.
+				if (round > 0) {
+					writeTime[batched] += profile.getTotalTime(IndexerProfile.Phase.INDEX_WRITE);
+				}
+				references[batched] = countReferences(indexer.getIndex(), "callee0");
+				WritablePDOM pdom = (WritablePDOM) indexer.getIndex().getWritableFragment();
+				pdom.acquireWriteLock(null);
+				try {
+					pdom.close();
+				} finally {
+					pdom.releaseWriteLock();
+				}
+			}
+		}
+		assertEquals(SOURCES * CALLS_PER_FUNCTION, references[0]);
+		assertEquals(references[0], references[1]);
+		final int tus = SOURCES * (ROUNDS - 1);
+		System.out.println(String.format(Locale.ROOT,
+				"NameInsertionBenchmark: write phase per TU %.1f ms one by one, %.1f ms in batches",
+				writeTime[0] / tus, writeTime[1] / tus));
+	}
+
+	private static int countReferences(IWritableIndex index, String name) throws Exception {
+		index.acquireReadLock();
+		try {
+			IIndexBinding[] bindings = index.findBindings(name.toCharArray(), IndexFilter.ALL_DECLARED,
+					new NullProgressMonitor());
+			assertEquals(1, bindings.length);
+			return index.findReferences(bindings[0]).length;
+		} finally {
+			index.releaseReadLock();
+		}
+	}
+}
@@ -46,6 +46,7 @@ public class BTreeTests extends BaseTestCase5 {
 	protected BTree btree;
 	protected int rootRecord;
 	protected IBTreeComparator comparator;
+	protected boolean cacheKeyPrefixes;
 
 	// setUp is not used since we need to parameterize this method,
 	// and invoke it multiple times per Junit test
@@ -55,7 +56,7 @@ public class BTreeTests extends BaseTestCase5 {
 		db.setExclusiveLock();
 		rootRecord = Database.DATA_AREA;
 		comparator = new BTMockRecordComparator();
-		btree = new BTree(db, rootRecord, degree, comparator);
+		btree = new BTree(db, rootRecord, degree, comparator, cacheKeyPrefixes);
 	}
 
 	// tearDown is not used for the same reason as above
@@ -69,6 +70,12 @@ public class BTreeTests extends BaseTestCase5 {
 		sortedMirrorTest(8);
 	}
 
+	@Test
+	public void testBySortedSetMirrorWithKeyPrefixes() throws Exception {
+		cacheKeyPrefixes = true;
+		sortedMirrorTest(4);
+	}
+
 	/**
 	 * Test random (but reproducible via known seed) sequences of insertions/deletions
 	 * and use TreeSet as a reference implementation to check behaviour against.
@@ -120,6 +127,67 @@ public class BTreeTests extends BaseTestCase5 {
 		}
 	}
 
+	/**
+	 * Bulk-load random records with duplicates into B-trees of different degrees, with and without
+	 * cached key prefixes, then modify and rebuild the trees.
+	 */
+	@Test
+	public void testBulkLoad() throws Exception {
+		Random random = new Random(4711);
+		for (int i = 0; i < 8; i++) {
+			cacheKeyPrefixes = i % 2 == 1;
+			init(2 + random.nextInt(11));
+			try {
+				final SortedSet expected = new TreeSet();
+				final List history = new ArrayList();
+				// A few records are inserted before the bulk load, they are kept.
+				for (int j = random.nextInt(50); j > 0; j--) {
+					insertRandom(random, expected, history);
+				}
+				long[] records = new long[random.nextInt(20000)];
+				for (int j = 0; j < records.length; j++) {
+					int value = j > 0 && random.nextInt(10) == 0 ? new BTMockRecord(records[j - 1], db).intValue()
+							: random.nextInt(Integer.MAX_VALUE);
+					BTMockRecord btValue = new BTMockRecord(db, value);
+					records[j] = btValue.getRecord();
+					if (expected.add(value)) {
+						history.add(btValue);
+					}
+				}
+				assertEquals(expected.size(), btree.bulkLoad(records));
+				assertBTreeMatchesSortedSet("[Bulk load] ", btree, expected);
+				assertBTreeInvariantsHold("[Bulk load]");
+
+				for (int j = 0; j < 1000; j++) {
+					if (random.nextBoolean()) {
+						insertRandom(random, expected, history);
+					} else if (!history.isEmpty()) {
+						BTMockRecord btValue = (BTMockRecord) history.remove(random.nextInt(history.size()));
+						expected.remove(Integer.valueOf(btValue.intValue()));
+						btree.delete(btValue.getRecord());
+					}
+				}
+				assertBTreeMatchesSortedSet("[Modified] ", btree, expected);
+				assertBTreeInvariantsHold("[Modified]");
+
+				btree.rebuild();
+				assertBTreeMatchesSortedSet("[Rebuilt] ", btree, expected);
+				assertBTreeInvariantsHold("[Rebuilt]");
+			} finally {
+				finish();
+			}
+		}
+	}
+
+	private void insertRandom(Random random, SortedSet expected, List history) throws CoreException {
+		Integer value = random.nextInt(Integer.MAX_VALUE);
+		if (expected.add(value)) {
+			BTMockRecord btValue = new BTMockRecord(db, value.intValue());
+			history.add(btValue);
+			btree.insert(btValue.getRecord());
+		}
+	}
+
 	/**
 	 * Insert/Delete a random number of records into/from the B-tree
 	 * @param seed the seed for obtaining the deterministic random testing
@@ -258,5 +326,11 @@ public class BTreeTests extends BaseTestCase5 {
 		public int compare(long record1, long record2) throws CoreException {
 			return db.getInt(record1) - db.getInt(record2);
 		}
+
+		@Override
+		public int getKeyPrefix(long record) throws CoreException {
+			// Values are not negative, the unsigned comparison of prefixes matches compare().
+			return db.getInt(record) >>> 20;
+		}
 	}
 }
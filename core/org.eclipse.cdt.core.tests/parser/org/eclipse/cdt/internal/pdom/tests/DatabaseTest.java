@@ -16,16 +16,27 @@
 package org.eclipse.cdt.internal.pdom.tests;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Random;
+import java.util.Set;
 
 import org.eclipse.cdt.core.testplugin.CTestPlugin;
 import org.eclipse.cdt.core.testplugin.util.BaseTestCase;
 import org.eclipse.cdt.internal.core.pdom.db.BTree;
 import org.eclipse.cdt.internal.core.pdom.db.ChunkCache;
+import org.eclipse.cdt.internal.core.pdom.db.CompressedDatabaseFile;
 import org.eclipse.cdt.internal.core.pdom.db.Database;
 import org.eclipse.cdt.internal.core.pdom.db.IBTreeComparator;
 import org.eclipse.cdt.internal.core.pdom.db.IBTreeVisitor;
 import org.eclipse.cdt.internal.core.pdom.db.IString;
+import org.eclipse.cdt.internal.core.pdom.db.PDOMStringTable;
 import org.eclipse.cdt.internal.core.pdom.db.ShortString;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
@@ -147,6 +158,486 @@ public class DatabaseTest extends BaseTestCase {
 		assertEquals(mem2, mem1);
 	}
 
+	public void testMallocMultiple() throws Exception {
+		final int realsize = 30;
+		final int blocksize = 32;
+		final int perChunk = Database.CHUNK_SIZE / blocksize;
+		long[] records = new long[perChunk + perChunk / 2];
+		db.malloc(realsize, records);
+		Set<Long> distinct = new HashSet<>();
+		for (int i = 0; i < records.length; i++) {
+			assertTrue(distinct.add(records[i]));
+			assertEquals(-blocksize, db.getShort(records[i] - Database.BLOCK_HEADER_SIZE));
+			if (i > 0 && i < perChunk - 1) {
+				// The blocks of the first chunk are consecutive.
+				assertEquals(records[i - 1] + blocksize, records[i]);
+			}
+		}
+		for (long record : records) {
+			db.free(record);
+		}
+		assertEquals(records[records.length - 1], db.malloc(realsize));
+	}
+
+	public void testMemoryMappedDatabase() throws Exception {
+		File file = getTestDir().append(getName() + System.currentTimeMillis() + ".dat").toFile();
+		Database mapped = new Database(file, new ChunkCache(), 0, false, Database.OPTION_MEMORY_MAPPED);
+		assertTrue(mapped.isMemoryMapped());
+		mapped.setExclusiveLock();
+		long[] records = new long[1000];
+		for (int i = 0; i < records.length; i++) {
+			records[i] = mapped.malloc(Database.MAX_MALLOC_SIZE / 2);
+			mapped.putInt(records[i], i);
+			mapped.putRecPtr(records[i] + Database.INT_SIZE, mapped.newString("name" + i).getRecord());
+		}
+		mapped.close();
+
+		// Read the content back through the chunk cache.
+		Database read = new Database(file, new ChunkCache(), 0, true, 0);
+		try {
+			read.setLocked(true);
+			for (int i = 0; i < records.length; i++) {
+				assertEquals(i, read.getInt(records[i]));
+				assertEquals("name" + i, read.getString(read.getRecPtr(records[i] + Database.INT_SIZE)).getString());
+			}
+		} finally {
+			read.setExclusiveLock();
+			read.close();
+			file.delete();
+		}
+	}
+
+	public void testMemoryMappedDatabaseMarkedIncomplete() throws Exception {
+		File file = getTestDir().append(getName() + System.currentTimeMillis() + ".dat").toFile();
+		Database mapped = new Database(file, new ChunkCache(), 7, false, Database.OPTION_MEMORY_MAPPED);
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			mapped.setExclusiveLock();
+			long record = mapped.malloc(Database.MAX_MALLOC_SIZE);
+			mapped.flush();
+			assertEquals(7, raf.readInt());
+
+			// The operating system may write the mapped chunk before the database is flushed.
+			mapped.putInt(record, 1);
+			raf.seek(0);
+			assertEquals(0, raf.readInt());
+			mapped.flush();
+			raf.seek(0);
+			assertEquals(7, raf.readInt());
+		} finally {
+			mapped.close();
+			file.delete();
+		}
+	}
+
+	public void testMemoryMappedTailRemovedOnOpen() throws Exception {
+		File file = getTestDir().append(getName() + System.currentTimeMillis() + ".dat").toFile();
+		Database mapped = new Database(file, new ChunkCache(), 0, false, Database.OPTION_MEMORY_MAPPED);
+		mapped.setExclusiveLock();
+		long record = mapped.malloc(Database.MAX_MALLOC_SIZE);
+		mapped.putInt(record, 42);
+		long size = mapped.getSizeBytes();
+		mapped.close();
+		// Simulates a platform on which the mapped file cannot be truncated when it is closed.
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(64 * 1024 * 1024);
+		}
+
+		Database reopened = new Database(file, new ChunkCache(), 0, false, 0);
+		try {
+			reopened.setExclusiveLock();
+			assertEquals(size, reopened.getSizeBytes());
+			assertEquals(size, file.length());
+			assertEquals(42, reopened.getInt(record));
+			assertEquals(size, reopened.malloc(Database.MAX_MALLOC_SIZE) - Database.BLOCK_HEADER_SIZE);
+		} finally {
+			reopened.close();
+			file.delete();
+		}
+	}
+
+	public void testLargeChunkSize() throws Exception {
+		final int chunkSize = Database.MAX_CHUNK_SIZE;
+		File file = getTestDir().append(getName() + System.currentTimeMillis() + ".dat").toFile();
+		Database large = new Database(file, new ChunkCache(), 0, false, Database.chunkSizeOption(chunkSize));
+		assertEquals(chunkSize, large.getChunkSize());
+		large.setExclusiveLock();
+		long mem = large.malloc(large.getMaxMallocSize());
+		large.free(mem);
+		assertEquals(mem, large.malloc(large.getMaxMallocSize()));
+		assertTrue(large.getMaxShortStringByteLength() > db.getMaxShortStringByteLength());
+		// A string that a database with the default chunk size would split is stored in a single record.
+		char[] chars = new char[large.getMaxShortStringByteLength()];
+		Arrays.fill(chars, 'x');
+		IString string = large.newString(chars);
+		assertTrue(string instanceof ShortString);
+		large.putRecPtr(Database.DATA_AREA, string.getRecord());
+		large.close();
+
+		// The chunk size of an existing database is read from its header.
+		Database read = new Database(file, new ChunkCache(), 0, true, 0);
+		try {
+			read.setLocked(true);
+			assertEquals(chunkSize, read.getChunkSize());
+			IString readString = read.getString(read.getRecPtr(Database.DATA_AREA));
+			assertTrue(readString instanceof ShortString);
+			assertTrue(readString.equals(chars));
+		} finally {
+			read.setExclusiveLock();
+			read.close();
+			file.delete();
+		}
+	}
+
+	public void testFreeListSearch() throws Exception {
+		File file = getTestDir().append(getName() + System.currentTimeMillis() + ".dat").toFile();
+		Database large = new Database(file, new ChunkCache(), 0, false,
+				Database.chunkSizeOption(Database.MAX_CHUNK_SIZE));
+		large.setExclusiveLock();
+		// Free blocks of different sizes, separated by used blocks.
+		final int[] sizes = { 1000, 10000, 40000 };
+		final long[] blocks = new long[sizes.length];
+		for (int i = 0; i < sizes.length; i++) {
+			blocks[i] = large.malloc(sizes[i]);
+			large.malloc(8);
+		}
+		large.free(blocks[0]);
+		large.close();
+
+		// The free lists are read from the header of an existing database.
+		Database reopened = new Database(file, new ChunkCache(), 0, false, 0);
+		try {
+			reopened.setExclusiveLock();
+			reopened.free(blocks[1]);
+			reopened.free(blocks[2]);
+			// The smallest free block that fits is used.
+			assertEquals(blocks[1], reopened.malloc(5000));
+			assertEquals(blocks[0], reopened.malloc(900));
+			assertEquals(blocks[2], reopened.malloc(20000));
+			// The remainders of the blocks are used as well.
+			assertEquals(blocks[2] + 20008, reopened.malloc(19000));
+		} finally {
+			reopened.close();
+			file.delete();
+		}
+	}
+
+	public void testOffHeapCache() throws Exception {
+		File file = getTestDir().append(getName() + System.currentTimeMillis() + ".dat").toFile();
+		ChunkCache cache = new ChunkCache(16 * Database.CHUNK_SIZE, true);
+		assertTrue(cache.isOffHeap());
+		Database offHeap = new Database(file, cache, 0, false, 0);
+		offHeap.setExclusiveLock();
+		final int n = 1000;
+		final long[] records = new long[n];
+		for (int i = 0; i < n; i++) {
+			records[i] = offHeap.malloc(Database.MAX_MALLOC_SIZE / 2);
+			offHeap.putInt(records[i], i);
+		}
+		offHeap.flush();
+		try {
+			for (int i = 0; i < n; i++) {
+				assertEquals(i, offHeap.getInt(records[i]));
+			}
+			assertTrue(cache.getEvictionCount() > 0);
+		} finally {
+			offHeap.close();
+			file.delete();
+		}
+	}
+
+	public void testJournal() throws Exception {
+		File file = getTestDir().append(getName() + System.currentTimeMillis() + ".dat").toFile();
+		Database journaled = new Database(file, new ChunkCache(), 1, false, Database.OPTION_JOURNAL);
+		assertTrue(journaled.isJournaled());
+		journaled.setExclusiveLock();
+		final int n = 1000;
+		final long[] records = new long[n];
+		for (int i = 0; i < n; i++) {
+			records[i] = journaled.malloc(Database.MAX_MALLOC_SIZE / 2);
+			journaled.putInt(records[i], i);
+		}
+		journaled.flush();
+		// Changes that are not committed must not survive a crash.
+		journaled.putInt(records[0], -1);
+		journaled.giveUpExclusiveLock(false);
+
+		// Reopen without closing, the committed state is recovered from the journal.
+		Database recovered = new Database(file, new ChunkCache(), 1, false, Database.OPTION_JOURNAL);
+		recovered.setExclusiveLock();
+		try {
+			assertEquals(1, recovered.getVersion());
+			for (int i = 0; i < n; i++) {
+				assertEquals(i, recovered.getInt(records[i]));
+			}
+		} finally {
+			recovered.close();
+		}
+		assertFalse(file.getPath() + ".journal", new File(file.getPath() + ".journal").exists());
+		file.delete();
+	}
+
+	public void testStaleJournalDiscarded() throws Exception {
+		File file = getTestDir().append(getName() + System.currentTimeMillis() + ".dat").toFile();
+		File journal = new File(file.getPath() + ".journal");
+		File copy = new File(file.getPath() + ".copy");
+		Database journaled = new Database(file, new ChunkCache(), 1, false, Database.OPTION_JOURNAL);
+		journaled.setExclusiveLock();
+		final long record = journaled.malloc(Database.INT_SIZE);
+		journaled.close();
+
+		Database crashed = new Database(file, new ChunkCache(), 1, false, Database.OPTION_JOURNAL);
+		crashed.setExclusiveLock();
+		crashed.putInt(record, -1);
+		crashed.flush();
+		crashed.giveUpExclusiveLock(false);
+		Files.copy(journal.toPath(), copy.toPath());
+
+		// Opening the database without the journal removes it.
+		Database plain = new Database(file, new ChunkCache(), 1, false, 0);
+		assertFalse(journal.exists());
+		plain.setExclusiveLock();
+		plain.putInt(record, 5);
+		plain.close();
+
+		// A journal that was written for an earlier generation of the file is not applied.
+		Files.move(copy.toPath(), journal.toPath());
+		Database reopened = new Database(file, new ChunkCache(), 1, false, Database.OPTION_JOURNAL);
+		reopened.setExclusiveLock();
+		try {
+			assertEquals(5, reopened.getInt(record));
+		} finally {
+			reopened.close();
+			file.delete();
+		}
+	}
+
+	public void testCompaction() throws Exception {
+		final int n = 5000;
+		final long root = db.malloc(Database.PTR_SIZE);
+		final BTree btree = new BTree(db, root, new IBTreeComparator() {
+			@Override
+			public int compare(long record1, long record2) throws CoreException {
+				return Integer.compare(db.getInt(record1), db.getInt(record2));
+			}
+		});
+		final long[] garbage = new long[n];
+		for (int i = 0; i < n; i++) {
+			long record = db.malloc(Database.INT_SIZE);
+			db.putInt(record, i);
+			btree.insert(record);
+			garbage[i] = db.malloc(Database.MAX_MALLOC_SIZE / 2);
+		}
+		for (long record : garbage) {
+			db.free(record);
+		}
+		db.flush();
+		final long sizeBefore = db.getSizeBytes();
+
+		db.startRelocation();
+		btree.relocateNodes();
+		long reclaimed = db.finishRelocation();
+		db.flush();
+
+		assertTrue(reclaimed > 0);
+		assertEquals(sizeBefore - reclaimed, db.getSizeBytes());
+		assertEquals(db.getSizeBytes(), db.getLocation().length());
+		final int[] count = { 0 };
+		btree.accept(new IBTreeVisitor() {
+			@Override
+			public int compare(long record) throws CoreException {
+				return 0;
+			}
+
+			@Override
+			public boolean visit(long record) throws CoreException {
+				assertEquals(count[0]++, db.getInt(record));
+				return true;
+			}
+		});
+		assertEquals(n, count[0]);
+	}
+
+	public void testCompactionInBatches() throws Exception {
+		final int n = 6000;
+		File file = getTestDir().append(getName() + System.currentTimeMillis() + ".dat").toFile();
+		final Database large = new Database(file, new ChunkCache(1024 * 1024), 7, false);
+		large.setExclusiveLock();
+		try {
+			final long root = large.malloc(Database.PTR_SIZE);
+			final BTree btree = new BTree(large, root, new IBTreeComparator() {
+				@Override
+				public int compare(long record1, long record2) throws CoreException {
+					return Integer.compare(large.getInt(record1), large.getInt(record2));
+				}
+			});
+			// Every record gets a chunk of its own, more chunks than a batch are relocated.
+			final long[] garbage = new long[n];
+			for (int i = 0; i < n; i++) {
+				long record = large.malloc(Database.INT_SIZE);
+				large.putInt(record, i);
+				btree.insert(record);
+				garbage[i] = large.malloc(Database.MAX_MALLOC_SIZE);
+			}
+			for (long record : garbage) {
+				large.free(record);
+			}
+			large.flush();
+
+			large.startRelocation();
+			btree.relocateNodes();
+			// The chunks have been flushed in batches, the file is marked incomplete until the end.
+			try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+				assertEquals(0, raf.readInt());
+			}
+			assertTrue(large.finishRelocation() > 0);
+			large.flush();
+			try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+				assertEquals(7, raf.readInt());
+			}
+			final int[] count = { 0 };
+			btree.accept(new IBTreeVisitor() {
+				@Override
+				public int compare(long record) throws CoreException {
+					return 0;
+				}
+
+				@Override
+				public boolean visit(long record) throws CoreException {
+					assertEquals(count[0]++, large.getInt(record));
+					return true;
+				}
+			});
+			assertEquals(n, count[0]);
+		} finally {
+			large.close();
+			file.delete();
+		}
+	}
+
+	public void testCompressedDatabase() throws Exception {
+		final int n = 3000;
+		final long[] records = new long[n];
+		for (int i = 0; i < n; i++) {
+			records[i] = db.malloc(Database.INT_SIZE * 2);
+			db.putInt(records[i], i);
+		}
+		db.flush();
+		File compressed = getTestDir().append(getName() + System.currentTimeMillis() + ".cdz").toFile();
+		File inflated = getTestDir().append(getName() + System.currentTimeMillis() + ".dat").toFile();
+		try (OutputStream out = new FileOutputStream(compressed)) {
+			CompressedDatabaseFile.compress(db.getLocation(), out);
+		}
+		assertTrue(CompressedDatabaseFile.isCompressed(compressed));
+		assertTrue(compressed.length() < db.getLocation().length());
+
+		// Chunks are inflated as they are read.
+		Database readOnly = new Database(compressed, new ChunkCache(), 0, true, Database.OPTION_MEMORY_MAPPED);
+		readOnly.setExclusiveLock();
+		try {
+			assertTrue(readOnly.isCompressed());
+			assertFalse(readOnly.isMemoryMapped());
+			assertEquals(db.getVersion(), readOnly.getVersion());
+			assertEquals(db.getSizeBytes(), readOnly.getSizeBytes());
+			for (int i = 0; i < n; i++) {
+				assertEquals(i, readOnly.getInt(records[i]));
+			}
+		} finally {
+			readOnly.close();
+		}
+
+		try (InputStream in = new FileInputStream(compressed); OutputStream out = new FileOutputStream(inflated)) {
+			CompressedDatabaseFile.inflate(in, out);
+		}
+		assertTrue(Arrays.equals(Files.readAllBytes(db.getLocation().toPath()), Files.readAllBytes(inflated.toPath())));
+		compressed.delete();
+		inflated.delete();
+	}
+
+	public void testStringTable() throws Exception {
+		final long tableRecord = db.malloc(Database.PTR_SIZE);
+		PDOMStringTable table = new PDOMStringTable(db, tableRecord);
+		final String[] names = { "std", "size_type", "value_type", "Std", "std" };
+		final long[] records = new long[names.length];
+		for (int i = 0; i < names.length; i++) {
+			records[i] = table.acquire(names[i].toCharArray());
+			assertEquals(names[i], db.getString(records[i]).getString());
+		}
+		assertEquals(records[0], records[4]);
+		assertFalse(records[0] == records[3]);
+		assertEquals(0, db.getString(records[0]).compare(db.getString(records[4]), true));
+		assertEquals(4, table.getStringCount());
+		assertEquals(5, table.getReferenceCount());
+		final long savedByStd = table.getBytesSaved();
+		assertTrue(savedByStd > 0);
+
+		// Strings with the same hash code are told apart by their characters.
+		long aa = table.acquire("Aa".toCharArray());
+		long bb = table.acquire("BB".toCharArray());
+		assertEquals("Aa".hashCode(), "BB".hashCode());
+		assertFalse(aa == bb);
+		assertEquals(aa, table.acquire("Aa".toCharArray()));
+		final long saved = table.getBytesSaved();
+
+		// A string is freed once its last reference is released.
+		table.release(records[4]);
+		assertEquals(records[0], table.acquire("std".toCharArray()));
+		table.release(records[0]);
+		table.release(records[0]);
+		assertEquals(5, table.getStringCount());
+		assertEquals(6, table.getReferenceCount());
+		assertEquals(saved - savedByStd, table.getBytesSaved());
+
+		// The table is persistent.
+		table = new PDOMStringTable(db, tableRecord);
+		assertEquals(records[1], table.acquire("size_type".toCharArray()));
+		assertEquals(7, table.getReferenceCount());
+	}
+
+	public void testConcurrentReadersWithSmallCache() throws Exception {
+		final int n = 10000;
+		final long[] records = new long[n];
+		for (int i = 0; i < n; i++) {
+			records[i] = db.malloc(64);
+			db.putInt(records[i], i);
+			db.putLong(records[i] + 8, i * 31L);
+		}
+		db.giveUpExclusiveLock(true);
+		db.getChunkCache().setMaxSize(64 * Database.CHUNK_SIZE);
+		db.setLocked(true);
+		db.resetCacheCounters();
+
+		final int[] errors = new int[1];
+		Thread[] readers = new Thread[4];
+		for (int t = 0; t < readers.length; t++) {
+			final Random random = new Random(t);
+			readers[t] = new Thread(() -> {
+				try {
+					for (int k = 0; k < 50000; k++) {
+						// Mix accesses to a hot set of records with random ones.
+						int i = k % 2 == 0 ? random.nextInt(100) : random.nextInt(n);
+						if (db.getInt(records[i]) != i || db.getLong(records[i] + 8) != i * 31L) {
+							synchronized (errors) {
+								errors[0]++;
+							}
+						}
+					}
+				} catch (CoreException e) {
+					synchronized (errors) {
+						errors[0]++;
+					}
+				}
+			});
+			readers[t].start();
+		}
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		assertEquals(0, errors[0]);
+		assertEquals(readers.length * 50000L * 2, db.getCacheHits() + db.getCacheMisses());
+		assertTrue(db.getChunkCache().getEvictionCount() > 0);
+		db.setExclusiveLock();
+	}
+
 	private static class FindVisitor implements IBTreeVisitor {
 		private Database db;
 		private String key;
@@ -217,10 +708,10 @@ public class DatabaseTest extends BaseTestCase {
 		assertCMP("", EQ, "", true);
 		assertCMP("", EQ, "", false);
 
-		doTrials(1000, 1, ShortString.MAX_BYTE_LENGTH / 2, r, true);
-		doTrials(1000, 1, ShortString.MAX_BYTE_LENGTH / 2, r, false);
-		doTrials(1000, 1, ShortString.MAX_BYTE_LENGTH, r, true);
-		doTrials(1000, 1, ShortString.MAX_BYTE_LENGTH, r, false);
+		doTrials(1000, 1, db.getMaxShortStringByteLength() / 2, r, true);
+		doTrials(1000, 1, db.getMaxShortStringByteLength() / 2, r, false);
+		doTrials(1000, 1, db.getMaxShortStringByteLength(), r, true);
+		doTrials(1000, 1, db.getMaxShortStringByteLength(), r, false);
 
 		assertCMP("a", LT, "b", true);
 		assertCMP("aa", LT, "ab", true);
@@ -236,8 +727,8 @@ public class DatabaseTest extends BaseTestCase {
 
 	public void testLongStringComparison() throws CoreException {
 		Random r = new Random(314159265);
-		doTrials(100, ShortString.MAX_BYTE_LENGTH + 1, ShortString.MAX_BYTE_LENGTH * 2, r, true);
-		doTrials(100, ShortString.MAX_BYTE_LENGTH + 1, ShortString.MAX_BYTE_LENGTH * 2, r, false);
+		doTrials(100, db.getMaxShortStringByteLength() + 1, db.getMaxShortStringByteLength() * 2, r, true);
+		doTrials(100, db.getMaxShortStringByteLength() + 1, db.getMaxShortStringByteLength() * 2, r, false);
 	}
 
 	private void doTrials(int n, int min, int max, Random r, boolean caseSensitive) throws CoreException {
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Eclipse CDT contributors and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+package org.eclipse.cdt.internal.pdom.tests;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.cdt.core.index.IIndexFileLocation;
+import org.eclipse.cdt.core.index.IIndexLocationConverter;
+import org.eclipse.cdt.core.model.LanguageManager;
+import org.eclipse.cdt.core.testplugin.util.BaseTestCase;
+import org.eclipse.cdt.internal.core.pdom.IndexLockStatistics;
+import org.eclipse.cdt.internal.core.pdom.IndexLockStatistics.CallerStatistics;
+import org.eclipse.cdt.internal.core.pdom.WritablePDOM;
+import org.eclipse.cdt.internal.core.pdom.db.Database;
+
+import junit.framework.Test;
+
+/**
+ * Tests for the read-write lock of the PDOM.
+ */
+public class PDOMLockTests extends BaseTestCase {
+	private File pdomFile;
+	private WritablePDOM pdom;
+
+	public static Test suite() {
+		return suite(PDOMLockTests.class);
+	}
+
+	private static class MockIndexLocationConverter implements IIndexLocationConverter {
+		@Override
+		public IIndexFileLocation fromInternalFormat(String raw) {
+			return null;
+		}
+
+		@Override
+		public String toInternalFormat(IIndexFileLocation location) {
+			return null;
+		}
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		pdomFile = File.createTempFile(getClass().getSimpleName() + '.' + Double.toString(Math.random()).substring(2),
+				null);
+		pdom = new WritablePDOM(pdomFile, new MockIndexLocationConverter(),
+				LanguageManager.getInstance().getPDOMLinkageFactoryMappings());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		pdom.acquireWriteLock(null);
+		try {
+			pdom.close();
+		} finally {
+			pdom.releaseWriteLock();
+		}
+		pdomFile.delete();
+		super.tearDown();
+	}
+
+	public void testNestedReadLocksAndUpgrade() throws Exception {
+		pdom.acquireReadLock();
+		pdom.acquireReadLock();
+		pdom.getDB().getInt(Database.DATA_AREA);
+
+		pdom.acquireWriteLock(2, null);
+		long record = pdom.getDB().malloc(Database.INT_SIZE);
+		pdom.getDB().putInt(record, 42);
+		pdom.releaseWriteLock(2, false);
+
+		assertEquals(42, pdom.getDB().getInt(record));
+		pdom.releaseReadLock();
+		pdom.releaseReadLock();
+	}
+
+	public void testWriterExcludesReaders() throws Exception {
+		final int readers = 4;
+		final int iterations = 2000;
+		final AtomicInteger activeWriters = new AtomicInteger();
+		final AtomicInteger errors = new AtomicInteger();
+		pdom.resetCacheCounters();
+
+		Thread[] threads = new Thread[readers + 1];
+		for (int i = 0; i < readers; i++) {
+			threads[i] = new Thread(() -> {
+				try {
+					for (int j = 0; j < iterations; j++) {
+						pdom.acquireReadLock();
+						try {
+							if (activeWriters.get() != 0)
+								errors.incrementAndGet();
+							pdom.getDB().getInt(Database.DATA_AREA);
+						} finally {
+							pdom.releaseReadLock();
+						}
+					}
+				} catch (Exception e) {
+					errors.incrementAndGet();
+				}
+			}, "reader-" + i);
+		}
+		threads[readers] = new Thread(() -> {
+			try {
+				for (int j = 0; j < iterations / 10; j++) {
+					pdom.acquireWriteLock(null);
+					try {
+						if (activeWriters.incrementAndGet() != 1)
+							errors.incrementAndGet();
+						activeWriters.decrementAndGet();
+					} finally {
+						pdom.releaseWriteLock(0, false);
+					}
+				}
+			} catch (Exception e) {
+				errors.incrementAndGet();
+			}
+		}, "writer");
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(0, errors.get());
+
+		IndexLockStatistics statistics = pdom.getLockStatistics();
+		assertEquals(readers * iterations, statistics.getReadLockCount());
+		CallerStatistics writer = null;
+		for (CallerStatistics caller : statistics.getCallerStatistics()) {
+			if (caller.getCaller().equals("writer"))
+				writer = caller;
+		}
+		assertNotNull(writer);
+		assertEquals(iterations / 10, writer.getWriteCount());
+	}
+}
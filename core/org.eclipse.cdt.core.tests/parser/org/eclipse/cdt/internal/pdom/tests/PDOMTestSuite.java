@@ -46,6 +46,7 @@ public class PDOMTestSuite extends TestSuite {
 		// Test converted to JUnit5: suite.addTest(BTreeTests.suite());
 		suite.addTest(PDOMStringSetTests.suite());
 		suite.addTest(PDOMTagIndexTests.suite());
+		suite.addTest(PDOMLockTests.suite());
 		suite.addTest(FilesOnReindexTests.suite());
 		suite.addTest(GeneratePDOMApplicationTest.suite());
 
@@ -93,6 +93,8 @@ public abstract class ASTTranslationUnit extends ASTNode implements IASTTranslat
 	private boolean fBasedOnIncompleteIndex;
 	private boolean fNodesOmitted;
 	private IBuiltinBindingsProvider fBuiltinBindingsProvider;
+	private long fParsingTime;
+	private long fAmbiguityResolutionTime;
 
 	// Caches
 	private final ThreadLocal<WeakHashMap<IType, String>> fUnnormalizedTypeStringCache = new ThreadLocal<>() {
@@ -568,6 +570,30 @@ public abstract class ASTTranslationUnit extends ASTNode implements IASTTranslat
 		fNodesOmitted = hasNodesOmitted;
 	}
 
+	/**
+	 * Records the time in nanoseconds it took to parse the translation unit and to resolve its
+	 * ambiguities. The time for parsing includes the time spent in the preprocessor.
+	 */
+	public void setParsingTimes(long parsingTime, long ambiguityResolutionTime) {
+		fParsingTime = parsingTime;
+		fAmbiguityResolutionTime = ambiguityResolutionTime;
+	}
+
+	/**
+	 * Returns the time in nanoseconds it took to parse the translation unit, including the time
+	 * spent in the preprocessor.
+	 */
+	public long getParsingTime() {
+		return fParsingTime;
+	}
+
+	/**
+	 * Returns the time in nanoseconds it took to resolve the ambiguities of the translation unit.
+	 */
+	public long getAmbiguityResolutionTime() {
+		return fAmbiguityResolutionTime;
+	}
+
 	/**
 	 * If ambiguity resolution is in progress, and processing of 'node' has been deferred,
 	 * process it now. Has no effect if ambiguity resolution is not in progress.
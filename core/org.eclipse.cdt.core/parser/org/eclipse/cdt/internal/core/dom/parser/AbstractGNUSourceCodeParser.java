@@ -684,16 +684,20 @@ public abstract class AbstractGNUSourceCodeParser implements ISourceCodeParser {
 
 	@Override
 	public IASTTranslationUnit parse() {
-		long t0 = log.isTracing() ? System.currentTimeMillis() : 0;
+		long t0 = System.nanoTime();
 		translationUnit();
-		long t1 = log.isTracing() ? System.currentTimeMillis() : 0;
+		long t1 = System.nanoTime();
 		resolveAmbiguities();
+		long t2 = System.nanoTime();
 		IASTTranslationUnit ast = getTranslationUnit();
+		if (ast instanceof ASTTranslationUnit) {
+			((ASTTranslationUnit) ast).setParsingTimes(t1 - t0, t2 - t1);
+		}
 		if (log.isTracing()) {
 			ITranslationUnit tu = ast.getOriginatingTranslationUnit();
 			String name = tu == null ? "<unknown>" : tu.getElementName(); //$NON-NLS-1$
 			String message = String.format("Parsed %s: %d ms%s. Ambiguity resolution: %d ms", //$NON-NLS-1$
-					name, t1 - t0, parsePassed ? "" : " - parse failure", System.currentTimeMillis() - t1); //$NON-NLS-1$//$NON-NLS-2$
+					name, (t1 - t0) / 1000000, parsePassed ? "" : " - parse failure", (t2 - t1) / 1000000); //$NON-NLS-1$//$NON-NLS-2$
 			log.traceLog(message);
 		}
 		nullifyTranslationUnit();
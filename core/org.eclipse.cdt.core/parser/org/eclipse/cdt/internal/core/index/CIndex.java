@@ -544,7 +544,7 @@ public class CIndex implements IIndex {
 		return result.toArray(new IIndexFragmentBinding[result.size()]);
 	}
 
-	private ICompositesFactory getCompositesFactory(int linkageID) {
+	private synchronized ICompositesFactory getCompositesFactory(int linkageID) {
 		switch (linkageID) {
 		case ILinkage.CPP_LINKAGE_ID:
 			if (cppCF == null) {
@@ -67,6 +67,18 @@ public interface IIndexFragmentFile extends IIndexFile {
 	 */
 	void setReplacementHeader(String replacementHeader) throws CoreException;
 
+	/**
+	 * Returns the name of the macro guarding the content of the file, or {@code null} if the file
+	 * has no include guard.
+	 */
+	char[] getIncludeGuard() throws CoreException;
+
+	/**
+	 * Sets the name of the macro guarding the content of the file.
+	 * @param guard the name of the macro, or {@code null} if the file has no include guard.
+	 */
+	void setIncludeGuard(char[] guard) throws CoreException;
+
 	/**
 	 * Returns whether this file contains content in its
 	 * associated fragment. Files without content are inserted to track includes.
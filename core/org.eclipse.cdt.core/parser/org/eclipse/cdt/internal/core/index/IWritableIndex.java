@@ -172,6 +172,11 @@ public interface IWritableIndex extends IIndex {
 	 */
 	long getDatabaseSizeBytes();
 
+	/**
+	 * Returns the number of bytes allocated in the database since it was opened.
+	 */
+	long getDatabaseBytesAllocated();
+
 	/**
 	 * Clears the result cache, caller needs to hold a write-lock.
 	 */
@@ -117,4 +117,9 @@ public interface IWritableIndexFragment extends IIndexFragment {
 	 * @return the size of the database in bytes
 	 */
 	long getDatabaseSizeBytes();
+
+	/**
+	 * @return the number of bytes allocated in the database since it was opened
+	 */
+	long getDatabaseBytesAllocated();
 }
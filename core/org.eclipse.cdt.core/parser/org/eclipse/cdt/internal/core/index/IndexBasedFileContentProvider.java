@@ -37,12 +37,15 @@ import org.eclipse.cdt.core.index.IIndexFile;
 import org.eclipse.cdt.core.index.IIndexFileLocation;
 import org.eclipse.cdt.core.index.IIndexInclude;
 import org.eclipse.cdt.core.index.IIndexMacro;
+import org.eclipse.cdt.core.parser.ISignificantMacros;
 import org.eclipse.cdt.core.parser.IncludeFileContentProvider;
+import org.eclipse.cdt.core.parser.util.CharArrayObjectMap;
 import org.eclipse.cdt.internal.core.parser.IMacroDictionary;
 import org.eclipse.cdt.internal.core.parser.scanner.InternalFileContent;
 import org.eclipse.cdt.internal.core.parser.scanner.InternalFileContent.FileVersion;
 import org.eclipse.cdt.internal.core.parser.scanner.InternalFileContent.InclusionKind;
 import org.eclipse.cdt.internal.core.parser.scanner.InternalFileContentProvider;
+import org.eclipse.cdt.internal.core.parser.scanner.SignificantMacros;
 import org.eclipse.cdt.internal.core.pdom.ASTFilePathResolver;
 import org.eclipse.cdt.internal.core.pdom.AbstractIndexerTask;
 import org.eclipse.cdt.internal.core.pdom.AbstractIndexerTask.IndexFileContent;
@@ -116,6 +119,15 @@ public final class IndexBasedFileContentProvider extends InternalFileContentProv
 		return fPragmaOnce.get(fPathResolver.resolveIncludeFile(filePath));
 	}
 
+	/**
+	 * The indexer checks the existence of files with its path resolver, which consults the file
+	 * system. An editor may find files in the index that no longer exist.
+	 */
+	@Override
+	public boolean isBackedByFileSystem() {
+		return fRelatedIndexerTask != null;
+	}
+
 	@Override
 	public boolean getInclusionExists(String path) {
 		return fPathResolver.doesIncludeFileExist(path);
@@ -130,6 +142,17 @@ public final class IndexBasedFileContentProvider extends InternalFileContentProv
 
 		path = fPathResolver.getASTPath(ifl);
 		try {
+			// A header whose include guard is defined is skipped before any of its content is collected.
+			char[] guard = shouldIndexAllHeaderVersions(path) ? null : getIncludeGuard(ifl);
+			if (guard != null) {
+				CharArrayObjectMap<char[]> guardDefined = new CharArrayObjectMap<>(1);
+				guardDefined.put(guard, SignificantMacros.DEFINED);
+				ISignificantMacros significantMacros = new SignificantMacros(guardDefined);
+				if (macroDictionary.satisfies(significantMacros)) {
+					return new InternalFileContent(path, InclusionKind.SKIP_PRAGMA_ONCE_FILE, significantMacros);
+				}
+			}
+
 			IIndexFile file = selectIndexFile(macroDictionary, ifl);
 			if (file != null) {
 				try {
@@ -182,6 +205,23 @@ public final class IndexBasedFileContentProvider extends InternalFileContentProv
 		return null;
 	}
 
+	/**
+	 * Returns the include guard stored in the index for the file, or {@code null}.
+	 */
+	private char[] getIncludeGuard(IIndexFileLocation ifl) throws CoreException {
+		if (fRelatedIndexerTask != null)
+			return fRelatedIndexerTask.getIncludeGuard(fLinkage, ifl);
+
+		for (IIndexFile file : fIndex.getFiles(fLinkage, ifl)) {
+			if (file instanceof IIndexFragmentFile) {
+				char[] guard = ((IIndexFragmentFile) file).getIncludeGuard();
+				if (guard != null)
+					return guard;
+			}
+		}
+		return null;
+	}
+
 	@Override
 	public InternalFileContent getContentForInclusion(IIndexFileLocation ifl, String astPath) {
 		if (fFallBackFactory != null) {
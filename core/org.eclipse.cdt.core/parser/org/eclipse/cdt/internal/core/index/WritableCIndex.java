@@ -173,6 +173,11 @@ public class WritableCIndex extends CIndex implements IWritableIndex {
 		return getWritableFragment().getDatabaseSizeBytes();
 	}
 
+	@Override
+	public long getDatabaseBytesAllocated() {
+		return getWritableFragment().getDatabaseBytesAllocated();
+	}
+
 	@Override
 	public void transferIncluders(IIndexFragmentFile source, IIndexFragmentFile target) throws CoreException {
 		if (source == null || target == null)
@@ -0,0 +1,289 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Eclipse CDT contributors and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.indexer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.cdt.core.dom.ast.gnu.c.GCCLanguage;
+import org.eclipse.cdt.core.dom.ast.gnu.cpp.GPPLanguage;
+import org.eclipse.cdt.core.model.ILanguage;
+import org.eclipse.cdt.core.parser.ExtendedScannerInfo;
+import org.eclipse.cdt.core.parser.IScannerInfo;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+/**
+ * Provides the include paths, macros and languages of the sources listed in a compilation database
+ * (<code>compile_commands.json</code>). The options of the compiler that are relevant for the parser
+ * are extracted from the commands, all other options are ignored. Files that are not listed, i.e.
+ * headers, are parsed as C++ unless all sources are C sources.
+ */
+public class CompilationDatabase implements IStandaloneScannerInfoProvider, ILanguageMapper {
+	private static final String[] C_EXTENSIONS = { ".c", ".i" }; //$NON-NLS-1$ //$NON-NLS-2$
+	// The options relevant for the parser, with the value appended or as the next argument.
+	@SuppressWarnings("nls")
+	private static final String[] OPTIONS = { "-I", "-isystem", "-idirafter", "-iquote", "-D", "-U", "-include",
+			"-imacros", "-x" };
+
+	private static class Entry {
+		final List<String> fIncludePaths = new ArrayList<>();
+		final List<String> fLocalIncludePaths = new ArrayList<>();
+		final List<String> fMacroFiles = new ArrayList<>();
+		final List<String> fIncludeFiles = new ArrayList<>();
+		final Map<String, String> fDefinedSymbols = new LinkedHashMap<>();
+		boolean fIsC;
+
+		IScannerInfo createScannerInfo() {
+			return new ExtendedScannerInfo(fDefinedSymbols, toArray(fIncludePaths), toArray(fMacroFiles),
+					toArray(fIncludeFiles), toArray(fLocalIncludePaths));
+		}
+
+		private static String[] toArray(List<String> list) {
+			return list.toArray(new String[list.size()]);
+		}
+	}
+
+	// Keyed by the canonical paths of the sources.
+	private final Map<String, Entry> fEntries = new HashMap<>();
+	private final Map<String, IScannerInfo> fScannerInfos = new HashMap<>();
+	private boolean fAllSourcesAreC = true;
+
+	/**
+	 * Reads a compilation database. When a source is listed more than once, the first command is used.
+	 * @throws IOException if the file cannot be read or is not a compilation database.
+	 */
+	public static CompilationDatabase read(File file) throws IOException {
+		final JsonElement root;
+		try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			root = JsonParser.parseReader(reader);
+		} catch (JsonParseException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+		if (!root.isJsonArray())
+			throw new IOException("Not a compilation database: " + file); //$NON-NLS-1$
+
+		CompilationDatabase result = new CompilationDatabase();
+		for (JsonElement element : root.getAsJsonArray()) {
+			if (!element.isJsonObject())
+				continue;
+			final JsonObject object = element.getAsJsonObject();
+			final String directory = getString(object, "directory"); //$NON-NLS-1$
+			final String fileName = getString(object, "file"); //$NON-NLS-1$
+			if (directory == null || fileName == null)
+				continue;
+			List<String> arguments;
+			final JsonElement argumentsElement = object.get("arguments"); //$NON-NLS-1$
+			if (argumentsElement != null && argumentsElement.isJsonArray()) {
+				arguments = new ArrayList<>();
+				for (JsonElement argument : (JsonArray) argumentsElement) {
+					arguments.add(argument.getAsString());
+				}
+			} else {
+				final String command = getString(object, "command"); //$NON-NLS-1$
+				arguments = command == null ? Collections.emptyList() : splitCommand(command);
+			}
+			final String path = canonicalPath(resolve(directory, fileName));
+			if (!result.fEntries.containsKey(path)) {
+				Entry entry = parseArguments(directory, arguments, path);
+				result.fEntries.put(path, entry);
+				result.fAllSourcesAreC &= entry.fIsC;
+			}
+		}
+		return result;
+	}
+
+	private static String getString(JsonObject object, String key) {
+		JsonElement element = object.get(key);
+		return element != null && element.isJsonPrimitive() ? element.getAsString() : null;
+	}
+
+	/**
+	 * Splits a command line into its arguments like a POSIX shell, without expanding anything.
+	 */
+	static List<String> splitCommand(String command) {
+		final List<String> result = new ArrayList<>();
+		final StringBuilder arg = new StringBuilder();
+		boolean inArg = false;
+		char quote = 0;
+		for (int i = 0; i < command.length(); i++) {
+			final char c = command.charAt(i);
+			if (quote == '\'') {
+				if (c == '\'') {
+					quote = 0;
+				} else {
+					arg.append(c);
+				}
+			} else if (c == '\\' && i + 1 < command.length()
+					&& (quote == 0 || "\"\\$`".indexOf(command.charAt(i + 1)) >= 0)) { //$NON-NLS-1$
+				arg.append(command.charAt(++i));
+				inArg = true;
+			} else if (quote == '"') {
+				if (c == '"') {
+					quote = 0;
+				} else {
+					arg.append(c);
+				}
+			} else if (c == '"' || c == '\'') {
+				quote = c;
+				inArg = true;
+			} else if (Character.isWhitespace(c)) {
+				if (inArg) {
+					result.add(arg.toString());
+					arg.setLength(0);
+					inArg = false;
+				}
+			} else {
+				arg.append(c);
+				inArg = true;
+			}
+		}
+		if (inArg) {
+			result.add(arg.toString());
+		}
+		return result;
+	}
+
+	private static Entry parseArguments(String directory, List<String> arguments, String path) {
+		final Entry entry = new Entry();
+		entry.fIsC = isCFile(path);
+		if (!arguments.isEmpty()) {
+			final String compiler = new File(arguments.get(0)).getName();
+			if (compiler.contains("++")) { //$NON-NLS-1$
+				entry.fIsC = false;
+			}
+		}
+		for (int i = 1; i < arguments.size(); i++) {
+			final String arg = arguments.get(i);
+			String option = null;
+			String value = null;
+			for (String o : OPTIONS) {
+				if (arg.startsWith(o)) {
+					option = o;
+					if (arg.length() > o.length()) {
+						value = arg.substring(o.length());
+					} else if (i + 1 < arguments.size()) {
+						value = arguments.get(++i);
+					}
+					break;
+				}
+			}
+			if (value == null)
+				continue;
+			switch (option) {
+			case "-I": //$NON-NLS-1$
+			case "-isystem": //$NON-NLS-1$
+			case "-idirafter": //$NON-NLS-1$
+				entry.fIncludePaths.add(resolve(directory, value));
+				break;
+			case "-iquote": //$NON-NLS-1$
+				entry.fLocalIncludePaths.add(resolve(directory, value));
+				break;
+			case "-D": //$NON-NLS-1$
+				final int eq = value.indexOf('=');
+				if (eq < 0) {
+					entry.fDefinedSymbols.put(value, "1"); //$NON-NLS-1$
+				} else {
+					entry.fDefinedSymbols.put(value.substring(0, eq), value.substring(eq + 1));
+				}
+				break;
+			case "-U": //$NON-NLS-1$
+				entry.fDefinedSymbols.remove(value);
+				break;
+			case "-include": //$NON-NLS-1$
+				entry.fIncludeFiles.add(resolve(directory, value));
+				break;
+			case "-imacros": //$NON-NLS-1$
+				entry.fMacroFiles.add(resolve(directory, value));
+				break;
+			case "-x": //$NON-NLS-1$
+				entry.fIsC = value.equals("c") || value.equals("c-header"); //$NON-NLS-1$ //$NON-NLS-2$
+				break;
+			}
+		}
+		return entry;
+	}
+
+	private static boolean isCFile(String path) {
+		for (String extension : C_EXTENSIONS) {
+			if (path.endsWith(extension))
+				return true;
+		}
+		return false;
+	}
+
+	private static String resolve(String directory, String path) {
+		final File file = new File(path);
+		return file.isAbsolute() ? file.getPath() : new File(directory, path).getPath();
+	}
+
+	private static String canonicalPath(String path) {
+		try {
+			return new File(path).getCanonicalPath();
+		} catch (IOException e) {
+			return new File(path).getAbsolutePath();
+		}
+	}
+
+	/**
+	 * Returns the canonical paths of the sources in the database, sorted by name such that the order
+	 * does not depend on the order of the commands.
+	 */
+	public List<String> getSourceFiles() {
+		List<String> result = new ArrayList<>(fEntries.keySet());
+		Collections.sort(result);
+		return result;
+	}
+
+	private Entry getEntry(String path) {
+		Entry entry = fEntries.get(path);
+		if (entry == null) {
+			entry = fEntries.get(canonicalPath(path));
+		}
+		return entry;
+	}
+
+	@Override
+	public synchronized IScannerInfo getScannerInformation(String path) {
+		IScannerInfo result = fScannerInfos.get(path);
+		if (result == null) {
+			final Entry entry = getEntry(path);
+			result = entry != null ? entry.createScannerInfo() : new ExtendedScannerInfo();
+			fScannerInfos.put(path, result);
+		}
+		return result;
+	}
+
+	@Override
+	public IScannerInfo getDefaultScannerInformation(int linkageID) {
+		return new ExtendedScannerInfo();
+	}
+
+	@Override
+	public synchronized ILanguage getLanguage(String file) {
+		final Entry entry = getEntry(file);
+		final boolean isC = entry != null ? entry.fIsC : fAllSourcesAreC;
+		return isC ? GCCLanguage.getDefault() : GPPLanguage.getDefault();
+	}
+}
@@ -27,7 +27,9 @@ import org.eclipse.cdt.core.parser.IParserLogService;
 import org.eclipse.cdt.core.parser.IScannerInfo;
 import org.eclipse.cdt.internal.core.index.IWritableIndex;
 import org.eclipse.cdt.internal.core.index.IWritableIndexFragment;
+import org.eclipse.cdt.internal.core.pdom.IndexerProfile;
 import org.eclipse.cdt.internal.core.pdom.IndexerProgress;
+import org.eclipse.cdt.internal.core.pdom.IndexerStatistics;
 import org.eclipse.cdt.internal.core.pdom.PDOMWriter;
 import org.eclipse.cdt.internal.core.pdom.WritablePDOM;
 import org.eclipse.core.runtime.CoreException;
@@ -140,6 +142,21 @@ public abstract class StandaloneIndexer {
 	 */
 	protected boolean fTraceStatistics;
 
+	/**
+	 * The profile the timings of the individual files are added to, or <code>null</code>.
+	 */
+	protected IndexerProfile fProfile;
+
+	/**
+	 * The number of threads parsing sources concurrently.
+	 */
+	protected int fParserThreads = 1;
+
+	/**
+	 * A flag that indicates if the content of the index should not depend on the time it is written at.
+	 */
+	protected boolean fReproducible;
+
 	/**
 	 * The type of references the parser should skip.
 	 */
@@ -342,6 +359,56 @@ public abstract class StandaloneIndexer {
 		fTraceStatistics = traceStatistics;
 	}
 
+	/**
+	 * Returns the profile the timings of the individual files are added to, or <code>null</code>.
+	 */
+	public IndexerProfile getProfile() {
+		return fProfile;
+	}
+
+	/**
+	 * Tells indexer to add the timings of the individual files to the given profile.
+	 */
+	public void setProfile(IndexerProfile profile) {
+		fProfile = profile;
+	}
+
+	/**
+	 * Returns the number of threads parsing sources concurrently.
+	 */
+	public int getParserThreads() {
+		return fParserThreads;
+	}
+
+	/**
+	 * Sets the number of threads parsing sources concurrently.
+	 */
+	public void setParserThreads(int parserThreads) {
+		fParserThreads = parserThreads;
+	}
+
+	/**
+	 * Returns true if the content of the index does not depend on the time it is written at.
+	 */
+	public boolean getReproducible() {
+		return fReproducible;
+	}
+
+	/**
+	 * Tells indexer to write an index that does not depend on the time it is written at, see
+	 * {@link PDOMWriter#setReproducible(boolean)}.
+	 */
+	public void setReproducible(boolean reproducible) {
+		fReproducible = reproducible;
+	}
+
+	/**
+	 * Returns the statistics of the last update of the index, or <code>null</code>.
+	 */
+	public synchronized IndexerStatistics getStatistics() {
+		return fDelegate != null ? fDelegate.getStatistics() : null;
+	}
+
 	private IndexerProgress createProgress() {
 		IndexerProgress progress = new IndexerProgress();
 		progress.fTimeEstimate = 1000;
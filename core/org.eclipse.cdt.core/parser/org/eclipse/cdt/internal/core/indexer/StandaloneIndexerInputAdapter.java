@@ -17,7 +17,9 @@ package org.eclipse.cdt.internal.core.indexer;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
 
 import org.eclipse.cdt.core.index.IIndexFileLocation;
 import org.eclipse.cdt.core.model.AbstractLanguage;
@@ -39,7 +41,8 @@ import org.eclipse.core.runtime.Path;
  * @since 5.0
  */
 public class StandaloneIndexerInputAdapter extends IndexerInputAdapter {
-	private final HashMap<String, IIndexFileLocation> fIflCache = new HashMap<>();
+	// Accessed by the parser threads of the indexer task.
+	private final Map<String, IIndexFileLocation> fIflCache = Collections.synchronizedMap(new HashMap<>());
 	private final FileExistsCache fExistsCache;
 
 	private final StandaloneIndexer fIndexer;
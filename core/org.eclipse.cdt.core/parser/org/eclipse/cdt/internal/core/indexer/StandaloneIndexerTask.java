@@ -25,6 +25,7 @@ import org.eclipse.cdt.core.parser.IParserLogService;
 import org.eclipse.cdt.internal.core.index.IWritableIndex;
 import org.eclipse.cdt.internal.core.pdom.AbstractIndexerTask;
 import org.eclipse.cdt.internal.core.pdom.IndexerProgress;
+import org.eclipse.cdt.internal.core.pdom.IndexerStatistics;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
@@ -55,6 +56,9 @@ public abstract class StandaloneIndexerTask extends AbstractIndexerTask {
 		setShowActivity(fIndexer.getShowActivity());
 		setShowProblems(fIndexer.getShowProblems());
 		setSkipReferences(fIndexer.getSkipReferences());
+		setProfile(fIndexer.getProfile());
+		setParserThreads(fIndexer.getParserThreads());
+		setReproducible(fIndexer.getReproducible());
 
 		if (getIndexAllFiles()) {
 			setIndexFilesWithoutBuildConfiguration(true);
@@ -92,6 +96,13 @@ public abstract class StandaloneIndexerTask extends AbstractIndexerTask {
 		return super.getProgressInformation();
 	}
 
+	/**
+	 * Return the statistics of the task.
+	 */
+	final public IndexerStatistics getStatistics() {
+		return fStatistics;
+	}
+
 	/**
 	 * Figures out whether all files (sources without config, headers not included)
 	 * should be parsed.
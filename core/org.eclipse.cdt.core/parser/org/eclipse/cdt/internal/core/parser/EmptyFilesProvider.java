@@ -29,6 +29,11 @@ public class EmptyFilesProvider extends InternalFileContentProvider {
 	private EmptyFilesProvider() {
 	}
 
+	@Override
+	public boolean isBackedByFileSystem() {
+		return true;
+	}
+
 	@Override
 	public InternalFileContent getContentForInclusion(String path, IMacroDictionary macroDictionary) {
 		if (!getInclusionExists(path))
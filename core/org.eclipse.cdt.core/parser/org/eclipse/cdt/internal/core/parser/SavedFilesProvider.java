@@ -26,6 +26,11 @@ public class SavedFilesProvider extends InternalFileContentProvider {
 	public SavedFilesProvider() {
 	}
 
+	@Override
+	public boolean isBackedByFileSystem() {
+		return true;
+	}
+
 	@Override
 	public InternalFileContent getContentForInclusion(String path, IMacroDictionary macroDictionary) {
 		if (!getInclusionExists(path))
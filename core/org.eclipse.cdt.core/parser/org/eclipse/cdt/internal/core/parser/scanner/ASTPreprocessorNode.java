@@ -304,6 +304,7 @@ class ASTInclusionStatement extends ASTPreprocessorNode implements IASTPreproces
 	private final boolean fIncludedFileExported;
 	private final IFileNomination fNominationDelegate;
 	private boolean fPragmaOnce;
+	private char[] fIncludeGuard;
 	private boolean fCreatesAST;
 	private ISignificantMacros fSignificantMacros;
 	private ISignificantMacros[] fLoadedVersions = NO_VERSIONS;
@@ -378,6 +379,17 @@ class ASTInclusionStatement extends ASTPreprocessorNode implements IASTPreproces
 		fPragmaOnce = value;
 	}
 
+	/**
+	 * Returns the include guard detected for the included file, or {@code null}.
+	 */
+	public char[] getIncludeGuard() {
+		return fIncludeGuard;
+	}
+
+	public void setIncludeGuard(char[] guard) {
+		fIncludeGuard = guard;
+	}
+
 	@Override
 	public ISignificantMacros getSignificantMacros() {
 		if (fNominationDelegate != null) {
@@ -21,6 +21,7 @@ package org.eclipse.cdt.internal.core.parser.scanner;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -278,6 +279,7 @@ public class CPreprocessor implements ILexerLog, IScanner, IAdaptable {
 	final private CharArrayIntMap fKeywords;
 	final private CharArrayIntMap fPPKeywords;
 	private final IncludeSearchPath fIncludeSearchPath;
+	private final boolean fUseIncludeDirectoryIndex;
 	private String[][] fPreIncludedFiles = null;
 
 	private int fContentAssistLimit = -1;
@@ -307,6 +309,14 @@ public class CPreprocessor implements ILexerLog, IScanner, IAdaptable {
 	private char[] fExternIncludeGuard;
 	private Set<String> fTracedGuards;
 
+	private final PreprocessedHeaderCache fHeaderCache = PreprocessedHeaderCache.getShared();
+	private final IncludeGuardTable fIncludeGuardTable = Boolean.getBoolean(IncludeGuardTable.PROPERTY_DISABLED) ? null
+			: IncludeGuardTable.getInstance();
+
+	private static volatile boolean sMeasureTime;
+	private final boolean fMeasureTime = sMeasureTime;
+	private static volatile boolean sCacheMacroExpansions = true;
+
 	public CPreprocessor(FileContent fileContent, IScannerInfo info, ParserLanguage language, IParserLogService log,
 			IScannerExtensionConfiguration configuration, IncludeFileContentProvider readerFactory) {
 		Token.resetCounterFor(info);
@@ -343,6 +353,9 @@ public class CPreprocessor implements ILexerLog, IScanner, IAdaptable {
 		fExpressionEvaluator = new ExpressionEvaluator(this);
 		fMacroDefinitionParser = new MacroDefinitionParser();
 		fMacroExpander = new MacroExpander(this, fMacroDictionary, fLocationMap, fLexOptions);
+		if (sCacheMacroExpansions) {
+			fMacroExpander.setExpansionCache(new MacroExpansionCache());
+		}
 		fIncludeFileResolutionHeuristics = fFileContentProvider.getIncludeHeuristics();
 
 		String contextPath = fFileContentProvider.getContextPath();
@@ -350,6 +363,8 @@ public class CPreprocessor implements ILexerLog, IScanner, IAdaptable {
 			contextPath = fRootContent.getFileLocation();
 		}
 		fIncludeSearchPath = configureIncludeSearchPath(new File(contextPath).getParentFile(), info);
+		fUseIncludeDirectoryIndex = fFileContentProvider.isBackedByFileSystem()
+				&& !Boolean.getBoolean(IncludeDirectoryIndex.PROPERTY_DISABLED);
 		setupMacroDictionary(configuration, info, language);
 
 		ILocationCtx ctx = fLocationMap.pushTranslationUnit(fRootContent.getFileLocation(), fRootContent.getSource());
@@ -364,10 +379,13 @@ public class CPreprocessor implements ILexerLog, IScanner, IAdaptable {
 
 	private char[] detectIncludeGuard(String filePath, AbstractCharArray source, ScannerContext ctx) {
 		if (!fFileContentProvider.shouldIndexAllHeaderVersions(filePath)) {
-			final char[] guard = IncludeGuardDetection.detectIncludeGuard(source, fLexOptions, fPPKeywords);
+			final char[] guard = fIncludeGuardTable != null
+					? fIncludeGuardTable.detectIncludeGuard(source, fLexOptions, fPPKeywords)
+					: IncludeGuardDetection.detectIncludeGuard(source, fLexOptions, fPPKeywords);
 			if (guard != null) {
 				IFileNomination nom = fLocationMap.reportPragmaOnceSemantics(ctx.getLocationCtx());
 				fFileContentProvider.reportPragmaOnceSemantics(filePath, nom);
+				fLocationMap.reportIncludeGuard(ctx.getLocationCtx(), guard);
 				ctx.internalModification(guard);
 				ctx.setPragmaOnce(true);
 				return guard;
@@ -757,6 +775,23 @@ public class CPreprocessor implements ILexerLog, IScanner, IAdaptable {
 		fLocationMap.encounterProblem(IProblem.PREPROCESSOR_INVALID_DIRECTIVE, t1.getCharImage(), t1.getOffset(), end);
 	}
 
+	/**
+	 * Makes the preprocessors that are created afterwards measure the time the parser spends in
+	 * them, see {@link LocationMap#getPreprocessingTime()}.
+	 */
+	public static void setMeasureTime(boolean value) {
+		sMeasureTime = value;
+	}
+
+	/**
+	 * Makes the preprocessors that are created afterwards reuse the results of macro expansions
+	 * when no image locations are computed, which is the default. See
+	 * {@link LocationMap#getMacroExpansionCacheHits()}.
+	 */
+	public static void setCacheMacroExpansions(boolean value) {
+		sCacheMacroExpansions = value;
+	}
+
 	/**
 	 * Returns next token for the parser. String literals are concatenated.
 	 * @throws EndOfFileException when the end of the translation unit has been reached.
@@ -764,6 +799,17 @@ public class CPreprocessor implements ILexerLog, IScanner, IAdaptable {
 	 */
 	@Override
 	public IToken nextToken() throws EndOfFileException {
+		if (!fMeasureTime)
+			return fetchParserToken();
+		final long start = System.nanoTime();
+		try {
+			return fetchParserToken();
+		} finally {
+			fLocationMap.addPreprocessingTime(System.nanoTime() - start);
+		}
+	}
+
+	private IToken fetchParserToken() throws EndOfFileException {
 		if (isCancelled) {
 			throw new ParseError(ParseError.ParseErrorKind.TIMEOUT_OR_CANCELLED);
 		}
@@ -790,7 +836,7 @@ public class CPreprocessor implements ILexerLog, IScanner, IAdaptable {
 
 		case IToken.t_PRAGMA:
 			handlePragmaOperator(t1);
-			return nextToken();
+			return fetchParserToken();
 		case IToken.tUSER_DEFINED_STRING_LITERAL:
 			udlSuffix = getUserDefinedLiteralSuffix(t1);
 			//$FALL-THROUGH$
@@ -828,7 +874,7 @@ public class CPreprocessor implements ILexerLog, IScanner, IAdaptable {
 					continue loop;
 				case IToken.tINACTIVE_CODE_START:
 					// no support for inactive code after a string literal
-					skipInactiveCode();
+					skipInactiveBranches();
 					continue loop;
 				case IToken.t_PRAGMA:
 					handlePragmaOperator(t2);
@@ -881,6 +927,19 @@ public class CPreprocessor implements ILexerLog, IScanner, IAdaptable {
 
 	@Override
 	public void skipInactiveCode() throws OffsetLimitReachedException {
+		if (!fMeasureTime) {
+			skipInactiveBranches();
+			return;
+		}
+		final long start = System.nanoTime();
+		try {
+			skipInactiveBranches();
+		} finally {
+			fLocationMap.addPreprocessingTime(System.nanoTime() - start);
+		}
+	}
+
+	private void skipInactiveBranches() throws OffsetLimitReachedException {
 		final Lexer lexer = fCurrentContext.getLexer();
 		if (lexer != null) {
 			CodeState state = fCurrentContext.getCodeState();
@@ -952,6 +1011,10 @@ public class CPreprocessor implements ILexerLog, IScanner, IAdaptable {
 					return ppToken;
 				}
 
+				final PreprocessedHeader recording = fCurrentContext.getRecording();
+				if (recording != null) {
+					fHeaderCache.put(recording);
+				}
 				final ILocationCtx locationCtx = fCurrentContext.getLocationCtx();
 				ASTInclusionStatement inc = locationCtx.getInclusionStatement();
 				if (inc != null) {
@@ -977,6 +1040,7 @@ public class CPreprocessor implements ILexerLog, IScanner, IAdaptable {
 			}
 
 			case IToken.tIDENTIFIER:
+				fCurrentContext.abortRecording();
 				fCurrentContext.nextPPToken(); // consume the identifier
 				if ((options & NO_EXPANSION) == 0) {
 					final Lexer lexer = fCurrentContext.getLexer();
@@ -1005,6 +1069,7 @@ public class CPreprocessor implements ILexerLog, IScanner, IAdaptable {
 				}
 				break;
 			}
+			fCurrentContext.abortRecording();
 			fCurrentContext.nextPPToken();
 			return ppToken;
 		}
@@ -1374,12 +1439,17 @@ public class CPreprocessor implements ILexerLog, IScanner, IAdaptable {
 			}
 		}
 
-		for (IncludeSearchPathElement path : fIncludeSearchPath.getElements()) {
+		// Elements with a directory that does not contain the first segment of the directive are skipped.
+		final BitSet candidates = fUseIncludeDirectoryIndex ? fIncludeSearchPath.getCandidates(includeDirective)
+				: null;
+		final IncludeSearchPathElement[] elements = fIncludeSearchPath.getElements();
+		for (int i = 0; i < elements.length; i++) {
+			final IncludeSearchPathElement path = elements[i];
 			if (searchAfter != null) {
 				if (searchAfter.equals(path)) {
 					searchAfter = null;
 				}
-			} else if (quoteInclude || !path.isForQuoteIncludesOnly()) {
+			} else if ((quoteInclude || !path.isForQuoteIncludesOnly()) && (candidates == null || candidates.get(i))) {
 				String fileLocation = path.getLocation(includeDirective);
 				if (fileLocation != null) {
 					reader = tester.checkFile(fileLocation, false, path);
@@ -1459,10 +1529,15 @@ public class CPreprocessor implements ILexerLog, IScanner, IAdaptable {
 	@Override
 	public void handleComment(boolean isBlockComment, int offset, int endOffset, AbstractCharArray input) {
 		fLocationMap.encounteredComment(offset, endOffset, isBlockComment, input);
+		final PreprocessedHeader recording = fCurrentContext.getRecording();
+		if (recording != null) {
+			recording.comment(offset, endOffset, isBlockComment);
+		}
 	}
 
 	@Override
 	public void handleProblem(int id, char[] arg, int offset, int endOffset) {
+		fCurrentContext.abortRecording();
 		fLocationMap.encounterProblem(id, arg, offset, endOffset);
 	}
 
@@ -1533,15 +1608,18 @@ public class CPreprocessor implements ILexerLog, IScanner, IAdaptable {
 				skipOverConditionalCode(lexer, withinExpansion);
 			break;
 		case IPreprocessorDirective.ppIf:
+			fCurrentContext.abortRecording();
 			if (executeIf(lexer, startOffset, false, withinExpansion) == CodeState.eSkipInactive)
 				skipOverConditionalCode(lexer, withinExpansion);
 			break;
 		case IPreprocessorDirective.ppElif:
+			fCurrentContext.abortRecording();
 			if (executeIf(lexer, startOffset, true, withinExpansion) == CodeState.eSkipInactive) {
 				skipOverConditionalCode(lexer, withinExpansion);
 			}
 			break;
 		case IPreprocessorDirective.ppElse:
+			fCurrentContext.abortRecording();
 			if (executeElse(lexer, startOffset, withinExpansion) == CodeState.eSkipInactive) {
 				skipOverConditionalCode(lexer, withinExpansion);
 			}
@@ -1577,10 +1655,15 @@ public class CPreprocessor implements ILexerLog, IScanner, IAdaptable {
 			if (fCurrentContext.getCodeState() == CodeState.eActive) {
 				int endOffset = lexer.currentToken().getEndOffset();
 				fLocationMap.encounterPoundPragma(startOffset, condOffset, condEndOffset, endOffset);
-				if (CharArrayUtils.equals(ONCE, pragmaToken.getCharImage())) {
+				final boolean once = CharArrayUtils.equals(ONCE, pragmaToken.getCharImage());
+				if (once) {
 					IFileNomination nom = fLocationMap.reportPragmaOnceSemantics(fCurrentContext.getLocationCtx());
 					fFileContentProvider.reportPragmaOnceSemantics(getCurrentFilename(), nom);
 				}
+				final PreprocessedHeader recording = fCurrentContext.getRecording();
+				if (recording != null) {
+					recording.pragma(startOffset, condOffset, condEndOffset, endOffset, once);
+				}
 			}
 			break;
 		case IPreprocessorDirective.ppIgnore:
@@ -1600,6 +1683,7 @@ public class CPreprocessor implements ILexerLog, IScanner, IAdaptable {
 		// Make sure to clear the extern include guard.
 		final char[] externGuard = fExternIncludeGuard;
 		fExternIncludeGuard = null;
+		fCurrentContext.abortRecording();
 
 		if (withinExpansion) {
 			final char[] name = lexer.currentToken().getCharImage();
@@ -1773,11 +1857,29 @@ public class CPreprocessor implements ILexerLog, IScanner, IAdaptable {
 			if (source != null) {
 				ILocationCtx ctx = fLocationMap.pushInclusion(poundOffset, nameOffsets[0], nameOffsets[1],
 						condEndOffset, source, path, headerName, userInclude, isHeuristic, fi.isSource());
-				ScannerContext fctx = new ScannerContext(ctx, fCurrentContext,
-						new Lexer(source, fLexOptions, this, this));
+				PreprocessedHeader preprocessed = null;
+				PreprocessedHeader recording = null;
+				if (fHeaderCache != null && !source.hasError()) {
+					final long hash = source.getContentsHash();
+					final int length = source.getLength();
+					final int configuration = PreprocessedHeader.getConfiguration(fLexOptions);
+					preprocessed = fHeaderCache.get(hash, length, configuration, fMacroDictionary);
+					if (preprocessed == null) {
+						recording = new PreprocessedHeader(hash, length, configuration);
+					}
+				}
+				// The lexer of a preprocessed header starts at the end of the file.
+				final Lexer fileLexer = preprocessed == null ? new Lexer(source, fLexOptions, this, this)
+						: new Lexer(source, preprocessed.getLength(), preprocessed.getLength(), fLexOptions, this,
+								this);
+				ScannerContext fctx = new ScannerContext(ctx, fCurrentContext, fileLexer);
 				fctx.setFoundOnPath(fi.getFoundOnPath(), includeDirective);
 				detectIncludeGuard(path, source, fctx);
+				fctx.startRecording(recording);
 				fCurrentContext = fctx;
+				if (preprocessed != null) {
+					replayPreprocessedHeader(preprocessed, source);
+				}
 				stmt = ctx.getInclusionStatement();
 				stmt.setIncludedFileTimestamp(fi.getTimestamp());
 				stmt.setIncludedFileSize(fi.getFileSize());
@@ -1816,6 +1918,57 @@ public class CPreprocessor implements ILexerLog, IScanner, IAdaptable {
 		}
 	}
 
+	/**
+	 * Processes the directives of a header that has been preprocessed before, in the same way as
+	 * {@link #executeDirective(Lexer, int, boolean)} would do for the content of the header.
+	 */
+	private void replayPreprocessedHeader(PreprocessedHeader header, AbstractCharArray source) {
+		for (PreprocessedHeader.Event event : header.getEvents()) {
+			final int[] offsets = event.fOffsets;
+			switch (event.fKind) {
+			case PreprocessedHeader.DEFINE:
+				PreprocessorMacro macrodef = MacroDefinitionParser.parseMacroDefinition(event.fName, event.fParams,
+						event.fExpansion);
+				fMacroDictionary.put(event.fName, macrodef);
+				fCurrentContext.internalModification(event.fName);
+				fLocationMap.encounterPoundDefine(offsets[0], offsets[1], offsets[2], offsets[3], offsets[4], true,
+						macrodef);
+				break;
+			case PreprocessedHeader.UNDEF:
+				PreprocessorMacro definition = fMacroDictionary.remove(event.fName, 0, event.fName.length);
+				fCurrentContext.internalModification(event.fName);
+				fLocationMap.encounterPoundUndef(definition, offsets[0], offsets[1], offsets[2], offsets[3],
+						event.fName, true);
+				break;
+			case PreprocessedHeader.IFNDEF:
+				Conditional conditional = fCurrentContext.newBranch(BranchKind.eIf, false);
+				fCurrentContext.significantMacroUndefined(event.fName);
+				fLocationMap.encounterPoundIfndef(offsets[0], offsets[1], offsets[2], offsets[3], true,
+						new UndefinedMacro(event.fName));
+				fCurrentContext.setBranchState(conditional, true, false, offsets[0]);
+				break;
+			case PreprocessedHeader.ENDIF:
+				Conditional cond = fCurrentContext.newBranch(BranchKind.eEnd, false);
+				fLocationMap.encounterPoundEndIf(offsets[0], offsets[1]);
+				fCurrentContext.setBranchEndState(cond, false, offsets[0]);
+				break;
+			case PreprocessedHeader.PRAGMA:
+			case PreprocessedHeader.PRAGMA_ONCE:
+				fLocationMap.encounterPoundPragma(offsets[0], offsets[1], offsets[2], offsets[3]);
+				if (event.fKind == PreprocessedHeader.PRAGMA_ONCE) {
+					IFileNomination nom = fLocationMap.reportPragmaOnceSemantics(fCurrentContext.getLocationCtx());
+					fFileContentProvider.reportPragmaOnceSemantics(getCurrentFilename(), nom);
+				}
+				break;
+			case PreprocessedHeader.LINE_COMMENT:
+			case PreprocessedHeader.BLOCK_COMMENT:
+				fLocationMap.encounteredComment(offsets[0], offsets[1],
+						event.fKind == PreprocessedHeader.BLOCK_COMMENT, source);
+				break;
+			}
+		}
+	}
+
 	private void processInclusionFromIndex(int offset, InternalFileContent fi, boolean updateContext) {
 		List<IIndexMacro> mdefs = fi.getMacroDefinitions();
 		for (IIndexMacro macro : mdefs) {
@@ -1861,6 +2014,11 @@ public class CPreprocessor implements ILexerLog, IScanner, IAdaptable {
 			final Token name = fMacroDefinitionParser.getNameToken();
 			fLocationMap.encounterPoundDefine(startOffset, name.getOffset(), name.getEndOffset(),
 					macrodef.getExpansionOffset(), macrodef.getExpansionEndOffset(), isActive, macrodef);
+			final PreprocessedHeader recording = fCurrentContext.getRecording();
+			if (recording != null) {
+				recording.define(startOffset, name.getOffset(), name.getEndOffset(), macrodef.getExpansionOffset(),
+						macrodef.getExpansionEndOffset(), macrodef);
+			}
 		} catch (InvalidMacroDefinitionException e) {
 			lexer.consumeLine(ORIGIN_PREPROCESSOR_DIRECTIVE);
 			handleProblem(IProblem.PREPROCESSOR_INVALID_MACRO_DEFN, e.fName, e.fStartOffset, e.fEndOffset);
@@ -1891,6 +2049,10 @@ public class CPreprocessor implements ILexerLog, IScanner, IAdaptable {
 		}
 		fLocationMap.encounterPoundUndef(definition, startOffset, name.getOffset(), name.getEndOffset(), endOffset,
 				namechars, isActive);
+		final PreprocessedHeader recording = fCurrentContext.getRecording();
+		if (recording != null) {
+			recording.undef(startOffset, name.getOffset(), name.getEndOffset(), endOffset, namechars);
+		}
 	}
 
 	private CodeState executeIfdef(Lexer lexer, int offset, boolean isIfndef, boolean withinExpansion)
@@ -1940,6 +2102,14 @@ public class CPreprocessor implements ILexerLog, IScanner, IAdaptable {
 		if (!conditional.isActive(withinExpansion))
 			stmt.setInactive();
 
+		final PreprocessedHeader recording = fCurrentContext.getRecording();
+		if (recording != null) {
+			if (isIfndef && isTaken) {
+				recording.ifndef(offset, nameOffset, nameEndOffset, endOffset, name.getCharImage());
+			} else {
+				fCurrentContext.abortRecording();
+			}
+		}
 		return fCurrentContext.setBranchState(conditional, isTaken, withinExpansion, offset);
 	}
 
@@ -2030,6 +2200,10 @@ public class CPreprocessor implements ILexerLog, IScanner, IAdaptable {
 			ASTEndif stmt = fLocationMap.encounterPoundEndIf(startOffset, endOffset);
 			if (!cond.isActive(withinExpansion))
 				stmt.setInactive();
+			final PreprocessedHeader recording = fCurrentContext.getRecording();
+			if (recording != null) {
+				recording.endif(startOffset, endOffset);
+			}
 		}
 		return fCurrentContext.setBranchEndState(cond, withinExpansion, startOffset);
 	}
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Eclipse CDT contributors and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.parser.scanner;
+
+import org.eclipse.cdt.internal.core.parser.scanner.MacroDefinitionParser.TokenParameterReference;
+
+/**
+ * Immutable sequence of tokens stored in parallel arrays rather than as linked token objects.
+ * Used for the replacement lists of macros, which are kept for the entire translation unit while
+ * most of them are never expanded. The tokens are created when the list is converted to a
+ * {@link TokenList}.
+ * <p>
+ * The {@link Lexer} and the {@link MacroExpander} still create a {@link Token} for every token they
+ * produce. The expander edits its argument and result lists in place, and the parsers consume the
+ * tokens through {@link org.eclipse.cdt.core.parser.IToken}.
+ */
+final class CompactTokenList {
+	private static final int PLAIN = 0;
+	private static final int DIGRAPH = 1;
+	private static final int IMAGE = 2;
+	private static final int PARAMETER = 3;
+	// Any other kind of token, the token is stored and cloned.
+	private static final int OTHER = 4;
+	private static final int KIND_MASK = 0x7;
+	private static final int KIND_BITS = 3;
+
+	private final int fSize;
+	private final int[] fTypes;
+	private final int[] fOffsets;
+	private final int[] fEndOffsets;
+	// The kind of the token, for parameters combined with the index of the parameter.
+	private final int[] fFlags;
+	// The images of tokens with an image, or the tokens of kind OTHER.
+	private final Object[] fImages;
+
+	CompactTokenList(TokenList tokens) {
+		int size = 0;
+		for (Token t = tokens.first(); t != null; t = (Token) t.getNext()) {
+			size++;
+		}
+		fSize = size;
+		fTypes = new int[size];
+		fOffsets = new int[size];
+		fEndOffsets = new int[size];
+		fFlags = new int[size];
+		Object[] images = null;
+		int i = 0;
+		for (Token t = tokens.first(); t != null; t = (Token) t.getNext(), i++) {
+			fTypes[i] = t.getType();
+			fOffsets[i] = t.getOffset();
+			fEndOffsets[i] = t.getEndOffset();
+			final Class<?> c = t.getClass();
+			Object image = null;
+			if (c == Token.class) {
+				fFlags[i] = PLAIN;
+			} else if (c == TokenForDigraph.class) {
+				fFlags[i] = DIGRAPH;
+			} else if (c == TokenWithImage.class || c == TokenWithLazyImage.class) {
+				fFlags[i] = IMAGE;
+				image = t.getCharImage();
+			} else if (c == TokenParameterReference.class) {
+				fFlags[i] = PARAMETER | (((TokenParameterReference) t).getIndex() << KIND_BITS);
+				image = t.getCharImage();
+			} else {
+				fFlags[i] = OTHER;
+				image = t;
+			}
+			if (image != null) {
+				if (images == null) {
+					images = new Object[size];
+				}
+				images[i] = image;
+			}
+		}
+		fImages = images;
+	}
+
+	/**
+	 * Returns the number of tokens.
+	 */
+	int size() {
+		return fSize;
+	}
+
+	/**
+	 * Returns the type of the token at the given index.
+	 */
+	int getType(int i) {
+		return fTypes[i];
+	}
+
+	/**
+	 * Returns the index of the macro parameter referenced by the token at the given index, which
+	 * has to be of type {@link CPreprocessor#tMACRO_PARAMETER}.
+	 */
+	int getParameterIndex(int i) {
+		return fFlags[i] >>> KIND_BITS;
+	}
+
+	/**
+	 * Returns the number of references to each of the given number of macro parameters.
+	 */
+	int[] countParameterReferences(int parameterCount) {
+		final int[] result = new int[parameterCount];
+		for (int i = 0; i < fSize; i++) {
+			if ((fFlags[i] & KIND_MASK) == PARAMETER) {
+				final int idx = getParameterIndex(i);
+				if (idx < parameterCount) {
+					result[idx]++;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Creates a new list with the tokens.
+	 */
+	TokenList toTokenList(Object source) {
+		final TokenList result = new TokenList();
+		for (int i = 0; i < fSize; i++) {
+			final int type = fTypes[i];
+			final int offset = fOffsets[i];
+			final int endOffset = fEndOffsets[i];
+			final Token t;
+			switch (fFlags[i] & KIND_MASK) {
+			case PLAIN:
+				t = new Token(type, source, offset, endOffset);
+				break;
+			case DIGRAPH:
+				t = new TokenForDigraph(type, source, offset, endOffset);
+				break;
+			case IMAGE:
+				t = new TokenWithImage(type, source, offset, endOffset, (char[]) fImages[i]);
+				break;
+			case PARAMETER:
+				t = new TokenParameterReference(type, getParameterIndex(i), source, offset, endOffset,
+						(char[]) fImages[i]);
+				break;
+			default:
+				t = ((Token) fImages[i]).clone();
+				break;
+			}
+			result.append(t);
+		}
+		return result;
+	}
+}
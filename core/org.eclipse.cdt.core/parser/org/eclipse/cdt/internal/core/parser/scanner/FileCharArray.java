@@ -32,6 +32,12 @@ import org.eclipse.cdt.core.CCorePlugin;
  */
 public class FileCharArray extends LazyCharArray {
 	private static final String UTF8_CHARSET_NAME = "UTF-8"; //$NON-NLS-1$
+	/**
+	 * System property for mapping local ASCII files into memory rather than decoding them into
+	 * characters on the heap, see {@link MappedCharArray}. Note that on some platforms a file
+	 * cannot be deleted while it is mapped.
+	 */
+	public static final String PROPERTY_MAPPED_INPUT = "org.eclipse.cdt.core.parser.mappedInput"; //$NON-NLS-1$
 
 	public static AbstractCharArray create(String fileName, String charSet, InputStream in) throws IOException {
 		// No support for non-local files.
@@ -44,6 +50,11 @@ public class FileCharArray extends LazyCharArray {
 		}
 		FileChannel channel = fis.getChannel();
 		final long lsize = channel.size();
+		if (lsize > 0 && Boolean.getBoolean(PROPERTY_MAPPED_INPUT)) {
+			AbstractCharArray mapped = MappedCharArray.create(channel, lsize, charSet);
+			if (mapped != null)
+				return mapped;
+		}
 		if (lsize < CHUNK_SIZE) {
 			return decodeSmallFile(channel, (int) lsize, charSet);
 		}
@@ -187,4 +187,10 @@ public interface ILocationResolver {
 	 * Returns the lexer options that have been used by the preprocessor.
 	 */
 	LexerOptions getLexerOptions();
+
+	/**
+	 * Returns the include guard detected for the file included by the given statement, or for the
+	 * translation unit if the statement is {@code null}. Returns {@code null} if there is no guard.
+	 */
+	char[] getIncludeGuard(IASTPreprocessorIncludeStatement include);
 }
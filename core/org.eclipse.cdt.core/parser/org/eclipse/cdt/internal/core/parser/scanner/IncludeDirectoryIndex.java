@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Eclipse CDT contributors and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.parser.scanner;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.eclipse.cdt.utils.UNCPathConverter;
+
+/**
+ * Index of the names in the directories of an include search path. Maps each name to the elements
+ * of the search path with a directory containing a file or directory of that name, such that the
+ * preprocessor probes only the elements that can contain the file of an include directive. A name
+ * that is contained in none of the directories is resolved without probing the search path.
+ * <p>
+ * The listings of the directories and the indexes are shared by all preprocessors. They are
+ * validated with the modification times of the directories whenever an include search path is
+ * used for a translation unit. A listing made shortly after its directory was modified is not
+ * trusted, because another modification within the resolution of the modification time would go
+ * unnoticed. The names are compared ignoring case, for case sensitive file systems the index may
+ * yield elements that do not contain the file, but never omits one that does.
+ */
+public final class IncludeDirectoryIndex {
+	/**
+	 * System property disabling the index, every element of the include search path is probed.
+	 */
+	public static final String PROPERTY_DISABLED = //
+			"org.eclipse.cdt.core.parser.bypassIncludeDirectoryIndex"; //$NON-NLS-1$
+
+	private static final boolean NON_SLASH_SEPARATOR = File.separatorChar != '/';
+	// Larger than the resolution of the modification times of common file systems.
+	private static final long RACY_INTERVAL = 2000;
+	private static final int MAX_LISTINGS = 4096;
+	private static final int MAX_INDEXES = 64;
+	private static final String[] NO_NAMES = {};
+
+	/**
+	 * The names in a directory.
+	 */
+	private static final class Listing {
+		final long fLastModified;
+		final long fTime;
+		final String[] fNames;
+
+		Listing(long lastModified, long time, String[] names) {
+			fLastModified = lastModified;
+			fTime = time;
+			fNames = names;
+		}
+
+		/**
+		 * Lists the directory, returns <code>null</code> if it cannot be listed.
+		 */
+		static Listing create(File directory) {
+			final long time = System.currentTimeMillis();
+			final long lastModified = directory.lastModified();
+			String[] names = directory.list();
+			if (names == null) {
+				if (directory.isDirectory())
+					return null;
+				// The directory does not exist, until it is created it contains nothing.
+				names = NO_NAMES;
+			}
+			for (int i = 0; i < names.length; i++) {
+				names[i] = normalize(names[i]);
+			}
+			return new Listing(lastModified, time, names);
+		}
+
+		boolean isValid(File directory) {
+			return fTime - fLastModified >= RACY_INTERVAL && directory.lastModified() == fLastModified;
+		}
+	}
+
+	private static final Map<String, Listing> sListings = new LinkedHashMap<String, Listing>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Listing> eldest) {
+			return size() > MAX_LISTINGS;
+		}
+	};
+	private static final Map<List<String>, IncludeDirectoryIndex> sIndexes = //
+			new LinkedHashMap<List<String>, IncludeDirectoryIndex>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<List<String>, IncludeDirectoryIndex> eldest) {
+			return size() > MAX_INDEXES;
+		}
+	};
+
+	// The listings of the directories of the elements, null for elements that are not indexed.
+	private final Listing[] fListings;
+	// The elements that are not indexed and need to be probed for every name.
+	private final BitSet fUnindexed = new BitSet();
+	// For each name the ascending indexes of the elements containing it.
+	private final Map<String, int[]> fElements = new HashMap<>();
+
+	private IncludeDirectoryIndex(Listing[] listings) {
+		fListings = listings;
+		for (int i = 0; i < listings.length; i++) {
+			if (listings[i] == null) {
+				fUnindexed.set(i);
+				continue;
+			}
+			for (String name : listings[i].fNames) {
+				int[] elements = fElements.get(name);
+				if (elements == null) {
+					fElements.put(name, new int[] { i });
+				} else if (elements[elements.length - 1] != i) {
+					elements = Arrays.copyOf(elements, elements.length + 1);
+					elements[elements.length - 1] = i;
+					fElements.put(name, elements);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the index for the given elements of an include search path, the listings of the
+	 * directories are validated.
+	 */
+	static IncludeDirectoryIndex get(IncludeSearchPathElement[] elements) {
+		final List<String> key = new ArrayList<>(elements.length);
+		for (IncludeSearchPathElement element : elements) {
+			key.add(element.getDirectory());
+		}
+		IncludeDirectoryIndex index;
+		synchronized (sIndexes) {
+			index = sIndexes.get(key);
+		}
+		final Listing[] listings = new Listing[elements.length];
+		boolean changed = index == null;
+		for (int i = 0; i < listings.length; i++) {
+			final String directory = key.get(i);
+			if (directory != null) {
+				listings[i] = getListing(directory);
+			}
+			changed = changed || listings[i] != index.fListings[i];
+		}
+		if (changed) {
+			index = new IncludeDirectoryIndex(listings);
+			synchronized (sIndexes) {
+				sIndexes.put(key, index);
+			}
+		}
+		return index;
+	}
+
+	private static Listing getListing(String path) {
+		if (UNCPathConverter.isUNC(path))
+			return null;
+		final File directory = new File(path);
+		Listing listing;
+		synchronized (sListings) {
+			listing = sListings.get(path);
+		}
+		if (listing != null && listing.isValid(directory))
+			return listing;
+
+		listing = Listing.create(directory);
+		synchronized (sListings) {
+			if (listing != null) {
+				sListings.put(path, listing);
+			} else {
+				sListings.remove(path);
+			}
+		}
+		return listing;
+	}
+
+	/**
+	 * Returns the name of the file or directory that has to be contained in the directory of an
+	 * element for the include directive to be resolved there, or <code>null</code> if the
+	 * directive is not suitable for a lookup in the index.
+	 */
+	static String getFirstName(String includeDirective) {
+		// Paths are reconciled, a directory followed by '..' need not exist.
+		if (includeDirective.contains("..")) //$NON-NLS-1$
+			return null;
+		int end = includeDirective.indexOf('/');
+		if (NON_SLASH_SEPARATOR) {
+			final int sep = includeDirective.indexOf(File.separatorChar);
+			if (sep >= 0 && (end < 0 || sep < end)) {
+				end = sep;
+			}
+		}
+		final String name = end < 0 ? includeDirective : includeDirective.substring(0, end);
+		if (name.isEmpty() || name.equals(".")) //$NON-NLS-1$
+			return null;
+		for (int i = 0; i < name.length(); i++) {
+			final char c = name.charAt(i);
+			// Non-ASCII names may be normalized by the file system.
+			if (c >= 0x80)
+				return null;
+			// Drive letters and short names on Windows.
+			if (NON_SLASH_SEPARATOR && (c == ':' || c == '~'))
+				return null;
+		}
+		if (NON_SLASH_SEPARATOR) {
+			// Windows ignores trailing dots and spaces.
+			final char last = name.charAt(name.length() - 1);
+			if (last == '.' || last == ' ')
+				return null;
+		}
+		return normalize(name);
+	}
+
+	private static String normalize(String name) {
+		return name.toUpperCase(Locale.ROOT);
+	}
+
+	/**
+	 * Returns the elements that may contain a file or directory with the given name, which has to
+	 * be obtained from {@link #getFirstName(String)}.
+	 */
+	BitSet getCandidates(String name) {
+		final BitSet result = (BitSet) fUnindexed.clone();
+		final int[] elements = fElements.get(name);
+		if (elements != null) {
+			for (int element : elements) {
+				result.set(element);
+			}
+		}
+		return result;
+	}
+}
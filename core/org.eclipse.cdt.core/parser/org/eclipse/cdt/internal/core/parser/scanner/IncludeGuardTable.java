@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Eclipse CDT contributors and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.parser.scanner;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.cdt.core.parser.util.CharArrayIntMap;
+import org.eclipse.cdt.internal.core.parser.scanner.Lexer.LexerOptions;
+
+/**
+ * Table of the include guards of headers, shared by all preprocessors. The guards are keyed by the
+ * contents hashes of the headers, such that the guard of a header is detected only once rather
+ * than once per translation unit. Whether a header is read is not affected by the table, the guards
+ * of indexed headers are stored in the index and used by the index based file content provider.
+ * <p>
+ * The guards detected by {@link IncludeGuardDetection} include the ones of headers with a
+ * <code>#pragma once</code> in front of the guard.
+ */
+public final class IncludeGuardTable {
+	/**
+	 * System property disabling the table, guards are detected per translation unit.
+	 */
+	public static final String PROPERTY_DISABLED = "org.eclipse.cdt.core.parser.bypassIncludeGuardTable"; //$NON-NLS-1$
+
+	private static final int MAX_ENTRIES = 16384;
+	private static final char[] NO_GUARD = {};
+	private static final IncludeGuardTable INSTANCE = new IncludeGuardTable();
+
+	/**
+	 * Key of the guard of a header.
+	 */
+	private static final class Key {
+		final long fContentsHash;
+		final int fLength;
+		final int fConfiguration;
+
+		Key(long contentsHash, int length, int configuration) {
+			fContentsHash = contentsHash;
+			fLength = length;
+			fConfiguration = configuration;
+		}
+
+		@Override
+		public int hashCode() {
+			return (Long.hashCode(fContentsHash) * 31 + fLength) * 31 + fConfiguration;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+			final Key other = (Key) obj;
+			return fContentsHash == other.fContentsHash && fLength == other.fLength
+					&& fConfiguration == other.fConfiguration;
+		}
+	}
+
+	private final Map<Key, char[]> fGuards = new LinkedHashMap<Key, char[]>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, char[]> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	static IncludeGuardTable getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Returns the include guard of the given content, detecting it only if the guard of an equal
+	 * content is not known.
+	 */
+	char[] detectIncludeGuard(AbstractCharArray source, LexerOptions lexOptions, CharArrayIntMap ppKeywords) {
+		if (source.hasError())
+			return IncludeGuardDetection.detectIncludeGuard(source, lexOptions, ppKeywords);
+
+		final Key key = new Key(source.getContentsHash(), source.getLength(),
+				PreprocessedHeader.getConfiguration(lexOptions));
+		char[] guard;
+		synchronized (fGuards) {
+			guard = fGuards.get(key);
+		}
+		if (guard == null) {
+			guard = IncludeGuardDetection.detectIncludeGuard(source, lexOptions, ppKeywords);
+			synchronized (fGuards) {
+				fGuards.put(key, guard == null ? NO_GUARD : guard);
+			}
+		}
+		return guard == NO_GUARD ? null : guard;
+	}
+}
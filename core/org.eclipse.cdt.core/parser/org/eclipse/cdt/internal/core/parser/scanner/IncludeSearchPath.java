@@ -13,6 +13,7 @@
  *******************************************************************************/
 package org.eclipse.cdt.internal.core.parser.scanner;
 
+import java.util.BitSet;
 import java.util.List;
 
 /**
@@ -21,6 +22,7 @@ import java.util.List;
 public final class IncludeSearchPath {
 	private final boolean fInhibitUseOfCurrentFileDirectory;
 	private final IncludeSearchPathElement[] fElements;
+	private IncludeDirectoryIndex fDirectoryIndex;
 
 	IncludeSearchPath(List<IncludeSearchPathElement> elements, boolean inhibitUseOfCurrentFileDirectory) {
 		fElements = elements.toArray(new IncludeSearchPathElement[elements.size()]);
@@ -40,4 +42,18 @@ public final class IncludeSearchPath {
 	public boolean isInhibitUseOfCurrentFileDirectory() {
 		return fInhibitUseOfCurrentFileDirectory;
 	}
+
+	/**
+	 * Returns the elements of the include search path that may contain the file of the given
+	 * include directive, or {@code null} if any of them may contain it.
+	 */
+	BitSet getCandidates(String includeDirective) {
+		final String name = IncludeDirectoryIndex.getFirstName(includeDirective);
+		if (name == null)
+			return null;
+		if (fDirectoryIndex == null) {
+			fDirectoryIndex = IncludeDirectoryIndex.get(fElements);
+		}
+		return fDirectoryIndex.getCandidates(name);
+	}
 }
\ No newline at end of file
@@ -54,6 +54,14 @@ public final class IncludeSearchPathElement {
 		return fForQuoteIncludesOnly;
 	}
 
+	/**
+	 * Returns the directory of this element, or {@code null} for a framework directory, in which
+	 * the location of a file depends on the include directive.
+	 */
+	String getDirectory() {
+		return fIsFrameworkDirectory || fIsNewFrameworkDirectory ? null : fPath;
+	}
+
 	public String getLocation(String includeDirective) {
 		if (fIsFrameworkDirectory) {
 			int firstSep = firstSeparator(includeDirective);
@@ -55,6 +55,15 @@ public abstract class InternalFileContentProvider extends IncludeFileContentProv
 	private final Map<String, IFileNomination> fPragmaOnce = new HashMap<>();
 	private final Map<String, List<ISignificantMacros>> fLoadedVersions = new HashMap<>();
 
+	/**
+	 * Returns whether an inclusion exists if and only if its file exists in the local file system.
+	 * Allows the preprocessor to skip directories of the include search path that do not contain
+	 * the file of an inclusion, see {@link IncludeDirectoryIndex}.
+	 */
+	public boolean isBackedByFileSystem() {
+		return false;
+	}
+
 	/**
 	 * Checks whether the specified inclusion exists.
 	 */
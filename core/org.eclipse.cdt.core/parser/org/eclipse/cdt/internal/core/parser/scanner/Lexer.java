@@ -83,6 +83,8 @@ final public class Lexer implements ITokenSequence {
 
 	// the input to the lexer
 	private final AbstractCharArray fInput;
+	// Whether the images of tokens are copied from the input only when they are requested.
+	private final boolean fLazyImages;
 	private final int fStart;
 	private int fLimit;
 
@@ -121,6 +123,7 @@ final public class Lexer implements ITokenSequence {
 
 	public Lexer(AbstractCharArray input, int start, int end, LexerOptions options, ILexerLog log, Object source) {
 		fInput = input;
+		fLazyImages = input instanceof MappedCharArray;
 		fStart = fOffset = fEndOffset = start;
 		fLimit = end;
 		fOptions = options;
@@ -727,6 +730,8 @@ final public class Lexer implements ITokenSequence {
 		char[] image;
 		if (sourceLen != imageLength) {
 			image = getCharImage(offset, endOffset, imageLength);
+		} else if (fLazyImages) {
+			return new TokenWithLazyImage(kind, fSource, offset, endOffset, fInput);
 		} else {
 			image = new char[imageLength];
 			fInput.arraycopy(offset, image, 0, imageLength);
@@ -64,6 +64,7 @@ public class LocationMap implements ILocationResolver {
 	private ArrayList<ASTPreprocessorName> fMacroReferences = new ArrayList<>();
 
 	private LocationCtxFile fRootContext;
+	private char[] fRootIncludeGuard;
 	private LocationCtx fCurrentContext;
 	private int fLastChildInsertionOffset;
 
@@ -72,6 +73,9 @@ public class LocationMap implements ILocationResolver {
 	private List<ISkippedIndexedFilesListener> fSkippedFilesListeners = new ArrayList<>();
 	// Keyed by file location.
 	private Map<String, LocationCtxFile> fFileContexts;
+	private long fPreprocessingTime;
+	private int fMacroExpansionCacheHits;
+	private int fMacroExpansionCacheMisses;
 
 	public LocationMap(LexerOptions lexOptions) {
 		fLexerOptions = lexOptions;
@@ -82,6 +86,42 @@ public class LocationMap implements ILocationResolver {
 		return fLexerOptions;
 	}
 
+	public void addPreprocessingTime(long nanos) {
+		fPreprocessingTime += nanos;
+	}
+
+	/**
+	 * Returns the time in nanoseconds the parser spent in the preprocessor, or <code>0</code> if the time
+	 * was not measured, see {@link CPreprocessor#setMeasureTime(boolean)}.
+	 */
+	public long getPreprocessingTime() {
+		return fPreprocessingTime;
+	}
+
+	void addMacroExpansionCacheLookup(boolean hit) {
+		if (hit) {
+			fMacroExpansionCacheHits++;
+		} else {
+			fMacroExpansionCacheMisses++;
+		}
+	}
+
+	/**
+	 * Returns the number of macro expansions that were taken from the cache of the preprocessor,
+	 * see {@link CPreprocessor#setCacheMacroExpansions(boolean)}.
+	 */
+	public int getMacroExpansionCacheHits() {
+		return fMacroExpansionCacheHits;
+	}
+
+	/**
+	 * Returns the number of macro expansions that were looked up in the cache of the preprocessor
+	 * without success.
+	 */
+	public int getMacroExpansionCacheMisses() {
+		return fMacroExpansionCacheMisses;
+	}
+
 	public void registerPredefinedMacro(IMacroBinding macro) {
 		registerPredefinedMacro(macro, null, -1);
 	}
@@ -880,6 +920,29 @@ public class LocationMap implements ILocationResolver {
 		return null;
 	}
 
+	/**
+	 * Records the include guard of the file of the given location context.
+	 */
+	public void reportIncludeGuard(ILocationCtx locationCtx, char[] guard) {
+		if (locationCtx == fRootContext) {
+			fRootIncludeGuard = guard;
+		} else if (locationCtx instanceof LocationCtxFile) {
+			ASTInclusionStatement stmt = ((LocationCtxFile) locationCtx).getInclusionStatement();
+			if (stmt != null) {
+				stmt.setIncludeGuard(guard);
+			}
+		}
+	}
+
+	@Override
+	public char[] getIncludeGuard(IASTPreprocessorIncludeStatement include) {
+		if (include == null)
+			return fRootIncludeGuard;
+		if (include instanceof ASTInclusionStatement)
+			return ((ASTInclusionStatement) include).getIncludeGuard();
+		return null;
+	}
+
 	public void endTranslationUnit(int endOffset, CharArrayObjectMap<char[]> sigMacros) {
 		if (fTranslationUnit != null) {
 			int offset = getSequenceNumberForOffset(endOffset);
@@ -80,6 +80,8 @@ public class MacroExpander {
 	 */
 	private class TokenSource extends TokenList {
 		private final ITokenSequence fLexer;
+		// Whether tokens following the ones in the list were needed.
+		boolean fConsultedLexer;
 
 		public TokenSource(ITokenSequence lexer) {
 			fLexer = lexer;
@@ -88,6 +90,7 @@ public class MacroExpander {
 		public Token fetchFirst() throws OffsetLimitReachedException {
 			Token t = removeFirst();
 			if (t == null && fLexer != null) {
+				fConsultedLexer = true;
 				t = fLexer.currentToken();
 				if (t.getType() != IToken.tEND_OF_INPUT) {
 					fEndOffset = t.getEndOffset();
@@ -115,6 +118,7 @@ public class MacroExpander {
 			}
 
 			if (fLexer != null) {
+				fConsultedLexer = true;
 				t = fLexer.currentToken();
 				while (t.getType() == Lexer.tNEWLINE) {
 					t = fLexer.nextToken();
@@ -143,6 +147,10 @@ public class MacroExpander {
 	private ScannerContext fReportMacros;
 	private boolean fReportUndefined;
 
+	private MacroExpansionCache fExpansionCache;
+	// Records the current expansion for the cache, or null.
+	private MacroExpansionCache.Recording fRecording;
+
 	public MacroExpander(ILexerLog log, CharArrayMap<PreprocessorMacro> macroDictionary, LocationMap locationMap,
 			LexerOptions lexOptions) {
 		fDictionary = macroDictionary;
@@ -152,6 +160,13 @@ public class MacroExpander {
 		fLog = log;
 	}
 
+	/**
+	 * Sets the cache for the results of expansions, used only when no image locations are created.
+	 */
+	void setExpansionCache(MacroExpansionCache cache) {
+		fExpansionCache = cache;
+	}
+
 	/**
 	 * Expects that the identifier has been consumed, stores the result in the list provided.
 	 * @param scannerContext
@@ -179,6 +194,22 @@ public class MacroExpander {
 		TokenSource input = new TokenSource(lexer);
 		TokenList firstExpansion = new TokenList();
 
+		if (fExpansionCache != null && !completionMode && !fLexOptions.fCreateImageLocations) {
+			MacroExpansionCache.Key key = readArguments(input, macro, identifier.fSource, protectIntrinsics);
+			if (key != null) {
+				MacroExpansionCache.Recording recording = fExpansionCache.get(key, fDictionary);
+				if (fLocationMap != null) {
+					fLocationMap.addMacroExpansionCacheLookup(recording != null);
+				}
+				if (recording != null) {
+					TokenList result = replay(recording);
+					fReportMacros = null;
+					return result;
+				}
+				fRecording = new MacroExpansionCache.Recording(key);
+			}
+		}
+
 		TokenList result;
 		try {
 			firstExpansion.append(new ExpansionBoundary(macro, true));
@@ -188,6 +219,10 @@ public class MacroExpander {
 			input.prepend(firstExpansion);
 
 			result = expandAll(input, forbidden, protectIntrinsics, null);
+			postProcessTokens(result);
+			if (fRecording != null && !input.fConsultedLexer) {
+				fExpansionCache.put(fRecording, result);
+			}
 		} catch (CompletionInMacroExpansionException e) {
 			// For content assist in macro expansions, we return the list of tokens of the
 			// parameter at the current cursor position and hope that they make sense if
@@ -195,12 +230,68 @@ public class MacroExpander {
 			// For a better solution one would have to perform the expansion with artificial
 			// parameters and then check where the completion token ends up in the expansion.
 			result = e.getParameterTokens().cloneTokens();
+			postProcessTokens(result);
+		} finally {
+			fRecording = null;
 		}
-		postProcessTokens(result);
 		fReportMacros = null;
 		return result;
 	}
 
+	/**
+	 * Moves the arguments of a function-style macro from the lexer to the input, and computes the
+	 * key of the expansion for the cache. Returns <code>null</code> if the expansion cannot be cached.
+	 */
+	private MacroExpansionCache.Key readArguments(TokenSource input, PreprocessorMacro macro, Object source,
+			boolean protectIntrinsics) throws OffsetLimitReachedException {
+		if (macro.isFunctionStyle()) {
+			int nesting = 0;
+			for (int count = 0;; count++) {
+				if (count == MacroExpansionCache.MAX_ARGUMENT_TOKENS)
+					return null;
+				final Token t = input.fLexer.currentToken();
+				switch (t.getType()) {
+				case IToken.tEND_OF_INPUT:
+				case IToken.tCOMPLETION:
+					return null;
+				case IToken.tLPAREN:
+					nesting++;
+					break;
+				case IToken.tRPAREN:
+					nesting--;
+					break;
+				}
+				input.append(t);
+				fEndOffset = t.getEndOffset();
+				input.fLexer.nextToken();
+				if (nesting == 0 && t.getType() == IToken.tRPAREN)
+					break;
+			}
+		}
+		return MacroExpansionCache.Key.create(macro, source, protectIntrinsics, input);
+	}
+
+	/**
+	 * Repeats the side effects of a recorded expansion and returns a copy of its result.
+	 */
+	private TokenList replay(MacroExpansionCache.Recording recording) {
+		if (fReportMacros != null) {
+			for (Object significant : recording.fSignificantMacros) {
+				if (significant instanceof PreprocessorMacro) {
+					fReportMacros.significantMacro((PreprocessorMacro) significant);
+				} else if (fReportUndefined) {
+					fReportMacros.significantMacroUndefined((char[]) significant);
+				}
+			}
+		}
+		if (fLocationMap != null) {
+			for (PreprocessorMacro macro : recording.fImplicitExpansions) {
+				fImplicitMacroExpansions.add(fLocationMap.encounterImplicitMacroExpansion(macro, null));
+			}
+		}
+		return recording.createResult();
+	}
+
 	/**
 	 * Method for tracking macro expansions.
 	 * @since 5.0
@@ -259,8 +350,11 @@ public class MacroExpander {
 	private Token expandOne(Token lastConsumed, PreprocessorMacro macro,
 			IdentityHashMap<PreprocessorMacro, PreprocessorMacro> forbidden, TokenSource input, TokenList result,
 			MacroExpansionTracker tracker) throws OffsetLimitReachedException {
-		if (fReportMacros != null)
-			fReportMacros.significantMacro(macro);
+		reportSignificantMacro(macro);
+		if (macro.isDynamic()) {
+			// The expansion depends on the location.
+			fRecording = null;
+		}
 
 		if (macro.isFunctionStyle()) {
 			final int paramCount = macro.getParameterPlaceholderList().length;
@@ -311,16 +405,17 @@ public class MacroExpander {
 				}
 			}
 			if (tracker == null) {
-				replaceArgs(macro, clonedArgs, expandedArgs, result);
+				replaceArgs(macro, clonedArgs, expandedArgs, true, result);
 			} else {
+				// The tracker keeps the expanded arguments.
 				if (tracker.isRequestedStep()) {
 					TokenList replacement = new TokenList();
-					replaceArgs(macro, clonedArgs, expandedArgs, replacement);
+					replaceArgs(macro, clonedArgs, expandedArgs, false, replacement);
 					tracker.storeFunctionStyleMacroReplacement(macro, replacement, result);
 				} else if (tracker.isDone()) {
 					tracker.appendFunctionStyleMacro(result);
 				} else {
-					replaceArgs(macro, clonedArgs, expandedArgs, result);
+					replaceArgs(macro, clonedArgs, expandedArgs, false, result);
 				}
 				tracker.endFunctionStyleMacro();
 			}
@@ -366,6 +461,9 @@ public class MacroExpander {
 			case IToken.tIDENTIFIER:
 				final char[] image = t.getCharImage();
 				PreprocessorMacro macro = fDictionary.get(image);
+				if (fRecording != null) {
+					fRecording.lookup(image, macro);
+				}
 				if (protect || (tracker != null && tracker.isDone())) {
 					result.append(t);
 				} else if (protectIntrinsics && Arrays.equals(image, Keywords.cDEFINED)) {
@@ -384,12 +482,10 @@ public class MacroExpander {
 					result.append(t);
 				} else if (macro == null || (macro.isFunctionStyle() && !input.findLParenthesis())) {
 					// Tricky: Don't mark function-style macros if you don't find the left parenthesis
-					if (fReportMacros != null) {
-						if (macro != null) {
-							fReportMacros.significantMacro(macro);
-						} else if (fReportUndefined) {
-							fReportMacros.significantMacroUndefined(image);
-						}
+					if (macro != null) {
+						reportSignificantMacro(macro);
+					} else {
+						reportSignificantMacroUndefined(image);
 					}
 					result.append(t);
 				} else if (forbidden.containsKey(macro)) {
@@ -402,6 +498,9 @@ public class MacroExpander {
 							info = createImageLocationInfo(t);
 						}
 						fImplicitMacroExpansions.add(fLocationMap.encounterImplicitMacroExpansion(macro, info));
+						if (fRecording != null) {
+							fRecording.fImplicitExpansions.add(macro);
+						}
 					}
 					TokenList replacement = new TokenList();
 
@@ -602,11 +701,41 @@ public class MacroExpander {
 	}
 
 	private void handleProblem(int problemID, char[] arg) {
+		// Expansions with problems are not cached, the problems have to be reported.
+		fRecording = null;
 		fLog.handleProblem(problemID, arg, fStartOffset, fEndOffset);
 	}
 
-	private void replaceArgs(PreprocessorMacro macro, TokenList[] args, TokenList[] expandedArgs, TokenList result) {
-		TokenList replacement = clone(macro.getTokens(fDefinitionParser, fLexOptions, this));
+	private void reportSignificantMacro(PreprocessorMacro macro) {
+		if (fRecording != null) {
+			fRecording.fSignificantMacros.add(macro);
+		}
+		if (fReportMacros != null) {
+			fReportMacros.significantMacro(macro);
+		}
+	}
+
+	private void reportSignificantMacroUndefined(char[] name) {
+		if (fRecording != null) {
+			fRecording.fSignificantMacros.add(name);
+		}
+		if (fReportMacros != null && fReportUndefined) {
+			fReportMacros.significantMacroUndefined(name);
+		}
+	}
+
+	/**
+	 * Replaces the parameters of the macro with the arguments and appends the result. If the arguments
+	 * may be consumed, the tokens of an argument are moved to the result for the last reference to
+	 * its parameter rather than copied.
+	 */
+	private void replaceArgs(PreprocessorMacro macro, TokenList[] args, TokenList[] expandedArgs,
+			boolean consumeArgs, TokenList result) {
+		TokenList replacement = macro.getTokens(fDefinitionParser, fLexOptions, this);
+		final int[] references = consumeArgs
+				? ((ObjectStyleMacro) macro).getCompactTokens(fDefinitionParser, fLexOptions)
+						.countParameterReferences(args.length)
+				: null;
 
 		Token l = null;
 		Token n;
@@ -620,14 +749,14 @@ public class MacroExpander {
 				if (idx < args.length) { // be defensive
 					addSpacemarker(l, t, result); // start argument replacement
 					if (isKind(n, IToken.tPOUNDPOUND)) {
-						TokenList arg = clone(args[idx]);
+						TokenList arg = getArgument(args, idx, references);
 						pasteArg1 = arg.last();
 						if (pasteArg1 != null) {
 							result.appendAllButLast(arg);
 							addSpacemarker(result.last(), pasteArg1, result); // start token paste
 						}
 					} else {
-						TokenList arg = clone(expandedArgs[idx]);
+						TokenList arg = getArgument(expandedArgs, idx, references);
 						result.appendAll(arg);
 						addSpacemarker(t, n, result); // end argument replacement
 					}
@@ -642,6 +771,9 @@ public class MacroExpander {
 					idx = ((TokenParameterReference) n).getIndex();
 					if (idx < args.length) { // be defensive
 						stringify(args[idx], buf);
+						if (references != null) {
+							references[idx]--;
+						}
 					}
 					t = n;
 					n = (Token) n.getNext();
@@ -670,7 +802,7 @@ public class MacroExpander {
 						TokenList arg;
 						idx = ((TokenParameterReference) n).getIndex();
 						if (idx < args.length) { // be defensive
-							arg = clone(args[idx]);
+							arg = getArgument(args, idx, references);
 							pasteArg2 = arg.first();
 							if (pasteArg2 != null && arg.first() != arg.last()) {
 								spaceDef0 = pasteArg2;
@@ -737,7 +869,7 @@ public class MacroExpander {
 						if (idx == args.length - 1 && macro.hasVarArgs() != FunctionStyleMacro.NO_VAARGS
 								&& !isKind(nn.getNext(), IToken.tPOUNDPOUND)) {
 							final Token nnn = (Token) nn.getNext();
-							TokenList arg = clone(expandedArgs[idx]);
+							TokenList arg = getArgument(expandedArgs, idx, references);
 							if (arg.isEmpty()) {
 								addSpacemarker(l, t, result);
 								addSpacemarker(nn, nnn, result);
@@ -772,49 +904,55 @@ public class MacroExpander {
 		}
 	}
 
+	/**
+	 * Returns the tokens of an argument for a reference to its parameter. The tokens are copied,
+	 * unless the reference is the last one and the arguments may be consumed.
+	 */
+	private TokenList getArgument(TokenList[] args, int idx, int[] references) {
+		if (references != null && --references[idx] == 0)
+			return args[idx];
+		return clone(args[idx]);
+	}
+
 	private boolean isKind(final IToken t, final int kind) {
 		return t != null && t.getType() == kind;
 	}
 
 	private BitSet getParamUsage(PreprocessorMacro macro) {
 		final BitSet result = new BitSet();
-		final TokenList replacement = macro.getTokens(fDefinitionParser, fLexOptions, this);
+		final CompactTokenList replacement = ((ObjectStyleMacro) macro).getCompactTokens(fDefinitionParser,
+				fLexOptions);
+		final int size = replacement.size();
 
-		Token l = null;
-		Token n;
-		for (Token t = replacement.first(); t != null; l = t, t = n) {
-			n = (Token) t.getNext();
-			switch (t.getType()) {
+		for (int i = 0; i < size; i++) {
+			switch (replacement.getType(i)) {
 			case CPreprocessor.tMACRO_PARAMETER:
-				int idx = 2 * ((TokenParameterReference) t).getIndex();
-				if (!isKind(n, IToken.tPOUNDPOUND)) {
+				int idx = 2 * replacement.getParameterIndex(i);
+				if (!isKind(replacement, i + 1, IToken.tPOUNDPOUND)) {
 					idx++;
 				}
 				result.set(idx);
 				break;
 
 			case IToken.tPOUND:
-				if (isKind(n, CPreprocessor.tMACRO_PARAMETER)) {
-					idx = ((TokenParameterReference) n).getIndex();
+				if (isKind(replacement, i + 1, CPreprocessor.tMACRO_PARAMETER)) {
+					idx = replacement.getParameterIndex(++i);
 					result.set(2 * idx);
-					t = n;
-					n = (Token) n.getNext();
 				}
 				break;
 
 			case IToken.tPOUNDPOUND:
-				if (isKind(n, CPreprocessor.tMACRO_PARAMETER)) {
-					idx = ((TokenParameterReference) n).getIndex();
+				if (isKind(replacement, i + 1, CPreprocessor.tMACRO_PARAMETER)) {
+					idx = replacement.getParameterIndex(i + 1);
 					// gcc-extension
-					if (isKind(l, IToken.tCOMMA) && macro.hasVarArgs() != FunctionStyleMacro.NO_VAARGS
+					if (isKind(replacement, i - 1, IToken.tCOMMA) && macro.hasVarArgs() != FunctionStyleMacro.NO_VAARGS
 							&& idx == macro.getParameterPlaceholderList().length - 1
-							&& !isKind(n.getNext(), IToken.tPOUNDPOUND)) {
+							&& !isKind(replacement, i + 2, IToken.tPOUNDPOUND)) {
 						result.set(2 * idx + 1);
 					} else {
 						result.set(2 * idx);
 					}
-					t = n;
-					n = (Token) n.getNext();
+					i++;
 				}
 				break;
 			}
@@ -822,8 +960,12 @@ public class MacroExpander {
 		return result;
 	}
 
+	private boolean isKind(CompactTokenList tokens, int i, int kind) {
+		return i >= 0 && i < tokens.size() && tokens.getType(i) == kind;
+	}
+
 	private void objStyleTokenPaste(PreprocessorMacro macro, TokenList result) {
-		TokenList replacement = clone(macro.getTokens(fDefinitionParser, fLexOptions, this));
+		TokenList replacement = macro.getTokens(fDefinitionParser, fLexOptions, this);
 
 		Token l = null;
 		Token n;
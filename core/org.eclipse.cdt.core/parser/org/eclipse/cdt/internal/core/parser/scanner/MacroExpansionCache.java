@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Eclipse CDT contributors and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.parser.scanner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.cdt.core.parser.util.CharArrayMap;
+
+/**
+ * Bounded cache for the results of macro expansions of a translation unit, used by the
+ * {@link MacroExpander}. The key of an expansion consists of the macro and the images of the
+ * tokens of its arguments. An entry records the lookups in the macro dictionary that were made
+ * during the expansion, it is used only as long as the lookups yield the same macros. In addition
+ * the entry records the side effects of the expansion, such that they can be repeated.
+ * <p>
+ * The result of an expansion does not depend on its location only as long as no image locations
+ * are computed, therefore the cache must not be used when they are.
+ */
+final class MacroExpansionCache {
+	private static final int MAX_ENTRIES = 1024;
+	private static final int MAX_RESULT_TOKENS = 4096;
+	static final int MAX_ARGUMENT_TOKENS = 256;
+
+	/**
+	 * Key of a macro expansion.
+	 */
+	static final class Key {
+		private final PreprocessorMacro fMacro;
+		private final Object fSource;
+		private final boolean fProtectIntrinsics;
+		// For each token the type, whether it is preceded by a space, the length of the image and the image.
+		private final char[] fArguments;
+		private final int fHash;
+
+		Key(PreprocessorMacro macro, Object source, boolean protectIntrinsics, char[] arguments) {
+			fMacro = macro;
+			fSource = source;
+			fProtectIntrinsics = protectIntrinsics;
+			fArguments = arguments;
+			fHash = (System.identityHashCode(macro) * 31 + Arrays.hashCode(arguments)) * 31
+					+ (protectIntrinsics ? 1 : 0);
+		}
+
+		/**
+		 * Creates the key for an expansion of the macro with the given argument tokens, or returns
+		 * <code>null</code> if the expansion cannot be cached.
+		 */
+		static Key create(PreprocessorMacro macro, Object source, boolean protectIntrinsics, TokenList arguments) {
+			StringBuilder buf = new StringBuilder();
+			Token l = null;
+			for (Token t = arguments.first(); t != null; t = (Token) t.getNext()) {
+				if (t.fSource != source)
+					return null;
+				final char[] image = t.getCharImage();
+				if (image.length > Character.MAX_VALUE)
+					return null;
+				buf.append((char) t.getType());
+				buf.append(l != null && l.getEndOffset() != t.getOffset() ? '1' : '0');
+				buf.append((char) image.length);
+				buf.append(image);
+				l = t;
+			}
+			final char[] chars = new char[buf.length()];
+			buf.getChars(0, chars.length, chars, 0);
+			return new Key(macro, source, protectIntrinsics, chars);
+		}
+
+		@Override
+		public int hashCode() {
+			return fHash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+			final Key other = (Key) obj;
+			return fMacro == other.fMacro && fSource == other.fSource
+					&& fProtectIntrinsics == other.fProtectIntrinsics && Arrays.equals(fArguments, other.fArguments);
+		}
+	}
+
+	/**
+	 * Records what an expansion depends on and its side effects.
+	 */
+	static final class Recording {
+		final Key fKey;
+		// The names looked up in the macro dictionary and the macros found.
+		final List<char[]> fLookedUpNames = new ArrayList<>();
+		final List<PreprocessorMacro> fLookedUpMacros = new ArrayList<>();
+		// Significant macros and the names of significant undefined macros.
+		final List<Object> fSignificantMacros = new ArrayList<>();
+		// The macros of implicit macro expansions.
+		final List<PreprocessorMacro> fImplicitExpansions = new ArrayList<>();
+		Token[] fResult;
+
+		Recording(Key key) {
+			fKey = key;
+		}
+
+		void lookup(char[] name, PreprocessorMacro macro) {
+			fLookedUpNames.add(name);
+			fLookedUpMacros.add(macro);
+		}
+
+		boolean isValid(CharArrayMap<PreprocessorMacro> dictionary) {
+			for (int i = 0; i < fLookedUpNames.size(); i++) {
+				if (dictionary.get(fLookedUpNames.get(i)) != fLookedUpMacros.get(i))
+					return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Returns a copy of the result of the expansion.
+		 */
+		TokenList createResult() {
+			TokenList result = new TokenList();
+			for (Token t : fResult) {
+				result.append(t.clone());
+			}
+			return result;
+		}
+	}
+
+	private final Map<Key, Recording> fEntries = new LinkedHashMap<Key, Recording>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, Recording> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	/**
+	 * Returns the recorded expansion for the given key, or <code>null</code> if there is no
+	 * recorded expansion that is valid for the current state of the dictionary.
+	 */
+	Recording get(Key key, CharArrayMap<PreprocessorMacro> dictionary) {
+		Recording recording = fEntries.get(key);
+		if (recording != null && !recording.isValid(dictionary)) {
+			fEntries.remove(key);
+			return null;
+		}
+		return recording;
+	}
+
+	/**
+	 * Stores the result of a recorded expansion.
+	 */
+	void put(Recording recording, TokenList result) {
+		List<Token> tokens = new ArrayList<>();
+		for (Token t = result.first(); t != null; t = (Token) t.getNext()) {
+			if (tokens.size() == MAX_RESULT_TOKENS)
+				return;
+			Token copy = t.clone();
+			copy.setNext(null);
+			tokens.add(copy);
+		}
+		recording.fResult = tokens.toArray(new Token[tokens.size()]);
+		fEntries.put(recording.fKey, recording);
+	}
+}
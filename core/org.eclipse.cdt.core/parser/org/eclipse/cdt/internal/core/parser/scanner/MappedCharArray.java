@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Eclipse CDT contributors and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.parser.scanner;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Implementation of char array for a file that is mapped into memory. The bytes of the file are
+ * converted to characters when they are accessed, no characters are stored on the heap. This is
+ * possible only for files that consist of ASCII characters in an encoding compatible with ASCII,
+ * for all other files {@link #create(FileChannel, long, String)} returns <code>null</code>.
+ * <p>
+ * The lexer creates tokens with images that are copied from this array on demand, see
+ * {@link TokenWithLazyImage}.
+ */
+public final class MappedCharArray extends AbstractCharArray {
+	private static final String[] ASCII_COMPATIBLE_CHARSETS = { "UTF-8", "US-ASCII" }; //$NON-NLS-1$ //$NON-NLS-2$
+
+	private final ByteBuffer fBuffer;
+	private final int fStart;
+	private final int fLength;
+	private long fHash64;
+
+	/**
+	 * Maps the file of the channel into memory. Returns <code>null</code> if the encoding is
+	 * not compatible with ASCII or the file contains characters that are not ASCII characters.
+	 */
+	public static MappedCharArray create(FileChannel channel, long size, String charSet) throws IOException {
+		if (size > Integer.MAX_VALUE || !isAsciiCompatible(charSet))
+			return null;
+
+		final ByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, size);
+		int start = 0;
+		if (size >= 3 && buffer.get(0) == (byte) 0xEF && buffer.get(1) == (byte) 0xBB
+				&& buffer.get(2) == (byte) 0xBF) {
+			// Skip the UTF-8 byte order mark.
+			start = 3;
+		}
+		for (int i = start; i < size; i++) {
+			if (buffer.get(i) < 0)
+				return null;
+		}
+		return new MappedCharArray(buffer, start, (int) size - start);
+	}
+
+	private static boolean isAsciiCompatible(String charSet) {
+		for (String name : ASCII_COMPATIBLE_CHARSETS) {
+			if (name.equalsIgnoreCase(charSet))
+				return true;
+		}
+		return false;
+	}
+
+	private MappedCharArray(ByteBuffer buffer, int start, int length) {
+		fBuffer = buffer;
+		fStart = start;
+		fLength = length;
+	}
+
+	@Override
+	public int tryGetLength() {
+		return fLength;
+	}
+
+	@Override
+	public int getLength() {
+		return fLength;
+	}
+
+	@Override
+	public boolean isValidOffset(int offset) {
+		return offset < fLength;
+	}
+
+	@Override
+	public long getContentsHash() {
+		if (fHash64 == 0 && fLength != 0) {
+			// Hash in chunks, the hash of a file does not depend on how its contents is stored.
+			StreamHasher hasher = new StreamHasher();
+			char[] chunk = new char[Math.min(fLength, LazyCharArray.CHUNK_SIZE)];
+			for (int offset = 0; offset < fLength; offset += chunk.length) {
+				if (fLength - offset < chunk.length) {
+					chunk = new char[fLength - offset];
+				}
+				arraycopy(offset, chunk, 0, chunk.length);
+				hasher.addChunk(chunk);
+			}
+			fHash64 = hasher.computeHash();
+		}
+		return fHash64;
+	}
+
+	@Override
+	public char get(int offset) {
+		return (char) fBuffer.get(fStart + offset);
+	}
+
+	@Override
+	public void arraycopy(int offset, char[] destination, int destinationPos, int length) {
+		int pos = fStart + offset;
+		final int end = destinationPos + length;
+		for (int i = destinationPos; i < end; i++) {
+			destination[i] = (char) fBuffer.get(pos++);
+		}
+	}
+
+	@Override
+	public boolean hasError() {
+		return false;
+	}
+}
@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Eclipse CDT contributors and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.parser.scanner;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.cdt.core.parser.util.CharArrayMap;
+import org.eclipse.cdt.core.parser.util.CharArrayUtils;
+import org.eclipse.cdt.internal.core.parser.scanner.Lexer.LexerOptions;
+
+/**
+ * The directives and comments of a header that does not contribute any tokens to the parser, such
+ * that the header can be preprocessed without lexing it, see {@link PreprocessedHeaderCache}.
+ * <p>
+ * The directives are recorded while the header is lexed. The recording is abandoned as soon as the
+ * header contributes a token, includes a file, contains inactive code or a conditional other than
+ * an <code>#ifndef</code> for an undefined macro, or causes a problem. A complete recording is valid
+ * for every inclusion of a file with the same content and lexer configuration, as long as the macros
+ * tested by the <code>#ifndef</code> directives are undefined.
+ */
+final class PreprocessedHeader {
+	static final int DEFINE = 1;
+	static final int UNDEF = 2;
+	static final int IFNDEF = 3;
+	static final int ENDIF = 4;
+	static final int PRAGMA = 5;
+	static final int PRAGMA_ONCE = 6;
+	static final int LINE_COMMENT = 7;
+	static final int BLOCK_COMMENT = 8;
+
+	/**
+	 * A directive or comment, with the offsets that are reported to the location map.
+	 */
+	static final class Event {
+		final int fKind;
+		final int[] fOffsets;
+		final char[] fName;
+		final char[][] fParams;
+		final char[] fExpansion;
+
+		Event(int kind, int[] offsets, char[] name, char[][] params, char[] expansion) {
+			fKind = kind;
+			fOffsets = offsets;
+			fName = name;
+			fParams = params;
+			fExpansion = expansion;
+		}
+	}
+
+	private final long fContentsHash;
+	private final int fLength;
+	private final int fConfiguration;
+	private final List<char[]> fUndefinedMacros = new ArrayList<>();
+	private final List<Event> fEvents = new ArrayList<>();
+
+	PreprocessedHeader(long contentsHash, int length, int configuration) {
+		fContentsHash = contentsHash;
+		fLength = length;
+		fConfiguration = configuration;
+	}
+
+	/**
+	 * Returns a value that differs for lexer options which may cause a header to be lexed differently.
+	 */
+	static int getConfiguration(LexerOptions options) {
+		int result = 0;
+		if (options.fSupportDollarInIdentifiers)
+			result |= 0x01;
+		if (options.fSupportAtSignInIdentifiers)
+			result |= 0x02;
+		if (options.fSupportMinAndMax)
+			result |= 0x04;
+		if (options.fSupportSlashPercentComments)
+			result |= 0x08;
+		if (options.fSupportUTFLiterals)
+			result |= 0x10;
+		if (options.fSupportRawStringLiterals)
+			result |= 0x20;
+		if (options.fSupportUserDefinedLiterals)
+			result |= 0x40;
+		if (options.fSupportDigitSeparators)
+			result |= 0x80;
+		return result;
+	}
+
+	long getContentsHash() {
+		return fContentsHash;
+	}
+
+	int getLength() {
+		return fLength;
+	}
+
+	int getConfiguration() {
+		return fConfiguration;
+	}
+
+	List<Event> getEvents() {
+		return fEvents;
+	}
+
+	/**
+	 * Returns whether the recording can be used for an inclusion with the given macros.
+	 */
+	boolean isValidFor(int length, int configuration, CharArrayMap<?> macros) {
+		if (length != fLength || configuration != fConfiguration)
+			return false;
+		for (char[] name : fUndefinedMacros) {
+			if (macros.containsKey(name))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether this recording is used for the same inclusions as the given one.
+	 */
+	boolean isEquivalent(PreprocessedHeader other) {
+		if (other.fLength != fLength || other.fConfiguration != fConfiguration
+				|| other.fUndefinedMacros.size() != fUndefinedMacros.size())
+			return false;
+		for (int i = 0; i < fUndefinedMacros.size(); i++) {
+			if (!CharArrayUtils.equals(fUndefinedMacros.get(i), other.fUndefinedMacros.get(i)))
+				return false;
+		}
+		return true;
+	}
+
+	void define(int startOffset, int nameOffset, int nameEndOffset, int expansionOffset, int expansionEndOffset,
+			ObjectStyleMacro macro) {
+		fEvents.add(new Event(DEFINE,
+				new int[] { startOffset, nameOffset, nameEndOffset, expansionOffset, expansionEndOffset },
+				macro.getNameCharArray(), macro.getParameterList(), macro.getExpansionImage()));
+	}
+
+	void undef(int startOffset, int nameOffset, int nameEndOffset, int endOffset, char[] name) {
+		fEvents.add(new Event(UNDEF, new int[] { startOffset, nameOffset, nameEndOffset, endOffset }, name, null,
+				null));
+	}
+
+	void ifndef(int startOffset, int nameOffset, int nameEndOffset, int endOffset, char[] name) {
+		fUndefinedMacros.add(name);
+		fEvents.add(new Event(IFNDEF, new int[] { startOffset, nameOffset, nameEndOffset, endOffset }, name, null,
+				null));
+	}
+
+	void endif(int startOffset, int endOffset) {
+		fEvents.add(new Event(ENDIF, new int[] { startOffset, endOffset }, null, null, null));
+	}
+
+	void pragma(int startOffset, int condOffset, int condEndOffset, int endOffset, boolean once) {
+		fEvents.add(new Event(once ? PRAGMA_ONCE : PRAGMA,
+				new int[] { startOffset, condOffset, condEndOffset, endOffset }, null, null, null));
+	}
+
+	void comment(int offset, int endOffset, boolean isBlockComment) {
+		fEvents.add(new Event(isBlockComment ? BLOCK_COMMENT : LINE_COMMENT, new int[] { offset, endOffset }, null,
+				null, null));
+	}
+
+	void write(DataOutputStream out) throws IOException {
+		out.writeInt(fLength);
+		out.writeInt(fConfiguration);
+		out.writeInt(fUndefinedMacros.size());
+		for (char[] name : fUndefinedMacros) {
+			writeChars(out, name);
+		}
+		out.writeInt(fEvents.size());
+		for (Event event : fEvents) {
+			out.writeByte(event.fKind);
+			out.writeByte(event.fOffsets.length);
+			for (int offset : event.fOffsets) {
+				out.writeInt(offset);
+			}
+			writeChars(out, event.fName);
+			if (event.fParams == null) {
+				out.writeInt(-1);
+			} else {
+				out.writeInt(event.fParams.length);
+				for (char[] param : event.fParams) {
+					writeChars(out, param);
+				}
+			}
+			writeChars(out, event.fExpansion);
+		}
+	}
+
+	static PreprocessedHeader read(DataInputStream in, long contentsHash) throws IOException {
+		PreprocessedHeader result = new PreprocessedHeader(contentsHash, in.readInt(), in.readInt());
+		for (int i = in.readInt(); i > 0; i--) {
+			result.fUndefinedMacros.add(readChars(in));
+		}
+		for (int i = in.readInt(); i > 0; i--) {
+			final int kind = in.readByte();
+			final int[] offsets = new int[in.readByte()];
+			for (int j = 0; j < offsets.length; j++) {
+				offsets[j] = in.readInt();
+			}
+			final char[] name = readChars(in);
+			final int paramCount = in.readInt();
+			char[][] params = null;
+			if (paramCount >= 0) {
+				params = new char[paramCount][];
+				for (int j = 0; j < paramCount; j++) {
+					params[j] = readChars(in);
+				}
+			}
+			result.fEvents.add(new Event(kind, offsets, name, params, readChars(in)));
+		}
+		return result;
+	}
+
+	private static void writeChars(DataOutputStream out, char[] chars) throws IOException {
+		if (chars == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(chars.length);
+		for (char c : chars) {
+			out.writeChar(c);
+		}
+	}
+
+	private static char[] readChars(DataInputStream in) throws IOException {
+		final int length = in.readInt();
+		if (length < 0)
+			return null;
+		char[] result = new char[length];
+		for (int i = 0; i < length; i++) {
+			result[i] = in.readChar();
+		}
+		return result;
+	}
+}
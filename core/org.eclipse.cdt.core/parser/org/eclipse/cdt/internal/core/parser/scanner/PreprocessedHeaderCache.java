@@ -0,0 +1,278 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Eclipse CDT contributors and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.parser.scanner;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.cdt.core.parser.util.CharArrayMap;
+
+/**
+ * Persistent cache of headers that have been preprocessed before, see {@link PreprocessedHeader}.
+ * A cached header is not lexed, instead its directives are replayed. The cache is shared by all
+ * preprocessors and across sessions, it is keyed by the hash of the content of a header and the
+ * set of macros the header tests.
+ * <p>
+ * The recordings for one content hash are stored in one file of the cache directory. When the
+ * total size of the files exceeds the limit, the least recently used files are deleted. A limited
+ * number of recordings is kept in memory.
+ */
+public final class PreprocessedHeaderCache {
+	/**
+	 * System property enabling the cache of the indexer.
+	 */
+	public static final String PROPERTY_ENABLED = "org.eclipse.cdt.core.parser.headerCache"; //$NON-NLS-1$
+	/**
+	 * System property for the maximum size of the cache on disk in megabytes.
+	 */
+	public static final String PROPERTY_MAX_SIZE_MB = "org.eclipse.cdt.core.parser.headerCache.maxSizeMB"; //$NON-NLS-1$
+	public static final int DEFAULT_MAX_SIZE_MB = 64;
+
+	private static final int MAGIC = 0x43505048; // "CPPH"
+	private static final int VERSION = 1;
+	private static final String SUFFIX = ".hdr"; //$NON-NLS-1$
+	private static final int MAX_ENTRIES_IN_MEMORY = 1024;
+	private static final int MAX_VARIANTS = 8;
+
+	private static volatile PreprocessedHeaderCache sShared;
+
+	/**
+	 * The recordings for one content hash.
+	 */
+	private static class Entry {
+		final List<PreprocessedHeader> fVariants = new ArrayList<>();
+		boolean fTouched;
+	}
+
+	private final File fDirectory;
+	private final long fMaxSize;
+	private final Map<Long, Entry> fEntries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+			return size() > MAX_ENTRIES_IN_MEMORY;
+		}
+	};
+	private long fSize = -1;
+	private long fHits;
+	private long fMisses;
+
+	/**
+	 * Returns the cache used by the preprocessors, or <code>null</code> if headers are not cached.
+	 */
+	public static PreprocessedHeaderCache getShared() {
+		return sShared;
+	}
+
+	/**
+	 * Sets the cache used by the preprocessors that are created afterwards, <code>null</code> disables
+	 * the caching of headers.
+	 */
+	public static void setShared(PreprocessedHeaderCache cache) {
+		sShared = cache;
+	}
+
+	/**
+	 * Creates a cache storing its files in the given directory, which is created when needed.
+	 * @param maxSize the maximum total size of the files in bytes.
+	 */
+	public PreprocessedHeaderCache(File directory, long maxSize) {
+		fDirectory = directory;
+		fMaxSize = maxSize;
+	}
+
+	/**
+	 * Returns a recording for a header with the given content that is valid for the current macros,
+	 * or <code>null</code>.
+	 */
+	synchronized PreprocessedHeader get(long contentsHash, int length, int configuration,
+			CharArrayMap<?> macros) {
+		final Entry entry = getEntry(contentsHash);
+		if (entry != null) {
+			for (PreprocessedHeader header : entry.fVariants) {
+				if (header.isValidFor(length, configuration, macros)) {
+					fHits++;
+					if (!entry.fTouched) {
+						entry.fTouched = true;
+						getFile(contentsHash).setLastModified(System.currentTimeMillis());
+					}
+					return header;
+				}
+			}
+		}
+		fMisses++;
+		return null;
+	}
+
+	/**
+	 * Adds a complete recording to the cache.
+	 */
+	synchronized void put(PreprocessedHeader header) {
+		final long hash = header.getContentsHash();
+		Entry entry = getEntry(hash);
+		if (entry == null) {
+			entry = new Entry();
+			fEntries.put(hash, entry);
+		}
+		for (PreprocessedHeader variant : entry.fVariants) {
+			if (variant.isEquivalent(header))
+				return;
+		}
+		if (entry.fVariants.size() >= MAX_VARIANTS) {
+			entry.fVariants.remove(0);
+		}
+		entry.fVariants.add(header);
+		entry.fTouched = true;
+		write(hash, entry);
+	}
+
+	private Entry getEntry(long contentsHash) {
+		Entry entry = fEntries.get(contentsHash);
+		if (entry == null) {
+			entry = read(contentsHash);
+			if (entry != null) {
+				fEntries.put(contentsHash, entry);
+			}
+		}
+		return entry;
+	}
+
+	private File getFile(long contentsHash) {
+		return new File(fDirectory, String.format("%016x", contentsHash) + SUFFIX); //$NON-NLS-1$
+	}
+
+	private Entry read(long contentsHash) {
+		final File file = getFile(contentsHash);
+		if (!file.isFile())
+			return null;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != contentsHash)
+				return null;
+			final Entry entry = new Entry();
+			for (int i = in.readInt(); i > 0; i--) {
+				entry.fVariants.add(PreprocessedHeader.read(in, contentsHash));
+			}
+			return entry;
+		} catch (IOException e) {
+			// The file is corrupt, it is replaced with the next recording.
+			return null;
+		}
+	}
+
+	private void write(long contentsHash, Entry entry) {
+		final File file = getFile(contentsHash);
+		final long otherFiles = getSize() - file.length();
+		if (!fDirectory.isDirectory() && !fDirectory.mkdirs())
+			return;
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(contentsHash);
+			out.writeInt(entry.fVariants.size());
+			for (PreprocessedHeader header : entry.fVariants) {
+				header.write(out);
+			}
+		} catch (IOException e) {
+			file.delete();
+		}
+		fSize = otherFiles + file.length();
+		if (fSize > fMaxSize) {
+			evict();
+		}
+	}
+
+	/**
+	 * Deletes the least recently used files until the total size is below the limit.
+	 */
+	private void evict() {
+		File[] files = fDirectory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+		if (files == null)
+			return;
+		final long[] lastModified = new long[files.length];
+		final Integer[] order = new Integer[files.length];
+		for (int i = 0; i < files.length; i++) {
+			lastModified[i] = files[i].lastModified();
+			order[i] = i;
+		}
+		Arrays.sort(order, Comparator.comparingLong(i -> lastModified[i]));
+		for (Integer i : order) {
+			if (fSize <= fMaxSize)
+				break;
+			final File file = files[i];
+			final long length = file.length();
+			if (file.delete()) {
+				fSize -= length;
+				final String name = file.getName();
+				try {
+					fEntries.remove(Long.parseUnsignedLong(name.substring(0, name.length() - SUFFIX.length()), 16));
+				} catch (NumberFormatException e) {
+					// Not one of our files.
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the total size of the files of the cache in bytes.
+	 */
+	public synchronized long getSize() {
+		if (fSize < 0) {
+			long size = 0;
+			File[] files = fDirectory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+			if (files != null) {
+				for (File file : files) {
+					size += file.length();
+				}
+			}
+			fSize = size;
+		}
+		return fSize;
+	}
+
+	/**
+	 * Returns the number of inclusions for which a recording was found.
+	 */
+	public synchronized long getHitCount() {
+		return fHits;
+	}
+
+	/**
+	 * Returns the number of inclusions for which no recording was found.
+	 */
+	public synchronized long getMissCount() {
+		return fMisses;
+	}
+
+	/**
+	 * Removes all recordings from memory and from disk.
+	 */
+	public synchronized void clear() {
+		fEntries.clear();
+		File[] files = fDirectory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		fSize = 0;
+	}
+}
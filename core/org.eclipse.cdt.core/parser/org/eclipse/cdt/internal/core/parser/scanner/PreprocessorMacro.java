@@ -109,6 +109,9 @@ abstract class PreprocessorMacro implements IMacroBinding {
 		return buf.toString();
 	}
 
+	/**
+	 * Returns a new list with the tokens of the replacement, the caller may modify the list and its tokens.
+	 */
 	public abstract TokenList getTokens(MacroDefinitionParser parser, LexerOptions lexOptions, MacroExpander expander);
 }
 
@@ -116,7 +119,7 @@ class ObjectStyleMacro extends PreprocessorMacro {
 	private final AbstractCharArray fExpansion;
 	final int fExpansionOffset;
 	final int fEndOffset;
-	private TokenList fExpansionTokens;
+	private CompactTokenList fExpansionTokens;
 
 	public ObjectStyleMacro(char[] name, char[] expansion) {
 		this(name, 0, expansion.length, null, new CharArray(expansion));
@@ -128,9 +131,9 @@ class ObjectStyleMacro extends PreprocessorMacro {
 		fExpansionOffset = expansionOffset;
 		fEndOffset = endOffset;
 		fExpansion = source;
-		fExpansionTokens = expansion;
 		if (expansion != null) {
 			setSource(expansion.first());
+			fExpansionTokens = new CompactTokenList(expansion);
 		}
 	}
 
@@ -166,15 +169,22 @@ class ObjectStyleMacro extends PreprocessorMacro {
 
 	@Override
 	public TokenList getTokens(MacroDefinitionParser mdp, LexerOptions lexOptions, MacroExpander expander) {
+		return getCompactTokens(mdp, lexOptions).toTokenList(this);
+	}
+
+	/**
+	 * Returns the tokens of the replacement without creating token objects.
+	 */
+	CompactTokenList getCompactTokens(MacroDefinitionParser mdp, LexerOptions lexOptions) {
 		if (fExpansionTokens == null) {
-			fExpansionTokens = new TokenList();
+			TokenList tokens = new TokenList();
 			Lexer lex = new Lexer(fExpansion, fExpansionOffset, fEndOffset, lexOptions, ILexerLog.NULL, this);
 			try {
 				lex.nextToken(); // consume the start token
-				mdp.parseExpansion(lex, ILexerLog.NULL, getNameCharArray(), getParameterPlaceholderList(),
-						fExpansionTokens);
+				mdp.parseExpansion(lex, ILexerLog.NULL, getNameCharArray(), getParameterPlaceholderList(), tokens);
 			} catch (OffsetLimitReachedException e) {
 			}
+			fExpansionTokens = new CompactTokenList(tokens);
 		}
 		return fExpansionTokens;
 	}
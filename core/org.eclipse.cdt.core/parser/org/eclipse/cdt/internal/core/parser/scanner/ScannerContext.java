@@ -68,6 +68,7 @@ final class ScannerContext {
 	private CharArrayObjectMap<char[]> fSignificantMacros;
 	private boolean fPragmaOnce;
 	private int fLoadedVersionCount;
+	private PreprocessedHeader fRecording;
 
 	/**
 	 * @param ctx
@@ -184,6 +185,8 @@ final class ScannerContext {
 				break;
 			}
 		}
+		if (state != CodeState.eActive)
+			fRecording = null;
 		fCurrentState = state;
 	}
 
@@ -461,6 +464,28 @@ final class ScannerContext {
 		return fSignificantMacros.put(macro, value);
 	}
 
+	/**
+	 * Starts recording the directives of this context, see {@link PreprocessedHeader}.
+	 */
+	public void startRecording(PreprocessedHeader recording) {
+		fRecording = recording;
+	}
+
+	/**
+	 * Returns the recording of the directives of this context, or <code>null</code> if the context
+	 * is not recorded or the recording has been abandoned.
+	 */
+	public PreprocessedHeader getRecording() {
+		return fRecording;
+	}
+
+	/**
+	 * Abandons the recording of the directives of this context.
+	 */
+	public void abortRecording() {
+		fRecording = null;
+	}
+
 	public int getLoadedVersionCount() {
 		return fLoadedVersionCount;
 	}
@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Eclipse CDT contributors and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.parser.scanner;
+
+/**
+ * Token with an image that is copied from the input of the lexer when it is requested for the
+ * first time. Used for input that does not need to be kept on the heap, see {@link MappedCharArray}.
+ */
+public class TokenWithLazyImage extends Token {
+	private final AbstractCharArray fInput;
+	// The range of the image in the input, the offsets of the token change during macro expansion.
+	private final int fImageOffset;
+	private final int fImageLength;
+	private char[] fImage;
+
+	public TokenWithLazyImage(int kind, Object source, int offset, int endOffset, AbstractCharArray input) {
+		super(kind, source, offset, endOffset);
+		fInput = input;
+		fImageOffset = offset;
+		fImageLength = endOffset - offset;
+	}
+
+	@Override
+	public char[] getCharImage() {
+		if (fImage == null) {
+			char[] image = new char[fImageLength];
+			fInput.arraycopy(fImageOffset, image, 0, fImageLength);
+			fImage = image;
+		}
+		return fImage;
+	}
+}
@@ -33,6 +33,11 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -50,6 +55,7 @@ import org.eclipse.cdt.core.index.IIndexFile;
 import org.eclipse.cdt.core.index.IIndexFileLocation;
 import org.eclipse.cdt.core.index.IIndexInclude;
 import org.eclipse.cdt.core.index.IIndexMacro;
+import org.eclipse.cdt.core.index.IIndexName;
 import org.eclipse.cdt.core.index.IIndexManager;
 import org.eclipse.cdt.core.index.IPDOMASTProcessor;
 import org.eclipse.cdt.core.index.IndexLocationFactory;
@@ -64,9 +70,11 @@ import org.eclipse.cdt.core.parser.ISignificantMacros;
 import org.eclipse.cdt.core.parser.IncludeExportPatterns;
 import org.eclipse.cdt.core.parser.IncludeFileContentProvider;
 import org.eclipse.cdt.internal.core.dom.IIncludeFileResolutionHeuristics;
+import org.eclipse.cdt.internal.core.dom.parser.ASTTranslationUnit;
 import org.eclipse.cdt.internal.core.index.FileContentKey;
 import org.eclipse.cdt.internal.core.index.IIndexFragment;
 import org.eclipse.cdt.internal.core.index.IIndexFragmentFile;
+import org.eclipse.cdt.internal.core.index.IIndexFragmentInclude;
 import org.eclipse.cdt.internal.core.index.IWritableIndex;
 import org.eclipse.cdt.internal.core.index.IndexBasedFileContentProvider;
 import org.eclipse.cdt.internal.core.model.DebugLogConstants;
@@ -75,12 +83,14 @@ import org.eclipse.cdt.internal.core.parser.ParserLogService;
 import org.eclipse.cdt.internal.core.parser.ParserSettings2;
 import org.eclipse.cdt.internal.core.parser.scanner.InternalFileContentProvider;
 import org.eclipse.cdt.internal.core.parser.scanner.InternalFileContentProvider.DependsOnOutdatedFileException;
+import org.eclipse.cdt.internal.core.parser.scanner.LocationMap;
 import org.eclipse.cdt.internal.core.parser.util.LRUCache;
 import org.eclipse.cdt.utils.EFSExtensionManager;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
@@ -97,6 +107,8 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 	}
 
 	private static final int MAX_ERRORS = 500;
+	/** Number of sources parsed by each parser thread before the results are written to the index. */
+	private static final int SOURCES_PER_PARSER_THREAD = 2;
 
 	// Order of constants is important. Stronger update types have to precede the weaker ones.
 	private static enum UpdateKind {
@@ -316,6 +328,40 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 		parsingFileTask, errorWhileParsing, tooManyIndexProblems
 	}
 
+	/**
+	 * A required source parsed by a parser thread, waiting to be written to the index.
+	 */
+	private static class ParsedSource {
+		final Object fTu;
+		final IIndexFileLocation fLocation;
+		final AbstractLanguage fLanguage;
+		final IScannerInfo fScannerInfo;
+		IASTTranslationUnit fAST;
+		FileInAST[] fFileKeys;
+		PDOMWriter.Data fData;
+		int fStorageLinkageID = ILinkage.NO_LINKAGE_ID;
+		long fParsingTime;
+		Throwable fError;
+		// Left to the thread of the task because of the memory ceiling.
+		boolean fDeferred;
+
+		ParsedSource(Object tu, IIndexFileLocation location, AbstractLanguage language, IScannerInfo scannerInfo) {
+			fTu = tu;
+			fLocation = location;
+			fLanguage = language;
+			fScannerInfo = scannerInfo;
+		}
+
+		/**
+		 * Releases the AST and the symbols extracted from it, once they have been written.
+		 */
+		void release() {
+			fAST = null;
+			fFileKeys = null;
+			fData = null;
+		}
+	}
+
 	private int fUpdateFlags = IIndexManager.UPDATE_ALL;
 	private UnusedHeaderStrategy fIndexHeadersWithoutContext = UnusedHeaderStrategy.useDefaultLanguage;
 	private boolean fIndexFilesWithoutConfiguration = true;
@@ -323,8 +369,10 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 	private Set<String> fHeadersToIndexAllVersions = Collections.emptySet();
 	private Pattern fPragmaPrivatePattern;
 	private List<LinkageTask> fRequestsPerLinkage = new ArrayList<>();
-	private Map<IIndexFile, IndexFileContent> fIndexContentCache = new LRUCache<>(500);
-	private Map<IIndexFileLocation, IIndexFragmentFile[]> fIndexFilesCache = new LRUCache<>(5000);
+	// The caches are shared by the parser threads.
+	private Map<IIndexFile, IndexFileContent> fIndexContentCache = Collections.synchronizedMap(new LRUCache<>(500));
+	private Map<IIndexFileLocation, IIndexFragmentFile[]> fIndexFilesCache = Collections
+			.synchronizedMap(new LRUCache<>(5000));
 	private Map<IIndexFileLocation, LocationTask> fOneLinkageTasks = new HashMap<>();
 
 	private Object[] fFilesToUpdate;
@@ -338,6 +386,15 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 	private long fTranslationUnitSizeLimit;
 	private long fIncludedFileSizeLimit;
 	private InternalFileContentProvider fCodeReaderFactory;
+	private int fParserThreads = 1;
+	private boolean fUpdateByContent;
+	private boolean fScheduleByIncludes;
+	private int fMemoryCeilingPercent;
+	// Files whose timestamp changed without a change of the content, their timestamps are refreshed.
+	private List<IIndexFragmentFile> fFilesWithUnchangedContent = new ArrayList<>();
+	// The signatures of the macros of the headers that are updated, before the update.
+	private Map<IIndexFileLocation, Set<String>> fMacrosOfUpdatedHeaders = new HashMap<>();
+	private Set<IIndexFragmentFile> fRequestedDependents = new HashSet<>();
 	private int fSwallowOutOfMemoryError = 5;
 	/**
 	 * A queue of urgent indexing tasks that contribute additional files to this task.
@@ -386,6 +443,53 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 		fIncludedFileSizeLimit = includedFileSizeLimit;
 	}
 
+	/**
+	 * Sets the number of threads parsing the required sources concurrently. With a single thread
+	 * all files are parsed by the thread of the task.
+	 */
+	public final void setParserThreads(int threads) {
+		fParserThreads = Math.max(1, threads);
+	}
+
+	/**
+	 * Enables the update of files by their content. Files with a modified timestamp are checked for
+	 * a change of their content, the timestamps of unchanged files are refreshed without parsing them.
+	 * The files including an updated header are parsed again, when they reference a macro whose
+	 * definition has been changed by the update.
+	 */
+	public final void setUpdateByContent(boolean value) {
+		fUpdateByContent = value;
+	}
+
+	/**
+	 * Enables the ordering of the required sources by the include graph stored in the index, see
+	 * {@link IncludeGraphScheduler}.
+	 */
+	public final void setScheduleByIncludes(boolean value) {
+		fScheduleByIncludes = value;
+	}
+
+	/**
+	 * Sets the percentage of the maximum heap above which the parser threads stop to parse sources
+	 * concurrently, or <code>0</code> for no limit. A source that is not taken by a parser thread
+	 * because of the limit is parsed by the thread of the task, after the ASTs of the preceding
+	 * sources have been written to the index and released. Above the limit the contents of headers
+	 * cached for other translation units are dropped before the thread of the task parses a file.
+	 * The limit is ignored for a reproducible index, because it makes the distribution of the
+	 * sources depend on the timing.
+	 */
+	public final void setMemoryCeiling(int percent) {
+		fMemoryCeilingPercent = Math.max(0, Math.min(100, percent));
+	}
+
+	private boolean isAboveMemoryCeiling() {
+		if (fMemoryCeilingPercent == 0 || isReproducible())
+			return false;
+		final Runtime runtime = Runtime.getRuntime();
+		final long used = runtime.totalMemory() - runtime.freeMemory();
+		return used > runtime.maxMemory() / 100 * fMemoryCeilingPercent;
+	}
+
 	public void setIndexAllHeaderVersions(boolean indexAllHeaderVersions) {
 		fIndexAllHeaderVersions = indexAllHeaderVersions;
 	}
@@ -556,6 +660,7 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 					HashMap<Integer, List<IIndexFileLocation>> files = new HashMap<>();
 					final ArrayList<IIndexFragmentFile> indexFilesToRemove = new ArrayList<>();
 					extractFiles(files, indexFilesToRemove, progress.split(1));
+					updateFilesWithUnchangedContent(progress.split(1));
 
 					setResume(true, progress.split(1));
 
@@ -581,6 +686,9 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 							if (hasUrgentTasks())
 								break;
 						}
+						if (moreFiles == null && !hasUrgentTasks()) {
+							moreFiles = extractDependentFiles(progress.split(1));
+						}
 						synchronized (this) {
 							if (fUrgentTasks.isEmpty()) {
 								if (moreFiles == null) {
@@ -615,6 +723,7 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 							fFilesToRemove = urgentTask.fFilesToRemove;
 							incrementRequestedFilesCount(fFilesToUpdate.length + fFilesToRemove.size());
 							extractFiles(files, indexFilesToRemove, progress.split(1));
+							updateFilesWithUnchangedContent(progress.split(1));
 							removeFilesInIndex(fFilesToRemove, indexFilesToRemove, progress.split(1));
 						}
 					}
@@ -683,6 +792,8 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 								boolean update = force || (forceUnresolvedIncludes && ifile.hasUnresolvedInclude())
 										|| isModified(checkTimestamps, checkFileContentsHash, ifl, tu, ifile);
 								if (update && requestUpdate(linkageID, ifl, ifile, tu, updateKind)) {
+									if (!isSourceUnit)
+										recordMacrosOfUpdatedHeader(ifl);
 									count++;
 									linkages.set(linkageID);
 								}
@@ -708,6 +819,8 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 								|| isModified(checkTimestamps, checkFileContentsHash, ifl, tu, ifile);
 						final int linkageID = ifile.getLinkageID();
 						if (update && requestUpdate(linkageID, ifl, ifile, tu, UpdateKind.OTHER_HEADER)) {
+							if (!isSourceUnit)
+								recordMacrosOfUpdatedHeader(ifl);
 							count++;
 							linkages.set(linkageID);
 						}
@@ -756,7 +869,10 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 		if (checkTimestamps) {
 			if (fResolver.getLastModified(ifl) != file.getTimestamp()
 					|| computeFileSizeAndEncodingHashcode(ifl) != file.getSizeAndEncodingHashcode()) {
-				if (checkFileContentsHash && computeFileContentsHash(tu) == file.getContentsHash()) {
+				if ((checkFileContentsHash || fUpdateByContent)
+						&& computeFileContentsHash(tu) == file.getContentsHash()) {
+					if (fUpdateByContent)
+						fFilesWithUnchangedContent.add(file);
 					return false;
 				}
 				return true;
@@ -765,6 +881,196 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 		return false;
 	}
 
+	/**
+	 * Stores the current timestamps of the files that have been touched without changing their content,
+	 * such that they are not checked again by the next update.
+	 */
+	private void updateFilesWithUnchangedContent(IProgressMonitor monitor)
+			throws InterruptedException, CoreException {
+		if (fFilesWithUnchangedContent.isEmpty())
+			return;
+		fIndex.acquireWriteLock(monitor);
+		try {
+			for (IIndexFragmentFile file : fFilesWithUnchangedContent) {
+				final IIndexFileLocation ifl = file.getLocation();
+				file.setTimestamp(fResolver.getLastModified(ifl));
+				file.setSizeAndEncodingHashcode(computeFileSizeAndEncodingHashcode(ifl));
+			}
+		} finally {
+			fIndex.releaseWriteLock();
+		}
+		fFilesWithUnchangedContent.clear();
+	}
+
+	private void recordMacrosOfUpdatedHeader(IIndexFileLocation ifl) throws CoreException {
+		if (fUpdateByContent && !fMacrosOfUpdatedHeaders.containsKey(ifl)) {
+			fMacrosOfUpdatedHeaders.put(ifl, getMacroSignatures(ifl));
+		}
+	}
+
+	/**
+	 * Returns the names, parameters and expansions of the macros defined by all versions of a file.
+	 */
+	private Set<String> getMacroSignatures(IIndexFileLocation ifl) throws CoreException {
+		Set<String> result = new HashSet<>();
+		for (IIndexFragmentFile file : fIndex.getWritableFiles(ifl)) {
+			for (IIndexMacro macro : file.getMacros()) {
+				StringBuilder buf = new StringBuilder();
+				buf.append(macro.getNameCharArray()).append(' ');
+				char[][] params = macro.getParameterList();
+				if (params != null) {
+					buf.append('(');
+					for (int i = 0; i < params.length; i++) {
+						if (i > 0)
+							buf.append(',');
+						buf.append(params[i]);
+					}
+					buf.append(')');
+				}
+				char[] expansion = macro.getExpansionImage();
+				if (expansion != null) {
+					buf.append('=').append(expansion);
+				}
+				result.add(buf.toString());
+			}
+		}
+		return result;
+	}
+
+	private static String getMacroName(String signature) {
+		return signature.substring(0, signature.indexOf(' '));
+	}
+
+	/**
+	 * Compares the macros of the headers that have been updated with the macros before the update
+	 * and requests the update of the files that depend on a changed macro. Files including a header
+	 * are checked, when they don't depend on a changed macro, the files including them are checked.
+	 * @return the files to parse per linkage, or <code>null</code> if there are none.
+	 */
+	private HashMap<Integer, List<IIndexFileLocation>> extractDependentFiles(IProgressMonitor monitor)
+			throws CoreException {
+		if (fMacrosOfUpdatedHeaders.isEmpty())
+			return null;
+
+		Map<IIndexFileLocation, Set<String>> headers = fMacrosOfUpdatedHeaders;
+		fMacrosOfUpdatedHeaders = new HashMap<>();
+		HashMap<Integer, List<IIndexFileLocation>> files = new HashMap<>();
+		int count = 0;
+		SubMonitor progress = SubMonitor.convert(monitor, headers.size());
+		for (Map.Entry<IIndexFileLocation, Set<String>> entry : headers.entrySet()) {
+			progress.split(1);
+			final Set<String> oldMacros = entry.getValue();
+			final Set<String> newMacros = getMacroSignatures(entry.getKey());
+			final Set<String> changedNames = new HashSet<>();
+			final Set<String> oldNames = new HashSet<>();
+			for (String signature : oldMacros) {
+				oldNames.add(getMacroName(signature));
+				if (!newMacros.contains(signature)) {
+					changedNames.add(getMacroName(signature));
+				}
+			}
+			// References to a macro that was not defined before the update are not stored in the index,
+			// the addition of a macro affects all includers.
+			boolean addedMacro = false;
+			for (String signature : newMacros) {
+				if (!oldMacros.contains(signature)) {
+					final String name = getMacroName(signature);
+					changedNames.add(name);
+					addedMacro |= !oldNames.contains(name);
+				}
+			}
+			if (changedNames.isEmpty())
+				continue;
+
+			Set<IIndexFragmentFile> visited = new HashSet<>();
+			Deque<IIndexFragmentFile> queue = new ArrayDeque<>();
+			Collections.addAll(queue, fIndex.getWritableFiles(entry.getKey()));
+			while (!queue.isEmpty()) {
+				for (IIndexInclude include : fIndex.findIncludedBy(queue.removeFirst())) {
+					final IIndexFile includer = include.getIncludedBy();
+					if (!(includer instanceof IIndexFragmentFile))
+						continue;
+					final IIndexFragmentFile ifile = (IIndexFragmentFile) includer;
+					if (!visited.add(ifile) || fRequestedDependents.contains(ifile))
+						continue;
+					if (addedMacro || dependsOnMacros(ifile, changedNames)) {
+						fRequestedDependents.add(ifile);
+						if (requestDependentUpdate(ifile, files)) {
+							count++;
+						}
+					} else {
+						queue.add(ifile);
+					}
+				}
+			}
+		}
+		if (files.isEmpty())
+			return null;
+		incrementRequestedFilesCount(count);
+		return files;
+	}
+
+	/**
+	 * Checks whether a file references one of the given macros, or includes a header depending on
+	 * their definitions.
+	 */
+	private boolean dependsOnMacros(IIndexFragmentFile file, Set<String> macroNames) throws CoreException {
+		for (IIndexName name : file.findNames(0, Integer.MAX_VALUE)) {
+			if (macroNames.contains(new String(name.getSimpleID())))
+				return true;
+		}
+		final boolean[] result = new boolean[1];
+		ISignificantMacros.IVisitor visitor = new ISignificantMacros.IVisitor() {
+			@Override
+			public boolean visitValue(char[] macro, char[] value) {
+				return check(macro);
+			}
+
+			@Override
+			public boolean visitUndefined(char[] macro) {
+				return check(macro);
+			}
+
+			@Override
+			public boolean visitDefined(char[] macro) {
+				return check(macro);
+			}
+
+			private boolean check(char[] macro) {
+				result[0] = macroNames.contains(new String(macro));
+				return !result[0];
+			}
+		};
+		for (IIndexInclude include : file.getIncludes()) {
+			if (include instanceof IIndexFragmentInclude) {
+				IIndexFragmentFile included = ((IIndexFragmentInclude) include).getIncludes();
+				if (included != null) {
+					included.getSignificantMacros().accept(visitor);
+					if (result[0])
+						return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private boolean requestDependentUpdate(IIndexFragmentFile ifile, HashMap<Integer, List<IIndexFileLocation>> files)
+			throws CoreException {
+		final IIndexFileLocation ifl = ifile.getLocation();
+		final Object tu = fResolver.getInputFile(ifl);
+		if (tu == null)
+			return false;
+		final int linkageID = ifile.getLinkageID();
+		final boolean isSourceUnit = fResolver.isSourceUnit(tu);
+		if (!isSourceUnit) {
+			recordMacrosOfUpdatedHeader(ifl);
+		}
+		final boolean counted = requestUpdate(linkageID, ifl, ifile, tu,
+				isSourceUnit ? UpdateKind.REQUIRED_SOURCE : UpdateKind.OTHER_HEADER);
+		addPerLinkage(linkageID, ifl, files);
+		return counted;
+	}
+
 	private long computeFileContentsHash(Object tu) {
 		FileContent codeReader = fResolver.getCodeReader(tu);
 		return codeReader != null ? codeReader.getContentsHash() : 0;
@@ -895,19 +1201,27 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 			List<IIndexFileLocation> filesAtPriority = filesByPriority.get(priority);
 			if (filesAtPriority == null)
 				continue;
+			if (fScheduleByIncludes) {
+				filesAtPriority = scheduleSources(linkageID, map, filesAtPriority);
+			}
 
 			// First parse the required sources.
-			for (Iterator<IIndexFileLocation> it = filesAtPriority.iterator(); it.hasNext();) {
-				IIndexFileLocation ifl = it.next();
-				LocationTask locTask = map.find(ifl);
-				if (locTask == null || locTask.isCompleted()) {
-					it.remove();
-				} else if (locTask.fKind == UpdateKind.REQUIRED_SOURCE) {
-					if (hasUrgentTasks())
-						return;
-					final Object tu = locTask.fTu;
-					final IScannerInfo scannerInfo = getScannerInfo(linkageID, tu);
-					parseFile(tu, getLanguage(tu, linkageID), ifl, scannerInfo, null, progress.split(1));
+			if (fParserThreads > 1) {
+				if (!parseSources(linkageID, map, filesAtPriority, progress))
+					return;
+			} else {
+				for (Iterator<IIndexFileLocation> it = filesAtPriority.iterator(); it.hasNext();) {
+					IIndexFileLocation ifl = it.next();
+					LocationTask locTask = map.find(ifl);
+					if (locTask == null || locTask.isCompleted()) {
+						it.remove();
+					} else if (locTask.fKind == UpdateKind.REQUIRED_SOURCE) {
+						if (hasUrgentTasks())
+							return;
+						final Object tu = locTask.fTu;
+						final IScannerInfo scannerInfo = getScannerInfo(linkageID, tu);
+						parseFile(tu, getLanguage(tu, linkageID), ifl, scannerInfo, null, progress.split(1));
+					}
 				}
 			}
 
@@ -979,6 +1293,276 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 		}
 	}
 
+	/**
+	 * Moves the required sources to the front of the list of files, ordered such that outdated headers
+	 * are parsed in the context of the first source and reused by the other sources.
+	 */
+	private List<IIndexFileLocation> scheduleSources(int linkageID, LinkageTask map, List<IIndexFileLocation> files)
+			throws CoreException {
+		final List<IIndexFileLocation> sources = new ArrayList<>();
+		final List<IIndexFileLocation> others = new ArrayList<>();
+		for (IIndexFileLocation ifl : files) {
+			LocationTask locTask = map.find(ifl);
+			if (locTask != null && locTask.fKind == UpdateKind.REQUIRED_SOURCE) {
+				sources.add(ifl);
+			} else {
+				others.add(ifl);
+			}
+		}
+		IncludeGraphScheduler scheduler = new IncludeGraphScheduler(fIndex, file -> {
+			LocationTask locTask = map.find(file.getLocation());
+			FileVersionTask versionTask = locTask == null ? null : locTask.findVersion(file);
+			return versionTask != null && versionTask.fOutdated;
+		});
+		final List<IIndexFileLocation> result = new LinkedList<>(scheduler.schedule(linkageID, sources));
+		result.addAll(others);
+		fStatistics.fScheduledSourcesCount += scheduler.getScheduledCount();
+		return result;
+	}
+
+	/**
+	 * Parses the required sources among the given files with multiple threads. The sources are
+	 * processed in waves: The parser threads parse the sources of a wave and resolve their names
+	 * while the index is not modified, then the thread of the task writes the results to the index
+	 * in the order of the files. Headers that have been written for an earlier source of the wave
+	 * are not written again, such that the same versions of headers are stored as with sequential
+	 * parsing. The ASTs of all sources of a wave are alive until the wave has been parsed, each of
+	 * them is released after it has been written.
+	 *
+	 * @return {@code false} if the task has to yield to urgent tasks.
+	 */
+	private boolean parseSources(int linkageID, LinkageTask map, List<IIndexFileLocation> files, SubMonitor progress)
+			throws CoreException, InterruptedException {
+		final InternalFileContentProvider[] providers = new InternalFileContentProvider[fParserThreads];
+		for (int i = 0; i < providers.length; i++) {
+			providers[i] = createFileContentProvider(linkageID);
+		}
+		final int waveSize = fParserThreads * SOURCES_PER_PARSER_THREAD;
+		final List<ParsedSource> wave = new ArrayList<>(waveSize);
+		final ExecutorService executor = Executors.newFixedThreadPool(fParserThreads, r -> {
+			Thread thread = new Thread(r, "Indexer Parser"); //$NON-NLS-1$
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			for (Iterator<IIndexFileLocation> it = files.iterator(); it.hasNext();) {
+				IIndexFileLocation ifl = it.next();
+				LocationTask locTask = map.find(ifl);
+				if (locTask == null || locTask.isCompleted()) {
+					it.remove();
+				} else if (locTask.fKind == UpdateKind.REQUIRED_SOURCE) {
+					if (hasUrgentTasks())
+						return false;
+					final Object tu = locTask.fTu;
+					wave.add(new ParsedSource(tu, ifl, getLanguage(tu, linkageID), getScannerInfo(linkageID, tu)));
+					if (wave.size() == waveSize) {
+						parseWave(linkageID, map, wave, executor, providers, progress);
+						wave.clear();
+					}
+				}
+			}
+			if (!wave.isEmpty()) {
+				parseWave(linkageID, map, wave, executor, providers, progress);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		return true;
+	}
+
+	private void parseWave(int linkageID, LinkageTask map, List<ParsedSource> wave, ExecutorService executor,
+			InternalFileContentProvider[] providers, SubMonitor progress) throws CoreException, InterruptedException {
+		// The parser threads report cancellation, only.
+		final IProgressMonitor cancelMonitor = new NullProgressMonitor() {
+			@Override
+			public boolean isCanceled() {
+				return progress.isCanceled();
+			}
+		};
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicInteger parsing = new AtomicInteger();
+		final List<Future<?>> futures = new ArrayList<>(providers.length);
+		for (int t = 0; t < providers.length; t++) {
+			final InternalFileContentProvider provider = providers[t];
+			final int first = t;
+			futures.add(executor.submit(() -> {
+				if (isReproducible()) {
+					// The sources are assigned to the threads statically, such that the state of the
+					// file content providers does not depend on the timing of the threads.
+					for (int i = first; i < wave.size(); i += providers.length) {
+						parseSource(linkageID, wave.get(i), provider, cancelMonitor);
+					}
+				} else {
+					for (int i; (i = next.getAndIncrement()) < wave.size();) {
+						final ParsedSource source = wave.get(i);
+						if (parsing.get() > 0 && isAboveMemoryCeiling()) {
+							// Another thread is parsing, leave the source to the thread of the task.
+							source.fDeferred = true;
+							continue;
+						}
+						parsing.incrementAndGet();
+						try {
+							parseSource(linkageID, source, provider, cancelMonitor);
+						} finally {
+							parsing.decrementAndGet();
+						}
+					}
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				// Errors are recorded by parseSource(), this is unexpected.
+				throw new CoreException(createStatus(e.getCause().getMessage(), e.getCause()));
+			}
+		}
+		for (ParsedSource source : wave) {
+			if (source.fDeferred) {
+				parseDeferredSource(map, source, progress.split(1));
+			} else {
+				writeSource(linkageID, map, source, progress.split(1));
+			}
+			// The AST of the source is no longer needed, release it before the next one is written.
+			source.release();
+		}
+	}
+
+	/**
+	 * Parses a source that has been left to the thread of the task because of the memory ceiling.
+	 */
+	private void parseDeferredSource(LinkageTask map, ParsedSource source, IProgressMonitor monitor)
+			throws CoreException, InterruptedException {
+		LocationTask locTask = map.find(source.fLocation);
+		if (locTask == null || locTask.isCompleted())
+			return;
+		fStatistics.fDeferredSourcesCount++;
+		parseFile(source.fTu, source.fLanguage, source.fLocation, source.fScannerInfo, null, monitor);
+	}
+
+	/**
+	 * Parses a source and resolves its names, called by the parser threads. The index is not modified.
+	 */
+	private void parseSource(int linkageID, ParsedSource source, InternalFileContentProvider provider,
+			IProgressMonitor monitor) {
+		try {
+			if (fShowActivity) {
+				trace("Indexer: parsing " + getLabel(source.fLocation).toOSString()); //$NON-NLS-1$
+			}
+			FileContent codeReader = fResolver.getCodeReader(source.fTu);
+			long start = System.currentTimeMillis();
+			IASTTranslationUnit ast = createAST(provider, source.fLanguage, codeReader, source.fScannerInfo,
+					fASTOptions, null, monitor);
+			source.fParsingTime = System.currentTimeMillis() - start;
+			if (ast != null) {
+				addToProfile(source.fLocation, ast);
+				source.fAST = ast;
+				source.fFileKeys = getOrderedFileKeys(linkageID, ast, codeReader, null);
+				source.fData = new PDOMWriter.Data(ast, source.fFileKeys, fIndex);
+				source.fStorageLinkageID = process(ast, source.fData);
+				if (source.fStorageLinkageID != ILinkage.NO_LINKAGE_ID) {
+					source.fData.fReplacementHeaders = extractReplacementHeaders(ast.getComments(), monitor);
+					resolveSymbols(source.fData, monitor);
+				}
+			}
+		} catch (Throwable e) {
+			source.fError = e;
+		}
+	}
+
+	/**
+	 * Writes a source parsed by a parser thread to the index, the counterpart of
+	 * {@link #parseFile(Object, AbstractLanguage, IIndexFileLocation, IScannerInfo, FileContext, IProgressMonitor)}.
+	 */
+	private void writeSource(int linkageID, LinkageTask map, ParsedSource source, IProgressMonitor monitor)
+			throws CoreException, InterruptedException {
+		SubMonitor progress = SubMonitor.convert(monitor, 11);
+		LocationTask locTask = map.find(source.fLocation);
+		if (locTask == null || locTask.isCompleted()) {
+			// The source has been written for an earlier source of the wave.
+			return;
+		}
+		boolean resultCacheCleared = false;
+		IPath path = getLabel(source.fLocation);
+		Throwable th = source.fError;
+		fStatistics.fParsingTime += source.fParsingTime;
+		if (th == null) {
+			try {
+				progress.subTask(getMessage(MessageKind.parsingFileTask, path.lastSegment(),
+						path.removeLastSegments(1).toString()));
+				if (source.fAST == null) {
+					++fStatistics.fTooManyTokensCount;
+				} else {
+					writeParsedSource(linkageID, source, progress.split(10));
+					resultCacheCleared = true; // The cache was cleared while writing to the index.
+				}
+				if (fShowActivity) {
+					trace("Indexer: processed " + path.toOSString()); //$NON-NLS-1$
+				}
+			} catch (OperationCanceledException e) {
+			} catch (RuntimeException | StackOverflowError | CoreException | AssertionError | OutOfMemoryError e) {
+				th = e;
+			}
+		} else if (source.fFileKeys != null) {
+			// Avoid parsing files again, that caused an exception to be thrown.
+			withdrawRequests(linkageID, source.fFileKeys);
+		}
+		if (th instanceof RuntimeException && th.getCause() instanceof DependsOnOutdatedFileException) {
+			++fStatistics.fDependsOnOutdatedFileCount;
+			th = null;
+		} else if (th instanceof OperationCanceledException) {
+			th = null;
+		} else if (th instanceof OutOfMemoryError) {
+			if (--fSwallowOutOfMemoryError < 0)
+				throw (OutOfMemoryError) th;
+		} else if (th instanceof Error && !(th instanceof StackOverflowError || th instanceof AssertionError)) {
+			throw (Error) th;
+		}
+		if (th != null) {
+			swallowError(path, th);
+		}
+
+		if (!resultCacheCleared) {
+			fIndex.acquireWriteLock(progress.split(1));
+			try {
+				fIndex.clearResultCache();
+			} finally {
+				fIndex.releaseWriteLock();
+			}
+		}
+	}
+
+	private void writeParsedSource(int linkageID, ParsedSource source, IProgressMonitor monitor)
+			throws CoreException, InterruptedException {
+		SubMonitor progress = SubMonitor.convert(monitor, 2);
+		// Headers written for an earlier source of the wave are skipped, as they would have been
+		// taken from the index with sequential parsing.
+		final FileInAST[] fileKeys = source.fFileKeys;
+		final List<FileInAST> selectedFiles = new ArrayList<>(fileKeys.length);
+		for (int i = 0; i < fileKeys.length; i++) {
+			final FileContentKey key = fileKeys[i].fileContentKey;
+			if (fileKeys[i].includeStatement != null
+					&& selectIndexFile(linkageID, key.getLocation(), key.getSignificantMacros()) != null) {
+				fileKeys[i] = null;
+			} else {
+				selectedFiles.add(fileKeys[i]);
+			}
+		}
+		final FileInAST[] selectedKeys = selectedFiles.toArray(new FileInAST[selectedFiles.size()]);
+		try {
+			if (source.fStorageLinkageID != ILinkage.NO_LINKAGE_ID) {
+				storeSymbols(source.fData, source.fStorageLinkageID, null, progress.split(1));
+				updateTasks(source.fAST.getComments(), selectedKeys);
+			}
+			processAST(source.fAST, selectedKeys, null, progress);
+		} catch (CoreException | RuntimeException | Error e) {
+			// Avoid parsing files again, that caused an exception to be thrown.
+			withdrawRequests(linkageID, selectedKeys);
+			throw e;
+		}
+	}
+
 	private void parseVersionInContext(int linkageID, LinkageTask map, IIndexFileLocation ifl,
 			final FileVersionTask versionTask, Object tu, LinkedHashSet<IIndexFile> safeGuard, IProgressMonitor monitor)
 			throws CoreException, InterruptedException {
@@ -1087,6 +1671,12 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 			IScannerInfo scanInfo, FileContext ctx, IProgressMonitor monitor)
 			throws CoreException, InterruptedException {
 		SubMonitor progress = SubMonitor.convert(monitor, 21);
+		if (isAboveMemoryCeiling()) {
+			// The AST of the previous file has been released, the caches are what is left over.
+			fIndexContentCache.clear();
+			fIndexFilesCache.clear();
+			fStatistics.fCachesDroppedCount++;
+		}
 		boolean resultCacheCleared = false;
 		IPath path = getLabel(ifl);
 		Throwable th = null;
@@ -1104,6 +1694,7 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 			if (ast == null) {
 				++fStatistics.fTooManyTokensCount;
 			} else {
+				addToProfile(ifl, ast);
 				writeToIndex(lang.getLinkageID(), ast, codeReader, ctx, progress.split(10));
 				resultCacheCleared = true; // The cache was cleared while writing to the index.
 			}
@@ -1114,8 +1705,10 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 		} catch (OperationCanceledException e) {
 		} catch (RuntimeException e) {
 			final Throwable cause = e.getCause();
-			if (cause instanceof DependsOnOutdatedFileException)
+			if (cause instanceof DependsOnOutdatedFileException) {
+				++fStatistics.fDependsOnOutdatedFileCount;
 				return (DependsOnOutdatedFileException) cause;
+			}
 			th = e;
 		} catch (StackOverflowError | CoreException | AssertionError e) {
 			th = e;
@@ -1208,8 +1801,30 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 		return e;
 	}
 
+	/**
+	 * Adds the times the parser spent on a translation unit to the profile, if there is one.
+	 */
+	private void addToProfile(IIndexFileLocation ifl, IASTTranslationUnit ast) {
+		final IndexerProfile profile = getProfile();
+		if (profile != null && ast instanceof ASTTranslationUnit) {
+			final ASTTranslationUnit astTU = (ASTTranslationUnit) ast;
+			final LocationMap locationMap = ast.getAdapter(LocationMap.class);
+			profile.addParsedFile(getProfilePath(ifl), locationMap == null ? 0 : locationMap.getPreprocessingTime(),
+					astTU.getParsingTime(), astTU.getAmbiguityResolutionTime());
+		}
+	}
+
 	private final IASTTranslationUnit createAST(AbstractLanguage language, FileContent codeReader,
 			IScannerInfo scanInfo, int options, FileContext ctx, IProgressMonitor monitor) throws CoreException {
+		if (fCodeReaderFactory == null) {
+			fCodeReaderFactory = createFileContentProvider(language.getLinkageID());
+		}
+		return createAST(fCodeReaderFactory, language, codeReader, scanInfo, options, ctx, monitor);
+	}
+
+	private final IASTTranslationUnit createAST(InternalFileContentProvider fileContentProvider,
+			AbstractLanguage language, FileContent codeReader, IScannerInfo scanInfo, int options, FileContext ctx,
+			IProgressMonitor monitor) throws CoreException {
 		if (codeReader == null) {
 			return null;
 		}
@@ -1220,28 +1835,13 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 			}
 			return null;
 		}
-		final IIndexFile[] ctx2header = ctx == null ? null : new IIndexFile[] { ctx.fContext, ctx.fOldFile };
-		if (fCodeReaderFactory == null) {
-			InternalFileContentProvider fileContentProvider = createInternalFileContentProvider();
-			if (fIsFastIndexer) {
-				IndexBasedFileContentProvider ibfcp = new IndexBasedFileContentProvider(fIndex, fResolver,
-						language.getLinkageID(), fileContentProvider, this);
-				ibfcp.setContextToHeaderGap(ctx2header);
-				ibfcp.setFileSizeLimit(fIncludedFileSizeLimit);
-				ibfcp.setHeadersToIndexAllVersions(fHeadersToIndexAllVersions);
-				ibfcp.setIndexAllHeaderVersions(fIndexAllHeaderVersions);
-				fCodeReaderFactory = ibfcp;
-			} else {
-				fCodeReaderFactory = fileContentProvider;
-			}
-			fCodeReaderFactory.setIncludeResolutionHeuristics(createIncludeHeuristics());
-		} else if (fIsFastIndexer) {
-			final IndexBasedFileContentProvider ibfcp = (IndexBasedFileContentProvider) fCodeReaderFactory;
-			ibfcp.setContextToHeaderGap(ctx2header);
+		if (fIsFastIndexer) {
+			final IndexBasedFileContentProvider ibfcp = (IndexBasedFileContentProvider) fileContentProvider;
+			ibfcp.setContextToHeaderGap(ctx == null ? null : new IIndexFile[] { ctx.fContext, ctx.fOldFile });
 			ibfcp.setLinkage(language.getLinkageID());
 		}
 
-		IASTTranslationUnit ast = language.getASTTranslationUnit(codeReader, scanInfo, fCodeReaderFactory, fIndex,
+		IASTTranslationUnit ast = language.getASTTranslationUnit(codeReader, scanInfo, fileContentProvider, fIndex,
 				options, getLogService());
 		if (monitor.isCanceled()) {
 			throw new OperationCanceledException();
@@ -1249,6 +1849,20 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 		return ast;
 	}
 
+	private InternalFileContentProvider createFileContentProvider(int linkageID) {
+		InternalFileContentProvider fileContentProvider = createInternalFileContentProvider();
+		if (fIsFastIndexer) {
+			IndexBasedFileContentProvider ibfcp = new IndexBasedFileContentProvider(fIndex, fResolver, linkageID,
+					fileContentProvider, this);
+			ibfcp.setFileSizeLimit(fIncludedFileSizeLimit);
+			ibfcp.setHeadersToIndexAllVersions(fHeadersToIndexAllVersions);
+			ibfcp.setIndexAllHeaderVersions(fIndexAllHeaderVersions);
+			fileContentProvider = ibfcp;
+		}
+		fileContentProvider.setIncludeResolutionHeuristics(createIncludeHeuristics());
+		return fileContentProvider;
+	}
+
 	private InternalFileContentProvider createInternalFileContentProvider() {
 		final IncludeFileContentProvider fileContentProvider = createReaderFactory();
 		if (fileContentProvider instanceof InternalFileContentProvider)
@@ -1260,6 +1874,34 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 	private void writeToIndex(final int linkageID, IASTTranslationUnit ast, FileContent codeReader, FileContext ctx,
 			IProgressMonitor monitor) throws CoreException, InterruptedException {
 		SubMonitor progress = SubMonitor.convert(monitor, 3);
+		FileInAST[] fileKeys = getOrderedFileKeys(linkageID, ast, codeReader, ctx);
+		try {
+			// The default processing is handled by the indexer task.
+			PDOMWriter.Data data = new PDOMWriter.Data(ast, fileKeys, fIndex);
+			int storageLinkageID = process(ast, data);
+			if (storageLinkageID != ILinkage.NO_LINKAGE_ID) {
+				IASTComment[] comments = ast.getComments();
+				data.fReplacementHeaders = extractReplacementHeaders(comments, progress.split(1));
+
+				addSymbols(data, storageLinkageID, ctx, progress.split(1));
+
+				updateTasks(comments, data.fSelectedFiles);
+			}
+
+			processAST(ast, fileKeys, ctx, progress);
+		} catch (CoreException | RuntimeException | Error e) {
+			// Avoid parsing files again, that caused an exception to be thrown.
+			withdrawRequests(linkageID, fileKeys);
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the files of the AST that need to be stored in the index, in the order they
+	 * have to be stored.
+	 */
+	private FileInAST[] getOrderedFileKeys(final int linkageID, IASTTranslationUnit ast, FileContent codeReader,
+			FileContext ctx) throws CoreException {
 		HashSet<FileContentKey> enteredFiles = new HashSet<>();
 		ArrayList<FileInAST> orderedFileKeys = new ArrayList<>();
 
@@ -1270,8 +1912,13 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 		enteredFiles.add(topKey);
 		IDependencyTree tree = ast.getDependencyTree();
 		IASTInclusionNode[] inclusions = tree.getInclusions();
+		int[] headerCounts = new int[2];
 		for (IASTInclusionNode inclusion : inclusions) {
-			collectOrderedFileKeys(linkageID, inclusion, enteredFiles, orderedFileKeys);
+			collectOrderedFileKeys(linkageID, inclusion, enteredFiles, orderedFileKeys, headerCounts);
+		}
+		synchronized (fStatistics) {
+			fStatistics.fHeadersParsedCount += headerCounts[0];
+			fStatistics.fHeadersReusedCount += headerCounts[1];
 		}
 
 		IIndexFragmentFile newFile = selectIndexFile(linkageID, topIfl, significantMacros);
@@ -1283,53 +1930,57 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 			orderedFileKeys.add(new FileInAST(topKey, codeReader));
 		}
 
-		FileInAST[] fileKeys = orderedFileKeys.toArray(new FileInAST[orderedFileKeys.size()]);
-		try {
-			// The default processing is handled by the indexer task.
-			PDOMWriter.Data data = new PDOMWriter.Data(ast, fileKeys, fIndex);
-			int storageLinkageID = process(ast, data);
-			if (storageLinkageID != ILinkage.NO_LINKAGE_ID) {
-				IASTComment[] comments = ast.getComments();
-				data.fReplacementHeaders = extractReplacementHeaders(comments, progress.split(1));
-
-				addSymbols(data, storageLinkageID, ctx, progress.split(1));
+		return orderedFileKeys.toArray(new FileInAST[orderedFileKeys.size()]);
+	}
 
-				// Update task markers.
-				if (fTodoTaskUpdater != null) {
-					Set<IIndexFileLocation> locations = new HashSet<>();
-					for (FileInAST file : data.fSelectedFiles) {
-						locations.add(file.fileContentKey.getLocation());
-					}
-					fTodoTaskUpdater.updateTasks(comments, locations.toArray(new IIndexFileLocation[locations.size()]));
+	/**
+	 * Updates the task markers of the given files, entries that are <code>null</code> are skipped.
+	 */
+	private void updateTasks(IASTComment[] comments, FileInAST[] files) {
+		if (fTodoTaskUpdater != null) {
+			Set<IIndexFileLocation> locations = new HashSet<>();
+			for (FileInAST file : files) {
+				if (file != null) {
+					locations.add(file.fileContentKey.getLocation());
 				}
 			}
+			fTodoTaskUpdater.updateTasks(comments, locations.toArray(new IIndexFileLocation[locations.size()]));
+		}
+	}
 
-			// Contributed processors now have an opportunity to examine the AST.
-			List<IPDOMASTProcessor> processors = PDOMASTProcessorManager.getProcessors(ast);
-			progress.setWorkRemaining(processors.size());
-			for (IPDOMASTProcessor processor : processors) {
-				data = new PDOMWriter.Data(ast, fileKeys, fIndex);
-				storageLinkageID = processor.process(ast, data);
-				if (storageLinkageID != ILinkage.NO_LINKAGE_ID)
-					addSymbols(data, storageLinkageID, ctx, progress.split(1));
-			}
-		} catch (CoreException | RuntimeException | Error e) {
-			// Avoid parsing files again, that caused an exception to be thrown.
-			withdrawRequests(linkageID, fileKeys);
-			throw e;
+	/**
+	 * Gives the contributed processors an opportunity to examine the AST.
+	 */
+	private void processAST(IASTTranslationUnit ast, FileInAST[] fileKeys, FileContext ctx, SubMonitor progress)
+			throws CoreException, InterruptedException {
+		List<IPDOMASTProcessor> processors = PDOMASTProcessorManager.getProcessors(ast);
+		progress.setWorkRemaining(processors.size());
+		for (IPDOMASTProcessor processor : processors) {
+			PDOMWriter.Data data = new PDOMWriter.Data(ast, fileKeys, fIndex);
+			int storageLinkageID = processor.process(ast, data);
+			if (storageLinkageID != ILinkage.NO_LINKAGE_ID)
+				addSymbols(data, storageLinkageID, ctx, progress.split(1));
 		}
 	}
 
+	/**
+	 * @param headerCounts counts the parsed headers and the headers taken from the index.
+	 */
 	private void collectOrderedFileKeys(final int linkageID, IASTInclusionNode inclusion,
-			Set<FileContentKey> enteredFiles, List<FileInAST> orderedFileKeys) throws CoreException {
+			Set<FileContentKey> enteredFiles, List<FileInAST> orderedFileKeys, int[] headerCounts)
+			throws CoreException {
 		final IASTPreprocessorIncludeStatement include = inclusion.getIncludeDirective();
+		if (include.getImportedIndexFile() != null) {
+			headerCounts[1]++;
+		}
 		if (include.createsAST()) {
+			headerCounts[0]++;
 			final IIndexFileLocation ifl = fResolver.resolveASTPath(include.getPath());
 			FileContentKey fileKey = new FileContentKey(linkageID, ifl, include.getSignificantMacros());
 			final boolean isFirstEntry = enteredFiles.add(fileKey);
 			IASTInclusionNode[] nested = inclusion.getNestedInclusions();
 			for (IASTInclusionNode element : nested) {
-				collectOrderedFileKeys(linkageID, element, enteredFiles, orderedFileKeys);
+				collectOrderedFileKeys(linkageID, element, enteredFiles, orderedFileKeys, headerCounts);
 			}
 			if (isFirstEntry && selectIndexFile(linkageID, ifl, include.getSignificantMacros()) == null) {
 				orderedFileKeys.add(new FileInAST(include, fileKey));
@@ -1498,6 +2149,30 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 		return null;
 	}
 
+	/**
+	 * Returns the include guard stored in the index for a file, or {@code null} if the file has none
+	 * or if a version of it is outdated and will be parsed again.
+	 */
+	public char[] getIncludeGuard(int linkageID, IIndexFileLocation ifl) throws CoreException {
+		LinkageTask map = findRequestMap(linkageID);
+		if (map != null) {
+			LocationTask request = map.find(ifl);
+			if (request != null) {
+				for (FileVersionTask fileVersion : request.fVersionTasks) {
+					if (fileVersion.fOutdated)
+						return null;
+				}
+			}
+		}
+
+		for (IIndexFragmentFile indexFile : getAvailableIndexFiles(linkageID, ifl)) {
+			char[] guard = indexFile.getIncludeGuard();
+			if (guard != null)
+				return guard;
+		}
+		return null;
+	}
+
 	public IIndexFragmentFile[] getAvailableIndexFiles(int linkageID, IIndexFileLocation ifl) throws CoreException {
 		IIndexFragmentFile[] files = fIndexFilesCache.get(ifl);
 		if (files == null) {
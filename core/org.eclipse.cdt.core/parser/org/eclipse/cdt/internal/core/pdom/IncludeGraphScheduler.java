@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Eclipse CDT contributors and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.pdom;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.eclipse.cdt.core.index.IIndexFileLocation;
+import org.eclipse.cdt.core.index.IIndexInclude;
+import org.eclipse.cdt.internal.core.index.IIndexFragmentFile;
+import org.eclipse.cdt.internal.core.index.IIndexFragmentInclude;
+import org.eclipse.cdt.internal.core.index.IWritableIndex;
+import org.eclipse.core.runtime.CoreException;
+
+/**
+ * Orders the sources to be parsed by the include graph stored in the index. An outdated header
+ * is parsed with the first source including it, the sources parsed afterwards take it from the
+ * index. The sources including the outdated headers with the most includers are parsed first,
+ * such that these headers are parsed once in a single context and reused by the other sources.
+ * Sources that are not in the index or don't include outdated headers keep their order and are
+ * parsed last.
+ */
+final class IncludeGraphScheduler {
+	interface IOutdatedFilter {
+		/**
+		 * Returns whether the given version of a header is going to be updated.
+		 */
+		boolean isOutdated(IIndexFragmentFile file) throws CoreException;
+	}
+
+	private static class Candidate {
+		final IIndexFileLocation fLocation;
+		final Set<IIndexFragmentFile> fHeaders;
+		final int fIndex;
+		long fScore;
+
+		Candidate(IIndexFileLocation location, Set<IIndexFragmentFile> headers, int index) {
+			fLocation = location;
+			fHeaders = headers;
+			fIndex = index;
+		}
+	}
+
+	private final IWritableIndex fIndex;
+	private final IOutdatedFilter fFilter;
+	// The outdated headers included by a file of the index, directly or indirectly.
+	private final Map<IIndexFragmentFile, Set<IIndexFragmentFile>> fOutdatedHeaders = new HashMap<>();
+	private int fScheduledCount;
+
+	IncludeGraphScheduler(IWritableIndex index, IOutdatedFilter filter) {
+		fIndex = index;
+		fFilter = filter;
+	}
+
+	/**
+	 * Returns the given sources in the order they should be parsed.
+	 */
+	List<IIndexFileLocation> schedule(int linkageID, List<IIndexFileLocation> sources) throws CoreException {
+		final List<Candidate> candidates = new ArrayList<>();
+		final List<IIndexFileLocation> unscheduled = new ArrayList<>();
+		final Map<IIndexFragmentFile, Integer> fanIn = new HashMap<>();
+		for (IIndexFileLocation ifl : sources) {
+			final IIndexFragmentFile file = findFile(linkageID, ifl);
+			final Set<IIndexFragmentFile> headers = file == null ? Collections.emptySet()
+					: getOutdatedHeaders(file, new HashSet<>());
+			if (headers.isEmpty()) {
+				unscheduled.add(ifl);
+			} else {
+				for (IIndexFragmentFile header : headers) {
+					fanIn.merge(header, 1, Integer::sum);
+				}
+				candidates.add(new Candidate(ifl, headers, candidates.size()));
+			}
+		}
+		if (candidates.isEmpty())
+			return sources;
+
+		// Greedy selection of the source covering the most includers of not yet parsed headers. The
+		// scores only decrease, a candidate is re-evaluated when it is taken from the queue.
+		final Set<IIndexFragmentFile> covered = new HashSet<>();
+		final PriorityQueue<Candidate> queue = new PriorityQueue<>(candidates.size(), (c1, c2) -> {
+			int cmp = Long.compare(c2.fScore, c1.fScore);
+			return cmp != 0 ? cmp : Integer.compare(c1.fIndex, c2.fIndex);
+		});
+		for (Candidate candidate : candidates) {
+			candidate.fScore = getScore(candidate, fanIn, covered);
+			queue.add(candidate);
+		}
+		final List<IIndexFileLocation> result = new ArrayList<>(sources.size());
+		while (!queue.isEmpty()) {
+			final Candidate candidate = queue.poll();
+			final long score = getScore(candidate, fanIn, covered);
+			if (score < candidate.fScore && !queue.isEmpty() && score < queue.peek().fScore) {
+				candidate.fScore = score;
+				queue.add(candidate);
+			} else {
+				result.add(candidate.fLocation);
+				covered.addAll(candidate.fHeaders);
+			}
+		}
+		result.addAll(unscheduled);
+		fScheduledCount += candidates.size();
+		return result;
+	}
+
+	/**
+	 * Returns the number of sources that have been ordered by the headers they include.
+	 */
+	int getScheduledCount() {
+		return fScheduledCount;
+	}
+
+	private static long getScore(Candidate candidate, Map<IIndexFragmentFile, Integer> fanIn,
+			Set<IIndexFragmentFile> covered) {
+		long score = 0;
+		for (IIndexFragmentFile header : candidate.fHeaders) {
+			if (!covered.contains(header)) {
+				score += fanIn.get(header);
+			}
+		}
+		return score;
+	}
+
+	private IIndexFragmentFile findFile(int linkageID, IIndexFileLocation ifl) throws CoreException {
+		for (IIndexFragmentFile file : fIndex.getWritableFiles(linkageID, ifl)) {
+			if (file.hasContent())
+				return file;
+		}
+		return null;
+	}
+
+	private Set<IIndexFragmentFile> getOutdatedHeaders(IIndexFragmentFile file, Set<IIndexFragmentFile> visiting)
+			throws CoreException {
+		Set<IIndexFragmentFile> result = fOutdatedHeaders.get(file);
+		if (result != null)
+			return result;
+		if (!visiting.add(file))
+			return Collections.emptySet(); // Recursive inclusion.
+
+		result = new HashSet<>();
+		for (IIndexInclude include : file.getIncludes()) {
+			if (include instanceof IIndexFragmentInclude) {
+				final IIndexFragmentFile included = ((IIndexFragmentInclude) include).getIncludes();
+				if (included != null) {
+					if (fFilter.isOutdated(included)) {
+						result.add(included);
+					}
+					result.addAll(getOutdatedHeaders(included, visiting));
+				}
+			}
+		}
+		visiting.remove(file);
+		if (result.isEmpty()) {
+			result = Collections.emptySet();
+		}
+		fOutdatedHeaders.put(file, result);
+		return result;
+	}
+}
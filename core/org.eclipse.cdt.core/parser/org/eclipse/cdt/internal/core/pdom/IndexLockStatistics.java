@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Eclipse CDT contributors and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.pdom;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records how long the callers of the read-write lock of a PDOM waited for and held the lock.
+ * Callers are identified by the name of their thread.
+ * <p>
+ * Read locks that are acquired without waiting are only counted, such that the statistics do not
+ * slow down the common case. Read locks are not owned by a thread, therefore the time they are
+ * held is not recorded.
+ */
+public final class IndexLockStatistics {
+	/**
+	 * Lock times of a single caller.
+	 */
+	public static final class CallerStatistics {
+		private final String fCaller;
+		private long fBlockedReads;
+		private long fReadWaitNanos;
+		private long fMaxReadWaitNanos;
+		private long fWrites;
+		private long fWriteWaitNanos;
+		private long fMaxWriteWaitNanos;
+		private long fWriteHoldNanos;
+		private long fMaxWriteHoldNanos;
+
+		CallerStatistics(String caller) {
+			fCaller = caller;
+		}
+
+		public String getCaller() {
+			return fCaller;
+		}
+
+		/**
+		 * Returns the number of read locks the caller had to wait for.
+		 */
+		public synchronized long getBlockedReadCount() {
+			return fBlockedReads;
+		}
+
+		public synchronized long getReadWaitNanos() {
+			return fReadWaitNanos;
+		}
+
+		public synchronized long getMaxReadWaitNanos() {
+			return fMaxReadWaitNanos;
+		}
+
+		public synchronized long getWriteCount() {
+			return fWrites;
+		}
+
+		public synchronized long getWriteWaitNanos() {
+			return fWriteWaitNanos;
+		}
+
+		public synchronized long getMaxWriteWaitNanos() {
+			return fMaxWriteWaitNanos;
+		}
+
+		public synchronized long getWriteHoldNanos() {
+			return fWriteHoldNanos;
+		}
+
+		public synchronized long getMaxWriteHoldNanos() {
+			return fMaxWriteHoldNanos;
+		}
+
+		synchronized void addReadWait(long nanos) {
+			fBlockedReads++;
+			fReadWaitNanos += nanos;
+			fMaxReadWaitNanos = Math.max(fMaxReadWaitNanos, nanos);
+		}
+
+		synchronized void addWriteWait(long nanos) {
+			fWrites++;
+			fWriteWaitNanos += nanos;
+			fMaxWriteWaitNanos = Math.max(fMaxWriteWaitNanos, nanos);
+		}
+
+		synchronized void addWriteHold(long nanos) {
+			fWriteHoldNanos += nanos;
+			fMaxWriteHoldNanos = Math.max(fMaxWriteHoldNanos, nanos);
+		}
+
+		@Override
+		@SuppressWarnings("nls")
+		public synchronized String toString() {
+			return fCaller + ": " + fBlockedReads + " blocked reads (" + millis(fReadWaitNanos) + " ms wait, max "
+					+ millis(fMaxReadWaitNanos) + " ms), " + fWrites + " writes (" + millis(fWriteWaitNanos)
+					+ " ms wait, max " + millis(fMaxWriteWaitNanos) + " ms; " + millis(fWriteHoldNanos)
+					+ " ms held, max " + millis(fMaxWriteHoldNanos) + " ms)";
+		}
+	}
+
+	private final LongAdder fReadLocks = new LongAdder();
+	private final Map<String, CallerStatistics> fCallers = new ConcurrentHashMap<>();
+
+	void readLockAcquired() {
+		fReadLocks.increment();
+	}
+
+	void readLockAcquiredAfterWait(long waitNanos) {
+		fReadLocks.increment();
+		getCaller().addReadWait(waitNanos);
+	}
+
+	void writeLockAcquired(long waitNanos) {
+		getCaller().addWriteWait(waitNanos);
+	}
+
+	void writeLockReleased(long holdNanos) {
+		getCaller().addWriteHold(holdNanos);
+	}
+
+	private CallerStatistics getCaller() {
+		return fCallers.computeIfAbsent(Thread.currentThread().getName(), CallerStatistics::new);
+	}
+
+	/**
+	 * Returns the total number of read locks acquired.
+	 */
+	public long getReadLockCount() {
+		return fReadLocks.sum();
+	}
+
+	/**
+	 * Returns the statistics of the callers that waited for a read lock or acquired the write lock,
+	 * the callers that waited the longest come first.
+	 */
+	public List<CallerStatistics> getCallerStatistics() {
+		List<CallerStatistics> result = new ArrayList<>(fCallers.values());
+		result.sort(Comparator.comparingLong(
+				(CallerStatistics s) -> s.getReadWaitNanos() + s.getWriteWaitNanos()).reversed());
+		return result;
+	}
+
+	public void reset() {
+		fReadLocks.reset();
+		fCallers.clear();
+	}
+
+	private static long millis(long nanos) {
+		return nanos / 1000000;
+	}
+}
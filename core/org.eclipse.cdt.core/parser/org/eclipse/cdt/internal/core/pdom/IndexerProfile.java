@@ -0,0 +1,287 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Eclipse CDT contributors and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.pdom;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.eclipse.cdt.internal.core.parser.scanner.CPreprocessor;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * Timings of the phases of indexing for the individual files. The phases that process a translation
+ * unit as a whole are accounted to the file that was parsed, the phases that process the files of
+ * a translation unit separately are accounted to the headers as well.
+ * <p>
+ * Once a profile has been created, the preprocessors measure their time. The profile is thread-safe,
+ * it may be shared by the parser threads of an indexer task.
+ */
+public class IndexerProfile {
+	/**
+	 * System property naming the directory an indexer task of the IDE writes its profile to.
+	 */
+	public static final String PROPERTY_DIRECTORY = "org.eclipse.cdt.core.indexer.profile"; //$NON-NLS-1$
+	public static final int DEFAULT_SLOWEST_FILES = 20;
+
+	public enum Phase {
+		PREPROCESSING, PARSING, AMBIGUITY_RESOLUTION, NAME_RESOLUTION, INDEX_WRITE, LOCK_WAIT;
+
+		String getKey() {
+			StringBuilder buf = new StringBuilder();
+			for (String part : name().toLowerCase().split("_")) { //$NON-NLS-1$
+				buf.append(buf.length() == 0 ? part : Character.toUpperCase(part.charAt(0)) + part.substring(1));
+			}
+			return buf.toString();
+		}
+	}
+
+	/**
+	 * The timings of one file.
+	 */
+	public static class FileProfile {
+		private final String fPath;
+		private final long[] fNanos = new long[Phase.values().length];
+		private boolean fParsed;
+		private long fBytesWritten;
+
+		FileProfile(String path) {
+			fPath = path;
+		}
+
+		public String getPath() {
+			return fPath;
+		}
+
+		/**
+		 * Returns whether the file was parsed as a translation unit, rather than as a header of
+		 * a translation unit.
+		 */
+		public boolean isParsed() {
+			return fParsed;
+		}
+
+		/**
+		 * Returns the time spent in a phase in milliseconds.
+		 */
+		public double getTime(Phase phase) {
+			return fNanos[phase.ordinal()] / 1000000.0;
+		}
+
+		/**
+		 * Returns the time spent in all phases in milliseconds.
+		 */
+		public double getTotalTime() {
+			long sum = 0;
+			for (long nanos : fNanos) {
+				sum += nanos;
+			}
+			return sum / 1000000.0;
+		}
+
+		/**
+		 * Returns the number of bytes allocated in the index for the file.
+		 */
+		public long getBytesWritten() {
+			return fBytesWritten;
+		}
+	}
+
+	private final Map<String, FileProfile> fFiles = new LinkedHashMap<>();
+
+	public IndexerProfile() {
+		CPreprocessor.setMeasureTime(true);
+	}
+
+	/**
+	 * Returns whether the indexer tasks of the IDE create profiles, see {@link #PROPERTY_DIRECTORY}.
+	 */
+	public static boolean isEnabled() {
+		return System.getProperty(PROPERTY_DIRECTORY) != null;
+	}
+
+	private FileProfile getFile(String path) {
+		FileProfile file = fFiles.get(path);
+		if (file == null) {
+			file = new FileProfile(path);
+			fFiles.put(path, file);
+		}
+		return file;
+	}
+
+	/**
+	 * Adds the times of the phases that process a translation unit as a whole.
+	 */
+	public synchronized void addParsedFile(String path, long preprocessingNanos, long parsingNanos,
+			long ambiguityResolutionNanos) {
+		final FileProfile file = getFile(path);
+		file.fParsed = true;
+		file.fNanos[Phase.PREPROCESSING.ordinal()] += preprocessingNanos;
+		file.fNanos[Phase.PARSING.ordinal()] += Math.max(0, parsingNanos - preprocessingNanos);
+		file.fNanos[Phase.AMBIGUITY_RESOLUTION.ordinal()] += ambiguityResolutionNanos;
+	}
+
+	/**
+	 * Adds time spent in a phase for a file.
+	 */
+	public synchronized void addTime(String path, Phase phase, long nanos) {
+		getFile(path).fNanos[phase.ordinal()] += nanos;
+	}
+
+	/**
+	 * Adds to the number of bytes allocated in the index for a file.
+	 */
+	public synchronized void addBytesWritten(String path, long bytes) {
+		getFile(path).fBytesWritten += bytes;
+	}
+
+	/**
+	 * Returns the profiles of all files, in the order they were first processed.
+	 */
+	public synchronized List<FileProfile> getFiles() {
+		return new ArrayList<>(fFiles.values());
+	}
+
+	/**
+	 * Returns the files with the longest total time, slowest first.
+	 */
+	public synchronized List<FileProfile> getSlowestFiles(int count) {
+		List<FileProfile> result = getFiles();
+		result.sort(Comparator.comparingDouble(FileProfile::getTotalTime).reversed());
+		return result.subList(0, Math.min(count, result.size()));
+	}
+
+	/**
+	 * Returns the time spent in a phase for all files in milliseconds.
+	 */
+	public synchronized double getTotalTime(Phase phase) {
+		long sum = 0;
+		for (FileProfile file : fFiles.values()) {
+			sum += file.fNanos[phase.ordinal()];
+		}
+		return sum / 1000000.0;
+	}
+
+	/**
+	 * Returns the number of bytes allocated in the index for all files.
+	 */
+	public synchronized long getTotalBytesWritten() {
+		long sum = 0;
+		for (FileProfile file : fFiles.values()) {
+			sum += file.fBytesWritten;
+		}
+		return sum;
+	}
+
+	/**
+	 * Writes the profile as a JSON object with the totals, the slowest files and all files.
+	 * Times are in milliseconds.
+	 */
+	public void writeJSON(Writer writer, int slowestFiles) throws IOException {
+		JsonObject root = new JsonObject();
+		JsonObject totals = new JsonObject();
+		for (Phase phase : Phase.values()) {
+			totals.addProperty(phase.getKey(), getTotalTime(phase));
+		}
+		totals.addProperty("bytesWritten", getTotalBytesWritten()); //$NON-NLS-1$
+		root.add("totals", totals); //$NON-NLS-1$
+		JsonArray slowest = new JsonArray();
+		for (FileProfile file : getSlowestFiles(slowestFiles)) {
+			slowest.add(file.getPath());
+		}
+		root.add("slowestFiles", slowest); //$NON-NLS-1$
+		JsonArray files = new JsonArray();
+		for (FileProfile file : getFiles()) {
+			JsonObject entry = new JsonObject();
+			entry.addProperty("path", file.getPath()); //$NON-NLS-1$
+			entry.addProperty("parsed", file.isParsed()); //$NON-NLS-1$
+			entry.addProperty("total", file.getTotalTime()); //$NON-NLS-1$
+			for (Phase phase : Phase.values()) {
+				entry.addProperty(phase.getKey(), file.getTime(phase));
+			}
+			entry.addProperty("bytesWritten", file.getBytesWritten()); //$NON-NLS-1$
+			files.add(entry);
+		}
+		root.add("files", files); //$NON-NLS-1$
+		new GsonBuilder().setPrettyPrinting().create().toJson(root, writer);
+		writer.flush();
+	}
+
+	/**
+	 * Writes the profile with one line per file, slowest first. Times are in milliseconds.
+	 */
+	public void writeCSV(Writer writer) throws IOException {
+		writer.write("path,parsed,total"); //$NON-NLS-1$
+		for (Phase phase : Phase.values()) {
+			writer.write(',');
+			writer.write(phase.getKey());
+		}
+		writer.write(",bytesWritten\n"); //$NON-NLS-1$
+		List<FileProfile> files = getFiles();
+		for (FileProfile file : getSlowestFiles(files.size())) {
+			writer.write(quoteCSV(file.getPath()));
+			writer.write(',');
+			writer.write(String.valueOf(file.isParsed()));
+			writer.write(',');
+			writer.write(formatTime(file.getTotalTime()));
+			for (Phase phase : Phase.values()) {
+				writer.write(',');
+				writer.write(formatTime(file.getTime(phase)));
+			}
+			writer.write(',');
+			writer.write(String.valueOf(file.getBytesWritten()));
+			writer.write('\n');
+		}
+		writer.flush();
+	}
+
+	private static String formatTime(double millis) {
+		return String.format(Locale.ROOT, "%.3f", millis); //$NON-NLS-1$
+	}
+
+	private static String quoteCSV(String value) {
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0)
+			return value;
+		return '"' + value.replace("\"", "\"\"") + '"'; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * Writes the profile to a JSON and a CSV file in the given directory, the names of the files
+	 * start with the given prefix and the current time.
+	 * @return the JSON file.
+	 */
+	public File writeToDirectory(File directory, String prefix) throws IOException {
+		directory.mkdirs();
+		String name = prefix + '-' + new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date()); //$NON-NLS-1$
+		File json = new File(directory, name + ".json"); //$NON-NLS-1$
+		try (Writer writer = Files.newBufferedWriter(json.toPath(), StandardCharsets.UTF_8)) {
+			writeJSON(writer, DEFAULT_SLOWEST_FILES);
+		}
+		try (Writer writer = Files.newBufferedWriter(new File(directory, name + ".csv").toPath(), //$NON-NLS-1$
+				StandardCharsets.UTF_8)) {
+			writeCSV(writer);
+		}
+		return json;
+	}
+}
@@ -26,4 +26,32 @@ public class IndexerStatistics {
 	public int fPreprocessorProblemCount = 0;
 	public int fSyntaxProblemsCount = 0;
 	public int fTooManyTokensCount = 0;
+	public int fHeadersParsedCount = 0;
+	public int fHeadersReusedCount = 0;
+	public int fDependsOnOutdatedFileCount = 0;
+	public int fScheduledSourcesCount = 0;
+	public int fDeferredSourcesCount = 0;
+	public int fCachesDroppedCount = 0;
+	public int fIndexedFilesCount = 0;
+	public long fIndexedBytesCount = 0;
+	public int fMacroExpansionCacheHits = 0;
+	public int fMacroExpansionCacheMisses = 0;
+
+	/**
+	 * Returns the fraction of the inclusions of headers that were satisfied from the index rather
+	 * than by parsing the header.
+	 */
+	public double getHeaderReuseRatio() {
+		final int total = fHeadersParsedCount + fHeadersReusedCount;
+		return total == 0 ? 0.0 : (double) fHeadersReusedCount / total;
+	}
+
+	/**
+	 * Returns the fraction of the lookups in the macro expansion caches of the preprocessors that
+	 * were successful.
+	 */
+	public double getMacroExpansionCacheHitRatio() {
+		final int total = fMacroExpansionCacheHits + fMacroExpansionCacheMisses;
+		return total == 0 ? 0.0 : (double) fMacroExpansionCacheHits / total;
+	}
 }
@@ -32,6 +32,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 import org.eclipse.cdt.core.CCorePlugin;
@@ -81,6 +82,7 @@ import org.eclipse.cdt.internal.core.pdom.db.DBProperties;
 import org.eclipse.cdt.internal.core.pdom.db.Database;
 import org.eclipse.cdt.internal.core.pdom.db.IBTreeComparator;
 import org.eclipse.cdt.internal.core.pdom.db.IBTreeVisitor;
+import org.eclipse.cdt.internal.core.pdom.db.PDOMStringTable;
 import org.eclipse.cdt.internal.core.pdom.dom.BindingCollector;
 import org.eclipse.cdt.internal.core.pdom.dom.CompoundRecordIterator;
 import org.eclipse.cdt.internal.core.pdom.dom.FindBinding;
@@ -311,10 +313,14 @@ public class PDOM extends PlatformObject implements IPDOM {
 	 *
 	 *  CDT 10.4 development
 	 *  220.0 - Changed marshalling of CPPBasicType to store new "from literal" flag, bug 573764
+	 *  221.0 - Chunk size recorded in the database header, compatible with version 220.
+	 *  222.0 - Key prefixes cached in the nodes of the B-trees for bindings and macros.
+	 *  223.0 - Names of bindings and macros interned in a string table.
+	 *  224.0 - Include guards of headers stored with the files.
 	 */
-	private static final int MIN_SUPPORTED_VERSION = version(220, 0);
-	private static final int MAX_SUPPORTED_VERSION = version(220, Short.MAX_VALUE);
-	private static final int DEFAULT_VERSION = version(220, 0);
+	private static final int MIN_SUPPORTED_VERSION = version(224, 0);
+	private static final int MAX_SUPPORTED_VERSION = version(224, Short.MAX_VALUE);
+	private static final int DEFAULT_VERSION = version(224, 0);
 
 	private static int version(int major, int minor) {
 		return (major << 16) + minor;
@@ -351,9 +357,10 @@ public class PDOM extends PlatformObject implements IPDOM {
 	public static final int INDEX_OF_FILES_WITH_UNRESOLVED_INCLUDES = Database.DATA_AREA + 12;
 	public static final int PROPERTIES = Database.DATA_AREA + 16;
 	public static final int TAG_INDEX = Database.DATA_AREA + 20;
-	public static final int END = Database.DATA_AREA + 24;
+	public static final int STRING_TABLE = Database.DATA_AREA + 24;
+	public static final int END = Database.DATA_AREA + 28;
 	static {
-		assert END <= Database.CHUNK_SIZE;
+		assert END <= Database.GENERATION_OFFSET;
 	}
 
 	public static class ChangeEvent {
@@ -413,6 +420,7 @@ public class PDOM extends PlatformObject implements IPDOM {
 	protected Database db;
 	private BTree fileIndex;
 	private PDOMTagIndex tagIndex;
+	private PDOMStringTable stringTable;
 	private BTree indexOfDefectiveFiles;
 	private BTree indexOfFiledWithUnresolvedIncludes;
 	private final Map<Integer, PDOMLinkage> fLinkageIDCache = new HashMap<>();
@@ -431,8 +439,16 @@ public class PDOM extends PlatformObject implements IPDOM {
 
 	public PDOM(File dbPath, IIndexLocationConverter locationConverter, ChunkCache cache,
 			Map<String, IPDOMLinkageFactory> linkageFactoryMappings) throws CoreException {
+		this(dbPath, locationConverter, cache, Database.getDefaultOptions(), linkageFactoryMappings);
+	}
+
+	/**
+	 * @param dbOptions options for the underlying {@link Database}, see <code>Database.OPTION_*</code>.
+	 */
+	public PDOM(File dbPath, IIndexLocationConverter locationConverter, ChunkCache cache, int dbOptions,
+			Map<String, IPDOMLinkageFactory> linkageFactoryMappings) throws CoreException {
 		fPDOMLinkageFactoryCache = linkageFactoryMappings;
-		loadDatabase(dbPath, cache);
+		loadDatabase(dbPath, cache, dbOptions);
 		this.locationConverter = locationConverter;
 		if (sDEBUG_LOCKS) {
 			fLockDebugging = new HashMap<>();
@@ -447,12 +463,12 @@ public class PDOM extends PlatformObject implements IPDOM {
 		return true;
 	}
 
-	private void loadDatabase(File dbPath, ChunkCache cache) throws CoreException {
+	private void loadDatabase(File dbPath, ChunkCache cache, int dbOptions) throws CoreException {
 		fPath = dbPath;
-		final boolean lockDB = db == null || lockCount != 0;
+		final boolean lockDB = db == null || lockState.get() != 0;
 
 		clearCaches();
-		db = new Database(fPath, cache, getDefaultVersion(), isPermanentlyReadOnly());
+		db = new Database(fPath, cache, getDefaultVersion(), isPermanentlyReadOnly(), dbOptions);
 
 		db.setLocked(lockDB);
 		try {
@@ -460,7 +476,7 @@ public class PDOM extends PlatformObject implements IPDOM {
 				readLinkages();
 			}
 		} finally {
-			db.setLocked(lockCount != 0);
+			db.setLocked(lockState.get() != 0);
 		}
 	}
 
@@ -552,6 +568,16 @@ public class PDOM extends PlatformObject implements IPDOM {
 		return tagIndex;
 	}
 
+	/**
+	 * Returns the table of interned strings, used for the names of bindings and macros.
+	 */
+	public PDOMStringTable getStringTable() {
+		if (stringTable == null) {
+			stringTable = new PDOMStringTable(db, STRING_TABLE);
+		}
+		return stringTable;
+	}
+
 	/**
 	 * Returns the index of files that were read with I/O errors.
 	 */
@@ -660,7 +686,7 @@ public class PDOM extends PlatformObject implements IPDOM {
 	}
 
 	protected void clear() throws CoreException {
-		assert lockCount < 0; // needs write-lock.
+		assert lockState.get() == WRITE_LOCKED; // needs write-lock.
 
 		// Clear out the database, everything is set to zero.
 		int vers = getDefaultVersion();
@@ -670,7 +696,7 @@ public class PDOM extends PlatformObject implements IPDOM {
 	}
 
 	void reloadFromFile(File file) throws CoreException {
-		assert lockCount < 0; // must have write lock.
+		assert lockState.get() == WRITE_LOCKED; // must have write lock.
 		File oldFile = fPath;
 		clearCaches();
 		try {
@@ -678,7 +704,7 @@ public class PDOM extends PlatformObject implements IPDOM {
 		} catch (CoreException e) {
 			CCorePlugin.log(e);
 		}
-		loadDatabase(file, db.getChunkCache());
+		loadDatabase(file, db.getChunkCache(), db.getOptions());
 		db.setExclusiveLock();
 		oldFile.delete();
 		fEvent.fReloaded = true;
@@ -1002,50 +1028,114 @@ public class PDOM extends PlatformObject implements IPDOM {
 
 	// Read-write lock rules. Readers don't conflict with other readers,
 	// Writers conflict with readers, and everyone conflicts with writers.
+	// The lock state holds the number of read locks, or -1 while the write lock is held. Read locks
+	// are counted rather than owned, a thread may acquire them recursively. Therefore a waiting writer
+	// does not block new readers, it lets the waiting readers go first instead.
+	// Changes between positive lock counts are made without synchronization. Changes from and to 0 or -1
+	// are made while holding the mutex, such that the locked state of the database stays consistent.
+	private static final int WRITE_LOCKED = -1;
 	private final Object mutex = new Object();
-	private int lockCount;
-	private int waitingReaders;
+	private final AtomicInteger lockState = new AtomicInteger();
+	private volatile int waitingReaders; // Modified while holding the mutex.
+	private volatile int waitingWriters; // Modified while holding the mutex.
+	private final IndexLockStatistics fLockStatistics = new IndexLockStatistics();
 	private long lastWriteAccess = 0;
 	private long lastReadAccess = 0;
 	private long timeWriteLockAcquired;
 
 	@Override
 	public void acquireReadLock() throws InterruptedException {
-		long t = sDEBUG_LOCKS ? System.nanoTime() : 0;
-		synchronized (mutex) {
-			++waitingReaders;
-			try {
-				while (lockCount < 0)
-					mutex.wait();
-			} finally {
-				--waitingReaders;
+		if (tryIncrementReadLocks()) {
+			fLockStatistics.readLockAcquired();
+		} else {
+			long t = System.nanoTime();
+			synchronized (mutex) {
+				++waitingReaders;
+				try {
+					while (true) {
+						int state = lockState.get();
+						if (state == 0) {
+							db.setLocked(true);
+							lockState.set(1);
+							break;
+						}
+						if (state > 0 && lockState.compareAndSet(state, state + 1))
+							break;
+						if (state == WRITE_LOCKED)
+							mutex.wait();
+					}
+				} finally {
+					--waitingReaders;
+				}
 			}
-			++lockCount;
-			db.setLocked(true);
+			t = System.nanoTime() - t;
+			fLockStatistics.readLockAcquiredAfterWait(t);
 
 			if (sDEBUG_LOCKS) {
-				t = (System.nanoTime() - t) / 1000000;
+				t /= 1000000;
 				if (t >= LONG_READ_LOCK_WAIT_REPORT_THRESHOLD) {
 					System.out.println("Acquired index read lock after " + t + " ms wait."); //$NON-NLS-1$//$NON-NLS-2$
 				}
+			}
+		}
+		if (sDEBUG_LOCKS) {
+			synchronized (fLockDebugging) {
 				incReadLock(fLockDebugging);
 			}
 		}
 	}
 
+	/**
+	 * Increments a positive number of read locks, without synchronization.
+	 */
+	private boolean tryIncrementReadLocks() {
+		int state = lockState.get();
+		while (state > 0) {
+			if (lockState.compareAndSet(state, state + 1))
+				return true;
+			state = lockState.get();
+		}
+		return false;
+	}
+
+	/**
+	 * Decrements the number of read locks if more than one is held, without synchronization.
+	 */
+	private boolean tryDecrementReadLocks() {
+		int state = lockState.get();
+		while (state > 1) {
+			if (lockState.compareAndSet(state, state - 1))
+				return true;
+			state = lockState.get();
+		}
+		return false;
+	}
+
 	@Override
 	public void releaseReadLock() {
-		synchronized (mutex) {
-			assert lockCount > 0 : "No lock to release"; //$NON-NLS-1$
-			if (sDEBUG_LOCKS) {
+		if (sDEBUG_LOCKS) {
+			synchronized (fLockDebugging) {
 				decReadLock(fLockDebugging);
 			}
+		}
 
-			lastReadAccess = System.currentTimeMillis();
-			if (lockCount > 0)
-				--lockCount;
-			mutex.notifyAll();
-			db.setLocked(lockCount != 0);
+		lastReadAccess = System.currentTimeMillis();
+		if (!tryDecrementReadLocks()) {
+			synchronized (mutex) {
+				int state = lockState.get();
+				assert state > 0 : "No lock to release"; //$NON-NLS-1$
+				while (state > 0 && !lockState.compareAndSet(state, state - 1)) {
+					state = lockState.get();
+				}
+				if (state == 1) {
+					db.setLocked(false);
+				}
+				mutex.notifyAll();
+			}
+		} else if (waitingWriters > 0) {
+			synchronized (mutex) {
+				mutex.notifyAll();
+			}
 		}
 		// A lock release probably means that some AST is going away. The result cache has to be
 		// cleared since it may contain objects belonging to the AST that is going away. A failure
@@ -1073,16 +1163,19 @@ public class PDOM extends PlatformObject implements IPDOM {
 	 */
 	public void acquireWriteLock(int giveupReadLocks, IProgressMonitor monitor) throws InterruptedException {
 		assert !isPermanentlyReadOnly();
-		synchronized (mutex) {
-			if (sDEBUG_LOCKS) {
+		if (sDEBUG_LOCKS) {
+			synchronized (fLockDebugging) {
 				incWriteLock(giveupReadLocks);
 			}
-
+		}
+		final long t = System.nanoTime();
+		synchronized (mutex) {
 			if (giveupReadLocks > 0) {
 				// give up on read locks
-				assert lockCount >= giveupReadLocks : "Not enough locks to release"; //$NON-NLS-1$
-				if (lockCount < giveupReadLocks) {
-					giveupReadLocks = lockCount;
+				final int state = lockState.get();
+				assert state >= giveupReadLocks : "Not enough locks to release"; //$NON-NLS-1$
+				if (state < giveupReadLocks) {
+					giveupReadLocks = Math.max(0, state);
 				}
 			} else {
 				giveupReadLocks = 0;
@@ -1091,24 +1184,28 @@ public class PDOM extends PlatformObject implements IPDOM {
 			// Let the readers go first
 			long start = sDEBUG_LOCKS ? System.currentTimeMillis() : 0;
 			int count = 0;
-			while (lockCount > giveupReadLocks || waitingReaders > 0) {
-				mutex.wait(CANCELLATION_CHECK_INTERVAL);
-				if (monitor != null && monitor.isCanceled()) {
-					throw new OperationCanceledException();
-				}
-				count++;
-				if (monitor != null && count == LONG_WRITE_LOCK_REPORT_THRESHOLD / CANCELLATION_CHECK_INTERVAL) {
-					monitor.subTask(Messages.PDOM_waitingForWriteLock);
-				}
-				if (sDEBUG_LOCKS) {
-					start = reportBlockedWriteLock(start, giveupReadLocks);
+			++waitingWriters;
+			try {
+				while (waitingReaders > 0 || !lockState.compareAndSet(giveupReadLocks, WRITE_LOCKED)) {
+					mutex.wait(CANCELLATION_CHECK_INTERVAL);
+					if (monitor != null && monitor.isCanceled()) {
+						throw new OperationCanceledException();
+					}
+					count++;
+					if (monitor != null && count == LONG_WRITE_LOCK_REPORT_THRESHOLD / CANCELLATION_CHECK_INTERVAL) {
+						monitor.subTask(Messages.PDOM_waitingForWriteLock);
+					}
+					if (sDEBUG_LOCKS) {
+						start = reportBlockedWriteLock(start, giveupReadLocks);
+					}
 				}
+			} finally {
+				--waitingWriters;
 			}
-			lockCount = -1;
-			if (sDEBUG_LOCKS)
-				timeWriteLockAcquired = System.currentTimeMillis();
+			timeWriteLockAcquired = System.nanoTime();
 			db.setExclusiveLock();
 		}
+		fLockStatistics.writeLockAcquired(timeWriteLockAcquired - t);
 		if (monitor != null)
 			monitor.subTask(""); //$NON-NLS-1$
 	}
@@ -1128,33 +1225,43 @@ public class PDOM extends PlatformObject implements IPDOM {
 		} catch (CoreException e) {
 			CCorePlugin.log(e);
 		}
-		assert lockCount == -1;
+		assert lockState.get() == WRITE_LOCKED;
 		if (!fEvent.isTrivial())
 			lastWriteAccess = System.currentTimeMillis();
 		final ChangeEvent event = fEvent;
 		fEvent = new ChangeEvent();
+		final long timeHeld = System.nanoTime() - timeWriteLockAcquired;
+		fLockStatistics.writeLockReleased(timeHeld);
 		synchronized (mutex) {
 			if (sDEBUG_LOCKS) {
-				long timeHeld = lastWriteAccess - timeWriteLockAcquired;
-				if (timeHeld >= LONG_WRITE_LOCK_REPORT_THRESHOLD) {
-					System.out.println("Index write lock held for " + timeHeld + " ms");
+				if (timeHeld / 1000000 >= LONG_WRITE_LOCK_REPORT_THRESHOLD) {
+					System.out.println("Index write lock held for " + timeHeld / 1000000 + " ms");
+				}
+				synchronized (fLockDebugging) {
+					decWriteLock(establishReadLocks);
 				}
-				decWriteLock(establishReadLocks);
 			}
 
-			if (lockCount < 0)
-				lockCount = establishReadLocks;
+			if (lockState.get() == WRITE_LOCKED) {
+				db.setLocked(establishReadLocks != 0);
+				lockState.set(establishReadLocks);
+			}
 			mutex.notifyAll();
-			db.setLocked(lockCount != 0);
 		}
 		fireChange(event);
 	}
 
 	@Override
 	public boolean hasWaitingReaders() {
-		synchronized (mutex) {
-			return waitingReaders > 0;
-		}
+		return waitingReaders > 0;
+	}
+
+	/**
+	 * Returns the statistics about the waiting for and holding of the lock of this PDOM. The
+	 * statistics are reset together with the cache counters.
+	 */
+	public IndexLockStatistics getLockStatistics() {
+		return fLockStatistics;
 	}
 
 	@Override
@@ -1514,6 +1621,7 @@ public class PDOM extends PlatformObject implements IPDOM {
 	private void clearCaches() {
 		fileIndex = null;
 		tagIndex = null;
+		stringTable = null;
 		indexOfDefectiveFiles = null;
 		indexOfFiledWithUnresolvedIncludes = null;
 		fLinkageIDCache.clear();
@@ -1543,6 +1651,7 @@ public class PDOM extends PlatformObject implements IPDOM {
 	@Override
 	public void resetCacheCounters() {
 		db.resetCacheCounters();
+		fLockStatistics.reset();
 	}
 
 	protected void flush() throws CoreException {
@@ -1889,9 +1998,11 @@ public class PDOM extends PlatformObject implements IPDOM {
 		if (now >= start + BLOCKED_WRITE_LOCK_OUTPUT_INTERVAL) {
 			System.out.println();
 			System.out.println("Blocked writeLock");
-			System.out.println("  lockcount= " + lockCount + ", giveupReadLocks=" + giveupReadLocks
+			System.out.println("  lockcount= " + lockState.get() + ", giveupReadLocks=" + giveupReadLocks
 					+ ", waitingReaders=" + waitingReaders);
-			outputReadLocks(fLockDebugging);
+			synchronized (fLockDebugging) {
+				outputReadLocks(fLockDebugging);
+			}
 			start = now;
 		}
 		return start;
@@ -1910,17 +2021,19 @@ public class PDOM extends PlatformObject implements IPDOM {
 
 	// For debugging lock issues
 	public void adjustThreadForReadLock(Map<Thread, DebugLockInfo> lockDebugging) {
-		for (Thread th : lockDebugging.keySet()) {
-			DebugLockInfo val = lockDebugging.get(th);
-			if (val.fReadLocks > 0) {
-				DebugLockInfo myval = fLockDebugging.get(th);
-				if (myval == null) {
-					myval = new DebugLockInfo();
-					fLockDebugging.put(th, myval);
-				}
-				myval.inc(val);
-				for (int i = 0; i < val.fReadLocks; i++) {
-					decReadLock(fLockDebugging);
+		synchronized (fLockDebugging) {
+			for (Thread th : lockDebugging.keySet()) {
+				DebugLockInfo val = lockDebugging.get(th);
+				if (val.fReadLocks > 0) {
+					DebugLockInfo myval = fLockDebugging.get(th);
+					if (myval == null) {
+						myval = new DebugLockInfo();
+						fLockDebugging.put(th, myval);
+					}
+					myval.inc(val);
+					for (int i = 0; i < val.fReadLocks; i++) {
+						decReadLock(fLockDebugging);
+					}
 				}
 			}
 		}
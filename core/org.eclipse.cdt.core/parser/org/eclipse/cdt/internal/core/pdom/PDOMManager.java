@@ -22,11 +22,14 @@
  *******************************************************************************/
 package org.eclipse.cdt.internal.core.pdom;
 
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.PushbackInputStream;
 import java.text.MessageFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayDeque;
@@ -79,8 +82,12 @@ import org.eclipse.cdt.internal.core.index.IndexFactory;
 import org.eclipse.cdt.internal.core.index.IndexFileSet;
 import org.eclipse.cdt.internal.core.index.IndexerStateEvent;
 import org.eclipse.cdt.internal.core.index.provider.IndexProviderManager;
+import org.eclipse.cdt.internal.core.parser.scanner.PreprocessedHeaderCache;
 import org.eclipse.cdt.internal.core.pdom.PDOM.IListener;
 import org.eclipse.cdt.internal.core.pdom.db.ChunkCache;
+import org.eclipse.cdt.internal.core.pdom.db.CompressedDatabaseFile;
+import org.eclipse.cdt.internal.core.pdom.db.DBStatus;
+import org.eclipse.cdt.internal.core.pdom.db.Database;
 import org.eclipse.cdt.internal.core.pdom.dom.IPDOMLinkageFactory;
 import org.eclipse.cdt.internal.core.pdom.dom.PDOMProjectIndexLocationConverter;
 import org.eclipse.cdt.internal.core.pdom.indexer.AbstractPDOMIndexer;
@@ -100,6 +107,7 @@ import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IConfigurationElement;
 import org.eclipse.core.runtime.IExtension;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.ISafeRunnable;
 import org.eclipse.core.runtime.IStatus;
@@ -119,6 +127,7 @@ import org.eclipse.core.runtime.preferences.IEclipsePreferences.IPreferenceChang
 import org.eclipse.core.runtime.preferences.IEclipsePreferences.PreferenceChangeEvent;
 import org.eclipse.core.runtime.preferences.IPreferencesService;
 import org.eclipse.core.runtime.preferences.InstanceScope;
+import org.eclipse.osgi.util.NLS;
 
 /**
  * Manages PDOM updates and events associated with them. Provides methods for index access.
@@ -243,6 +252,7 @@ public class PDOMManager implements IWritableIndexManager, IListener {
 		Job.getJobManager().addJobChangeListener(fJobChangeListener);
 		adjustCacheSize();
 		updatePathCanonicalizationStrategy();
+		setupPreprocessedHeaderCache();
 		fIndexProviderManager.startup();
 
 		fTraceIndexerSetup = String.valueOf(true).equals(Platform.getDebugOption(TRACE_INDEXER_SETUP));
@@ -265,8 +275,22 @@ public class PDOMManager implements IWritableIndexManager, IListener {
 		}
 	}
 
+	/**
+	 * Enables the persistent cache of preprocessed headers, when requested by a system property.
+	 */
+	private void setupPreprocessedHeaderCache() {
+		if (Boolean.getBoolean(PreprocessedHeaderCache.PROPERTY_ENABLED)) {
+			final long maxSize = Integer.getInteger(PreprocessedHeaderCache.PROPERTY_MAX_SIZE_MB,
+					PreprocessedHeaderCache.DEFAULT_MAX_SIZE_MB) * 1024L * 1024L;
+			final IPath stateLocation = CCorePlugin.getDefault().getStateLocation();
+			final File directory = stateLocation.append("headerCache").toFile(); //$NON-NLS-1$
+			PreprocessedHeaderCache.setShared(new PreprocessedHeaderCache(directory, maxSize));
+		}
+	}
+
 	public void shutdown() {
 		fInShutDown = true;
+		PreprocessedHeaderCache.setShared(null);
 		InstanceScope.INSTANCE.getNode(CCorePlugin.PLUGIN_ID).removePreferenceChangeListener(fPreferenceChangeListener);
 		CCorePlugin.getDefault().getProjectDescriptionManager()
 				.removeCProjectDescriptionListener(fProjectDescriptionListener);
@@ -310,9 +334,51 @@ public class PDOMManager implements IWritableIndexManager, IListener {
 				null);
 		cachePct = Math.max(1, Math.min(50, cachePct)); // 1%-50%
 		cacheMax = Math.max(1, cacheMax); // >= 1mb
-		long m1 = Runtime.getRuntime().maxMemory() / 100L * cachePct;
-		long m2 = Math.min(m1, cacheMax * 1024L * 1024L);
-		ChunkCache.getSharedInstance().setMaxSize(m2);
+		ChunkCache cache = ChunkCache.getSharedInstance();
+		long m2 = cacheMax * 1024L * 1024L;
+		if (!cache.isOffHeap()) {
+			// The limit relative to the heap size is not applicable to chunks stored off-heap.
+			long m1 = Runtime.getRuntime().maxMemory() / 100L * cachePct;
+			m2 = Math.min(m1, m2);
+		}
+		cache.setMaxSize(m2);
+	}
+
+	/**
+	 * Returns the options for the database of the given project. The storage mode, the journal and the
+	 * chunk size of new databases can be selected per project via
+	 * {@link IndexerPreferences#KEY_MEMORY_MAPPED_DATABASE}, {@link IndexerPreferences#KEY_DATABASE_JOURNAL}
+	 * and {@link IndexerPreferences#KEY_DATABASE_CHUNK_SIZE_KB}, otherwise the defaults of {@link Database}
+	 * apply.
+	 */
+	private static int getDatabaseOptions(IProject project) {
+		int options = Database.getDefaultOptions();
+		options = getBooleanOption(project, IndexerPreferences.KEY_MEMORY_MAPPED_DATABASE,
+				Database.OPTION_MEMORY_MAPPED, options);
+		options = getBooleanOption(project, IndexerPreferences.KEY_DATABASE_JOURNAL, Database.OPTION_JOURNAL,
+				options);
+		String chunkSizeKB = IndexerPreferences.get(project, IndexerPreferences.KEY_DATABASE_CHUNK_SIZE_KB, null);
+		if (chunkSizeKB != null) {
+			try {
+				int chunkSizeOption = Database.chunkSizeOption(Integer.parseInt(chunkSizeKB) * 1024);
+				options = (options & ~Database.OPTION_CHUNK_SIZE_MASK) | chunkSizeOption;
+			} catch (IllegalArgumentException e) {
+				CCorePlugin.log(e);
+			}
+		}
+		return options;
+	}
+
+	private static int getBooleanOption(IProject project, String key, int option, int options) {
+		String value = IndexerPreferences.get(project, key, null);
+		if (value != null) {
+			if (Boolean.parseBoolean(value)) {
+				options |= option;
+			} else {
+				options &= ~option;
+			}
+		}
+		return options;
 	}
 
 	private void updatePathCanonicalizationStrategy() {
@@ -388,7 +454,8 @@ public class PDOMManager implements IWritableIndexManager, IListener {
 
 			WritablePDOM pdom;
 			try {
-				pdom = new WritablePDOM(dbFile, new PDOMProjectIndexLocationConverter(project), getLinkageFactories());
+				pdom = new WritablePDOM(dbFile, new PDOMProjectIndexLocationConverter(project),
+						ChunkCache.getSharedInstance(), getDatabaseOptions(project), getLinkageFactories());
 			} catch (CoreException | RuntimeException e) {
 				// Index file is likely corrupted. Recover by rebuilding the index.
 				// See http://bugs.eclipse.org/510054
@@ -396,7 +463,8 @@ public class PDOMManager implements IWritableIndexManager, IListener {
 						+ " - rebuilding the index", e); //$NON-NLS-1$
 				dbFile.delete();
 				fromScratch = true;
-				pdom = new WritablePDOM(dbFile, new PDOMProjectIndexLocationConverter(project), getLinkageFactories());
+				pdom = new WritablePDOM(dbFile, new PDOMProjectIndexLocationConverter(project),
+						ChunkCache.getSharedInstance(), getDatabaseOptions(project), getLinkageFactories());
 			}
 
 			if (!pdom.isSupportedVersion() || fromScratch) {
@@ -1024,6 +1092,48 @@ public class PDOMManager implements IWritableIndexManager, IListener {
 		job.schedule();
 	}
 
+	/**
+	 * Schedules a job compacting the database of the given project, see {@link WritablePDOM#compact()}.
+	 * The outcome is logged.
+	 */
+	public void compact(final ICProject project) {
+		Job job = new Job(NLS.bind(Messages.PDOMManager_CompactJob, project.getElementName())) {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				try {
+					CCorePlugin.log(compactProjectPDOM(project, monitor));
+				} catch (CoreException e) {
+					return e.getStatus();
+				} catch (InterruptedException e) {
+					return Status.CANCEL_STATUS;
+				}
+				return Status.OK_STATUS;
+			}
+
+			@Override
+			public boolean belongsTo(Object family) {
+				return family == PDOMManager.this;
+			}
+		};
+		job.schedule();
+	}
+
+	/**
+	 * Compacts the database of the given project while holding the write lock.
+	 *
+	 * @return a status reporting the number of bytes by which the database has shrunk.
+	 */
+	public DBStatus compactProjectPDOM(ICProject project, IProgressMonitor monitor)
+			throws CoreException, InterruptedException {
+		WritablePDOM pdom = getOrCreatePDOM(project, monitor);
+		pdom.acquireWriteLock(monitor);
+		try {
+			return pdom.compact();
+		} finally {
+			pdom.releaseWriteLock();
+		}
+	}
+
 	@Override
 	public void addIndexChangeListener(IIndexChangeListener listener) {
 		fChangeListeners.add(listener);
@@ -1326,7 +1436,8 @@ public class PDOMManager implements IWritableIndexManager, IListener {
 	}
 
 	/**
-	 * Resets the pdom for the project with the provided stream.
+	 * Resets the pdom for the project with the provided stream. The stream may contain a compressed
+	 * database, see {@link CompressedDatabaseFile}.
 	 * @param monitor
 	 * @throws CoreException
 	 * @throws OperationCanceledException in case the thread was interrupted
@@ -1338,31 +1449,38 @@ public class PDOMManager implements IWritableIndexManager, IListener {
 		String newName = createNewDatabaseName(project);
 		File newFile = fileFromDatabaseName(newName);
 		OutputStream out = new FileOutputStream(newFile);
+		boolean compressed = false;
 		try {
+			PushbackInputStream in = new PushbackInputStream(stream, 4);
+			byte[] header = new byte[4];
 			int version = 0;
 			for (int i = 0; i < 4; i++) {
-				byte b = (byte) stream.read();
+				byte b = (byte) in.read();
 				version = (version << 8) + (b & 0xff);
-				out.write(b);
-			}
-			if (version > PDOM.getMaxSupportedVersion()) {
-				final IStatus status = new Status(IStatus.WARNING, CCorePlugin.PLUGIN_ID, 0,
-						CCorePlugin.getResourceString("PDOMManager.unsupportedHigherVersion"), null); //$NON-NLS-1$
-				throw new CoreException(status);
+				header[i] = b;
 			}
-			if (!PDOM.isSupportedVersion(version)) {
-				final IStatus status = new Status(IStatus.WARNING, CCorePlugin.PLUGIN_ID, 0,
-						CCorePlugin.getResourceString("PDOMManager.unsupportedVersion"), null); //$NON-NLS-1$
-				throw new CoreException(status);
-			}
-			byte[] buffer = new byte[2048];
-			int read;
-			while ((read = stream.read(buffer)) >= 0) {
-				out.write(buffer, 0, read);
+			if (version == CompressedDatabaseFile.MAGIC) {
+				// The index is inflated while it is copied, the version is checked afterwards.
+				in.unread(header);
+				CompressedDatabaseFile.inflate(in, out);
+				compressed = true;
+			} else {
+				out.write(header);
+				checkImportedVersion(version);
+				byte[] buffer = new byte[2048];
+				int read;
+				while ((read = in.read(buffer)) >= 0) {
+					out.write(buffer, 0, read);
+				}
 			}
 		} finally {
 			out.close();
 		}
+		if (compressed) {
+			try (DataInputStream in = new DataInputStream(new FileInputStream(newFile))) {
+				checkImportedVersion(in.readInt());
+			}
+		}
 
 		WritablePDOM pdom = (WritablePDOM) getPDOM(project);
 		try {
@@ -1379,6 +1497,19 @@ public class PDOMManager implements IWritableIndexManager, IListener {
 		}
 	}
 
+	private static void checkImportedVersion(int version) throws CoreException {
+		if (version > PDOM.getMaxSupportedVersion()) {
+			final IStatus status = new Status(IStatus.WARNING, CCorePlugin.PLUGIN_ID, 0,
+					CCorePlugin.getResourceString("PDOMManager.unsupportedHigherVersion"), null); //$NON-NLS-1$
+			throw new CoreException(status);
+		}
+		if (!PDOM.isSupportedVersion(version)) {
+			final IStatus status = new Status(IStatus.WARNING, CCorePlugin.PLUGIN_ID, 0,
+					CCorePlugin.getResourceString("PDOMManager.unsupportedVersion"), null); //$NON-NLS-1$
+			throw new CoreException(status);
+		}
+	}
+
 	@Override
 	public void export(ICProject project, String location, int options, IProgressMonitor monitor) throws CoreException {
 		TeamPDOMExportOperation operation = new TeamPDOMExportOperation(project);
@@ -72,6 +72,7 @@ import org.eclipse.cdt.internal.core.index.FileContentKey;
 import org.eclipse.cdt.internal.core.index.IIndexFragmentFile;
 import org.eclipse.cdt.internal.core.index.IWritableIndex;
 import org.eclipse.cdt.internal.core.index.IWritableIndex.IncludeInformation;
+import org.eclipse.cdt.internal.core.parser.scanner.ILocationResolver;
 import org.eclipse.cdt.internal.core.parser.scanner.LocationMap;
 import org.eclipse.cdt.internal.core.pdom.dom.PDOMASTAdapter;
 import org.eclipse.cdt.internal.core.pdom.indexer.IndexerASTVisitor;
@@ -92,6 +93,8 @@ import org.eclipse.osgi.util.NLS;
  */
 public abstract class PDOMWriter implements IPDOMASTProcessor {
 	private static final boolean REPORT_UNKNOWN_BUILTINS = false;
+	// Timestamp stored by a reproducible index, it differs from the timestamp of a file with errors.
+	private static final long REPRODUCIBLE_TIMESTAMP = 1;
 
 	public static class FileInAST {
 		final IASTPreprocessorIncludeStatement includeStatement;
@@ -151,6 +154,15 @@ public abstract class PDOMWriter implements IPDOMASTProcessor {
 		final ArrayList<IASTName[]> fNames = new ArrayList<>();
 		final ArrayList<IASTPreprocessorStatement> fMacros = new ArrayList<>();
 		final ArrayList<IASTPreprocessorIncludeStatement> fIncludes = new ArrayList<>();
+
+		void release() {
+			fNames.clear();
+			fNames.trimToSize();
+			fMacros.clear();
+			fMacros.trimToSize();
+			fIncludes.clear();
+			fIncludes.trimToSize();
+		}
 	}
 
 	protected static class Data implements IIndexSymbols {
@@ -218,6 +230,8 @@ public abstract class PDOMWriter implements IPDOMASTProcessor {
 	protected final ICanceler fCancelState = new Canceler();
 
 	private int fSkipReferences = SKIP_NO_REFERENCES;
+	private IndexerProfile fProfile;
+	private boolean fReproducible;
 
 	public PDOMWriter(IndexerInputAdapter resolver) {
 		fStatistics = new IndexerStatistics();
@@ -228,6 +242,38 @@ public abstract class PDOMWriter implements IPDOMASTProcessor {
 		return fResolver;
 	}
 
+	/**
+	 * Sets the profile the timings of the individual files are added to, or <code>null</code>.
+	 */
+	public void setProfile(IndexerProfile profile) {
+		fProfile = profile;
+	}
+
+	public IndexerProfile getProfile() {
+		return fProfile;
+	}
+
+	/**
+	 * Makes the content of the index independent of the time it is written at. The timestamps of
+	 * the files are not stored, such that an index written for the same files with the same number
+	 * of parser threads is identical. The files of such an index are checked by their content hash.
+	 */
+	public void setReproducible(boolean value) {
+		fReproducible = value;
+	}
+
+	public boolean isReproducible() {
+		return fReproducible;
+	}
+
+	/**
+	 * Returns the path a file is reported with in the profile.
+	 */
+	protected static String getProfilePath(IIndexFileLocation location) {
+		final String fullPath = location.getFullPath();
+		return fullPath != null ? fullPath : location.getURI().getPath();
+	}
+
 	public void setShowActivity(boolean val) {
 		fShowActivity = val;
 	}
@@ -273,25 +319,46 @@ public abstract class PDOMWriter implements IPDOMASTProcessor {
 		if (data.isEmpty() || storageLinkageID == ILinkage.NO_LINKAGE_ID)
 			return;
 
+		SubMonitor progress = SubMonitor.convert(monitor, 2);
+		resolveSymbols(data, progress.split(1));
+		storeSymbols(data, storageLinkageID, ctx, progress.split(1));
+	}
+
+	/**
+	 * Resolves the names of the symbols extracted from an AST, the first half of
+	 * {@link #addSymbols(Data, int, FileContext, IProgressMonitor)}. The index is not modified,
+	 * such that the method can be called for different ASTs concurrently while a read-lock is held.
+	 */
+	final protected void resolveSymbols(Data data, IProgressMonitor monitor) {
+		if (data.isEmpty())
+			return;
+
 		if (fShowProblems) {
 			fShowInclusionProblems = true;
 			fShowScannerProblems = true;
 			fShowSyntaxProblems = true;
 		}
+		resolveNames(data, monitor);
+	}
 
-		SubMonitor progress = SubMonitor.convert(monitor, 2);
-		// Name resolution.
-		resolveNames(data, progress.split(1));
+	/**
+	 * Adds the symbols resolved by {@link #resolveSymbols(Data, IProgressMonitor)} to the index,
+	 * the second half of {@link #addSymbols(Data, int, FileContext, IProgressMonitor)}. Entries
+	 * of the selected files that are <code>null</code> are skipped.
+	 */
+	final protected void storeSymbols(Data data, int storageLinkageID, FileContext ctx, IProgressMonitor monitor)
+			throws InterruptedException, CoreException {
+		if (data.isEmpty() || storageLinkageID == ILinkage.NO_LINKAGE_ID)
+			return;
 
-		// Index update.
-		storeSymbolsInIndex(data, storageLinkageID, ctx, progress.split(1));
+		storeSymbolsInIndex(data, storageLinkageID, ctx, monitor);
 
 		if (!data.fStatuses.isEmpty()) {
 			List<IStatus> statuses = data.fStatuses;
 			String path = null;
-			if (data.fSelectedFiles.length > 0) {
-				path = data.fSelectedFiles[data.fSelectedFiles.length - 1].fileContentKey.getLocation().getURI()
-						.getPath();
+			FileInAST lastFile = getLastFile(data);
+			if (lastFile != null) {
+				path = lastFile.fileContentKey.getLocation().getURI().getPath();
 			} else {
 				path = data.fAST.getFilePath().toString();
 			}
@@ -309,9 +376,18 @@ public abstract class PDOMWriter implements IPDOMASTProcessor {
 		}
 	}
 
+	private static FileInAST getLastFile(Data data) {
+		for (int i = data.fSelectedFiles.length; --i >= 0;) {
+			if (data.fSelectedFiles[i] != null)
+				return data.fSelectedFiles[i];
+		}
+		return null;
+	}
+
 	private void storeSymbolsInIndex(final Data data, int storageLinkageID, FileContext ctx, IProgressMonitor monitor)
 			throws InterruptedException, CoreException {
 		final IIndexFragmentFile newFile = ctx == null ? null : ctx.fNewFile;
+		final FileInAST lastFile = getLastFile(data);
 		SubMonitor progress = SubMonitor.convert(monitor, data.fSelectedFiles.length * 10);
 		for (int i = 0; i < data.fSelectedFiles.length; i++) {
 			final FileInAST fileInAST = data.fSelectedFiles[i];
@@ -320,6 +396,7 @@ public abstract class PDOMWriter implements IPDOMASTProcessor {
 					trace("Indexer: adding " + fileInAST.fileContentKey.getLocation().getURI()); //$NON-NLS-1$
 				}
 				Throwable th = null;
+				final long bytesBefore = fProfile != null ? data.fIndex.getDatabaseBytesAllocated() : 0;
 				YieldableIndexLock lock = new YieldableIndexLock(data.fIndex, false, progress.split(1));
 				lock.acquire();
 				try {
@@ -349,7 +426,7 @@ public abstract class PDOMWriter implements IPDOMASTProcessor {
 				} finally {
 					// Because the caller holds a read-lock, the result cache of the index is never cleared.
 					// Before releasing the lock for the last time in this AST, we clear the result cache.
-					if (i == data.fSelectedFiles.length - 1) {
+					if (fileInAST == lastFile) {
 						data.fIndex.clearResultCache();
 					}
 					lock.release();
@@ -359,15 +436,27 @@ public abstract class PDOMWriter implements IPDOMASTProcessor {
 							fileInAST.fileContentKey.getLocation().getURI().getPath()), th));
 				}
 				fStatistics.fAddToIndexTime += lock.getCumulativeLockTime();
+				if (fProfile != null) {
+					final String path = getProfilePath(fileInAST.fileContentKey.getLocation());
+					fProfile.addTime(path, IndexerProfile.Phase.INDEX_WRITE,
+							lock.getCumulativeLockTime() * 1000000);
+					fProfile.addTime(path, IndexerProfile.Phase.LOCK_WAIT, lock.getCumulativeWaitTime() * 1000000);
+					fProfile.addBytesWritten(path, data.fIndex.getDatabaseBytesAllocated() - bytesBefore);
+				}
 			}
 		}
 	}
 
 	private void resolveNames(Data data, IProgressMonitor monitor) {
 		long start = System.currentTimeMillis();
+		// Names of different ASTs may be resolved concurrently, the statistics are updated at the end.
+		int problemBindingCount = 0;
+		int referenceCount = 0;
+		int declarationCount = 0;
 		Set<ICPPInternalDeclaredVariable> variables = new HashSet<>();
 		SubMonitor progress = SubMonitor.convert(monitor, data.fSelectedFiles.length);
 		for (FileInAST file : data.fSelectedFiles) {
+			final long fileStart = fProfile != null ? System.nanoTime() : 0;
 			Symbols symbols = data.fSymbolMap.get(file.includeStatement);
 
 			final ArrayList<IASTName[]> names = symbols.fNames;
@@ -394,7 +483,7 @@ public abstract class PDOMWriter implements IPDOMASTProcessor {
 							IProblemBinding problemBinding = (IProblemBinding) binding;
 							if (REPORT_UNKNOWN_BUILTINS || problemBinding.getID() != IProblemBinding.BINDING_NOT_FOUND
 									|| !CharArrayUtils.startsWith(problemBinding.getNameCharArray(), "__builtin_")) { //$NON-NLS-1$
-								fStatistics.fProblemBindingCount++;
+								problemBindingCount++;
 								if (fShowProblems) {
 									reportProblem(problemBinding);
 								}
@@ -406,13 +495,13 @@ public abstract class PDOMWriter implements IPDOMASTProcessor {
 								if (!isRequiredReference(name)) {
 									na[0] = null;
 								} else {
-									fStatistics.fReferenceCount++;
+									referenceCount++;
 								}
 							} else {
-								fStatistics.fReferenceCount++;
+								referenceCount++;
 							}
 						} else {
-							fStatistics.fDeclarationCount++;
+							declarationCount++;
 						}
 					} catch (RuntimeException | StackOverflowError e) {
 						if (!reported) {
@@ -424,6 +513,10 @@ public abstract class PDOMWriter implements IPDOMASTProcessor {
 					}
 				}
 			}
+			if (fProfile != null) {
+				fProfile.addTime(getProfilePath(file.fileContentKey.getLocation()),
+						IndexerProfile.Phase.NAME_RESOLUTION, System.nanoTime() - fileStart);
+			}
 		}
 
 		// Precalculate types and initial values of all indexed variables to avoid doing it later when writing
@@ -445,7 +538,12 @@ public abstract class PDOMWriter implements IPDOMASTProcessor {
 			}
 		}
 
-		fStatistics.fResolutionTime += System.currentTimeMillis() - start;
+		synchronized (fStatistics) {
+			fStatistics.fProblemBindingCount += problemBindingCount;
+			fStatistics.fReferenceCount += referenceCount;
+			fStatistics.fDeclarationCount += declarationCount;
+			fStatistics.fResolutionTime += System.currentTimeMillis() - start;
+		}
 	}
 
 	private boolean isVariableIndexed(ICPPVariable variable) {
@@ -546,13 +644,13 @@ public abstract class PDOMWriter implements IPDOMASTProcessor {
 			CPPSemantics.popLookupPoint();
 		}
 
+		LocationMap lm = ast.getAdapter(LocationMap.class);
 		if ((fSkipReferences & SKIP_MACRO_REFERENCES) == 0) {
 
 			// Get a tree of definitions built by IndexerASTVisitor during its traversal.
 			// This is used to find enclosing definitions for macro references.
 			IndexerASTVisitor.Definition definitionTree = visitor.getDefinitionTree();
 
-			LocationMap lm = ast.getAdapter(LocationMap.class);
 			if (lm != null) {
 				IASTName[] refs = lm.getMacroReferences();
 				for (IASTName name : refs) {
@@ -567,8 +665,14 @@ public abstract class PDOMWriter implements IPDOMASTProcessor {
 			}
 		}
 
-		fStatistics.fUnresolvedIncludesCount += unresolvedIncludes;
-		fStatistics.fPreprocessorProblemCount += ast.getPreprocessorProblemsCount() - unresolvedIncludes;
+		synchronized (fStatistics) {
+			fStatistics.fUnresolvedIncludesCount += unresolvedIncludes;
+			fStatistics.fPreprocessorProblemCount += ast.getPreprocessorProblemsCount() - unresolvedIncludes;
+			if (lm != null) {
+				fStatistics.fMacroExpansionCacheHits += lm.getMacroExpansionCacheHits();
+				fStatistics.fMacroExpansionCacheMisses += lm.getMacroExpansionCacheMisses();
+			}
+		}
 		if (fShowScannerProblems || fShowInclusionProblems) {
 			final boolean reportAll = fShowScannerProblems && fShowInclusionProblems;
 			IASTProblem[] scannerProblems = ast.getPreprocessorProblems();
@@ -581,7 +685,9 @@ public abstract class PDOMWriter implements IPDOMASTProcessor {
 		}
 
 		final List<IASTProblem> problems = visitor.getProblems();
-		fStatistics.fSyntaxProblemsCount += problems.size();
+		synchronized (fStatistics) {
+			fStatistics.fSyntaxProblemsCount += problems.size();
+		}
 		if (fShowSyntaxProblems) {
 			for (IASTProblem problem : problems) {
 				reportProblem(problem);
@@ -636,6 +742,8 @@ public abstract class PDOMWriter implements IPDOMASTProcessor {
 		try {
 			boolean pragmaOnce = owner != null ? owner.hasPragmaOnceSemantics() : data.fAST.hasPragmaOnceSemantics();
 			file.setPragmaOnceSemantics(pragmaOnce);
+			ILocationResolver resolver = data.fAST.getAdapter(ILocationResolver.class);
+			file.setIncludeGuard(resolver != null ? resolver.getIncludeGuard(owner) : null);
 
 			if (data.fReplacementHeaders != null) {
 				String headerKey = IndexLocationFactory.getAbsolutePath(location).toOSString();
@@ -677,12 +785,22 @@ public abstract class PDOMWriter implements IPDOMASTProcessor {
 				IncludeInformation[] includeInfoArray = includeInfos
 						.toArray(new IncludeInformation[includeInfos.size()]);
 				index.setFileContent(file, storageLinkageID, includeInfoArray, macros, names, fResolver, lock);
+				// The symbols of the file are no longer needed, allow them to be collected while the
+				// remaining files of the AST are written.
+				lists.release();
+			}
+			if (fReproducible) {
+				file.setTimestamp(astFile.hasError ? 0 : REPRODUCIBLE_TIMESTAMP);
+				file.setSourceReadTime(REPRODUCIBLE_TIMESTAMP);
+			} else {
+				file.setTimestamp(astFile.hasError ? 0 : astFile.timestamp);
+				file.setSourceReadTime(astFile.sourceReadTime);
 			}
-			file.setTimestamp(astFile.hasError ? 0 : astFile.timestamp);
-			file.setSourceReadTime(astFile.sourceReadTime);
 			file.setSizeAndEncodingHashcode(computeFileSizeAndEncodingHashcode(astFile.fileSize, location));
 			file.setContentsHash(astFile.contentsHash);
 			file = index.commitUncommittedFile();
+			fStatistics.fIndexedFilesCount++;
+			fStatistics.fIndexedBytesCount += astFile.fileSize;
 		} finally {
 			index.clearUncommittedFile();
 		}
@@ -35,6 +35,7 @@ import org.eclipse.cdt.core.index.IIndexLocationConverter;
 import org.eclipse.cdt.core.model.ICProject;
 import org.eclipse.cdt.core.model.LanguageManager;
 import org.eclipse.cdt.internal.core.CCoreInternals;
+import org.eclipse.cdt.internal.core.pdom.db.CompressedDatabaseFile;
 import org.eclipse.cdt.internal.core.pdom.dom.PDOMProjectIndexLocationConverter;
 import org.eclipse.cdt.internal.core.pdom.indexer.IndexerPreferences;
 import org.eclipse.cdt.internal.core.resources.ResourceLookup;
@@ -60,6 +61,12 @@ public class TeamPDOMExportOperation implements IWorkspaceRunnable {
 	 */
 	public static int EXPORT_OPTION_RESOURCE_SNAPSHOT = 1;
 
+	/**
+	 * Option constant (value:2) to indicate that the index should be stored in the compressed
+	 * format, such that it can be opened without inflating it, see {@link CompressedDatabaseFile}.
+	 */
+	public static int EXPORT_OPTION_COMPRESSED_INDEX = 2;
+
 	private static final String RESOURCE_PREFIX = "res-"; //$NON-NLS-1$
 	private static final String CDT_PREFIX = "cdt-"; //$NON-NLS-1$
 	private static final String RESOURCE_SNAP_EXTENSION = "snap.zip"; //$NON-NLS-1$
@@ -241,8 +248,17 @@ public class TeamPDOMExportOperation implements IWorkspaceRunnable {
 		try {
 			fTargetLocationFile.getParentFile().mkdirs();
 			out = new ZipOutputStream(new FileOutputStream(fTargetLocationFile));
+			if ((fOptions & EXPORT_OPTION_COMPRESSED_INDEX) != 0) {
+				// The blocks of the index are compressed already, deflating them again does not pay off.
+				out.setLevel(Deflater.NO_COMPRESSION);
+				out.putNextEntry(new ZipEntry(TeamPDOMImportOperation.INDEX_NAME));
+				CompressedDatabaseFile.compress(tmpPDOM, out);
+				out.closeEntry();
+			} else {
+				out.setLevel(Deflater.BEST_COMPRESSION);
+				writeEntry(out, TeamPDOMImportOperation.INDEX_NAME, tmpPDOM);
+			}
 			out.setLevel(Deflater.BEST_COMPRESSION);
-			writeEntry(out, TeamPDOMImportOperation.INDEX_NAME, tmpPDOM);
 			writeEntry(out, TeamPDOMImportOperation.CHECKSUMS_NAME, tmpChecksums);
 		} catch (IOException e) {
 			throw new CoreException(CCorePlugin.createStatus(Messages.TeamPDOMExportOperation_errorCreateArchive, e));
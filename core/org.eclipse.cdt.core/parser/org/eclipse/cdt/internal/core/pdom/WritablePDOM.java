@@ -17,6 +17,7 @@ package org.eclipse.cdt.internal.core.pdom;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -37,8 +38,11 @@ import org.eclipse.cdt.internal.core.index.IIndexFragmentFile;
 import org.eclipse.cdt.internal.core.index.IWritableIndex.IncludeInformation;
 import org.eclipse.cdt.internal.core.index.IWritableIndexFragment;
 import org.eclipse.cdt.internal.core.model.TranslationUnit;
+import org.eclipse.cdt.internal.core.pdom.db.BTree;
 import org.eclipse.cdt.internal.core.pdom.db.ChunkCache;
 import org.eclipse.cdt.internal.core.pdom.db.DBProperties;
+import org.eclipse.cdt.internal.core.pdom.db.DBStatus;
+import org.eclipse.cdt.internal.core.pdom.db.Database;
 import org.eclipse.cdt.internal.core.pdom.db.IBTreeVisitor;
 import org.eclipse.cdt.internal.core.pdom.dom.IPDOMLinkageFactory;
 import org.eclipse.cdt.internal.core.pdom.dom.PDOMBinding;
@@ -48,6 +52,8 @@ import org.eclipse.cdt.internal.core.pdom.dom.PDOMMacro;
 import org.eclipse.cdt.internal.core.pdom.dom.PDOMMacroReferenceName;
 import org.eclipse.cdt.internal.core.pdom.dom.PDOMName;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
 
 public class WritablePDOM extends PDOM implements IWritableIndexFragment {
 	private boolean fClearedBecauseOfVersionMismatch = false;
@@ -67,6 +73,11 @@ public class WritablePDOM extends PDOM implements IWritableIndexFragment {
 		super(dbPath, locationConverter, cache, linkageFactoryMappings);
 	}
 
+	public WritablePDOM(File dbPath, IIndexLocationConverter locationConverter, ChunkCache cache, int dbOptions,
+			Map<String, IPDOMLinkageFactory> linkageFactoryMappings) throws CoreException {
+		super(dbPath, locationConverter, cache, dbOptions, linkageFactoryMappings);
+	}
+
 	public void setASTFilePathResolver(ASTFilePathResolver resolver) {
 		fPathResolver = resolver;
 	}
@@ -195,6 +206,68 @@ public class WritablePDOM extends PDOM implements IWritableIndexFragment {
 		super.flush();
 	}
 
+	/**
+	 * Compacts the database. The nodes of B-trees, the items of linked lists and the member blocks
+	 * and bases of classes are moved towards the start of the database, adjacent free blocks are
+	 * merged and the free space at the end of the database is released. Records of bindings, names
+	 * and files are not moved, such that pointers to them remain valid. The database is flushed in
+	 * batches while the records are moved.
+	 *
+	 * <b>A write-lock must be obtained before calling this method</b>
+	 *
+	 * @return a status reporting the number of bytes by which the database has shrunk.
+	 */
+	public DBStatus compact() throws CoreException {
+		final Database db = getDB();
+		long reclaimed;
+		db.startRelocation();
+		try {
+			for (PDOMLinkage linkage : getLinkageImpls()) {
+				linkage.relocateRecords();
+			}
+			getFileIndex().relocateNodes();
+			getIndexOfDefectiveFiles().relocateNodes();
+			getIndexOfFilesWithUnresolvedIncludes().relocateNodes();
+			getStringTable().relocateNodes();
+		} finally {
+			reclaimed = db.finishRelocation();
+		}
+		db.flush();
+		return new DBStatus(db.getLocation(), reclaimed);
+	}
+
+	/**
+	 * Rebuilds the B-trees of bindings, macros, files and interned strings with nodes that are filled
+	 * completely, see {@link BTree#rebuild()}. Meant to be called after the index has been built from
+	 * scratch, when the trees no longer change much.
+	 * <p>
+	 * The trees are rebuilt one at a time, in between the lock is yielded to readers. When the monitor
+	 * is canceled the remaining trees are left as they are.
+	 *
+	 * <b>The write-lock must be obtained via the given lock before calling this method</b>
+	 */
+	public void rebuildIndexes(YieldableIndexLock lock, IProgressMonitor monitor)
+			throws CoreException, InterruptedException {
+		final List<BTree> indexes = new ArrayList<>();
+		collectIndexes(indexes);
+		SubMonitor progress = SubMonitor.convert(monitor, indexes.size());
+		for (BTree index : indexes) {
+			if (progress.isCanceled())
+				return;
+			index.rebuild();
+			progress.worked(1);
+			lock.yield();
+		}
+	}
+
+	private void collectIndexes(List<BTree> indexes) throws CoreException {
+		for (PDOMLinkage linkage : getLinkageImpls()) {
+			linkage.collectIndexes(indexes);
+		}
+		indexes.add(getFileIndex());
+		getStringTable().collectIndexes(indexes);
+	}
+
 	@Override
 	public void setProperty(String propertyName, String value) throws CoreException {
 		if (IIndexFragment.PROPERTY_FRAGMENT_FORMAT_ID.equals(propertyName)
@@ -232,15 +305,18 @@ public class WritablePDOM extends PDOM implements IWritableIndexFragment {
 
 		clearFileIndex();
 		final List<PDOMFile> notConverted = new ArrayList<>();
+		final long[] converted = new long[pdomfiles.size()];
+		int n = 0;
 		for (PDOMFile file : pdomfiles) {
 			String internalFormat = newConverter.toInternalFormat(file.getLocation());
 			if (internalFormat != null) {
 				file.setInternalLocation(internalFormat);
-				getFileIndex().insert(file.getRecord());
+				converted[n++] = file.getRecord();
 			} else {
 				notConverted.add(file);
 			}
 		}
+		getFileIndex().bulkLoad(Arrays.copyOf(converted, n));
 
 		// remove content where converter returns null
 		for (PDOMFile file : notConverted) {
@@ -362,4 +438,9 @@ public class WritablePDOM extends PDOM implements IWritableIndexFragment {
 	public long getDatabaseSizeBytes() {
 		return getDB().getSizeBytes();
 	}
+
+	@Override
+	public long getDatabaseBytesAllocated() {
+		return getDB().getBytesAllocated();
+	}
 }
@@ -22,11 +22,21 @@ import org.eclipse.core.runtime.IProgressMonitor;
  * @since 5.2
  */
 public class YieldableIndexLock {
+	/**
+	 * System property with the minimum time in milliseconds the lock is held before it is yielded to
+	 * waiting readers. Every yield releases the write lock, which visits the chunks of the database, so
+	 * a larger interval lets the writer make more progress at the cost of the latency of readers.
+	 * By default the lock is yielded whenever a reader waits.
+	 */
+	public static final String PROPERTY_YIELD_INTERVAL = "org.eclipse.cdt.core.pdom.yieldIntervalMs"; //$NON-NLS-1$
+	private static final int YIELD_INTERVAL = Math.max(0, Integer.getInteger(PROPERTY_YIELD_INTERVAL, 0));
+
 	private final IWritableIndex index;
 	private final boolean flushIndex;
 	private final IProgressMonitor progressMonitor;
 	private long lastLockTime;
 	private long cumulativeLockTime;
+	private long cumulativeWaitTime;
 
 	public YieldableIndexLock(IWritableIndex index, boolean flushIndex, IProgressMonitor monitor) {
 		this.index = index;
@@ -40,8 +50,10 @@ public class YieldableIndexLock {
 	 * @throws InterruptedException
 	 */
 	public void acquire() throws InterruptedException {
+		final long start = System.currentTimeMillis();
 		index.acquireWriteLock(progressMonitor);
 		lastLockTime = System.currentTimeMillis();
+		cumulativeWaitTime += lastLockTime - start;
 	}
 
 	/**
@@ -56,12 +68,13 @@ public class YieldableIndexLock {
 	}
 
 	/**
-	 * Yields the lock temporarily if it was held for YIELD_INTERVAL or more, and somebody is waiting
-	 * for a read lock.
+	 * Yields the lock temporarily if somebody is waiting for a read lock, and the lock was held for
+	 * at least the interval given by {@link #PROPERTY_YIELD_INTERVAL}.
 	 * @throws InterruptedException
 	 */
 	public void yield() throws InterruptedException {
-		if (index.hasWaitingReaders()) {
+		if (index.hasWaitingReaders()
+				&& (YIELD_INTERVAL == 0 || System.currentTimeMillis() - lastLockTime >= YIELD_INTERVAL)) {
 			index.releaseWriteLock(false);
 			cumulativeLockTime += System.currentTimeMillis() - lastLockTime;
 			lastLockTime = 0;
@@ -75,4 +88,11 @@ public class YieldableIndexLock {
 	public long getCumulativeLockTime() {
 		return cumulativeLockTime;
 	}
+
+	/**
+	 * @return Total time spent waiting for the lock in milliseconds.
+	 */
+	public long getCumulativeWaitTime() {
+		return cumulativeWaitTime;
+	}
 }
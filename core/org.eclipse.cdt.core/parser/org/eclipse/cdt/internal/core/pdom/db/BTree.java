@@ -24,9 +24,21 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 
 /**
+ * A B-tree of records, ordered by an {@link IBTreeComparator}.
+ * <p>
+ * A node stores up to MAX_RECORDS pointers to records followed by MAX_CHILDREN pointers to child
+ * nodes. A B-tree caching key prefixes additionally stores the prefix of the key of each record,
+ * see {@link IBTreeComparator#getKeyPrefix(long)}, such that most comparisons while searching a
+ * node do not have to dereference the record.
+ *
  * @author Doug Schaefer
  */
 public class BTree {
+	/**
+	 * The degree of B-trees that do not specify it.
+	 */
+	public static final int DEFAULT_DEGREE = 8;
+
 	// Constants for internal deletion routine (see deleteImp doc).
 	private static final int DELMODE_NORMAL = 0;
 	private static final int DELMODE_DELETE_MINIMUM = 1;
@@ -40,12 +52,14 @@ public class BTree {
 	protected final int MAX_CHILDREN;
 	protected final int MIN_RECORDS;
 	protected final int OFFSET_CHILDREN;
+	protected final int OFFSET_PREFIXES;
 	protected final int MEDIAN_RECORD;
 
 	protected final IBTreeComparator cmp;
+	protected final boolean cacheKeyPrefixes;
 
 	public BTree(Database db, long rootPointer, IBTreeComparator cmp) {
-		this(db, rootPointer, 8, cmp);
+		this(db, rootPointer, DEFAULT_DEGREE, cmp);
 	}
 
 	/**
@@ -55,19 +69,57 @@ public class BTree {
 	 * @param rootPointer offset into database of the pointer to the root node
 	 */
 	public BTree(Database db, long rootPointer, int degree, IBTreeComparator cmp) {
+		this(db, rootPointer, degree, cmp, false);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param db the database containing the B-tree
+	 * @param rootPointer offset into database of the pointer to the root node
+	 * @param cacheKeyPrefixes whether the nodes store the key prefixes provided by the comparator,
+	 *     this changes the layout of the nodes.
+	 */
+	public BTree(Database db, long rootPointer, int degree, IBTreeComparator cmp, boolean cacheKeyPrefixes) {
 		if (degree < 2)
 			throw new IllegalArgumentException(Messages.getString("BTree.IllegalDegree")); //$NON-NLS-1$
 
 		this.db = db;
 		this.rootPointer = rootPointer;
 		this.cmp = cmp;
+		this.cacheKeyPrefixes = cacheKeyPrefixes;
 
 		this.DEGREE = degree;
 		this.MIN_RECORDS = DEGREE - 1;
 		this.MAX_RECORDS = 2 * DEGREE - 1;
 		this.MAX_CHILDREN = 2 * DEGREE;
 		this.OFFSET_CHILDREN = MAX_RECORDS * Database.INT_SIZE;
+		this.OFFSET_PREFIXES = OFFSET_CHILDREN + MAX_CHILDREN * Database.INT_SIZE;
 		this.MEDIAN_RECORD = DEGREE - 1;
+		if (getNodeSize(degree, cacheKeyPrefixes) > db.getMaxMallocSize()) {
+			throw new IllegalArgumentException(
+					MessageFormat.format(Messages.getString("BTree.DegreeTooLarge"), degree, db.getChunkSize())); //$NON-NLS-1$
+		}
+	}
+
+	private static int getNodeSize(int degree, boolean cacheKeyPrefixes) {
+		final int pointers = 4 * degree - 1;
+		return (cacheKeyPrefixes ? pointers + 2 * degree - 1 : pointers) * Database.INT_SIZE;
+	}
+
+	/**
+	 * Returns the largest degree of a B-tree whose nodes fit into a chunk of the given database.
+	 */
+	public static int getMaxDegree(Database db) {
+		return getMaxDegree(db, false);
+	}
+
+	/**
+	 * Returns the largest degree of a B-tree whose nodes fit into a chunk of the given database.
+	 */
+	public static int getMaxDegree(Database db, boolean cacheKeyPrefixes) {
+		final int ints = db.getMaxMallocSize() / Database.INT_SIZE;
+		return cacheKeyPrefixes ? (ints + 2) / 6 : (ints + 1) / 4;
 	}
 
 	protected long getRoot() throws CoreException {
@@ -90,6 +142,61 @@ public class BTree {
 		return chunk.getRecPtr(node + OFFSET_CHILDREN + index * Database.INT_SIZE);
 	}
 
+	protected final void putPrefix(Chunk chunk, long node, int index, int prefix) {
+		if (cacheKeyPrefixes) {
+			chunk.putInt(node + OFFSET_PREFIXES + index * Database.INT_SIZE, prefix);
+		}
+	}
+
+	protected final int getPrefix(Chunk chunk, long node, int index) {
+		return cacheKeyPrefixes ? chunk.getInt(node + OFFSET_PREFIXES + index * Database.INT_SIZE) : 0;
+	}
+
+	private void putRecord(Chunk chunk, long node, int index, long record, int prefix) {
+		putRecord(chunk, node, index, record);
+		putPrefix(chunk, node, index, prefix);
+	}
+
+	/**
+	 * Copies a record along with its prefix.
+	 */
+	private void copyRecord(Chunk src, long srcNode, int srcIndex, Chunk dst, long dstNode, int dstIndex) {
+		putRecord(dst, dstNode, dstIndex, getRecord(src, srcNode, srcIndex), getPrefix(src, srcNode, srcIndex));
+	}
+
+	private int getKeyPrefix(long record) throws CoreException {
+		return cacheKeyPrefixes ? cmp.getKeyPrefix(record) : 0;
+	}
+
+	/**
+	 * Compares the record stored at the given index of a node with the key, the prefixes are compared first.
+	 */
+	private int compare(Chunk chunk, long node, int index, long key, int keyPrefix) throws CoreException {
+		if (cacheKeyPrefixes) {
+			int compare = Integer.compareUnsigned(getPrefix(chunk, node, index), keyPrefix);
+			if (compare != 0) {
+				return compare;
+			}
+		}
+		return cmp.compare(getRecord(chunk, node, index), key);
+	}
+
+	/**
+	 * Compares the record stored at the given index of a node with the key of the visitor, the prefixes are
+	 * compared first.
+	 * @param keyPrefix the prefix of the key of the visitor, or -1 if prefixes are not to be compared
+	 */
+	private int compare(Chunk chunk, long node, int index, IBTreeVisitor visitor, long keyPrefix)
+			throws CoreException {
+		if (keyPrefix >= 0) {
+			int compare = Long.compare(Integer.toUnsignedLong(getPrefix(chunk, node, index)), keyPrefix);
+			if (compare != 0) {
+				return compare;
+			}
+		}
+		return visitor.compare(getRecord(chunk, node, index));
+	}
+
 	/**
 	 * Inserts the record into the b-tree. We don't insert if the key was already there,
 	 * in which case we return the record that matched. In other cases, we just return
@@ -101,20 +208,23 @@ public class BTree {
 		long root = getRoot();
 
 		// Is this our first time in.
+		final int prefix = getKeyPrefix(record);
 		if (root == 0) {
-			firstInsert(record);
+			firstInsert(record, prefix);
 			return record;
 		}
 
-		return insert(null, 0, 0, root, record);
+		return insert(null, 0, 0, root, record, prefix);
 	}
 
-	private long insert(Chunk pChunk, long parent, int iParent, long node, long record) throws CoreException {
+	private long insert(Chunk pChunk, long parent, int iParent, long node, long record, int prefix)
+			throws CoreException {
 		Chunk chunk = db.getChunk(node);
 
 		// If this node is full (last record isn't null), split it.
 		if (getRecord(chunk, node, MAX_RECORDS - 1) != 0) {
 			long median = getRecord(chunk, node, MEDIAN_RECORD);
+			int medianPrefix = getPrefix(chunk, node, MEDIAN_RECORD);
 			if (median == record) {
 				// Found it, never mind.
 				return median;
@@ -124,7 +234,7 @@ public class BTree {
 				long newnode = allocateNode();
 				Chunk newchunk = db.getChunk(newnode);
 				for (int i = 0; i < MEDIAN_RECORD; ++i) {
-					putRecord(newchunk, newnode, i, getRecord(chunk, node, MEDIAN_RECORD + 1 + i));
+					copyRecord(chunk, node, MEDIAN_RECORD + 1 + i, newchunk, newnode, i);
 					putRecord(chunk, node, MEDIAN_RECORD + 1 + i, 0);
 					putChild(newchunk, newnode, i, getChild(chunk, node, MEDIAN_RECORD + 1 + i));
 					putChild(chunk, node, MEDIAN_RECORD + 1 + i, 0);
@@ -143,18 +253,19 @@ public class BTree {
 					for (int i = MAX_RECORDS - 2; i >= iParent; --i) {
 						long r = getRecord(pChunk, parent, i);
 						if (r != 0) {
-							putRecord(pChunk, parent, i + 1, r);
+							copyRecord(pChunk, parent, i, pChunk, parent, i + 1);
 							putChild(pChunk, parent, i + 2, getChild(pChunk, parent, i + 1));
 						}
 					}
 				}
-				putRecord(pChunk, parent, iParent, median);
+				putRecord(pChunk, parent, iParent, median, medianPrefix);
 				putChild(pChunk, parent, iParent + 1, newnode);
 
 				putRecord(chunk, node, MEDIAN_RECORD, 0);
 
 				// Set the node to the correct one to follow.
-				if (cmp.compare(record, median) > 0) {
+				int compare = cacheKeyPrefixes ? Integer.compareUnsigned(prefix, medianPrefix) : 0;
+				if (compare > 0 || (compare == 0 && cmp.compare(record, median) > 0)) {
 					node = newnode;
 					chunk = newchunk;
 				}
@@ -174,7 +285,7 @@ public class BTree {
 			if (checkRec == 0) {
 				upper = middle;
 			} else {
-				int compare = cmp.compare(checkRec, record);
+				int compare = compare(chunk, node, middle, record, prefix);
 				if (compare > 0) {
 					upper = middle;
 				} else if (compare < 0) {
@@ -189,30 +300,226 @@ public class BTree {
 		long child = getChild(chunk, node, i);
 		if (child != 0) {
 			// Visit the children.
-			return insert(chunk, node, i, child, record);
+			return insert(chunk, node, i, child, record, prefix);
 		} else {
 			// We are at the leaf, add us in.
 			// First copy everything after over one.
 			for (int j = MAX_RECORDS - 2; j >= i; --j) {
 				long r = getRecord(chunk, node, j);
 				if (r != 0)
-					putRecord(chunk, node, j + 1, r);
+					copyRecord(chunk, node, j, chunk, node, j + 1);
 			}
-			putRecord(chunk, node, i, record);
+			putRecord(chunk, node, i, record, prefix);
 			return record;
 		}
 	}
 
-	private void firstInsert(long record) throws CoreException {
+	private void firstInsert(long record, int prefix) throws CoreException {
 		// Create the node and save it as root.
 		long root = allocateNode();
 		db.putRecPtr(rootPointer, root);
 		// Put the record in the first slot of the node.
-		putRecord(db.getChunk(root), root, 0, record);
+		putRecord(db.getChunk(root), root, 0, record, prefix);
 	}
 
 	private long allocateNode() throws CoreException {
-		return db.malloc((2 * MAX_RECORDS + 1) * Database.INT_SIZE);
+		return db.malloc(getNodeSize(DEGREE, cacheKeyPrefixes));
+	}
+
+	/**
+	 * Moves the nodes of the B-tree below the limit chosen by {@link Database#startRelocation()} and
+	 * updates the pointers to them. The records stored in the B-tree are not moved.
+	 */
+	public void relocateNodes() throws CoreException {
+		long root = getRoot();
+		if (root != 0) {
+			long newRoot = relocateNode(root);
+			if (newRoot != root) {
+				db.putRecPtr(rootPointer, newRoot);
+			}
+			db.flushRelocationBatch();
+		}
+	}
+
+	private long relocateNode(long node) throws CoreException {
+		for (int i = 0; i < MAX_CHILDREN; i++) {
+			// The chunk is not kept, the database may be flushed while the children are relocated.
+			long child = getChild(db.getChunk(node), node, i);
+			if (child == 0)
+				break;
+			long newChild = relocateNode(child);
+			if (newChild != child) {
+				putChild(db.getChunk(node), node, i, newChild);
+			}
+			db.flushRelocationBatch();
+		}
+		return db.relocate(node);
+	}
+
+	/**
+	 * Adds the records to the B-tree by building it bottom-up from the sorted records, which is
+	 * considerably faster than inserting them one at a time. The records already in the B-tree are
+	 * kept, all nodes are reallocated and completely filled. As with {@link #insert(long)} a record
+	 * is not added if there is a record with an equal key in the B-tree or before it in the array.
+	 *
+	 * @param records the records to add, in any order
+	 * @return the number of records in the B-tree
+	 */
+	public int bulkLoad(long[] records) throws CoreException {
+		final long root = getRoot();
+		final int existing = root != 0 ? countRecords(root) : 0;
+		final long[] keys = new long[existing + records.length];
+		final int[] prefixes = new int[keys.length];
+		if (root != 0) {
+			removeNodes(root, keys, prefixes, 0);
+			db.putRecPtr(rootPointer, 0);
+		}
+		for (int i = 0; i < records.length; i++) {
+			keys[existing + i] = records[i];
+			prefixes[existing + i] = getKeyPrefix(records[i]);
+		}
+		// The records of the B-tree are sorted already, the merge sort takes advantage of that.
+		sort(keys, prefixes, 0, keys.length, keys.clone(), prefixes.clone());
+		int n = 0;
+		for (int i = 0; i < keys.length; i++) {
+			if (n == 0 || compare(keys[n - 1], prefixes[n - 1], keys[i], prefixes[i]) != 0) {
+				keys[n] = keys[i];
+				prefixes[n] = prefixes[i];
+				n++;
+			}
+		}
+		buildNodes(keys, prefixes, n);
+		return n;
+	}
+
+	/**
+	 * Rebuilds the B-tree bottom-up, such that its nodes are completely filled, see {@link #bulkLoad(long[])}.
+	 */
+	public void rebuild() throws CoreException {
+		bulkLoad(new long[0]);
+	}
+
+	private int countRecords(long node) throws CoreException {
+		final Chunk chunk = db.getChunk(node);
+		int keyCount = 0;
+		while (keyCount < MAX_RECORDS && getRecord(chunk, node, keyCount) != 0) {
+			keyCount++;
+		}
+		int count = keyCount;
+		for (int i = 0; i <= keyCount; i++) {
+			long child = getChild(chunk, node, i);
+			if (child != 0) {
+				count += countRecords(child);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Collects the records of the subtree in order and frees its nodes.
+	 * @return the index after the last record collected
+	 */
+	private int removeNodes(long node, long[] keys, int[] prefixes, int n) throws CoreException {
+		final Chunk chunk = db.getChunk(node);
+		for (int i = 0; i < MAX_CHILDREN; i++) {
+			long child = getChild(chunk, node, i);
+			if (child != 0) {
+				n = removeNodes(child, keys, prefixes, n);
+			}
+			long record = i < MAX_RECORDS ? getRecord(chunk, node, i) : 0;
+			if (record == 0)
+				break;
+			keys[n] = record;
+			prefixes[n] = getPrefix(chunk, node, i);
+			n++;
+		}
+		db.free(node);
+		return n;
+	}
+
+	private int compare(long record1, int prefix1, long record2, int prefix2) throws CoreException {
+		if (cacheKeyPrefixes) {
+			int compare = Integer.compareUnsigned(prefix1, prefix2);
+			if (compare != 0) {
+				return compare;
+			}
+		}
+		return cmp.compare(record1, record2);
+	}
+
+	/**
+	 * Stable merge sort of the records from index {@code from} (inclusive) to {@code to} (exclusive),
+	 * the auxiliary arrays must contain the same elements as the ones to be sorted.
+	 */
+	private void sort(long[] keys, int[] prefixes, int from, int to, long[] auxKeys, int[] auxPrefixes)
+			throws CoreException {
+		if (to - from < 2)
+			return;
+		final int middle = (from + to) >>> 1;
+		sort(auxKeys, auxPrefixes, from, middle, keys, prefixes);
+		sort(auxKeys, auxPrefixes, middle, to, keys, prefixes);
+		if (compare(auxKeys[middle - 1], auxPrefixes[middle - 1], auxKeys[middle], auxPrefixes[middle]) <= 0) {
+			// The two halves are in order already.
+			System.arraycopy(auxKeys, from, keys, from, to - from);
+			System.arraycopy(auxPrefixes, from, prefixes, from, to - from);
+			return;
+		}
+		for (int i = from, p = from, q = middle; i < to; i++) {
+			if (q >= to || (p < middle && compare(auxKeys[p], auxPrefixes[p], auxKeys[q], auxPrefixes[q]) <= 0)) {
+				keys[i] = auxKeys[p];
+				prefixes[i] = auxPrefixes[p++];
+			} else {
+				keys[i] = auxKeys[q];
+				prefixes[i] = auxPrefixes[q++];
+			}
+		}
+	}
+
+	/**
+	 * Builds the nodes for the sorted records level by level, starting with the leaves. The records
+	 * of a level are distributed evenly over as few nodes as possible, the records in between two
+	 * nodes are moved up to the next level. This satisfies the minimum number of records per node.
+	 */
+	private void buildNodes(long[] keys, int[] prefixes, int n) throws CoreException {
+		if (n == 0)
+			return;
+		long[] children = null;
+		while (true) {
+			final int nodeCount = n / (MAX_RECORDS + 1) + 1;
+			final int recordsInNodes = n - (nodeCount - 1);
+			final long[] nodes = new long[nodeCount];
+			final long[] upperKeys = new long[nodeCount - 1];
+			final int[] upperPrefixes = new int[nodeCount - 1];
+			int k = 0;
+			int c = 0;
+			for (int j = 0; j < nodeCount; j++) {
+				final int count = recordsInNodes / nodeCount + (j < recordsInNodes % nodeCount ? 1 : 0);
+				final long node = allocateNode();
+				final Chunk chunk = db.getChunk(node);
+				for (int i = 0; i < count; i++, k++) {
+					putRecord(chunk, node, i, keys[k], prefixes[k]);
+				}
+				if (children != null) {
+					for (int i = 0; i <= count; i++) {
+						putChild(chunk, node, i, children[c++]);
+					}
+				}
+				if (j < nodeCount - 1) {
+					upperKeys[j] = keys[k];
+					upperPrefixes[j] = prefixes[k];
+					k++;
+				}
+				nodes[j] = node;
+			}
+			if (nodeCount == 1) {
+				db.putRecPtr(rootPointer, nodes[0]);
+				return;
+			}
+			keys = upperKeys;
+			prefixes = upperPrefixes;
+			n = nodeCount - 1;
+			children = nodes;
+		}
 	}
 
 	/**
@@ -328,7 +635,7 @@ public class BTree {
 				if (succ != null && succ.keyCount > MIN_RECORDS) {
 					/* Case 2a: Delete key by overwriting it with its successor (which occurs in a leaf node) */
 					long subst = deleteImp(-1, succ.node, DELMODE_DELETE_MINIMUM);
-					putRecord(node.chunk, node.node, keyIndexInNode, subst);
+					putRecord(node.chunk, node.node, keyIndexInNode, subst, getKeyPrefix(subst));
 					return key;
 				}
 
@@ -336,7 +643,7 @@ public class BTree {
 				if (pred != null && pred.keyCount > MIN_RECORDS) {
 					/* Case 2b: Delete key by overwriting it with its predecessor (which occurs in a leaf node) */
 					long subst = deleteImp(-1, pred.node, DELMODE_DELETE_MAXIMUM);
-					putRecord(node.chunk, node.node, keyIndexInNode, subst);
+					putRecord(node.chunk, node.node, keyIndexInNode, subst, getKeyPrefix(subst));
 					return key;
 				}
 
@@ -385,10 +692,13 @@ public class BTree {
 					if (sibR != null && sibR.keyCount > MIN_RECORDS) {
 						/* Case 3a (i): child will underflow upon deletion, take a key from rightSibling */
 						long rightKey = getRecord(node.chunk, node.node, subtreeIndex);
+						int rightKeyPrefix = getPrefix(node.chunk, node.node, subtreeIndex);
 						long leftmostRightSiblingKey = getRecord(sibR.chunk, sibR.node, 0);
-						append(child, rightKey, getChild(sibR.chunk, sibR.node, 0));
+						int leftmostRightSiblingKeyPrefix = getPrefix(sibR.chunk, sibR.node, 0);
+						append(child, rightKey, rightKeyPrefix, getChild(sibR.chunk, sibR.node, 0));
 						nodeContentDelete(sibR, 0, 1);
-						putRecord(node.chunk, node.node, subtreeIndex, leftmostRightSiblingKey);
+						putRecord(node.chunk, node.node, subtreeIndex, leftmostRightSiblingKey,
+								leftmostRightSiblingKeyPrefix);
 						return deleteImp(key, child.node, mode);
 					}
 
@@ -396,11 +706,14 @@ public class BTree {
 					if (sibL != null && sibL.keyCount > MIN_RECORDS) {
 						/* Case 3a (ii): child will underflow upon deletion, take a key from leftSibling */
 						long leftKey = getRecord(node.chunk, node.node, subtreeIndex - 1);
-						prepend(child, leftKey, getChild(sibL.chunk, sibL.node, sibL.keyCount));
+						int leftKeyPrefix = getPrefix(node.chunk, node.node, subtreeIndex - 1);
+						prepend(child, leftKey, leftKeyPrefix, getChild(sibL.chunk, sibL.node, sibL.keyCount));
 						long rightmostLeftSiblingKey = getRecord(sibL.chunk, sibL.node, sibL.keyCount - 1);
+						int rightmostLeftSiblingKeyPrefix = getPrefix(sibL.chunk, sibL.node, sibL.keyCount - 1);
 						putRecord(sibL.chunk, sibL.node, sibL.keyCount - 1, 0);
 						putChild(sibL.chunk, sibL.node, sibL.keyCount, 0);
-						putRecord(node.chunk, node.node, subtreeIndex - 1, rightmostLeftSiblingKey);
+						putRecord(node.chunk, node.node, subtreeIndex - 1, rightmostLeftSiblingKey,
+								rightmostLeftSiblingKeyPrefix);
 						return deleteImp(key, child.node, mode);
 					}
 
@@ -435,12 +748,12 @@ public class BTree {
 	 */
 	public void mergeNodes(BTNode src, BTNode keyProvider, int kIndex, BTNode dst) throws CoreException {
 		nodeContentCopy(src, 0, dst, dst.keyCount + 1, src.keyCount + 1);
-		long midKey = getRecord(keyProvider.chunk, keyProvider.node, kIndex);
-		putRecord(dst.chunk, dst.node, dst.keyCount, midKey);
+		copyRecord(keyProvider.chunk, keyProvider.node, kIndex, dst.chunk, dst.node, dst.keyCount);
 		long keySucc = kIndex + 1 == MAX_RECORDS ? 0 : getRecord(keyProvider.chunk, keyProvider.node, kIndex + 1);
+		int keySuccPrefix = keySucc == 0 ? 0 : getPrefix(keyProvider.chunk, keyProvider.node, kIndex + 1);
 		db.free(getChild(keyProvider.chunk, keyProvider.node, kIndex + 1));
 		nodeContentDelete(keyProvider, kIndex + 1, 1);
-		putRecord(keyProvider.chunk, keyProvider.node, kIndex, keySucc);
+		putRecord(keyProvider.chunk, keyProvider.node, kIndex, keySucc, keySuccPrefix);
 		if (kIndex == 0 && keySucc == 0) {
 			/*
 			 * The root node is excused from the property that a node must have a least MIN keys
@@ -460,11 +773,12 @@ public class BTree {
 	 * is not performed.
 	 * @param node the node to prepend to
 	 * @param key the new leftmost (least) key
+	 * @param prefix the prefix of the key
 	 * @param child the new leftmost (least) subtree root
 	 */
-	private void prepend(BTNode node, long key, long child) {
+	private void prepend(BTNode node, long key, int prefix, long child) {
 		nodeContentCopy(node, 0, node, 1, node.keyCount + 1);
-		putRecord(node.chunk, node.node, 0, key);
+		putRecord(node.chunk, node.node, 0, key, prefix);
 		putChild(node.chunk, node.node, 0, child);
 	}
 
@@ -473,10 +787,11 @@ public class BTree {
 	 * checking is not performed.
 	 * @param node
 	 * @param key
+	 * @param prefix
 	 * @param child
 	 */
-	private void append(BTNode node, long key, long child) {
-		putRecord(node.chunk, node.node, node.keyCount, key);
+	private void append(BTNode node, long key, int prefix, long child) {
+		putRecord(node.chunk, node.node, node.keyCount, key, prefix);
 		putChild(node.chunk, node.node, node.keyCount + 1, child);
 	}
 
@@ -502,8 +817,7 @@ public class BTree {
 				putChild(dst.chunk, dst.node, dstIndex, srcChild);
 
 				if (srcIndex < src.keyCount) {
-					long srcKey = getRecord(src.chunk, src.node, srcIndex);
-					putRecord(dst.chunk, dst.node, dstIndex, srcKey);
+					copyRecord(src.chunk, src.node, srcIndex, dst.chunk, dst.node, dstIndex);
 				}
 			}
 		}
@@ -521,9 +835,10 @@ public class BTree {
 	private void nodeContentDelete(BTNode node, int i, int length) {
 		for (int index = i; index <= MAX_RECORDS; index++) {
 			long newKey = (index + length) < node.keyCount ? getRecord(node.chunk, node.node, index + length) : 0;
+			int newPrefix = newKey != 0 ? getPrefix(node.chunk, node.node, index + length) : 0;
 			long newChild = (index + length) < node.keyCount + 1 ? getChild(node.chunk, node.node, index + length) : 0;
 			if (index < MAX_RECORDS) {
-				putRecord(node.chunk, node.node, index, newKey);
+				putRecord(node.chunk, node.node, index, newKey, newPrefix);
 			}
 			if (index < MAX_CHILDREN) {
 				putChild(node.chunk, node.node, index, newChild);
@@ -538,10 +853,10 @@ public class BTree {
 	 * @param visitor
 	 */
 	public void accept(IBTreeVisitor visitor) throws CoreException {
-		accept(db.getRecPtr(rootPointer), visitor);
+		accept(db.getRecPtr(rootPointer), visitor, cacheKeyPrefixes ? visitor.getKeyPrefix() : -1);
 	}
 
-	private boolean accept(long node, IBTreeVisitor visitor) throws CoreException {
+	private boolean accept(long node, IBTreeVisitor visitor, long keyPrefix) throws CoreException {
 		// If found is false, we are still in search mode.
 		// Once found is true visit everything.
 		// Return false when ready to quit.
@@ -566,7 +881,7 @@ public class BTree {
 				if (checkRec == 0) {
 					upper = middle;
 				} else {
-					int compare = visitor.compare(checkRec);
+					int compare = compare(chunk, node, middle, visitor, keyPrefix);
 					if (compare >= 0) {
 						upper = middle;
 					} else {
@@ -582,18 +897,18 @@ public class BTree {
 				if (record == 0)
 					break;
 
-				int compare = visitor.compare(record);
+				int compare = compare(chunk, node, i, visitor, keyPrefix);
 				if (compare > 0) {
 					// Start point is to the left.
-					return accept(getChild(chunk, node, i), visitor);
+					return accept(getChild(chunk, node, i), visitor, keyPrefix);
 				} else if (compare == 0) {
-					if (!accept(getChild(chunk, node, i), visitor))
+					if (!accept(getChild(chunk, node, i), visitor, keyPrefix))
 						return false;
 					if (!visitor.visit(record))
 						return false;
 				}
 			}
-			return accept(getChild(chunk, node, i), visitor);
+			return accept(getChild(chunk, node, i), visitor, keyPrefix);
 		} finally {
 			visitor.postVisit(node);
 		}
@@ -653,9 +968,15 @@ public class BTree {
 			int indexFirstBlankKey = MAX_RECORDS;
 			int indexLastNonBlankKey = 0;
 			for (int i = 0; i < MAX_RECORDS; i++) {
-				if (getRecord(db.getChunk(node), node, i) != 0) {
+				long record = getRecord(db.getChunk(node), node, i);
+				if (record != 0) {
 					keyCount++;
 					indexLastNonBlankKey = i;
+					if (getPrefix(db.getChunk(node), node, i) != BTree.this.getKeyPrefix(record)) {
+						valid = false;
+						msg += MessageFormat.format(Messages.getString("BTree.IntegrityErrorE"), //$NON-NLS-1$
+								new Object[] { Long.valueOf(node) });
+					}
 				} else if (indexFirstBlankKey == MAX_RECORDS) {
 					indexFirstBlankKey = i;
 				}
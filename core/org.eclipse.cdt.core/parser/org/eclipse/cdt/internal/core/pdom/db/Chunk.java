@@ -18,14 +18,19 @@ package org.eclipse.cdt.internal.core.pdom.db;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import org.eclipse.core.runtime.CoreException;
 
 /**
- * Caches the content of a piece of the database.
+ * Caches the content of a piece of the database. The content is either held in a buffer allocated
+ * by the cache (on or off the heap) that is read from and written to the file, or it is a view on
+ * a memory-mapped region of the database file.
  */
 final class Chunk {
-	final private byte[] fBuffer = new byte[Database.CHUNK_SIZE];
+	final private ByteBuffer fBuffer;
+	final private boolean fMapped;
+	final private int fOffsetMask;
 
 	final Database fDatabase;
 	final int fSequenceNumber;
@@ -36,60 +41,101 @@ final class Chunk {
 	int fCacheIndex = -1;
 
 	Chunk(Database db, int sequenceNumber) {
+		this(db, sequenceNumber, db.getChunkCache().allocateBuffer(db.getChunkSize()), false);
+	}
+
+	/**
+	 * Creates a chunk operating directly on a region of a memory-mapped database file.
+	 */
+	Chunk(Database db, int sequenceNumber, ByteBuffer mappedRegion) {
+		this(db, sequenceNumber, mappedRegion, true);
+	}
+
+	private Chunk(Database db, int sequenceNumber, ByteBuffer buffer, boolean mapped) {
 		fDatabase = db;
 		fSequenceNumber = sequenceNumber;
+		fBuffer = buffer;
+		fMapped = mapped;
+		fOffsetMask = buffer.capacity() - 1;
+	}
+
+	/**
+	 * Returns the size of this chunk in bytes.
+	 */
+	int getSize() {
+		return fBuffer.capacity();
 	}
 
 	void read() throws CoreException {
+		if (fMapped) {
+			return; // The content is read lazily by the operating system.
+		}
 		try {
-			final ByteBuffer buf = ByteBuffer.wrap(fBuffer);
-			fDatabase.read(buf, (long) fSequenceNumber * Database.CHUNK_SIZE);
+			final ByteBuffer buf = fBuffer.duplicate();
+			buf.clear();
+			fDatabase.readChunk(buf, fSequenceNumber);
 		} catch (IOException e) {
 			throw new CoreException(new DBStatus(e));
 		}
 	}
 
 	void flush() throws CoreException {
-		try {
-			final ByteBuffer buf = ByteBuffer.wrap(fBuffer);
-			fDatabase.write(buf, (long) fSequenceNumber * Database.CHUNK_SIZE);
-		} catch (IOException e) {
-			throw new CoreException(new DBStatus(e));
+		flush(true);
+	}
+
+	/**
+	 * Writes the content to its place in the database file, bypassing the journal of the database.
+	 */
+	void flushToFile() throws CoreException {
+		flush(false);
+	}
+
+	private void flush(boolean journaled) throws CoreException {
+		if (!fMapped) {
+			try {
+				final ByteBuffer buf = fBuffer.duplicate();
+				buf.clear();
+				if (journaled) {
+					fDatabase.writeChunk(buf, fSequenceNumber);
+				} else {
+					fDatabase.write(buf, (long) fSequenceNumber * fBuffer.capacity());
+				}
+			} catch (IOException e) {
+				throw new CoreException(new DBStatus(e));
+			}
 		}
+		// Changes to mapped chunks are written back by the database when it forces the mapping.
 		fDirty = false;
 	}
 
-	private static int recPtrToIndex(final long offset) {
-		return (int) (offset & Database.OFFSET_IN_CHUNK_MASK);
+	private int recPtrToIndex(final long offset) {
+		return (int) (offset & fOffsetMask);
 	}
 
 	public void putByte(final long offset, final byte value) {
 		assert fLocked;
 		fDirty = true;
-		fBuffer[recPtrToIndex(offset)] = value;
+		fBuffer.put(recPtrToIndex(offset), value);
 	}
 
 	public byte getByte(final long offset) {
-		return fBuffer[recPtrToIndex(offset)];
+		return fBuffer.get(recPtrToIndex(offset));
 	}
 
 	public byte[] getBytes(final long offset, final int length) {
 		final byte[] bytes = new byte[length];
-		System.arraycopy(fBuffer, recPtrToIndex(offset), bytes, 0, length);
+		get(offset, bytes, 0, length);
 		return bytes;
 	}
 
 	public void putBytes(final long offset, final byte[] bytes) {
-		assert fLocked;
-		fDirty = true;
-		System.arraycopy(bytes, 0, fBuffer, recPtrToIndex(offset), bytes.length);
+		put(offset, bytes, 0, bytes.length);
 	}
 
 	public void putInt(final long offset, final int value) {
 		assert fLocked;
 		fDirty = true;
-		int idx = recPtrToIndex(offset);
-		putInt(value, fBuffer, idx);
+		fBuffer.putInt(recPtrToIndex(offset), value);
 	}
 
 	static final void putInt(final int value, final byte[] buffer, int idx) {
@@ -100,7 +146,7 @@ final class Chunk {
 	}
 
 	public int getInt(final long offset) {
-		return getInt(fBuffer, recPtrToIndex(offset));
+		return fBuffer.getInt(recPtrToIndex(offset));
 	}
 
 	static final int getInt(final byte[] buffer, int idx) {
@@ -142,8 +188,8 @@ final class Chunk {
 	public void putRecPtr(final long offset, final long value) {
 		assert fLocked;
 		fDirty = true;
-		int idx = recPtrToIndex(offset);
-		Database.putRecPtr(value, fBuffer, idx);
+		final int denseValue = value == 0 ? 0 : compressFreeRecPtr(value - Database.BLOCK_HEADER_SIZE);
+		fBuffer.putInt(recPtrToIndex(offset), denseValue);
 	}
 
 	/**
@@ -153,109 +199,83 @@ final class Chunk {
 	public void putFreeRecPtr(final long offset, final long value) {
 		assert fLocked;
 		fDirty = true;
-		int idx = recPtrToIndex(offset);
-		putInt(compressFreeRecPtr(value), fBuffer, idx);
+		fBuffer.putInt(recPtrToIndex(offset), compressFreeRecPtr(value));
 	}
 
 	public long getRecPtr(final long offset) {
-		final int idx = recPtrToIndex(offset);
-		return Database.getRecPtr(fBuffer, idx);
+		final long address = expandToFreeRecPtr(fBuffer.getInt(recPtrToIndex(offset)));
+		return address != 0 ? (address + Database.BLOCK_HEADER_SIZE) : address;
 	}
 
 	public long getFreeRecPtr(final long offset) {
-		final int idx = recPtrToIndex(offset);
-		int value = getInt(fBuffer, idx);
-		return expandToFreeRecPtr(value);
+		return expandToFreeRecPtr(fBuffer.getInt(recPtrToIndex(offset)));
 	}
 
 	public void put3ByteUnsignedInt(final long offset, final int value) {
 		assert fLocked;
 		fDirty = true;
 		int idx = recPtrToIndex(offset);
-		fBuffer[idx] = (byte) (value >> 16);
-		fBuffer[++idx] = (byte) (value >> 8);
-		fBuffer[++idx] = (byte) (value);
+		fBuffer.put(idx, (byte) (value >> 16));
+		fBuffer.put(++idx, (byte) (value >> 8));
+		fBuffer.put(++idx, (byte) (value));
 	}
 
 	public int get3ByteUnsignedInt(final long offset) {
 		int idx = recPtrToIndex(offset);
-		return ((fBuffer[idx] & 0xff) << 16) | ((fBuffer[++idx] & 0xff) << 8) | ((fBuffer[++idx] & 0xff) << 0);
+		return ((fBuffer.get(idx) & 0xff) << 16) | ((fBuffer.get(++idx) & 0xff) << 8)
+				| ((fBuffer.get(++idx) & 0xff) << 0);
 	}
 
 	public void putShort(final long offset, final short value) {
 		assert fLocked;
 		fDirty = true;
-		int idx = recPtrToIndex(offset);
-		fBuffer[idx] = (byte) (value >> 8);
-		fBuffer[++idx] = (byte) (value);
+		fBuffer.putShort(recPtrToIndex(offset), value);
 	}
 
 	public short getShort(final long offset) {
-		int idx = recPtrToIndex(offset);
-		return (short) (((fBuffer[idx] << 8) | (fBuffer[++idx] & 0xff)));
+		return fBuffer.getShort(recPtrToIndex(offset));
 	}
 
 	public long getLong(final long offset) {
-		int idx = recPtrToIndex(offset);
-		return ((((long) fBuffer[idx] & 0xff) << 56) | (((long) fBuffer[++idx] & 0xff) << 48)
-				| (((long) fBuffer[++idx] & 0xff) << 40) | (((long) fBuffer[++idx] & 0xff) << 32)
-				| (((long) fBuffer[++idx] & 0xff) << 24) | (((long) fBuffer[++idx] & 0xff) << 16)
-				| (((long) fBuffer[++idx] & 0xff) << 8) | (((long) fBuffer[++idx] & 0xff) << 0));
+		return fBuffer.getLong(recPtrToIndex(offset));
 	}
 
 	public void putLong(final long offset, final long value) {
 		assert fLocked;
 		fDirty = true;
-		int idx = recPtrToIndex(offset);
-
-		fBuffer[idx] = (byte) (value >> 56);
-		fBuffer[++idx] = (byte) (value >> 48);
-		fBuffer[++idx] = (byte) (value >> 40);
-		fBuffer[++idx] = (byte) (value >> 32);
-		fBuffer[++idx] = (byte) (value >> 24);
-		fBuffer[++idx] = (byte) (value >> 16);
-		fBuffer[++idx] = (byte) (value >> 8);
-		fBuffer[++idx] = (byte) (value);
+		fBuffer.putLong(recPtrToIndex(offset), value);
 	}
 
 	public void putChar(final long offset, final char value) {
 		assert fLocked;
 		fDirty = true;
-		int idx = recPtrToIndex(offset);
-		fBuffer[idx] = (byte) (value >> 8);
-		fBuffer[++idx] = (byte) (value);
+		fBuffer.putChar(recPtrToIndex(offset), value);
 	}
 
 	public void putChars(final long offset, char[] chars, int start, int len) {
 		assert fLocked;
 		fDirty = true;
-		int idx = recPtrToIndex(offset) - 1;
-		final int end = start + len;
-		for (int i = start; i < end; i++) {
-			char value = chars[i];
-			fBuffer[++idx] = (byte) (value >> 8);
-			fBuffer[++idx] = (byte) (value);
-		}
+		final ByteBuffer buf = fBuffer.duplicate();
+		buf.position(recPtrToIndex(offset));
+		buf.asCharBuffer().put(chars, start, len);
 	}
 
 	public void putCharsAsBytes(final long offset, char[] chars, int start, int len) {
 		assert fLocked;
 		fDirty = true;
-		int idx = recPtrToIndex(offset) - 1;
+		int idx = recPtrToIndex(offset);
 		final int end = start + len;
 		for (int i = start; i < end; i++) {
-			char value = chars[i];
-			fBuffer[++idx] = (byte) (value);
+			fBuffer.put(idx++, (byte) chars[i]);
 		}
 	}
 
 	public char getChar(final long offset) {
-		int idx = recPtrToIndex(offset);
-		return (char) (((fBuffer[idx] << 8) | (fBuffer[++idx] & 0xff)));
+		return fBuffer.getChar(recPtrToIndex(offset));
 	}
 
 	public void getChars(final long offset, final char[] result, int start, int len) {
-		final ByteBuffer buf = ByteBuffer.wrap(fBuffer);
+		final ByteBuffer buf = fBuffer.duplicate();
 		buf.position(recPtrToIndex(offset));
 		buf.asCharBuffer().get(result, start, len);
 	}
@@ -263,7 +283,7 @@ final class Chunk {
 	public void getCharsFromBytes(final long offset, final char[] result, int start, int len) {
 		final int pos = recPtrToIndex(offset);
 		for (int i = 0; i < len; i++) {
-			result[start + i] = (char) (fBuffer[pos + i] & 0xff);
+			result[start + i] = (char) (fBuffer.get(pos + i) & 0xff);
 		}
 	}
 
@@ -271,9 +291,14 @@ final class Chunk {
 		assert fLocked;
 		fDirty = true;
 		int idx = recPtrToIndex(offset);
-		final int end = idx + length;
-		for (; idx < end; idx++) {
-			fBuffer[idx] = 0;
+		if (fBuffer.hasArray()) {
+			final int start = fBuffer.arrayOffset() + idx;
+			Arrays.fill(fBuffer.array(), start, start + length, (byte) 0);
+		} else {
+			final int end = idx + length;
+			for (; idx < end; idx++) {
+				fBuffer.put(idx, (byte) 0);
+			}
 		}
 	}
 
@@ -284,8 +309,9 @@ final class Chunk {
 	void put(final long offset, final byte[] data, int dataPos, final int len) {
 		assert fLocked;
 		fDirty = true;
-		int idx = recPtrToIndex(offset);
-		System.arraycopy(data, dataPos, fBuffer, idx, len);
+		final ByteBuffer buf = fBuffer.duplicate();
+		buf.position(recPtrToIndex(offset));
+		buf.put(data, dataPos, len);
 	}
 
 	public void get(final long offset, byte[] data) {
@@ -293,7 +319,8 @@ final class Chunk {
 	}
 
 	public void get(final long offset, byte[] data, int dataPos, int len) {
-		int idx = recPtrToIndex(offset);
-		System.arraycopy(fBuffer, idx, data, dataPos, len);
+		final ByteBuffer buf = fBuffer.duplicate();
+		buf.position(recPtrToIndex(offset));
+		buf.get(data, dataPos, len);
 	}
 }
@@ -13,12 +13,41 @@
  *******************************************************************************/
 package org.eclipse.cdt.internal.core.pdom.db;
 
+import java.nio.ByteBuffer;
+
+/**
+ * A cache for the chunks of one or more databases. Chunks of different databases may differ in
+ * size, the cache limits the total number of bytes held by its chunks.
+ * <p>
+ * The cache is partitioned into shards, every chunk index of a database is assigned to exactly one
+ * shard. The shard serves as the lock for the chunk table entry of the database and for the chunk
+ * itself, such that threads working on different shards do not contend. Within a shard chunks are
+ * evicted with the CLOCK algorithm, combined with a TinyLFU-style admission policy: a frequency
+ * sketch remembers how often chunks were loaded or found referenced, and a chunk that is less
+ * frequently used than the eviction candidate is handed out without being cached. This protects
+ * the working set from scans over large parts of a database.
+ * <p>
+ * An off-heap cache backs the chunks with direct buffers, such that a large cache does not add to
+ * the heap and to the duration of garbage collections. The total size of direct buffers is limited
+ * by the JVM option -XX:MaxDirectMemorySize, which defaults to the maximum heap size.
+ */
 public final class ChunkCache {
+	/**
+	 * System property making caches use off-heap memory unless specified explicitly, see
+	 * {@link #ChunkCache(long, boolean)}.
+	 */
+	public static final String PROPERTY_OFF_HEAP = "org.eclipse.cdt.core.parser.pdom.db.offHeap"; //$NON-NLS-1$
+
 	private static ChunkCache sSharedInstance = new ChunkCache();
 
-	private Chunk[] fPageTable;
-	private boolean fTableIsFull;
-	private int fPointer;
+	// Shards should be able to hold a reasonable number of chunks.
+	private static final int MIN_CHUNKS_PER_SHARD = 64;
+	private static final int MAX_SHARDS = 64;
+
+	private final Shard[] fShards;
+	private final int fShardMask;
+	private final boolean fOffHeap;
+	private volatile long fMaxSize;
 
 	public static ChunkCache getSharedInstance() {
 		return sSharedInstance;
@@ -29,114 +58,302 @@ public final class ChunkCache {
 	}
 
 	public ChunkCache(long maxSize) {
-		fPageTable = new Chunk[computeLength(maxSize)];
+		this(maxSize, Boolean.getBoolean(PROPERTY_OFF_HEAP));
 	}
 
-	public synchronized void add(Chunk chunk, boolean locked) {
-		if (locked) {
-			chunk.fLocked = true;
+	/**
+	 * Creates a cache holding chunks with a total size of up to <code>maxSize</code> bytes.
+	 * @param offHeap whether the content of the chunks is stored in direct buffers rather than
+	 *     on the heap.
+	 */
+	public ChunkCache(long maxSize, boolean offHeap) {
+		fOffHeap = offHeap;
+		final int maxShards = Math.min(MAX_SHARDS, 2 * Runtime.getRuntime().availableProcessors());
+		int nShards = 1;
+		while (nShards < maxShards && computeLength(maxSize) / (2 * nShards) >= MIN_CHUNKS_PER_SHARD) {
+			nShards *= 2;
 		}
-		if (chunk.fCacheIndex >= 0) {
-			chunk.fCacheHitFlag = true;
-			return;
+		fShards = new Shard[nShards];
+		fShardMask = nShards - 1;
+		fMaxSize = maxSize;
+		for (int i = 0; i < nShards; i++) {
+			fShards[i] = new Shard(maxSize / nShards);
 		}
-		if (fTableIsFull) {
-			evictChunk();
-			chunk.fCacheIndex = fPointer;
-			fPageTable[fPointer] = chunk;
-		} else {
-			chunk.fCacheIndex = fPointer;
-			fPageTable[fPointer] = chunk;
+	}
 
-			fPointer++;
-			if (fPointer == fPageTable.length) {
-				fPointer = 0;
-				fTableIsFull = true;
-			}
-		}
+	/**
+	 * Returns whether the chunks of this cache are stored outside of the heap.
+	 */
+	public boolean isOffHeap() {
+		return fOffHeap;
 	}
 
 	/**
-	 * Evicts a chunk from the page table and the chunk table.
-	 * After this method returns, {@link #fPointer}  will contain
-	 * the index of the evicted chunk within the page table.
+	 * Allocates the buffer for a chunk that is read from and written to the database file.
 	 */
-	private void evictChunk() {
-		/*
-		 * Use the CLOCK algorithm to determine which chunk to evict.
-		 * i.e., if the chunk in the current slot of the page table has been
-		 * recently referenced (i.e. the reference flag is set), unset the
-		 * reference flag and move to the next slot.  Otherwise, evict the
-		 * chunk in the current slot.
-		 */
-		while (true) {
-			Chunk chunk = fPageTable[fPointer];
-			if (chunk.fCacheHitFlag) {
-				chunk.fCacheHitFlag = false;
-				fPointer = (fPointer + 1) % fPageTable.length;
-			} else {
-				chunk.fDatabase.releaseChunk(chunk);
-				chunk.fCacheIndex = -1;
-				fPageTable[fPointer] = null;
-				return;
+	ByteBuffer allocateBuffer(int size) {
+		return fOffHeap ? ByteBuffer.allocateDirect(size) : ByteBuffer.wrap(new byte[size]);
+	}
+
+	/**
+	 * Returns the lock protecting the chunk with the given index of the given database.
+	 */
+	Object getLock(Database db, int chunkIndex) {
+		return getShard(db, chunkIndex);
+	}
+
+	private Shard getShard(Database db, int chunkIndex) {
+		return fShards[hash(db, chunkIndex) & fShardMask];
+	}
+
+	private static int hash(Database db, int chunkIndex) {
+		int h = System.identityHashCode(db) ^ (chunkIndex * 0x9E3779B9);
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Runs the given runnable while holding the locks of all shards.
+	 */
+	void runExclusively(Runnable runnable) {
+		runExclusively(0, runnable);
+	}
+
+	private void runExclusively(int shard, Runnable runnable) {
+		if (shard == fShards.length) {
+			runnable.run();
+		} else {
+			synchronized (fShards[shard]) {
+				runExclusively(shard + 1, runnable);
 			}
 		}
 	}
 
-	public synchronized void remove(Chunk chunk) {
-		final int idx = chunk.fCacheIndex;
-		if (idx >= 0) {
-			if (fTableIsFull) {
-				fPointer = fPageTable.length - 1;
-				fTableIsFull = false;
-			} else {
-				fPointer--;
-			}
-			chunk.fCacheIndex = -1;
-			final Chunk move = fPageTable[fPointer];
-			fPageTable[idx] = move;
-			move.fCacheIndex = idx;
-			fPageTable[fPointer] = null;
+	/**
+	 * Adds the chunk to the cache, the caller must hold the lock for the chunk, see
+	 * {@link #getLock(Database, int)}. Locked chunks are always admitted to the cache.
+	 *
+	 * @return whether the chunk was admitted to the cache. Chunks that are not admitted
+	 *     must not be stored in the chunk table of the database.
+	 */
+	boolean add(Chunk chunk, boolean locked) {
+		final Shard shard = getShard(chunk.fDatabase, chunk.fSequenceNumber);
+		assert Thread.holdsLock(shard);
+		if (locked) {
+			chunk.fLocked = true;
 		}
+		return shard.add(chunk);
+	}
+
+	/**
+	 * Removes the chunk from the cache, the caller must hold the lock for the chunk, see
+	 * {@link #getLock(Database, int)}.
+	 */
+	void remove(Chunk chunk) {
+		final Shard shard = getShard(chunk.fDatabase, chunk.fSequenceNumber);
+		assert Thread.holdsLock(shard);
+		shard.remove(chunk);
 	}
 
 	/**
 	 * Returns the maximum size of the chunk cache in bytes.
 	 */
-	public synchronized long getMaxSize() {
-		return (long) fPageTable.length * Database.CHUNK_SIZE;
+	public long getMaxSize() {
+		return fMaxSize;
 	}
 
 	/**
-	 * Clears the page table and changes it to hold chunks with
-	 * maximum total memory of <code>maxSize</code>.
+	 * Changes the cache to hold chunks with maximum total memory of <code>maxSize</code>.
 	 * @param maxSize the total size of the chunks in bytes.
 	 */
-	public synchronized void setMaxSize(long maxSize) {
-		final int newLength = computeLength(maxSize);
-		final int oldLength = fTableIsFull ? fPageTable.length : fPointer;
-		if (newLength > oldLength) {
-			Chunk[] newTable = new Chunk[newLength];
-			System.arraycopy(fPageTable, 0, newTable, 0, oldLength);
-			fTableIsFull = false;
-			fPointer = oldLength;
-			fPageTable = newTable;
-		} else {
-			for (int i = newLength; i < oldLength; i++) {
-				final Chunk chunk = fPageTable[i];
-				chunk.fDatabase.releaseChunk(chunk);
-				chunk.fCacheIndex = -1;
+	public void setMaxSize(long maxSize) {
+		fMaxSize = maxSize;
+		for (Shard shard : fShards) {
+			synchronized (shard) {
+				shard.setMaxSize(maxSize / fShards.length);
 			}
-			Chunk[] newTable = new Chunk[newLength];
-			System.arraycopy(fPageTable, 0, newTable, 0, newLength);
-			fTableIsFull = true;
-			fPointer = 0;
-			fPageTable = newTable;
 		}
 	}
 
-	private int computeLength(long maxSize) {
+	/**
+	 * Returns the number of chunks that have been evicted from the cache.
+	 */
+	public long getEvictionCount() {
+		long result = 0;
+		for (Shard shard : fShards) {
+			synchronized (shard) {
+				result += shard.fEvictions;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of chunks that have not been admitted to the cache.
+	 */
+	public long getRejectionCount() {
+		long result = 0;
+		for (Shard shard : fShards) {
+			synchronized (shard) {
+				result += shard.fRejections;
+			}
+		}
+		return result;
+	}
+
+	private static int computeLength(long maxSize) {
+		// Chunks are at least CHUNK_SIZE bytes large.
 		long maxLength = Math.min(maxSize / Database.CHUNK_SIZE, Integer.MAX_VALUE);
 		return Math.max(1, (int) maxLength);
 	}
+
+	/**
+	 * A partition of the cache, all fields are protected by the shard itself.
+	 */
+	private static final class Shard {
+		private static final int MAX_FREQUENCY = 15;
+
+		private Chunk[] fPageTable;
+		private int fCount;
+		private int fPointer;
+		private long fSize;
+		private long fMaxSize;
+
+		// Count-min sketch with two probes per chunk, aged by halving all counters.
+		private byte[] fFrequencies;
+		private int fSamples;
+
+		long fEvictions;
+		long fRejections;
+
+		Shard(long maxSize) {
+			setMaxSize(maxSize);
+		}
+
+		boolean add(Chunk chunk) {
+			if (chunk.fCacheIndex >= 0) {
+				chunk.fCacheHitFlag = true;
+				incrementFrequency(chunk);
+				return true;
+			}
+			incrementFrequency(chunk);
+			final int size = chunk.getSize();
+			while (fCount > 0 && (fCount == fPageTable.length || fSize + size > fMaxSize)) {
+				final int victim = selectVictim();
+				if (!chunk.fLocked && getFrequency(chunk) < getFrequency(fPageTable[victim])) {
+					fRejections++;
+					return false;
+				}
+				final Chunk evicted = fPageTable[victim];
+				removeAt(victim);
+				evicted.fDatabase.releaseChunk(evicted);
+				fEvictions++;
+			}
+			chunk.fCacheIndex = fCount;
+			fPageTable[fCount++] = chunk;
+			fSize += size;
+			return true;
+		}
+
+		/**
+		 * Returns the index of the chunk to be evicted next.
+		 */
+		private int selectVictim() {
+			/*
+			 * Use the CLOCK algorithm to determine which chunk to evict.
+			 * i.e., if the chunk in the current slot of the page table has been
+			 * recently referenced (i.e. the reference flag is set), unset the
+			 * reference flag and move to the next slot.  Otherwise, evict the
+			 * chunk in the current slot.
+			 */
+			while (true) {
+				if (fPointer >= fCount) {
+					fPointer = 0;
+				}
+				Chunk chunk = fPageTable[fPointer];
+				if (chunk.fCacheHitFlag) {
+					chunk.fCacheHitFlag = false;
+					incrementFrequency(chunk);
+					fPointer++;
+				} else {
+					return fPointer;
+				}
+			}
+		}
+
+		/**
+		 * Removes the chunk at the given index of the page table, the gap is filled with
+		 * the last chunk of the table.
+		 */
+		private void removeAt(int idx) {
+			final Chunk chunk = fPageTable[idx];
+			chunk.fCacheIndex = -1;
+			fSize -= chunk.getSize();
+			fCount--;
+			final Chunk move = fPageTable[fCount];
+			fPageTable[fCount] = null;
+			if (idx != fCount) {
+				fPageTable[idx] = move;
+				move.fCacheIndex = idx;
+			}
+		}
+
+		void remove(Chunk chunk) {
+			final int idx = chunk.fCacheIndex;
+			if (idx >= 0) {
+				removeAt(idx);
+			}
+		}
+
+		void setMaxSize(long maxSize) {
+			final int newLength = computeLength(maxSize);
+			fMaxSize = maxSize;
+			while (fCount > 0 && (fCount > newLength || fSize > fMaxSize)) {
+				final int victim = selectVictim();
+				final Chunk evicted = fPageTable[victim];
+				removeAt(victim);
+				evicted.fDatabase.releaseChunk(evicted);
+				fEvictions++;
+			}
+			Chunk[] newTable = new Chunk[newLength];
+			if (fPageTable != null) {
+				System.arraycopy(fPageTable, 0, newTable, 0, fCount);
+			}
+			fPageTable = newTable;
+
+			int sketchLength = 16;
+			while (sketchLength < 4 * newLength && sketchLength < (1 << 24)) {
+				sketchLength *= 2;
+			}
+			if (fFrequencies == null || fFrequencies.length != sketchLength) {
+				fFrequencies = new byte[sketchLength];
+				fSamples = 0;
+			}
+		}
+
+		private int getFrequency(Chunk chunk) {
+			final int h = hash(chunk.fDatabase, chunk.fSequenceNumber);
+			final int mask = fFrequencies.length - 1;
+			return Math.min(fFrequencies[h & mask], fFrequencies[(h >>> 16 | h << 16) & mask]);
+		}
+
+		private void incrementFrequency(Chunk chunk) {
+			final int h = hash(chunk.fDatabase, chunk.fSequenceNumber);
+			final int mask = fFrequencies.length - 1;
+			final int i1 = h & mask;
+			final int i2 = (h >>> 16 | h << 16) & mask;
+			if (fFrequencies[i1] < MAX_FREQUENCY) {
+				fFrequencies[i1]++;
+			}
+			if (fFrequencies[i2] < MAX_FREQUENCY) {
+				fFrequencies[i2]++;
+			}
+			if (++fSamples >= 10 * fFrequencies.length) {
+				// Age the frequencies such that the sketch adapts to changes of the working set.
+				for (int i = 0; i < fFrequencies.length; i++) {
+					fFrequencies[i] >>= 1;
+				}
+				fSamples /= 2;
+			}
+		}
+	}
 }
@@ -0,0 +1,267 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Eclipse CDT contributors and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.pdom.db;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compressed format of a database file, used to ship pre-built indexes.
+ * <p>
+ * The content of the database is divided into blocks of 64KB, each of which is deflated on its own.
+ * The offsets of the blocks are stored at the end of the file, such that a chunk can be read without
+ * inflating the blocks before it. A compressed file is either inflated into a database file with
+ * {@link #inflate(InputStream, OutputStream)}, or opened read-only as a {@link Database}, which then
+ * inflates the blocks as its chunks are read.
+ *
+ * <pre>
+ * header:  MAGIC (int), FORMAT_VERSION (int), length of the database (long)
+ * block:   length of the deflated content (int), deflated content
+ * index:   offset of each block (long)
+ * trailer: offset of the index (long)
+ * </pre>
+ */
+public final class CompressedDatabaseFile {
+	/**
+	 * First int of a compressed file. When read as the version of a database, it is larger than any
+	 * supported version.
+	 */
+	public static final int MAGIC = 0x43445a00; // "CDZ\0"
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+	private static final int TRAILER_SIZE = 8;
+	static final int BLOCK_SIZE = 64 * 1024;
+
+	private final long fLength;
+	private final long[] fBlockOffsets;
+	private final Inflater fInflater = new Inflater();
+	private final byte[] fBlock = new byte[BLOCK_SIZE]; // The most recently inflated block.
+	private int fBlockIndex = -1;
+
+	/**
+	 * Reads the header and the index of blocks of a compressed file.
+	 */
+	CompressedDatabaseFile(FileChannel channel) throws IOException {
+		final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		readFully(channel, header, 0);
+		if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION) {
+			throw new IOException("Unsupported format of compressed database"); //$NON-NLS-1$
+		}
+		fLength = header.getLong(8);
+
+		final long size = channel.size();
+		final ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+		readFully(channel, trailer, size - TRAILER_SIZE);
+		final long indexOffset = trailer.getLong(0);
+		final int blocks = getBlockCount(fLength);
+		final ByteBuffer index = ByteBuffer.allocate(blocks * 8);
+		readFully(channel, index, indexOffset);
+		fBlockOffsets = new long[blocks];
+		for (int i = 0; i < blocks; i++) {
+			fBlockOffsets[i] = index.getLong(i * 8);
+		}
+	}
+
+	/**
+	 * Returns whether the file starts like a compressed database.
+	 */
+	static boolean isCompressed(FileChannel channel) throws IOException {
+		if (channel.size() < HEADER_SIZE + TRAILER_SIZE) {
+			return false;
+		}
+		final ByteBuffer magic = ByteBuffer.allocate(4);
+		readFully(channel, magic, 0);
+		return magic.getInt(0) == MAGIC;
+	}
+
+	/**
+	 * Returns whether the given file is a compressed database.
+	 */
+	public static boolean isCompressed(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) { //$NON-NLS-1$
+			return isCompressed(raf.getChannel());
+		}
+	}
+
+	private static int getBlockCount(long length) {
+		return (int) ((length + BLOCK_SIZE - 1) / BLOCK_SIZE);
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+		while (buf.hasRemaining()) {
+			if (channel.read(buf, position + buf.position()) < 0) {
+				throw new EOFException();
+			}
+		}
+	}
+
+	/**
+	 * Returns the length of the database.
+	 */
+	long length() {
+		return fLength;
+	}
+
+	/**
+	 * Reads the content of the database at the given position into the buffer, in the same way a
+	 * read from the channel of an uncompressed database would.
+	 */
+	synchronized void read(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+		while (buf.hasRemaining() && position < fLength) {
+			final int block = (int) (position / BLOCK_SIZE);
+			final int blockLength = inflateBlock(channel, block);
+			final int offset = (int) (position % BLOCK_SIZE);
+			final int n = Math.min(buf.remaining(), blockLength - offset);
+			buf.put(fBlock, offset, n);
+			position += n;
+		}
+	}
+
+	/**
+	 * Writes the inflated content of the database to the target.
+	 */
+	synchronized void transferTo(FileChannel channel, FileChannel target) throws IOException {
+		for (int block = 0; block < fBlockOffsets.length; block++) {
+			final ByteBuffer buf = ByteBuffer.wrap(fBlock, 0, inflateBlock(channel, block));
+			while (buf.hasRemaining()) {
+				target.write(buf);
+			}
+		}
+	}
+
+	private int inflateBlock(FileChannel channel, int block) throws IOException {
+		final int blockLength = (int) Math.min(BLOCK_SIZE, fLength - (long) block * BLOCK_SIZE);
+		if (block != fBlockIndex) {
+			fBlockIndex = -1;
+			final ByteBuffer length = ByteBuffer.allocate(4);
+			readFully(channel, length, fBlockOffsets[block]);
+			final ByteBuffer deflated = ByteBuffer.allocate(length.getInt(0));
+			readFully(channel, deflated, fBlockOffsets[block] + 4);
+			fInflater.reset();
+			fInflater.setInput(deflated.array());
+			inflate(fInflater, fBlock, blockLength);
+			fBlockIndex = block;
+		}
+		return blockLength;
+	}
+
+	private static void inflate(Inflater inflater, byte[] target, int length) throws IOException {
+		try {
+			int inflated = 0;
+			while (inflated < length) {
+				final int n = inflater.inflate(target, inflated, length - inflated);
+				if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+					throw new EOFException();
+				}
+				inflated += n;
+			}
+		} catch (DataFormatException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Writes the compressed form of a database file to the stream.
+	 */
+	public static void compress(File database, OutputStream out) throws IOException {
+		final long length = database.length();
+		final int blocks = getBlockCount(length);
+		final long[] offsets = new long[blocks];
+		final byte[] block = new byte[BLOCK_SIZE];
+		final byte[] deflated = new byte[BLOCK_SIZE + BLOCK_SIZE / 16 + 64];
+		final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		try (InputStream in = new FileInputStream(database)) {
+			final DataOutputStream dout = new DataOutputStream(new BufferedOutputStream(out));
+			dout.writeInt(MAGIC);
+			dout.writeInt(FORMAT_VERSION);
+			dout.writeLong(length);
+			long position = HEADER_SIZE; // DataOutputStream.size() overflows beyond 2GB.
+			for (int i = 0; i < blocks; i++) {
+				final int blockLength = (int) Math.min(BLOCK_SIZE, length - (long) i * BLOCK_SIZE);
+				readFully(in, block, blockLength);
+				deflater.reset();
+				deflater.setInput(block, 0, blockLength);
+				deflater.finish();
+				int deflatedLength = 0;
+				while (!deflater.finished()) {
+					deflatedLength += deflater.deflate(deflated, deflatedLength, deflated.length - deflatedLength);
+				}
+				offsets[i] = position;
+				dout.writeInt(deflatedLength);
+				dout.write(deflated, 0, deflatedLength);
+				position += 4 + deflatedLength;
+			}
+			for (long offset : offsets) {
+				dout.writeLong(offset);
+			}
+			dout.writeLong(position);
+			dout.flush();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Reads a compressed database from the stream and writes the database to the output stream.
+	 * The stream is read sequentially, the index of blocks is not needed.
+	 */
+	public static void inflate(InputStream in, OutputStream out) throws IOException {
+		final DataInputStream din = new DataInputStream(in);
+		if (din.readInt() != MAGIC || din.readInt() != FORMAT_VERSION) {
+			throw new IOException("Unsupported format of compressed database"); //$NON-NLS-1$
+		}
+		final long length = din.readLong();
+		final int blocks = getBlockCount(length);
+		final byte[] block = new byte[BLOCK_SIZE];
+		byte[] deflated = new byte[BLOCK_SIZE];
+		final Inflater inflater = new Inflater();
+		try {
+			for (int i = 0; i < blocks; i++) {
+				final int blockLength = (int) Math.min(BLOCK_SIZE, length - (long) i * BLOCK_SIZE);
+				final int deflatedLength = din.readInt();
+				if (deflatedLength > deflated.length) {
+					deflated = new byte[deflatedLength];
+				}
+				din.readFully(deflated, 0, deflatedLength);
+				inflater.reset();
+				inflater.setInput(deflated, 0, deflatedLength);
+				inflate(inflater, block, blockLength);
+				out.write(block, 0, blockLength);
+			}
+		} finally {
+			inflater.end();
+		}
+	}
+
+	private static void readFully(InputStream in, byte[] buffer, int length) throws IOException {
+		int read = 0;
+		while (read < length) {
+			final int n = in.read(buffer, read, length - read);
+			if (n < 0) {
+				throw new EOFException();
+			}
+			read += n;
+		}
+	}
+}
@@ -13,7 +13,9 @@
  *******************************************************************************/
 package org.eclipse.cdt.internal.core.pdom.db;
 
+import java.io.File;
 import java.io.IOException;
+import java.text.MessageFormat;
 
 import org.eclipse.cdt.core.CCorePlugin;
 import org.eclipse.core.runtime.IStatus;
@@ -23,14 +25,34 @@ import org.eclipse.core.runtime.Status;
  * @author Doug Schaefer
  */
 public class DBStatus extends Status {
+	private final long fReclaimedBytes;
+
 	/**
 	 * @param exception
 	 */
 	public DBStatus(IOException exception) {
 		super(IStatus.ERROR, CCorePlugin.PLUGIN_ID, 0, "IOException", exception); //$NON-NLS-1$
+		fReclaimedBytes = 0;
 	}
 
 	public DBStatus(String msg) {
 		super(IStatus.ERROR, CCorePlugin.PLUGIN_ID, 0, msg, null);
+		fReclaimedBytes = 0;
+	}
+
+	/**
+	 * Creates the status reporting the outcome of the compaction of a database.
+	 */
+	public DBStatus(File location, long reclaimedBytes) {
+		super(IStatus.OK, CCorePlugin.PLUGIN_ID, 0, MessageFormat.format(Messages.getString("Database.Compacted"), //$NON-NLS-1$
+				location.getName(), reclaimedBytes), null);
+		fReclaimedBytes = reclaimedBytes;
+	}
+
+	/**
+	 * Returns the number of bytes by which a compacted database has shrunk.
+	 */
+	public long getReclaimedBytes() {
+		return fReclaimedBytes;
 	}
 }
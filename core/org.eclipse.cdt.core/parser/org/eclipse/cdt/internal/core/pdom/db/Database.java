@@ -26,13 +26,18 @@ import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.SoftReference;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.ClosedByInterruptException;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.cdt.core.CCorePlugin;
 import org.eclipse.core.runtime.CoreException;
@@ -47,9 +52,11 @@ import org.eclipse.osgi.util.NLS;
  * @author Doug Schaefer
  */
 /*
- * The file encapsulated is divided into Chunks of size CHUNK_SIZE, and a table of contents
+ * The file encapsulated is divided into Chunks of size chunkSize, and a table of contents
  * mapping chunk index to chunk address is maintained. Chunk structure exists only conceptually -
- * it is not a structure that appears in the file.
+ * it is not a structure that appears in the file. The chunk size is a power of two between
+ * CHUNK_SIZE and MAX_CHUNK_SIZE, it is chosen when the database is created and recorded in
+ * the header.
  *
  * ===== The first chunk is used by Database itself for house-keeping purposes and has structure
  *
@@ -60,14 +67,39 @@ import org.eclipse.osgi.util.NLS;
  * ..               | ...
  * INT_SIZE * m (1) | pointer to head of linked list of blocks of size (m + MIN_BLOCK_DELTAS) * BLOCK_SIZE_DELTA
  * DATA_AREA        | undefined (PDOM stores its own house-keeping data in this area)
+ * GENERATION_OFFSET| generation of the file, incremented whenever it is written without a journal
+ * IDENTITY_OFFSET  | identity of the file, chosen when the database is created or cleared
+ * CHUNK_SIZE_OFFSET| chunk size, 0 for databases using the default CHUNK_SIZE
+ * CHUNK_SIZE       | only for chunkSize > CHUNK_SIZE: pointer to head of linked list of blocks of size
+ *                  | CHUNK_SIZE + BLOCK_SIZE_DELTA
+ * ..               | ...
+ * CHUNK_SIZE + INT_SIZE * n (2) | pointer to head of linked list of blocks of size CHUNK_SIZE + (n + 1) * BLOCK_SIZE_DELTA
  *
  * (1) where 2 <= m <= CHUNK_SIZE / BLOCK_SIZE_DELTA - MIN_BLOCK_DELTAS + 1
+ * (2) where 0 <= n < (chunkSize - CHUNK_SIZE) / BLOCK_SIZE_DELTA
+ *
+ * ===== storage modes
+ *
+ * By default chunks are read into buffers, which are allocated by the ChunkCache on the heap or
+ * off-heap (see ChunkCache.isOffHeap()) and written back to the file when they are flushed. With
+ * OPTION_MEMORY_MAPPED the file is mapped in segments of MAPPED_SEGMENT_SIZE bytes and chunks operate
+ * directly on the mapped memory. The header chunk is never mapped, such that the file can be marked
+ * incomplete on disk before the first mapped chunk is locked for writing.
+ *
+ * With OPTION_JOURNAL (not applicable to memory-mapped databases) flushed chunks are appended to a
+ * journal next to the database file, see DatabaseJournal. The file is not marked incomplete, instead
+ * the journal is committed whenever the database is completely flushed. After a crash the database is
+ * recovered to the last commit when it is opened again.
+ *
+ * A database that has been compressed for export, see CompressedDatabaseFile, can be opened read-only.
+ * Its chunks are then inflated when they are read.
  *
  * ===== block structure
  *
  * offset            content
  * 	                 _____________________________
- * 0                | size of block (negative indicates in use, positive unused) (2 bytes)
+ * 0                | size of block (negative indicates in use, positive unused) (2 bytes), for chunk
+ *                  | sizes beyond Short.MAX_VALUE the size is stored in units of BLOCK_SIZE_DELTA
  * PREV_OFFSET      | pointer to previous block (of same size) (only in free blocks)
  * NEXT_OFFSET      | pointer to next block (of same size) (only in free blocks)
  *
@@ -75,13 +107,16 @@ import org.eclipse.osgi.util.NLS;
 public class Database {
 	// Public for tests only, you shouldn't need these.
 	public static final int INT_SIZE = 4;
+	// The default and minimum chunk size, databases may use larger chunks, see getChunkSize().
 	public static final int CHUNK_SIZE = 1024 * 4;
+	public static final int MAX_CHUNK_SIZE = 1024 * 64;
 	public static final int OFFSET_IN_CHUNK_MASK = CHUNK_SIZE - 1;
 	public static final int BLOCK_HEADER_SIZE = 2;
 	public static final int BLOCK_SIZE_DELTA_BITS = 3;
 	public static final int BLOCK_SIZE_DELTA = 1 << BLOCK_SIZE_DELTA_BITS;
 	public static final int MIN_BLOCK_DELTAS = 2; // a block must at least be 2 + 2*4 bytes to link the free blocks.
 	public static final int MAX_BLOCK_DELTAS = CHUNK_SIZE / BLOCK_SIZE_DELTA;
+	// Allocations up to this size are supported by all databases, see getMaxMallocSize().
 	public static final int MAX_MALLOC_SIZE = MAX_BLOCK_DELTAS * BLOCK_SIZE_DELTA - BLOCK_HEADER_SIZE;
 	public static final int PTR_SIZE = 4; // size of a pointer in the database in bytes
 	// The lower bound for TYPE_SIZE is 1 + PTR_SIZE, but a slightly larger space for types stored
@@ -95,12 +130,71 @@ public class Database {
 
 	public static final int VERSION_OFFSET = 0;
 	public static final int DATA_AREA = (CHUNK_SIZE / BLOCK_SIZE_DELTA - MIN_BLOCK_DELTAS + 2) * INT_SIZE;
+	public static final int CHUNK_SIZE_OFFSET = CHUNK_SIZE - INT_SIZE;
+	public static final int IDENTITY_OFFSET = CHUNK_SIZE_OFFSET - INT_SIZE;
+	public static final int GENERATION_OFFSET = IDENTITY_OFFSET - INT_SIZE;
+
+	/**
+	 * Option for {@link #Database(File, ChunkCache, int, boolean, int)}: Accesses the file via memory-mapped
+	 * segments rather than by reading and writing chunks.
+	 */
+	public static final int OPTION_MEMORY_MAPPED = 0x1;
+
+	/**
+	 * System property enabling {@link #OPTION_MEMORY_MAPPED} for all databases that do not specify the
+	 * storage mode explicitly.
+	 */
+	public static final String PROPERTY_MEMORY_MAPPED = "org.eclipse.cdt.core.parser.pdom.db.mmap"; //$NON-NLS-1$
+
+	/**
+	 * Option for {@link #Database(File, ChunkCache, int, boolean, int)}: Writes flushed chunks to an
+	 * append-only journal, such that the database can be recovered after a crash. Not applicable
+	 * together with {@link #OPTION_MEMORY_MAPPED}.
+	 */
+	public static final int OPTION_JOURNAL = 0x2;
+
+	/**
+	 * System property enabling {@link #OPTION_JOURNAL} for all databases that do not specify the
+	 * option explicitly.
+	 */
+	public static final String PROPERTY_JOURNAL = "org.eclipse.cdt.core.parser.pdom.db.journal"; //$NON-NLS-1$
+
+	/**
+	 * Bits of the options holding the chunk size for new databases, see {@link #chunkSizeOption(int)}.
+	 */
+	public static final int OPTION_CHUNK_SIZE_MASK = 0xff00;
+	private static final int OPTION_CHUNK_SIZE_SHIFT = 8;
+
+	/**
+	 * System property specifying the chunk size in kilobytes for new databases that do not specify
+	 * the chunk size explicitly.
+	 */
+	public static final String PROPERTY_CHUNK_SIZE_KB = "org.eclipse.cdt.core.parser.pdom.db.chunkSizeKB"; //$NON-NLS-1$
 
 	private static final int BLOCK_PREV_OFFSET = BLOCK_HEADER_SIZE;
 	private static final int BLOCK_NEXT_OFFSET = BLOCK_HEADER_SIZE + INT_SIZE;
 
+	// The file is mapped (and grown) in segments of this size, must be a multiple of MAX_CHUNK_SIZE.
+	private static final int MAPPED_SEGMENT_SIZE = 64 * 1024 * 1024;
+	// Number of chunks after which the database is flushed while free blocks are merged or records
+	// are relocated.
+	private static final int COMPACTION_BATCH_CHUNKS = 4096;
+
 	private final File fLocation;
 	private final boolean fReadOnly;
+	private final int fOptions;
+	private final int fChunkSize;
+	private final int fChunkSizeBits;
+	private final int fMaxBlockDeltas;
+	private final int fMaxMallocSize;
+	private final int fBlockSizeShift;
+	private final int fChunksPerSegment;
+	private DatabaseJournal fJournal; // null unless OPTION_JOURNAL is in effect.
+	private final CompressedDatabaseFile fCompressed; // null unless a compressed file is opened read-only.
+	private long fRelocationLimit; // Non-zero while records are relocated.
+	private int fChunksLockedSinceFlush; // Chunks locked under the exclusive lock since the last flush.
+	private MappedByteBuffer[] fMappedSegments; // Protected by fMappingLock.
+	private final Object fMappingLock = new Object();
 	private RandomAccessFile fFile;
 	private boolean fExclusiveLock; // Necessary for any write operation.
 	private boolean fLocked; // Necessary for any operation.
@@ -108,15 +202,19 @@ public class Database {
 
 	private int fVersion;
 	private final Chunk fHeaderChunk;
-	private Chunk[] fChunks;
+	// The entries are protected by the lock of the cache shard responsible for the chunk index, see
+	// ChunkCache.getLock(). Resizing the array requires holding the locks of all shards.
+	private volatile AtomicReferenceArray<Chunk> fChunks;
 	private int fChunksUsed;
-	private int fChunksAllocated;
 	private ChunkCache fCache;
+	// Bit n is set when the free list of blocks of n deltas is not empty, null until the free lists
+	// are needed. Saves probing the heads of all free lists for a block size without free blocks.
+	private long[] fNonEmptyFreeLists;
 
 	private long malloced;
 	private long freed;
-	private long cacheHits;
-	private long cacheMisses;
+	private final LongAdder cacheHits = new LongAdder();
+	private final LongAdder cacheMisses = new LongAdder();
 
 	/** Soft reference wrapper to keep track of the record for disposed strings. */
 	private static class SoftStringRef extends SoftReference<IString> {
@@ -145,30 +243,248 @@ public class Database {
 	 * @throws CoreException
 	 */
 	public Database(File location, ChunkCache cache, int version, boolean openReadOnly) throws CoreException {
+		this(location, cache, version, openReadOnly, getDefaultOptions());
+	}
+
+	/**
+	 * Construct a new Database object, creating a backing file if necessary.
+	 * @param location the local file path for the database
+	 * @param cache the cache to be used optimization
+	 * @param version the version number to store in the database (only applicable for new databases)
+	 * @param openReadOnly whether this Database object will ever need writing to
+	 * @param options a combination of the <code>OPTION_*</code> flags, e.g. {@link #OPTION_MEMORY_MAPPED},
+	 *     the chunk size is only applicable for new databases
+	 * @throws CoreException
+	 */
+	public Database(File location, ChunkCache cache, int version, boolean openReadOnly, int options)
+			throws CoreException {
 		try {
 			fLocation = location;
 			fReadOnly = openReadOnly;
 			fCache = cache;
 			openFile();
+			if (openReadOnly && CompressedDatabaseFile.isCompressed(fFile.getChannel())) {
+				// Chunks are inflated when they are read, there is nothing to map or to journal.
+				fCompressed = new CompressedDatabaseFile(fFile.getChannel());
+				options &= ~(OPTION_MEMORY_MAPPED | OPTION_JOURNAL);
+			} else {
+				fCompressed = null;
+			}
+			fOptions = options;
+			if (isMemoryMapped()) {
+				fMappedSegments = new MappedByteBuffer[0];
+			}
 
-			int nChunksOnDisk = (int) (fFile.length() / CHUNK_SIZE);
+			final long fileLength = fCompressed != null ? fCompressed.length() : fFile.length();
+			final int chunkSize = fileLength < CHUNK_SIZE ? getChunkSize(options) : readChunkSize();
+			fChunkSize = chunkSize;
+			fChunkSizeBits = Integer.numberOfTrailingZeros(chunkSize);
+			fMaxBlockDeltas = chunkSize / BLOCK_SIZE_DELTA;
+			fMaxMallocSize = chunkSize - BLOCK_HEADER_SIZE;
+			fBlockSizeShift = chunkSize > Short.MAX_VALUE ? BLOCK_SIZE_DELTA_BITS : 0;
+			fChunksPerSegment = MAPPED_SEGMENT_SIZE / chunkSize;
+
+			int nChunksOnDisk = (int) (fileLength / chunkSize);
+			if (fCompressed == null && !isJournaled() && nChunksOnDisk > 1
+					&& fileLength % MAPPED_SEGMENT_SIZE == 0) {
+				// The file may have been grown by a mapping and could not be truncated when it was closed.
+				final int nChunksInUse = countChunksInUse(nChunksOnDisk);
+				if (nChunksInUse < nChunksOnDisk) {
+					nChunksOnDisk = nChunksInUse;
+					if (!openReadOnly) {
+						fFile.getChannel().truncate((long) nChunksOnDisk * chunkSize);
+					}
+				}
+			}
+			if (isJournaled()) {
+				int identity = 0;
+				int generation = 0;
+				if (nChunksOnDisk > 0) {
+					final ByteBuffer stamp = ByteBuffer.allocate(2 * INT_SIZE);
+					read(stamp, GENERATION_OFFSET);
+					generation = stamp.getInt(0);
+					identity = stamp.getInt(INT_SIZE);
+				}
+				fJournal = new DatabaseJournal(location, chunkSize, identity, generation, openReadOnly);
+				if (!openReadOnly) {
+					// A new database is given a new identity below, which resets the journal.
+					if (nChunksOnDisk > 0) {
+						fJournal.checkpoint(fFile.getChannel()); // Recovers the last commit.
+						nChunksOnDisk = (int) (fFile.length() / chunkSize);
+					}
+				} else if (nChunksOnDisk > 0) {
+					nChunksOnDisk = Math.max(nChunksOnDisk, fJournal.getCommittedChunksUsed());
+				}
+			} else if (!openReadOnly && fCompressed == null) {
+				DatabaseJournal.delete(location);
+			}
 			fHeaderChunk = new Chunk(this, 0);
 			fHeaderChunk.fLocked = true; // Never makes it into the cache, needed to satisfy assertions.
 			if (nChunksOnDisk <= 0) {
 				fVersion = version;
-				fChunks = new Chunk[1];
-				fChunksUsed = fChunksAllocated = fChunks.length;
+				fChunks = new AtomicReferenceArray<>(1);
+				fChunksUsed = fChunks.length();
+				if (!openReadOnly) {
+					writeChunkSize();
+					writeNewIdentity();
+					if (fJournal != null) {
+						// The journal is only replayed onto an existing file, the header marks it incomplete.
+						fHeaderChunk.flushToFile();
+					}
+				}
 			} else {
 				fHeaderChunk.read();
 				fVersion = fHeaderChunk.getInt(VERSION_OFFSET);
-				fChunks = new Chunk[nChunksOnDisk]; // chunk[0] is unused.
-				fChunksUsed = fChunksAllocated = nChunksOnDisk;
+				fChunks = new AtomicReferenceArray<>(nChunksOnDisk); // chunk[0] is unused.
+				fChunksUsed = nChunksOnDisk;
 			}
 		} catch (IOException e) {
 			throw new CoreException(new DBStatus(e));
 		}
 	}
 
+	/**
+	 * Returns the number of chunks in use, ignoring the empty chunks at the end of the file. Blocks
+	 * do not span chunks, so every chunk in use starts with the non-zero size of a block. At most one
+	 * mapped segment is examined, the file is grown by no more than that.
+	 */
+	private int countChunksInUse(int nChunksOnDisk) throws IOException {
+		final ByteBuffer buf = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+		final int minChunks = Math.max(1, nChunksOnDisk - fChunksPerSegment);
+		while (nChunksOnDisk > minChunks) {
+			buf.clear();
+			read(buf, (long) (nChunksOnDisk - 1) * fChunkSize);
+			if (buf.getShort(0) != 0) {
+				break;
+			}
+			nChunksOnDisk--;
+		}
+		return nChunksOnDisk;
+	}
+
+	/**
+	 * Returns the options used for databases that do not specify them explicitly.
+	 */
+	public static int getDefaultOptions() {
+		int options = Boolean.getBoolean(PROPERTY_MEMORY_MAPPED) ? OPTION_MEMORY_MAPPED : 0;
+		if (Boolean.getBoolean(PROPERTY_JOURNAL)) {
+			options |= OPTION_JOURNAL;
+		}
+		Integer chunkSizeKB = Integer.getInteger(PROPERTY_CHUNK_SIZE_KB);
+		if (chunkSizeKB != null) {
+			try {
+				options |= chunkSizeOption(chunkSizeKB * 1024);
+			} catch (IllegalArgumentException e) {
+				CCorePlugin.log(e);
+			}
+		}
+		return options;
+	}
+
+	/**
+	 * Returns the option bits for creating a database with the given chunk size.
+	 * @param chunkSize a power of two between {@link #CHUNK_SIZE} and {@link #MAX_CHUNK_SIZE}
+	 * @throws IllegalArgumentException if the chunk size is not supported
+	 */
+	public static int chunkSizeOption(int chunkSize) {
+		if (!isValidChunkSize(chunkSize)) {
+			throw new IllegalArgumentException("Unsupported chunk size: " + chunkSize); //$NON-NLS-1$
+		}
+		return Integer.numberOfTrailingZeros(chunkSize) << OPTION_CHUNK_SIZE_SHIFT;
+	}
+
+	private static int getChunkSize(int options) {
+		final int bits = (options & OPTION_CHUNK_SIZE_MASK) >> OPTION_CHUNK_SIZE_SHIFT;
+		return bits == 0 ? CHUNK_SIZE : 1 << bits;
+	}
+
+	private static boolean isValidChunkSize(int chunkSize) {
+		return chunkSize >= CHUNK_SIZE && chunkSize <= MAX_CHUNK_SIZE && Integer.bitCount(chunkSize) == 1;
+	}
+
+	private int readChunkSize() throws IOException, CoreException {
+		final ByteBuffer buf = ByteBuffer.allocate(INT_SIZE);
+		read(buf, CHUNK_SIZE_OFFSET);
+		final int chunkSize = buf.getInt(0);
+		if (chunkSize == 0) {
+			return CHUNK_SIZE; // Databases with the default chunk size do not record it.
+		}
+		if (!isValidChunkSize(chunkSize)) {
+			databaseCorruptionDetected();
+		}
+		return chunkSize;
+	}
+
+	private void writeChunkSize() {
+		if (fChunkSize != CHUNK_SIZE) {
+			fHeaderChunk.putInt(CHUNK_SIZE_OFFSET, fChunkSize);
+		}
+	}
+
+	/**
+	 * Gives the file a new identity, such that a journal written for its previous content does
+	 * not apply to it.
+	 */
+	private void writeNewIdentity() throws IOException {
+		final int identity = ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE);
+		fHeaderChunk.putInt(IDENTITY_OFFSET, identity);
+		fHeaderChunk.putInt(GENERATION_OFFSET, 0);
+		if (fJournal != null) {
+			fJournal.reset(identity, 0);
+		}
+	}
+
+	/**
+	 * Returns the size of the chunks of this database.
+	 */
+	public int getChunkSize() {
+		return fChunkSize;
+	}
+
+	/**
+	 * Returns the maximum size that can be allocated with {@link #malloc(int)} in this database. This is
+	 * at least {@link #MAX_MALLOC_SIZE}.
+	 */
+	public int getMaxMallocSize() {
+		return fMaxMallocSize;
+	}
+
+	/**
+	 * Returns the maximum length in bytes of strings that are stored in a single record. Longer strings
+	 * are stored as {@link LongString}s.
+	 */
+	public int getMaxShortStringByteLength() {
+		return fMaxMallocSize - ShortString.CHARS;
+	}
+
+	/**
+	 * Returns the options this database was opened with.
+	 */
+	public int getOptions() {
+		return fOptions;
+	}
+
+	/**
+	 * Returns whether the chunks of this database operate directly on a memory-mapped file.
+	 */
+	public boolean isMemoryMapped() {
+		return (fOptions & OPTION_MEMORY_MAPPED) != 0;
+	}
+
+	/**
+	 * Returns whether flushed chunks of this database are written to a journal.
+	 */
+	public boolean isJournaled() {
+		return (fOptions & OPTION_JOURNAL) != 0 && !isMemoryMapped();
+	}
+
+	/**
+	 * Returns whether this database reads its chunks from a compressed file.
+	 */
+	public boolean isCompressed() {
+		return fCompressed != null;
+	}
+
 	private void openFile() throws FileNotFoundException {
 		fFile = new RandomAccessFile(fLocation, fReadOnly ? "r" : "rw"); //$NON-NLS-1$ //$NON-NLS-2$
 	}
@@ -177,7 +493,11 @@ public class Database {
 		int retries = 0;
 		do {
 			try {
-				fFile.getChannel().read(buf, position);
+				if (fCompressed != null) {
+					fCompressed.read(fFile.getChannel(), buf, position);
+				} else {
+					fFile.getChannel().read(buf, position);
+				}
 				return;
 			} catch (ClosedChannelException e) {
 				// Bug 219834 file may have be closed by interrupting a thread during an I/O operation.
@@ -186,6 +506,26 @@ public class Database {
 		} while (true);
 	}
 
+	/**
+	 * Reads the content of a chunk, either from the journal or from the database file.
+	 */
+	void readChunk(ByteBuffer buf, int chunkIndex) throws IOException {
+		if (fJournal == null || !fJournal.read(buf, chunkIndex)) {
+			read(buf, (long) chunkIndex * fChunkSize);
+		}
+	}
+
+	/**
+	 * Writes the content of a chunk, either to the journal or to the database file.
+	 */
+	void writeChunk(ByteBuffer buf, int chunkIndex) throws IOException {
+		if (fJournal != null) {
+			fJournal.append(buf, chunkIndex);
+		} else {
+			write(buf, (long) chunkIndex * fChunkSize);
+		}
+	}
+
 	void write(ByteBuffer buf, long position) throws IOException {
 		int retries = 0;
 		while (true) {
@@ -209,10 +549,22 @@ public class Database {
 
 	public void transferTo(FileChannel target) throws IOException {
 		assert fLocked;
+		if (fJournal != null) {
+			transferCommittedChunksTo(target);
+			return;
+		}
+		if (fCompressed != null) {
+			fCompressed.transferTo(fFile.getChannel(), target);
+			return;
+		}
 		final FileChannel from = fFile.getChannel();
 		long nRead = 0;
 		long position = 0;
 		long size = from.size();
+		if (isMemoryMapped()) {
+			// The mapped file may have been grown beyond the chunks in use.
+			size = Math.min(size, (long) fChunksUsed * fChunkSize);
+		}
 		while (position < size) {
 			nRead = from.transferTo(position, 4096 * 16, target);
 			if (nRead == 0) {
@@ -223,6 +575,26 @@ public class Database {
 		}
 	}
 
+	/**
+	 * Writes the content of the database as of the last commit of the journal.
+	 */
+	private void transferCommittedChunksTo(FileChannel target) throws IOException {
+		int nChunks = fJournal.getCommittedChunksUsed();
+		if (nChunks == 0) {
+			nChunks = (int) (fFile.length() / fChunkSize);
+		}
+		for (int i = 0; i < nChunks; i++) {
+			final ByteBuffer buf = ByteBuffer.allocate(fChunkSize);
+			if (!fJournal.readCommitted(buf, i)) {
+				read(buf, (long) i * fChunkSize);
+			}
+			buf.clear();
+			while (buf.hasRemaining()) {
+				target.write(buf);
+			}
+		}
+	}
+
 	public int getVersion() {
 		return fVersion;
 	}
@@ -243,13 +615,28 @@ public class Database {
 
 		fVersion = version;
 		// Clear the first chunk.
-		fHeaderChunk.clear(0, CHUNK_SIZE);
+		fHeaderChunk.clear(0, fChunkSize);
+		fNonEmptyFreeLists = null;
+		writeChunkSize();
 		// Chunks have been removed from the cache, so we may just reset the array of chunks.
-		fChunks = new Chunk[] { null };
-		fChunksUsed = fChunksAllocated = fChunks.length;
+		fChunks = new AtomicReferenceArray<>(1);
+		fChunksUsed = fChunks.length();
+		synchronized (fMappingLock) {
+			if (fMappedSegments != null) {
+				// Segments must not be accessed beyond the truncated file, they are mapped again on demand.
+				fMappedSegments = new MappedByteBuffer[0];
+			}
+		}
 		try {
-			fHeaderChunk.flush(); // Zero out header chunk.
-			fFile.getChannel().truncate(CHUNK_SIZE); // Truncate database.
+			// The images of the old content must not be recovered.
+			writeNewIdentity();
+			if (fJournal != null) {
+				fHeaderChunk.flushToFile(); // Zero out header chunk.
+				fIsMarkedIncomplete = true;
+			} else {
+				fHeaderChunk.flush(); // Zero out header chunk.
+			}
+			fFile.getChannel().truncate(fChunkSize); // Truncate database.
 		} catch (IOException e) {
 			CCorePlugin.log(e);
 		}
@@ -274,12 +661,15 @@ public class Database {
 	}
 
 	private void removeChunksFromCache() {
-		synchronized (fCache) {
-			for (int i = 1; i < fChunks.length; i++) {
-				Chunk chunk = fChunks[i];
-				if (chunk != null) {
-					fCache.remove(chunk);
-					fChunks[i] = null;
+		final AtomicReferenceArray<Chunk> chunks = fChunks;
+		for (int i = 1; i < chunks.length(); i++) {
+			if (chunks.get(i) != null) {
+				synchronized (fCache.getLock(this, i)) {
+					Chunk chunk = chunks.get(i);
+					if (chunk != null) {
+						fCache.remove(chunk);
+						chunks.set(i, null);
+					}
 				}
 			}
 		}
@@ -290,33 +680,118 @@ public class Database {
 	 * @throws CoreException
 	 */
 	public Chunk getChunk(long offset) throws CoreException {
-		if (offset < CHUNK_SIZE) {
+		if (offset < fChunkSize) {
 			return fHeaderChunk;
 		}
-		long long_index = offset / CHUNK_SIZE;
+		long long_index = offset >> fChunkSizeBits;
 		assert long_index < Integer.MAX_VALUE;
+		assert fLocked;
 
-		synchronized (fCache) {
-			assert fLocked;
-			final int index = (int) long_index;
-			if (index < 0 || index >= fChunks.length) {
-				databaseCorruptionDetected();
-			}
-			Chunk chunk = fChunks[index];
+		final int index = (int) long_index;
+		final AtomicReferenceArray<Chunk> chunks = fChunks;
+		if (index < 0 || index >= chunks.length()) {
+			databaseCorruptionDetected();
+		}
+		Chunk chunk = chunks.get(index);
+		if (chunk != null && (chunk.fLocked || !fExclusiveLock)) {
+			// Chunks that do not need to be locked can be used without synchronization, an eviction
+			// that happens concurrently does not invalidate the content of the chunk.
+			chunk.fCacheHitFlag = true;
+			cacheHits.increment();
+			return chunk;
+		}
+		if (fExclusiveLock && isMemoryMapped() && !fIsMarkedIncomplete) {
+			markMappedFileIncomplete();
+		}
+		synchronized (fCache.getLock(this, index)) {
+			chunk = chunks.get(index);
 			if (chunk == null) {
-				cacheMisses++;
-				chunk = new Chunk(this, index);
+				cacheMisses.increment();
+				chunk = newChunk(index);
 				chunk.read();
 				// Put the chunk in fChunks after it was read successfully.
-				fChunks[index] = chunk;
+				if (fCache.add(chunk, fExclusiveLock)) {
+					chunks.set(index, chunk);
+				}
 			} else {
-				cacheHits++;
+				cacheHits.increment();
+				fCache.add(chunk, fExclusiveLock);
+			}
+			if (fExclusiveLock) {
+				fChunksLockedSinceFlush++;
 			}
-			fCache.add(chunk, fExclusiveLock);
 			return chunk;
 		}
 	}
 
+	/**
+	 * Creates a chunk for the given index, which is backed either by a heap buffer or by
+	 * the memory-mapped file.
+	 */
+	private Chunk newChunk(int index) throws CoreException {
+		if (!isMemoryMapped()) {
+			return new Chunk(this, index);
+		}
+		return new Chunk(this, index, getMappedRegion(index));
+	}
+
+	private ByteBuffer getMappedRegion(int chunkIndex) throws CoreException {
+		final MappedByteBuffer segment = getMappedSegment(chunkIndex / fChunksPerSegment);
+		final int start = (chunkIndex % fChunksPerSegment) * fChunkSize;
+		final ByteBuffer region = segment.duplicate();
+		region.position(start).limit(start + fChunkSize);
+		return region.slice();
+	}
+
+	private MappedByteBuffer getMappedSegment(int segmentIndex) throws CoreException {
+		synchronized (fMappingLock) {
+			return getMappedSegmentLocked(segmentIndex);
+		}
+	}
+
+	private MappedByteBuffer getMappedSegmentLocked(int segmentIndex) throws CoreException {
+		if (segmentIndex >= fMappedSegments.length) {
+			MappedByteBuffer[] newSegments = new MappedByteBuffer[segmentIndex + 1];
+			System.arraycopy(fMappedSegments, 0, newSegments, 0, fMappedSegments.length);
+			fMappedSegments = newSegments;
+		}
+		MappedByteBuffer segment = fMappedSegments[segmentIndex];
+		if (segment == null) {
+			final long position = (long) segmentIndex * MAPPED_SEGMENT_SIZE;
+			try {
+				if (fReadOnly) {
+					// A read-only mapping cannot extend the file.
+					long size = Math.min(MAPPED_SEGMENT_SIZE, fFile.length() - position);
+					segment = fFile.getChannel().map(MapMode.READ_ONLY, position, size);
+				} else {
+					// Grows the file to the end of the segment if necessary.
+					segment = fFile.getChannel().map(MapMode.READ_WRITE, position, MAPPED_SEGMENT_SIZE);
+				}
+			} catch (IOException e) {
+				throw new CoreException(new DBStatus(e));
+			}
+			fMappedSegments[segmentIndex] = segment;
+		}
+		return segment;
+	}
+
+	private void forceMappedSegments() throws CoreException {
+		if (!isMemoryMapped() || fReadOnly)
+			return;
+
+		MappedByteBuffer[] segments;
+		synchronized (fMappingLock) {
+			segments = fMappedSegments;
+		}
+		if (segments == null)
+			return;
+		for (MappedByteBuffer segment : segments) {
+			if (segment != null) {
+				segment.force();
+			}
+		}
+	}
+
 	private void databaseCorruptionDetected() throws CoreException {
 		String msg = MessageFormat.format(Messages.getString("Database.CorruptedDatabase"), //$NON-NLS-1$
 				new Object[] { fLocation.getName() });
@@ -328,7 +803,7 @@ public class Database {
 	 */
 	public long malloc(final int datasize) throws CoreException {
 		assert fExclusiveLock;
-		assert datasize >= 0 && datasize <= MAX_MALLOC_SIZE;
+		assert datasize >= 0 && datasize <= fMaxMallocSize;
 
 		int needDeltas = (datasize + BLOCK_HEADER_SIZE + BLOCK_SIZE_DELTA - 1) / BLOCK_SIZE_DELTA;
 		if (needDeltas < MIN_BLOCK_DELTAS) {
@@ -337,25 +812,77 @@ public class Database {
 
 		// Which block size.
 		long freeblock = 0;
-		int useDeltas;
-		for (useDeltas = needDeltas; useDeltas <= MAX_BLOCK_DELTAS; useDeltas++) {
+		int useDeltas = findFreeList(needDeltas);
+		if (useDeltas > 0) {
 			freeblock = getFirstBlock(useDeltas * BLOCK_SIZE_DELTA);
-			if (freeblock != 0)
-				break;
 		}
 
 		// Get the block.
-		Chunk chunk;
 		if (freeblock == 0) {
 			// Allocate a new chunk.
 			freeblock = createNewChunk();
-			useDeltas = MAX_BLOCK_DELTAS;
-			chunk = getChunk(freeblock);
-		} else {
-			chunk = getChunk(freeblock);
+			useDeltas = fMaxBlockDeltas;
+			return allocateBlock(getChunk(freeblock), freeblock, useDeltas, needDeltas);
+		}
+		Chunk chunk = getChunk(freeblock);
+		removeBlock(chunk, useDeltas * BLOCK_SIZE_DELTA, freeblock);
+		return allocateBlock(chunk, freeblock, useDeltas, needDeltas);
+	}
+
+	/**
+	 * Allocates blocks of the same size for a number of records and stores their offsets in the
+	 * given array. As far as possible the blocks are taken consecutively out of a single free block,
+	 * which saves searching the free lists for every record and keeps the records next to each other.
+	 * Each of the blocks can be freed individually.
+	 */
+	public void malloc(final int datasize, final long[] result) throws CoreException {
+		assert fExclusiveLock;
+		assert datasize >= 0 && datasize <= fMaxMallocSize;
+
+		int needDeltas = (datasize + BLOCK_HEADER_SIZE + BLOCK_SIZE_DELTA - 1) / BLOCK_SIZE_DELTA;
+		if (needDeltas < MIN_BLOCK_DELTAS) {
+			needDeltas = MIN_BLOCK_DELTAS;
+		}
+		int filled = 0;
+		while (filled < result.length) {
+			int count = Math.min(result.length - filled, fMaxBlockDeltas / needDeltas);
+			long freeblock = 0;
+			int useDeltas = findFreeList(count * needDeltas);
+			if (useDeltas < 0) {
+				// Take the largest free block that holds more than one of the records.
+				useDeltas = findLargestFreeList(count * needDeltas - 1);
+				if (useDeltas >= 2 * needDeltas) {
+					count = useDeltas / needDeltas;
+				} else {
+					useDeltas = -1;
+				}
+			}
+			if (useDeltas > 0) {
+				freeblock = getFirstBlock(useDeltas * BLOCK_SIZE_DELTA);
+			}
+			if (freeblock == 0) {
+				// Use the smaller free blocks before a new chunk is allocated, the remainder of
+				// the new chunk is used for the next records.
+				result[filled++] = malloc(datasize);
+				continue;
+			}
+			final Chunk chunk = getChunk(freeblock);
 			removeBlock(chunk, useDeltas * BLOCK_SIZE_DELTA, freeblock);
+			long block = freeblock;
+			for (int i = 1; i < count; i++) {
+				result[filled++] = allocateBlock(chunk, block, needDeltas, needDeltas);
+				block += needDeltas * BLOCK_SIZE_DELTA;
+			}
+			// The last block gets the rest, of which the unused part is added to the free lists.
+			result[filled++] = allocateBlock(chunk, block, useDeltas - (count - 1) * needDeltas, needDeltas);
 		}
+	}
 
+	/**
+	 * Marks a block that is no longer in a free list as used, the unused part is added to the free
+	 * lists.
+	 */
+	private long allocateBlock(Chunk chunk, long freeblock, int useDeltas, int needDeltas) throws CoreException {
 		final int unusedDeltas = useDeltas - needDeltas;
 		if (unusedDeltas >= MIN_BLOCK_DELTAS) {
 			// Add in the unused part of our block.
@@ -365,7 +892,7 @@ public class Database {
 
 		// Make our size negative to show in use.
 		final int usedSize = useDeltas * BLOCK_SIZE_DELTA;
-		chunk.putShort(freeblock, (short) -usedSize);
+		putBlockSize(chunk, freeblock, -usedSize);
 
 		// Clear out the block, lots of people are expecting this.
 		chunk.clear(freeblock + BLOCK_HEADER_SIZE, usedSize - BLOCK_HEADER_SIZE);
@@ -376,25 +903,25 @@ public class Database {
 
 	private long createNewChunk() throws CoreException {
 		assert fExclusiveLock;
-		synchronized (fCache) {
-			final int newChunkIndex = fChunksUsed; // fChunks.length;
-
-			final Chunk chunk = new Chunk(this, newChunkIndex);
-			chunk.fDirty = true;
+		if (isMemoryMapped()) {
+			markMappedFileIncomplete();
+		}
+		final int newChunkIndex = fChunksUsed; // fChunks.length;
 
-			if (newChunkIndex >= fChunksAllocated) {
-				int increment = Math.max(1024, fChunksAllocated / 20);
-				Chunk[] newchunks = new Chunk[fChunksAllocated + increment];
-				System.arraycopy(fChunks, 0, newchunks, 0, fChunksAllocated);
+		final Chunk chunk = newChunk(newChunkIndex);
+		chunk.fDirty = true;
 
-				fChunks = newchunks;
-				fChunksAllocated += increment;
-			}
+		final int chunksAllocated = fChunks.length();
+		if (newChunkIndex >= chunksAllocated) {
+			int increment = Math.max(1024, chunksAllocated / 20);
+			resizeChunks(chunksAllocated + increment);
+		}
+		synchronized (fCache.getLock(this, newChunkIndex)) {
 			fChunksUsed += 1;
-			fChunks[newChunkIndex] = chunk;
+			fChunks.set(newChunkIndex, chunk);
 
 			fCache.add(chunk, true);
-			long address = (long) newChunkIndex * CHUNK_SIZE;
+			long address = (long) newChunkIndex * fChunkSize;
 
 			/*
 			 * Non-dense pointers are at most 31 bits dense pointers are at most 35 bits Check the sizes here
@@ -412,37 +939,130 @@ public class Database {
 		}
 	}
 
+	/**
+	 * Replaces the array of chunks with one of the given length. Holds the locks of all shards of
+	 * the cache, such that no entry of the array can be modified while it is copied.
+	 */
+	private void resizeChunks(int newLength) {
+		fCache.runExclusively(() -> {
+			final AtomicReferenceArray<Chunk> oldChunks = fChunks;
+			final AtomicReferenceArray<Chunk> newChunks = new AtomicReferenceArray<>(newLength);
+			for (int i = 0; i < oldChunks.length(); i++) {
+				newChunks.set(i, oldChunks.get(i));
+			}
+			fChunks = newChunks;
+		});
+	}
+
 	/**
 	 * For testing purposes, only.
 	 */
 	private long createNewChunks(int numChunks) throws CoreException {
 		assert fExclusiveLock;
-		synchronized (fCache) {
-			final int oldLen = fChunks.length;
-			Chunk[] newchunks = new Chunk[oldLen + numChunks];
-			System.arraycopy(fChunks, 0, newchunks, 0, oldLen);
-			for (int i = oldLen; i < oldLen + numChunks; i++) {
-				newchunks[i] = null;
-			}
-			final Chunk chunk = new Chunk(this, oldLen + numChunks - 1);
-			chunk.fDirty = true;
-			newchunks[oldLen + numChunks - 1] = chunk;
-			fChunks = newchunks;
+		if (isMemoryMapped()) {
+			markMappedFileIncomplete();
+		}
+		final int oldLen = fChunks.length();
+		final int lastIndex = oldLen + numChunks - 1;
+		final Chunk chunk = newChunk(lastIndex);
+		chunk.fDirty = true;
+		resizeChunks(oldLen + numChunks);
+		synchronized (fCache.getLock(this, lastIndex)) {
+			fChunks.set(lastIndex, chunk);
 			fCache.add(chunk, true);
-			fChunksAllocated = oldLen + numChunks;
 			fChunksUsed = oldLen + numChunks;
-			return (long) (oldLen + numChunks - 1) * CHUNK_SIZE;
+			return (long) lastIndex * fChunkSize;
 		}
 	}
 
 	private long getFirstBlock(int blocksize) throws CoreException {
 		assert fLocked;
-		return fHeaderChunk.getFreeRecPtr((blocksize / BLOCK_SIZE_DELTA - MIN_BLOCK_DELTAS + 1) * INT_SIZE);
+		return fHeaderChunk.getFreeRecPtr(getFreeListOffset(blocksize));
 	}
 
 	private void setFirstBlock(int blocksize, long block) throws CoreException {
 		assert fExclusiveLock;
-		fHeaderChunk.putFreeRecPtr((blocksize / BLOCK_SIZE_DELTA - MIN_BLOCK_DELTAS + 1) * INT_SIZE, block);
+		fHeaderChunk.putFreeRecPtr(getFreeListOffset(blocksize), block);
+		final long[] nonEmpty = fNonEmptyFreeLists;
+		if (nonEmpty != null) {
+			final int deltas = blocksize / BLOCK_SIZE_DELTA;
+			if (block != 0) {
+				nonEmpty[deltas >>> 6] |= 1L << deltas;
+			} else {
+				nonEmpty[deltas >>> 6] &= ~(1L << deltas);
+			}
+		}
+	}
+
+	private long[] getNonEmptyFreeLists() throws CoreException {
+		if (fNonEmptyFreeLists == null) {
+			final long[] nonEmpty = new long[(fMaxBlockDeltas >>> 6) + 1];
+			for (int deltas = MIN_BLOCK_DELTAS; deltas <= fMaxBlockDeltas; deltas++) {
+				if (getFirstBlock(deltas * BLOCK_SIZE_DELTA) != 0) {
+					nonEmpty[deltas >>> 6] |= 1L << deltas;
+				}
+			}
+			fNonEmptyFreeLists = nonEmpty;
+		}
+		return fNonEmptyFreeLists;
+	}
+
+	/**
+	 * Returns the smallest number of deltas of at least the given one, for which the free list is not
+	 * empty, or <code>-1</code>.
+	 */
+	private int findFreeList(int minDeltas) throws CoreException {
+		final long[] nonEmpty = getNonEmptyFreeLists();
+		int i = minDeltas >>> 6;
+		if (i >= nonEmpty.length)
+			return -1;
+		long bits = nonEmpty[i] & (-1L << minDeltas);
+		while (bits == 0) {
+			if (++i == nonEmpty.length)
+				return -1;
+			bits = nonEmpty[i];
+		}
+		return (i << 6) + Long.numberOfTrailingZeros(bits);
+	}
+
+	/**
+	 * Returns the largest number of deltas of at most the given one, for which the free list is not
+	 * empty, or <code>-1</code>.
+	 */
+	private int findLargestFreeList(int maxDeltas) throws CoreException {
+		final long[] nonEmpty = getNonEmptyFreeLists();
+		if (maxDeltas < 0)
+			return -1;
+		int i = Math.min(maxDeltas >>> 6, nonEmpty.length - 1);
+		long bits = nonEmpty[i];
+		if (i == maxDeltas >>> 6) {
+			bits &= -1L >>> (63 - (maxDeltas & 63));
+		}
+		while (bits == 0) {
+			if (--i < 0)
+				return -1;
+			bits = nonEmpty[i];
+		}
+		return (i << 6) + 63 - Long.numberOfLeadingZeros(bits);
+	}
+
+	/**
+	 * Returns the offset of the head of the free list for blocks of the given size within the header chunk.
+	 */
+	private static int getFreeListOffset(int blocksize) {
+		if (blocksize <= CHUNK_SIZE) {
+			return (blocksize / BLOCK_SIZE_DELTA - MIN_BLOCK_DELTAS + 1) * INT_SIZE;
+		}
+		// Lists for the larger blocks of large chunks follow the first CHUNK_SIZE bytes of the header.
+		return CHUNK_SIZE + ((blocksize - CHUNK_SIZE) / BLOCK_SIZE_DELTA - 1) * INT_SIZE;
+	}
+
+	private void putBlockSize(Chunk chunk, long block, int blocksize) {
+		chunk.putShort(block, (short) (blocksize >> fBlockSizeShift));
+	}
+
+	private int getBlockSize(Chunk chunk, long block) {
+		return chunk.getShort(block) << fBlockSizeShift;
 	}
 
 	private void removeBlock(Chunk chunk, int blocksize, long block) throws CoreException {
@@ -462,7 +1082,7 @@ public class Database {
 	private void addBlock(Chunk chunk, int blocksize, long block) throws CoreException {
 		assert fExclusiveLock;
 		// Mark our size
-		chunk.putShort(block, (short) blocksize);
+		putBlockSize(chunk, block, blocksize);
 
 		// Add us to the head of the list.
 		long prevfirst = getFirstBlock(blocksize);
@@ -483,7 +1103,7 @@ public class Database {
 		// TODO Look for opportunities to merge blocks
 		long block = offset - BLOCK_HEADER_SIZE;
 		Chunk chunk = getChunk(block);
-		int blocksize = -chunk.getShort(block);
+		int blocksize = -getBlockSize(chunk, block);
 		if (blocksize < 0) {
 			// Already freed.
 			throw new CoreException(new Status(IStatus.ERROR, CCorePlugin.PLUGIN_ID, 0,
@@ -494,6 +1114,231 @@ public class Database {
 		stringCache.remove(offset); // also remove record from string cache (if it exists)
 	}
 
+	/**
+	 * Prepares the relocation of records by {@link #relocate(long)}. Adjacent free blocks are
+	 * merged, and the address below which the records in use would fit is chosen as the limit for
+	 * the relocation. Until {@link #finishRelocation()} is called, free blocks beyond the limit are
+	 * removed from the free lists, such that they are not allocated.
+	 * <p>
+	 * No other blocks may be allocated or freed while records are relocated. The database must not
+	 * be flushed other than by {@link #flushRelocationBatch()}.
+	 */
+	public void startRelocation() throws CoreException {
+		assert fExclusiveLock;
+		assert fRelocationLimit == 0;
+		long usedBytes = 0;
+		for (int i = 1; i < fChunksUsed; i++) {
+			usedBytes += mergeFreeBlocks(i, true);
+			if (i % COMPACTION_BATCH_CHUNKS == 0) {
+				flush(); // Limit the number of chunks locked in the cache.
+			}
+		}
+		int limitChunk = 1 + (int) ((usedBytes + fChunkSize - 1) / fChunkSize);
+		limitChunk += limitChunk / 16; // Space lost to fragmentation.
+		if (limitChunk >= fChunksUsed) {
+			// Nothing to relocate, trailing chunks that are free can still be released.
+			limitChunk = fChunksUsed;
+			while (limitChunk > 1 && isFreeChunk(limitChunk - 1)) {
+				limitChunk--;
+			}
+		}
+		for (int i = limitChunk; i < fChunksUsed; i++) {
+			final long start = (long) i * fChunkSize;
+			final Chunk chunk = getChunk(start);
+			for (long block = start; block < start + fChunkSize;) {
+				final int blocksize = getBlockSize(chunk, block);
+				if (blocksize == 0 || Math.abs(blocksize) > start + fChunkSize - block) {
+					break; // Chunk is not divided into blocks.
+				}
+				if (blocksize > 0) {
+					removeBlock(chunk, blocksize, block);
+				}
+				block += Math.abs(blocksize);
+			}
+		}
+		fRelocationLimit = (long) limitChunk * fChunkSize;
+	}
+
+	/**
+	 * Moves the record at the given offset to a free block below the limit chosen by
+	 * {@link #startRelocation()}. The caller is responsible for updating all pointers to the record.
+	 *
+	 * @return the new offset of the record, or the given offset if the record is not moved.
+	 */
+	public long relocate(long offset) throws CoreException {
+		assert fExclusiveLock;
+		if (offset < fRelocationLimit || fRelocationLimit == 0) {
+			return offset;
+		}
+		final long block = offset - BLOCK_HEADER_SIZE;
+		final Chunk chunk = getChunk(block);
+		final int blocksize = -getBlockSize(chunk, block);
+		if (blocksize <= 0) {
+			databaseCorruptionDetected();
+		}
+		// The free lists do not contain blocks beyond the limit, the first block of a list can be used.
+		final int needDeltas = blocksize / BLOCK_SIZE_DELTA;
+		final int useDeltas = findFreeList(needDeltas);
+		if (useDeltas > 0) {
+			final long freeblock = getFirstBlock(useDeltas * BLOCK_SIZE_DELTA);
+			if (freeblock != 0) {
+				final Chunk target = getChunk(freeblock);
+				removeBlock(target, useDeltas * BLOCK_SIZE_DELTA, freeblock);
+				final long newOffset = allocateBlock(target, freeblock, useDeltas, needDeltas);
+				final byte[] content = new byte[blocksize - BLOCK_HEADER_SIZE];
+				chunk.get(offset, content);
+				target.put(newOffset, content, content.length);
+				// The block stays out of the free lists until the relocation is finished.
+				putBlockSize(chunk, block, blocksize);
+				freed += blocksize;
+				return newOffset;
+			}
+		}
+		return offset;
+	}
+
+	/**
+	 * Writes the changed chunks to the file and unlocks the chunks in the cache, once a batch of
+	 * chunks has been locked since the last flush. Keeps the memory used while records are relocated
+	 * bounded. The file stays marked as incomplete until the relocation is finished, because blocks
+	 * beyond the limit are not in the free lists until then.
+	 * <p>
+	 * To be called while records are relocated, at a point where the pointers to all relocated
+	 * records have been updated. Chunks obtained before the call must not be written to after it,
+	 * they may have been evicted from the cache.
+	 */
+	public void flushRelocationBatch() throws CoreException {
+		assert fExclusiveLock;
+		assert fRelocationLimit != 0;
+		if (fChunksLockedSinceFlush >= COMPACTION_BATCH_CHUNKS) {
+			try {
+				giveUpExclusiveLock(true, false);
+			} finally {
+				setExclusiveLock();
+			}
+		}
+	}
+
+	/**
+	 * Finishes the relocation of records started with {@link #startRelocation()}. Free chunks at the
+	 * end of the database are released and the file is truncated, the remaining free blocks beyond
+	 * the limit are merged and added to the free lists again.
+	 *
+	 * @return the number of bytes by which the database has shrunk.
+	 */
+	public long finishRelocation() throws CoreException {
+		assert fExclusiveLock;
+		if (fRelocationLimit == 0) {
+			return 0;
+		}
+		final int limitChunk = (int) (fRelocationLimit / fChunkSize);
+		fRelocationLimit = 0;
+		int newChunksUsed = fChunksUsed;
+		while (newChunksUsed > limitChunk && isFreeChunk(newChunksUsed - 1)) {
+			newChunksUsed--;
+		}
+		for (int i = limitChunk; i < newChunksUsed; i++) {
+			mergeFreeBlocks(i, false);
+		}
+		if (newChunksUsed == fChunksUsed) {
+			return 0;
+		}
+		final long reclaimed = (long) (fChunksUsed - newChunksUsed) * fChunkSize;
+		if (fJournal == null) {
+			// The file is truncated right away, pointers on disk may still refer to the released chunks.
+			markFileIncomplete();
+		}
+		final int oldChunksUsed = fChunksUsed;
+		fChunksUsed = newChunksUsed;
+		for (int i = newChunksUsed; i < oldChunksUsed; i++) {
+			synchronized (fCache.getLock(this, i)) {
+				Chunk chunk = fChunks.get(i);
+				if (chunk != null) {
+					fCache.remove(chunk);
+					chunk.fDirty = false;
+					chunk.fLocked = false;
+					fChunks.set(i, null);
+				}
+			}
+		}
+		if (fJournal == null && !isMemoryMapped()) {
+			// The file of a journaled database is truncated by the next checkpoint, a memory-mapped
+			// file is truncated when it is closed.
+			try {
+				fFile.getChannel().truncate((long) newChunksUsed * fChunkSize);
+			} catch (IOException e) {
+				throw new CoreException(new DBStatus(e));
+			}
+		}
+		return reclaimed;
+	}
+
+	/**
+	 * Merges the adjacent free blocks of a chunk.
+	 *
+	 * @param listed whether the free blocks of the chunk are in the free lists, otherwise the merged
+	 *     blocks are added to the free lists.
+	 * @return the number of bytes of the blocks in use.
+	 */
+	private long mergeFreeBlocks(int chunkIndex, boolean listed) throws CoreException {
+		final long start = (long) chunkIndex * fChunkSize;
+		final long end = start + fChunkSize;
+		final Chunk chunk = getChunk(start);
+		long usedBytes = 0;
+		long block = start;
+		while (block < end) {
+			final int blocksize = getBlockSize(chunk, block);
+			if (blocksize == 0 || Math.abs(blocksize) > end - block) {
+				// Chunk is not divided into blocks, e.g. chunks set aside for testing.
+				return usedBytes + end - block;
+			}
+			if (blocksize < 0) {
+				usedBytes -= blocksize;
+				block -= blocksize;
+				continue;
+			}
+			long next = block + blocksize;
+			while (next < end) {
+				final int nextsize = getBlockSize(chunk, next);
+				if (nextsize <= 0 || nextsize > end - next) {
+					break;
+				}
+				next += nextsize;
+			}
+			final int mergedsize = (int) (next - block);
+			if (listed) {
+				if (mergedsize != blocksize) {
+					for (long b = block; b < next;) {
+						final int size = getBlockSize(chunk, b);
+						removeBlock(chunk, size, b);
+						b += size;
+					}
+					addBlock(chunk, mergedsize, block);
+				}
+			} else {
+				addBlock(chunk, mergedsize, block);
+			}
+			block = next;
+		}
+		return usedBytes;
+	}
+
+	/**
+	 * Returns whether all blocks of the chunk are free.
+	 */
+	private boolean isFreeChunk(int chunkIndex) throws CoreException {
+		final long start = (long) chunkIndex * fChunkSize;
+		final Chunk chunk = getChunk(start);
+		for (long block = start; block < start + fChunkSize;) {
+			final int blocksize = getBlockSize(chunk, block);
+			if (blocksize <= 0) {
+				return false;
+			}
+			block += blocksize;
+		}
+		return true;
+	}
+
 	public void putByte(long offset, byte value) throws CoreException {
 		getChunk(offset).putByte(offset, value);
 	}
@@ -592,7 +1437,7 @@ public class Database {
 			bytelen = 2 * len;
 		}
 
-		if (bytelen > ShortString.MAX_BYTE_LENGTH) {
+		if (bytelen > getMaxShortStringByteLength()) {
 			return addStringToCache(new LongString(this, chars, useBytes));
 		} else {
 			return addStringToCache(new ShortString(this, chars, useBytes));
@@ -617,7 +1462,7 @@ public class Database {
 		}
 		final int l = getInt(offset);
 		int bytelen = l < 0 ? -l : 2 * l;
-		if (bytelen > ShortString.MAX_BYTE_LENGTH) {
+		if (bytelen > getMaxShortStringByteLength()) {
 			return addStringToCache(new LongString(this, offset));
 		}
 		return addStringToCache(new ShortString(this, offset));
@@ -641,12 +1486,12 @@ public class Database {
 	 * For debugging purposes, only.
 	 */
 	public void reportFreeBlocks() throws CoreException {
-		System.out.println("Allocated size: " + fChunksUsed * CHUNK_SIZE); //$NON-NLS-1$
+		System.out.println("Allocated size: " + (long) fChunksUsed * fChunkSize); //$NON-NLS-1$
 		System.out.println("malloc'ed: " + malloced); //$NON-NLS-1$
 		System.out.println("free'd: " + freed); //$NON-NLS-1$
-		System.out.println("wasted: " + (fChunksUsed * CHUNK_SIZE - (malloced - freed))); //$NON-NLS-1$
+		System.out.println("wasted: " + ((long) fChunksUsed * fChunkSize - (malloced - freed))); //$NON-NLS-1$
 		System.out.println("Free blocks"); //$NON-NLS-1$
-		for (int bs = MIN_BLOCK_DELTAS * BLOCK_SIZE_DELTA; bs <= CHUNK_SIZE; bs += BLOCK_SIZE_DELTA) {
+		for (int bs = MIN_BLOCK_DELTAS * BLOCK_SIZE_DELTA; bs <= fChunkSize; bs += BLOCK_SIZE_DELTA) {
 			int count = 0;
 			long block = getFirstBlock(bs);
 			while (block != 0) {
@@ -670,11 +1515,28 @@ public class Database {
 		removeChunksFromCache();
 
 		// Chunks have been removed from the cache, so we are fine.
-		fHeaderChunk.clear(0, CHUNK_SIZE);
+		fHeaderChunk.clear(0, fChunkSize);
 		fHeaderChunk.fDirty = false;
-		fChunks = new Chunk[] { null };
-		fChunksUsed = fChunksAllocated = fChunks.length;
+		fNonEmptyFreeLists = null;
+		final long usedSize = (long) fChunksUsed * fChunkSize;
+		fChunks = new AtomicReferenceArray<>(1);
+		fChunksUsed = fChunks.length();
 		try {
+			synchronized (fMappingLock) {
+				if (fMappedSegments != null) {
+					fMappedSegments = null;
+					if (!fReadOnly) {
+						truncateMappedFile(usedSize);
+					}
+				}
+			}
+			if (fJournal != null) {
+				if (!fReadOnly) {
+					fJournal.checkpoint(fFile.getChannel());
+				}
+				fJournal.close();
+				fJournal = null;
+			}
 			fFile.close();
 		} catch (IOException e) {
 			throw new CoreException(new DBStatus(e));
@@ -682,6 +1544,18 @@ public class Database {
 		clearStringCache();
 	}
 
+	private void truncateMappedFile(long size) {
+		try {
+			if (fFile.length() > size) {
+				// Remove the unused tail of the last mapped segment.
+				fFile.getChannel().truncate(size);
+			}
+		} catch (IOException e) {
+			// Some platforms do not allow truncating a file while it is mapped. The tail consists
+			// of empty chunks, they are removed when the database is opened again.
+		}
+	}
+
 	/**
 	 * This method is public for testing purposes only.
 	 */
@@ -690,11 +1564,12 @@ public class Database {
 	}
 
 	/**
-	 * Called from any thread via the cache, protected by {@link #fCache}.
+	 * Called from any thread via the cache, protected by the lock of the cache shard
+	 * responsible for the chunk.
 	 */
 	void releaseChunk(final Chunk chunk) {
 		if (!chunk.fLocked) {
-			fChunks[chunk.fSequenceNumber] = null;
+			fChunks.compareAndSet(chunk.fSequenceNumber, chunk, null);
 		}
 	}
 
@@ -720,12 +1595,24 @@ public class Database {
 	}
 
 	public void giveUpExclusiveLock(final boolean flush) throws CoreException {
+		giveUpExclusiveLock(flush, flush);
+	}
+
+	/**
+	 * @param flush whether the changed chunks are written to the file.
+	 * @param isComplete whether the database is marked as complete after the chunks have been written.
+	 */
+	private void giveUpExclusiveLock(final boolean flush, final boolean isComplete) throws CoreException {
 		if (fExclusiveLock) {
 			try {
 				ArrayList<Chunk> dirtyChunks = new ArrayList<>();
-				synchronized (fCache) {
-					for (int i = 1; i < fChunksUsed; i++) {
-						Chunk chunk = fChunks[i];
+				final AtomicReferenceArray<Chunk> chunks = fChunks;
+				for (int i = 1; i < fChunksUsed; i++) {
+					if (chunks.get(i) == null) {
+						continue;
+					}
+					synchronized (fCache.getLock(this, i)) {
+						Chunk chunk = chunks.get(i);
 						if (chunk != null) {
 							if (chunk.fCacheIndex < 0) {
 								// Locked chunk that has been removed from cache.
@@ -733,7 +1620,7 @@ public class Database {
 									dirtyChunks.add(chunk); // Keep in fChunks until it is flushed.
 								} else {
 									chunk.fLocked = false;
-									fChunks[i] = null;
+									chunks.set(i, null);
 								}
 							} else if (chunk.fLocked) {
 								// Locked chunk, still in cache.
@@ -751,9 +1638,10 @@ public class Database {
 					}
 				}
 				// Also handles header chunk.
-				flushAndUnlockChunks(dirtyChunks, flush);
+				flushAndUnlockChunks(dirtyChunks, isComplete);
 			} finally {
 				fExclusiveLock = false;
+				fChunksLockedSinceFlush = 0;
 			}
 		}
 	}
@@ -770,13 +1658,13 @@ public class Database {
 		}
 
 		// Be careful as other readers may access chunks concurrently.
+		// Dirty chunks are locked, they cannot be released by the cache while we collect them.
 		ArrayList<Chunk> dirtyChunks = new ArrayList<>();
-		synchronized (fCache) {
-			for (int i = 1; i < fChunksUsed; i++) {
-				Chunk chunk = fChunks[i];
-				if (chunk != null && chunk.fDirty) {
-					dirtyChunks.add(chunk);
-				}
+		final AtomicReferenceArray<Chunk> chunks = fChunks;
+		for (int i = 1; i < fChunksUsed; i++) {
+			Chunk chunk = chunks.get(i);
+			if (chunk != null && chunk.fDirty) {
+				dirtyChunks.add(chunk);
 			}
 		}
 
@@ -794,10 +1682,9 @@ public class Database {
 	}
 
 	private void flushAndUnlockChunks(final ArrayList<Chunk> dirtyChunks, boolean isComplete) throws CoreException {
-		assert !Thread.holdsLock(fCache);
 		synchronized (fHeaderChunk) {
 			final boolean haveDirtyChunks = !dirtyChunks.isEmpty();
-			if (haveDirtyChunks || fHeaderChunk.fDirty) {
+			if (fJournal == null && (haveDirtyChunks || fHeaderChunk.fDirty)) {
 				markFileIncomplete();
 			}
 			if (haveDirtyChunks) {
@@ -807,19 +1694,23 @@ public class Database {
 					}
 				}
 
+				forceMappedSegments();
+
 				// Only after the chunks are flushed we may unlock and release them.
-				synchronized (fCache) {
-					for (Chunk chunk : dirtyChunks) {
+				for (Chunk chunk : dirtyChunks) {
+					synchronized (fCache.getLock(this, chunk.fSequenceNumber)) {
 						chunk.fLocked = false;
 						if (chunk.fCacheIndex < 0) {
-							fChunks[chunk.fSequenceNumber] = null;
+							fChunks.compareAndSet(chunk.fSequenceNumber, chunk, null);
 						}
 					}
 				}
 			}
 
 			if (isComplete) {
-				if (fHeaderChunk.fDirty || fIsMarkedIncomplete) {
+				if (fJournal != null) {
+					commitJournal();
+				} else if (fHeaderChunk.fDirty || fIsMarkedIncomplete) {
 					fHeaderChunk.putInt(VERSION_OFFSET, fVersion);
 					fHeaderChunk.flush();
 					fIsMarkedIncomplete = false;
@@ -828,10 +1719,35 @@ public class Database {
 		}
 	}
 
+	/**
+	 * Commits the chunks written to the journal together with the header, and checkpoints the
+	 * journal when it has grown too large.
+	 */
+	private void commitJournal() throws CoreException {
+		if (fHeaderChunk.fDirty || fIsMarkedIncomplete || fJournal.hasUncommittedImages()) {
+			fHeaderChunk.putInt(VERSION_OFFSET, fVersion);
+			fHeaderChunk.flush();
+			try {
+				fJournal.commit(fChunksUsed);
+				fIsMarkedIncomplete = false;
+				if (fJournal.needsCheckpoint()) {
+					fJournal.checkpoint(fFile.getChannel());
+				}
+			} catch (IOException e) {
+				throw new CoreException(new DBStatus(e));
+			}
+		}
+	}
+
 	private void markFileIncomplete() throws CoreException {
 		if (!fIsMarkedIncomplete) {
 			fIsMarkedIncomplete = true;
 			try {
+				// The file is written without the journal, a journal left over from an earlier session
+				// must no longer be applied to it.
+				final int generation = fHeaderChunk.getInt(GENERATION_OFFSET) + 1;
+				fHeaderChunk.putInt(GENERATION_OFFSET, generation);
+				fFile.getChannel().write(ByteBuffer.allocate(INT_SIZE).putInt(0, generation), GENERATION_OFFSET);
 				final ByteBuffer buf = ByteBuffer.wrap(new byte[4]);
 				fFile.getChannel().write(buf, 0);
 			} catch (IOException e) {
@@ -840,19 +1756,52 @@ public class Database {
 		}
 	}
 
+	/**
+	 * The operating system may write changes of a memory-mapped chunk back to the file at any time,
+	 * the file therefore has to be marked incomplete on disk before a chunk is locked for writing.
+	 */
+	private void markMappedFileIncomplete() throws CoreException {
+		synchronized (fHeaderChunk) {
+			if (!fIsMarkedIncomplete) {
+				markFileIncomplete();
+				try {
+					fFile.getChannel().force(false);
+				} catch (IOException e) {
+					throw new CoreException(new DBStatus(e));
+				}
+			}
+		}
+	}
+
 	public void resetCacheCounters() {
-		cacheHits = cacheMisses = 0;
+		cacheHits.reset();
+		cacheMisses.reset();
 	}
 
 	public long getCacheHits() {
-		return cacheHits;
+		return cacheHits.sum();
 	}
 
 	public long getCacheMisses() {
-		return cacheMisses;
+		return cacheMisses.sum();
+	}
+
+	/**
+	 * Returns the number of bytes allocated by {@link #malloc(int)} since the database was opened.
+	 */
+	public long getBytesAllocated() {
+		return malloced;
 	}
 
 	public long getSizeBytes() {
+		if (fCompressed != null) {
+			return fCompressed.length();
+		}
+		if (isMemoryMapped() || fJournal != null) {
+			// The mapped file may have been grown beyond the chunks in use, chunks in the journal are
+			// not yet written to the file.
+			return (long) fChunksUsed * fChunkSize;
+		}
 		try {
 			return fFile.length();
 		} catch (IOException e) {
@@ -0,0 +1,316 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Eclipse CDT contributors and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.pdom.db;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of chunk images for a {@link Database}, see {@link Database#OPTION_JOURNAL}.
+ * <p>
+ * Flushed chunks are appended to the journal instead of being written to their place in the
+ * database file. A commit record marks a consistent state of the database, the journal is forced
+ * to disk once per commit for all chunks written since the previous one. Committed images are
+ * copied to the database file by a checkpoint, after which the journal is truncated. After a crash
+ * the committed images are copied again, images after the last commit are discarded.
+ * <p>
+ * The header of the journal records the identity and the generation of the database file it
+ * applies to, see {@link Database#IDENTITY_OFFSET} and {@link Database#GENERATION_OFFSET}. A journal
+ * that does not match the file, because the file was recreated or written without the journal in
+ * the meantime, is discarded.
+ *
+ * <pre>
+ * journal header: MAGIC (int), chunk size (int), identity (int), generation (int)
+ * image record:   IMAGE (int), chunk index (int), crc of chunk index and content (int), unused (int), content
+ * commit record:  COMMIT (int), number of chunks in use (int), crc of the two ints (int), unused (int)
+ * </pre>
+ */
+final class DatabaseJournal {
+	private static final int MAGIC = 0x43445457; // "CDTW"
+	private static final int HEADER_SIZE = 16;
+	private static final int RECORD_HEADER_SIZE = 16;
+	private static final int IMAGE = 1;
+	private static final int COMMIT = 2;
+
+	// The journal is checkpointed at the next commit after it has grown beyond this size.
+	private static final long CHECKPOINT_SIZE = 64 * 1024 * 1024;
+
+	private final File fLocation;
+	private final int fChunkSize;
+	private final boolean fReadOnly;
+	private final RandomAccessFile fFile;
+	// Identity and generation of the database file the images apply to.
+	private int fIdentity;
+	private int fGeneration;
+
+	// Position of the most recent image of a chunk, including the images after the last commit.
+	private final Map<Integer, Long> fImages = new HashMap<>();
+	// Position of the most recent committed image of a chunk.
+	private final Map<Integer, Long> fCommittedImages = new HashMap<>();
+	private int fCommittedChunksUsed;
+	private boolean fHasUncommittedImages;
+	private long fEnd;
+
+	/**
+	 * Returns the location of the journal for the given database file.
+	 */
+	static File getLocation(File database) {
+		return new File(database.getPath() + ".journal"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Deletes the journal of a database that is opened without one, its images would no longer
+	 * apply once the database file is written.
+	 */
+	static void delete(File database) {
+		getLocation(database).delete();
+	}
+
+	/**
+	 * Opens the journal for a database and reads the committed images. Images that have not
+	 * been committed are discarded, as are all images when the journal belongs to a different
+	 * identity or generation of the database file.
+	 */
+	DatabaseJournal(File database, int chunkSize, int identity, int generation, boolean readOnly)
+			throws IOException {
+		fLocation = getLocation(database);
+		fChunkSize = chunkSize;
+		fIdentity = identity;
+		fGeneration = generation;
+		fReadOnly = readOnly;
+		if (readOnly && !fLocation.exists()) {
+			fFile = null;
+			fEnd = HEADER_SIZE;
+			return;
+		}
+		fFile = new RandomAccessFile(fLocation, readOnly ? "r" : "rw"); //$NON-NLS-1$ //$NON-NLS-2$
+		readCommittedImages();
+		if (!readOnly) {
+			fFile.getChannel().truncate(fEnd);
+			writeHeader();
+		}
+	}
+
+	private void writeHeader() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(0, MAGIC);
+		header.putInt(4, fChunkSize);
+		header.putInt(8, fIdentity);
+		header.putInt(12, fGeneration);
+		fFile.getChannel().write(header, 0);
+	}
+
+	private void readCommittedImages() throws IOException {
+		final FileChannel channel = fFile.getChannel();
+		final long size = channel.size();
+		fEnd = HEADER_SIZE;
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		if (size < HEADER_SIZE || channel.read(header, 0) != HEADER_SIZE || header.getInt(0) != MAGIC
+				|| header.getInt(4) != fChunkSize || header.getInt(8) != fIdentity
+				|| header.getInt(12) != fGeneration) {
+			return;
+		}
+		final Map<Integer, Long> pending = new HashMap<>();
+		final ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+		final ByteBuffer content = ByteBuffer.allocate(fChunkSize);
+		long position = HEADER_SIZE;
+		while (position + RECORD_HEADER_SIZE <= size) {
+			recordHeader.clear();
+			channel.read(recordHeader, position);
+			final int kind = recordHeader.getInt(0);
+			final int value = recordHeader.getInt(4);
+			final int crc = recordHeader.getInt(8);
+			if (kind == IMAGE) {
+				if (position + RECORD_HEADER_SIZE + fChunkSize > size) {
+					break; // Torn write.
+				}
+				content.clear();
+				channel.read(content, position + RECORD_HEADER_SIZE);
+				if (crc != imageCrc(value, content.array())) {
+					break;
+				}
+				pending.put(value, position + RECORD_HEADER_SIZE);
+				position += RECORD_HEADER_SIZE + fChunkSize;
+			} else if (kind == COMMIT && crc == crc(recordHeader.array(), 8)) {
+				position += RECORD_HEADER_SIZE;
+				fCommittedImages.putAll(pending);
+				pending.clear();
+				fCommittedChunksUsed = value;
+				fEnd = position;
+			} else {
+				break;
+			}
+		}
+		fImages.putAll(fCommittedImages);
+	}
+
+	private static int crc(byte[] bytes, int length) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, length);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * The checksum of an image covers the chunk index, such that a damaged index is not mistaken
+	 * for the image of another chunk.
+	 */
+	private static int imageCrc(int chunkIndex, byte[] content) {
+		CRC32 crc = new CRC32();
+		crc.update(ByteBuffer.allocate(4).putInt(0, chunkIndex).array());
+		crc.update(content, 0, content.length);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Returns the number of chunks in use as of the last commit, or 0 if the journal does not
+	 * contain any committed images.
+	 */
+	synchronized int getCommittedChunksUsed() {
+		return fCommittedImages.isEmpty() ? 0 : fCommittedChunksUsed;
+	}
+
+	/**
+	 * Returns whether images have been appended since the last commit.
+	 */
+	synchronized boolean hasUncommittedImages() {
+		return fHasUncommittedImages;
+	}
+
+	/**
+	 * Reads the most recent image of a chunk into the buffer.
+	 * @return whether the journal contains an image of the chunk.
+	 */
+	synchronized boolean read(ByteBuffer buf, int chunkIndex) throws IOException {
+		return read(buf, fImages.get(chunkIndex));
+	}
+
+	/**
+	 * Reads the most recent committed image of a chunk into the buffer.
+	 * @return whether the journal contains a committed image of the chunk.
+	 */
+	synchronized boolean readCommitted(ByteBuffer buf, int chunkIndex) throws IOException {
+		return read(buf, fCommittedImages.get(chunkIndex));
+	}
+
+	private boolean read(ByteBuffer buf, Long position) throws IOException {
+		if (position == null) {
+			return false;
+		}
+		fFile.getChannel().read(buf, position);
+		return true;
+	}
+
+	/**
+	 * Appends the image of a chunk to the journal, it is not forced to disk before the next commit.
+	 */
+	synchronized void append(ByteBuffer buf, int chunkIndex) throws IOException {
+		final byte[] content = new byte[fChunkSize];
+		buf.get(content);
+		ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + fChunkSize);
+		record.putInt(IMAGE).putInt(chunkIndex).putInt(imageCrc(chunkIndex, content)).putInt(0).put(content);
+		record.flip();
+		fFile.getChannel().write(record, fEnd);
+		fImages.put(chunkIndex, fEnd + RECORD_HEADER_SIZE);
+		fEnd += RECORD_HEADER_SIZE + fChunkSize;
+		fHasUncommittedImages = true;
+	}
+
+	/**
+	 * Appends a commit record and forces the journal to disk, such that the database can be
+	 * recovered to the current state.
+	 */
+	synchronized void commit(int chunksUsed) throws IOException {
+		ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+		record.putInt(0, COMMIT).putInt(4, chunksUsed);
+		record.putInt(8, crc(record.array(), 8));
+		fFile.getChannel().write(record, fEnd);
+		fEnd += RECORD_HEADER_SIZE;
+		fFile.getChannel().force(false);
+		fCommittedImages.putAll(fImages);
+		fCommittedChunksUsed = chunksUsed;
+		fHasUncommittedImages = false;
+	}
+
+	/**
+	 * Returns whether the journal has grown large enough to be checkpointed.
+	 */
+	synchronized boolean needsCheckpoint() {
+		return fEnd > CHECKPOINT_SIZE;
+	}
+
+	/**
+	 * Copies the committed images to the database file, releases the chunks that are no longer in
+	 * use and truncates the journal. Must not be called while there are uncommitted images.
+	 */
+	synchronized void checkpoint(FileChannel database) throws IOException {
+		assert !hasUncommittedImages();
+		if (fCommittedImages.isEmpty()) {
+			return;
+		}
+		final long committedSize = (long) fCommittedChunksUsed * fChunkSize;
+		final ByteBuffer buf = ByteBuffer.allocate(fChunkSize);
+		int identity = fIdentity;
+		int generation = fGeneration;
+		for (Map.Entry<Integer, Long> entry : fCommittedImages.entrySet()) {
+			if (entry.getKey() >= fCommittedChunksUsed) {
+				continue; // The chunk has been released.
+			}
+			buf.clear();
+			fFile.getChannel().read(buf, entry.getValue());
+			buf.flip();
+			if (entry.getKey() == 0) {
+				// The header written to the file determines the stamp of the next journal.
+				identity = buf.getInt(Database.IDENTITY_OFFSET);
+				generation = buf.getInt(Database.GENERATION_OFFSET);
+			}
+			database.write(buf, (long) entry.getKey() * fChunkSize);
+		}
+		if (database.size() > committedSize) {
+			database.truncate(committedSize);
+		}
+		database.force(true);
+		reset(identity, generation);
+	}
+
+	/**
+	 * Discards all images, the journal then applies to the given identity and generation of the
+	 * database file.
+	 */
+	synchronized void reset(int identity, int generation) throws IOException {
+		fImages.clear();
+		fCommittedImages.clear();
+		fHasUncommittedImages = false;
+		fEnd = HEADER_SIZE;
+		fIdentity = identity;
+		fGeneration = generation;
+		fFile.getChannel().truncate(HEADER_SIZE);
+		writeHeader();
+	}
+
+	/**
+	 * Closes the journal. The file is removed unless it still contains images that have not
+	 * been checkpointed.
+	 */
+	synchronized void close() throws IOException {
+		if (fFile != null) {
+			fFile.close();
+			if (!fReadOnly && fImages.isEmpty()) {
+				fLocation.delete();
+			}
+		}
+	}
+}
@@ -23,4 +23,13 @@ public interface IBTreeComparator {
 	 * Compare two records. Used for insert.
 	 */
 	public abstract int compare(long record1, long record2) throws CoreException;
+
+	/**
+	 * Returns the first bytes of the key of a record as an unsigned int, such that records whose
+	 * prefixes differ compare like their prefixes. Used by B-trees that cache key prefixes in their
+	 * nodes, the default implementation returns the same prefix for all records.
+	 */
+	public default int getKeyPrefix(long record) throws CoreException {
+		return 0;
+	}
 }
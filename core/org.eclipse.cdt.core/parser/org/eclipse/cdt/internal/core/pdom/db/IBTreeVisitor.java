@@ -41,6 +41,17 @@ public interface IBTreeVisitor {
 	 */
 	public boolean visit(long record) throws CoreException;
 
+	/**
+	 * Returns the prefix of the internally held key as computed by
+	 * {@link IBTreeComparator#getKeyPrefix(long)}, or -1 if records with a different prefix may
+	 * compare as equal to the key. Used by B-trees that cache key prefixes in their nodes.
+	 *
+	 * @return the prefix as an unsigned int, or -1
+	 */
+	public default long getKeyPrefix() {
+		return -1;
+	}
+
 	/**
 	 * Called before visiting a record.
 	 *
@@ -38,25 +38,32 @@ public class LongString implements IString {
 	private static final int NEXT1 = 4;
 	private static final int CHARS1 = 8;
 
-	private static final int NUM_CHARS1 = (Database.MAX_MALLOC_SIZE - CHARS1) / 2;
 
 	// Additional fields of subsequent records.
 	private static final int NEXTN = 0;
 	private static final int CHARSN = 4;
 
-	private static final int NUM_CHARSN = (Database.MAX_MALLOC_SIZE - CHARSN) / 2;
 
 	public LongString(Database db, long record) {
 		this.db = db;
 		this.record = record;
 	}
 
+	// The records of a long string have the maximum size supported by the database.
+	private static int getNumChars1(Database db) {
+		return (db.getMaxMallocSize() - CHARS1) / 2;
+	}
+
+	private static int getNumCharsn(Database db) {
+		return (db.getMaxMallocSize() - CHARSN) / 2;
+	}
+
 	public LongString(Database db, final char[] chars, boolean useBytes) throws CoreException {
-		final int numChars1 = useBytes ? NUM_CHARS1 * 2 : NUM_CHARS1;
-		final int numCharsn = useBytes ? NUM_CHARSN * 2 : NUM_CHARSN;
+		final int numChars1 = useBytes ? getNumChars1(db) * 2 : getNumChars1(db);
+		final int numCharsn = useBytes ? getNumCharsn(db) * 2 : getNumCharsn(db);
 
 		this.db = db;
-		this.record = db.malloc(Database.MAX_MALLOC_SIZE);
+		this.record = db.malloc(db.getMaxMallocSize());
 
 		// Write the first record.
 		final int length = chars.length;
@@ -73,7 +80,7 @@ public class LongString implements IString {
 		long lastNext = this.record + NEXT1;
 		int start = numChars1;
 		while (length - start > numCharsn) {
-			long nextRecord = db.malloc(Database.MAX_MALLOC_SIZE);
+			long nextRecord = db.malloc(db.getMaxMallocSize());
 			db.putRecPtr(lastNext, nextRecord);
 			chunk = db.getChunk(nextRecord);
 			if (useBytes) {
@@ -112,8 +119,8 @@ public class LongString implements IString {
 		}
 		int length = db.getInt(record + LENGTH);
 		final boolean useBytes = length < 0;
-		int numChars1 = NUM_CHARS1;
-		int numCharsn = NUM_CHARSN;
+		int numChars1 = getNumChars1(db);
+		int numCharsn = getNumCharsn(db);
 		if (useBytes) {
 			length = -length;
 			numChars1 *= 2;
@@ -155,8 +162,8 @@ public class LongString implements IString {
 	public void delete() throws CoreException {
 		int length = db.getInt(record + LENGTH);
 		final boolean useBytes = length < 0;
-		int numChars1 = NUM_CHARS1;
-		int numCharsn = NUM_CHARSN;
+		int numChars1 = getNumChars1(db);
+		int numCharsn = getNumCharsn(db);
 		if (useBytes) {
 			length = -length;
 			numChars1 *= 2;
@@ -224,6 +231,8 @@ public class LongString implements IString {
 
 	@Override
 	public int compare(IString string, boolean caseSensitive) throws CoreException {
+		if (isSameRecord(string))
+			return 0;
 		return ShortString.compare(getChars(), string.getChars(), caseSensitive);
 	}
 
@@ -239,9 +248,18 @@ public class LongString implements IString {
 
 	@Override
 	public int compareCompatibleWithIgnoreCase(IString string) throws CoreException {
+		if (isSameRecord(string))
+			return 0;
 		return ShortString.compareCompatibleWithIgnoreCase(getChars(), string.getChars());
 	}
 
+	/**
+	 * Strings shared via {@link PDOMStringTable} are equal if they are stored in the same record.
+	 */
+	private boolean isSameRecord(IString string) {
+		return string instanceof LongString && ((LongString) string).db == db && string.getRecord() == record;
+	}
+
 	@Override
 	public int comparePrefix(char[] other, boolean caseSensitive) throws CoreException {
 		return ShortString.comparePrefix(getChars(), other, caseSensitive);
@@ -136,6 +136,40 @@ public class PDOMNodeLinkedList {
 		}
 	}
 
+	/**
+	 * Moves the items of the list below the limit chosen by {@link Database#startRelocation()} and
+	 * updates the pointers to them. The nodes in the list are not moved.
+	 */
+	public void relocateItems() throws CoreException {
+		Database db = linkage.getDB();
+		final long firstItem = db.getRecPtr(offset + FIRST_MEMBER);
+		if (firstItem == 0)
+			return;
+
+		long head = firstItem;
+		long item = firstItem;
+		do {
+			final long next = db.getRecPtr(item + ListItem.NEXT);
+			final long newItem = db.relocate(item);
+			if (newItem != item) {
+				if (next == item) {
+					// Single item pointing to itself.
+					db.putRecPtr(newItem + ListItem.NEXT, newItem);
+					db.putRecPtr(newItem + ListItem.PREV, newItem);
+				} else {
+					db.putRecPtr(db.getRecPtr(newItem + ListItem.PREV) + ListItem.NEXT, newItem);
+					db.putRecPtr(next + ListItem.PREV, newItem);
+				}
+				if (item == head) {
+					head = newItem;
+					db.putRecPtr(offset + FIRST_MEMBER, newItem);
+				}
+			}
+			db.flushRelocationBatch();
+			item = next;
+		} while (item != firstItem && item != head);
+	}
+
 	public void deleteListItems() throws CoreException {
 		ListItem item = getFirstMemberItem();
 		if (item != null) {
@@ -0,0 +1,253 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Eclipse CDT contributors and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.pdom.db;
+
+import java.util.List;
+
+import org.eclipse.core.runtime.CoreException;
+
+/**
+ * A table of interned strings, such that equal strings are stored only once in the database.
+ * Records sharing a string can be compared by their record, see {@link IString#compare(IString, boolean)}.
+ * <p>
+ * Each string is referenced by an entry that counts the users of the string. The entries are kept
+ * in a B-tree ordered by the hash code of the string and then by its characters. The B-tree caches
+ * the hash codes in its nodes, such that a lookup reads the characters of a string only when the
+ * hash codes are equal.
+ * <p>
+ * Strings obtained from {@link #acquire(char[])} must be released via {@link #release(long)} rather
+ * than being deleted. Not thread-safe, the write-lock of the PDOM has to be held for modifications.
+ */
+public class PDOMStringTable {
+	// Fields of the table.
+	private static final int INDEX = 0;
+	private static final int STRINGS = 4;
+	private static final int REFERENCES = 8;
+	private static final int BYTES_SAVED = 12;
+	private static final int RECORD_SIZE = 20;
+
+	// Fields of an entry.
+	private static final int STRING = 0;
+	private static final int REFERENCE_COUNT = 4;
+	private static final int HASH = 8;
+	private static final int ENTRY_SIZE = 12;
+
+	private final Database db;
+	private final long ptr;
+	private long record;
+	private BTree index;
+
+	private class EntryComparator implements IBTreeComparator {
+		@Override
+		public int compare(long entry1, long entry2) throws CoreException {
+			int cmp = Integer.compareUnsigned(db.getInt(entry1 + HASH), db.getInt(entry2 + HASH));
+			if (cmp == 0) {
+				cmp = getString(entry1).compare(getString(entry2), true);
+			}
+			return cmp;
+		}
+
+		@Override
+		public int getKeyPrefix(long entry) throws CoreException {
+			return db.getInt(entry + HASH);
+		}
+	}
+
+	private class EntryFinder implements IBTreeVisitor {
+		private final char[] fChars;
+		private final int fHash;
+		long fResult;
+
+		EntryFinder(char[] chars) {
+			fChars = chars;
+			fHash = hash(chars);
+		}
+
+		@Override
+		public int compare(long entry) throws CoreException {
+			int cmp = Integer.compareUnsigned(db.getInt(entry + HASH), fHash);
+			if (cmp == 0) {
+				cmp = getString(entry).compare(fChars, true);
+			}
+			return cmp;
+		}
+
+		@Override
+		public long getKeyPrefix() {
+			return Integer.toUnsignedLong(fHash);
+		}
+
+		@Override
+		public boolean visit(long entry) throws CoreException {
+			fResult = entry;
+			return false;
+		}
+	}
+
+	/**
+	 * Creates an object for accessing the string table whose record is stored at the given pointer.
+	 * The record of the table is allocated when the first string is added.
+	 */
+	public PDOMStringTable(Database db, long ptr) {
+		this.db = db;
+		this.ptr = ptr;
+	}
+
+	private long getRecord(boolean create) throws CoreException {
+		if (record == 0) {
+			record = db.getRecPtr(ptr);
+			if (record == 0 && create) {
+				record = db.malloc(RECORD_SIZE);
+				db.putRecPtr(ptr, record);
+			}
+		}
+		return record;
+	}
+
+	private BTree getIndex() throws CoreException {
+		if (index == null) {
+			index = new BTree(db, getRecord(true) + INDEX, BTree.DEFAULT_DEGREE, new EntryComparator(), true);
+		}
+		return index;
+	}
+
+	private IString getString(long entry) throws CoreException {
+		return db.getString(db.getRecPtr(entry + STRING));
+	}
+
+	/**
+	 * Compatible with {@link String#hashCode()}.
+	 */
+	private static int hash(char[] chars) {
+		int h = 0;
+		for (char c : chars) {
+			h = 31 * h + c;
+		}
+		return h;
+	}
+
+	/**
+	 * Returns the approximate number of bytes occupied by a string with the given characters.
+	 */
+	private static int getSize(char[] chars) {
+		int bytes = chars.length;
+		for (char c : chars) {
+			if ((c & 0xff00) != 0) {
+				bytes = 2 * chars.length;
+				break;
+			}
+		}
+		return Database.BLOCK_HEADER_SIZE + ShortString.CHARS + bytes;
+	}
+
+	private long findEntry(char[] chars) throws CoreException {
+		if (getRecord(false) == 0)
+			return 0;
+		EntryFinder finder = new EntryFinder(chars);
+		getIndex().accept(finder);
+		return finder.fResult;
+	}
+
+	/**
+	 * Returns the record of a string with the given characters. The string is stored in the
+	 * database unless an equal string is already part of the table.
+	 */
+	public long acquire(char[] chars) throws CoreException {
+		long entry = findEntry(chars);
+		final long rec = getRecord(true);
+		if (entry != 0) {
+			db.putInt(entry + REFERENCE_COUNT, db.getInt(entry + REFERENCE_COUNT) + 1);
+			db.putInt(rec + REFERENCES, db.getInt(rec + REFERENCES) + 1);
+			db.putLong(rec + BYTES_SAVED, db.getLong(rec + BYTES_SAVED) + getSize(chars));
+			return db.getRecPtr(entry + STRING);
+		}
+		final long string = db.newString(chars).getRecord();
+		entry = db.malloc(ENTRY_SIZE);
+		db.putRecPtr(entry + STRING, string);
+		db.putInt(entry + REFERENCE_COUNT, 1);
+		db.putInt(entry + HASH, hash(chars));
+		getIndex().insert(entry);
+		db.putInt(rec + STRINGS, db.getInt(rec + STRINGS) + 1);
+		db.putInt(rec + REFERENCES, db.getInt(rec + REFERENCES) + 1);
+		return string;
+	}
+
+	/**
+	 * Releases a string obtained from {@link #acquire(char[])}, it is deleted once it is no longer
+	 * referenced. A string that is not part of the table is deleted right away.
+	 */
+	public void release(long string) throws CoreException {
+		if (string == 0)
+			return;
+		final IString dbString = db.getString(string);
+		final char[] chars = dbString.getChars();
+		final long entry = findEntry(chars);
+		if (entry == 0 || db.getRecPtr(entry + STRING) != string) {
+			dbString.delete();
+			return;
+		}
+		final long rec = getRecord(false);
+		final int refs = db.getInt(entry + REFERENCE_COUNT) - 1;
+		db.putInt(rec + REFERENCES, db.getInt(rec + REFERENCES) - 1);
+		if (refs > 0) {
+			db.putInt(entry + REFERENCE_COUNT, refs);
+			db.putLong(rec + BYTES_SAVED, db.getLong(rec + BYTES_SAVED) - getSize(chars));
+			return;
+		}
+		getIndex().delete(entry);
+		db.free(entry);
+		dbString.delete();
+		db.putInt(rec + STRINGS, db.getInt(rec + STRINGS) - 1);
+	}
+
+	/**
+	 * Returns the number of distinct strings in the table.
+	 */
+	public int getStringCount() throws CoreException {
+		final long rec = getRecord(false);
+		return rec == 0 ? 0 : db.getInt(rec + STRINGS);
+	}
+
+	/**
+	 * Returns the number of references to the strings in the table.
+	 */
+	public int getReferenceCount() throws CoreException {
+		final long rec = getRecord(false);
+		return rec == 0 ? 0 : db.getInt(rec + REFERENCES);
+	}
+
+	/**
+	 * Returns the approximate number of bytes saved by sharing the strings, compared to storing
+	 * a string for every reference.
+	 */
+	public long getBytesSaved() throws CoreException {
+		final long rec = getRecord(false);
+		return rec == 0 ? 0 : db.getLong(rec + BYTES_SAVED);
+	}
+
+	/**
+	 * Moves the nodes of the index below the limit chosen by {@link Database#startRelocation()}.
+	 */
+	public void relocateNodes() throws CoreException {
+		if (getRecord(false) != 0) {
+			getIndex().relocateNodes();
+		}
+	}
+
+	/**
+	 * Adds the index to the given list, if it exists.
+	 */
+	public void collectIndexes(List<BTree> indexes) throws CoreException {
+		if (getRecord(false) != 0) {
+			indexes.add(getIndex());
+		}
+	}
+}
@@ -33,9 +33,10 @@ public class ShortString implements IString {
 	private char[] cachedChars;
 
 	private static final int LENGTH = 0;
-	private static final int CHARS = 4;
+	static final int CHARS = 4;
 
-	public static final int MAX_BYTE_LENGTH = Database.MAX_MALLOC_SIZE - CHARS;
+	// Number of characters in a key prefix, see getKeyPrefix(char[]).
+	public static final int KEY_PREFIX_LENGTH = 2;
 
 	public ShortString(Database db, long offset) {
 		this.db = db;
@@ -173,6 +174,8 @@ public class ShortString implements IString {
 
 	@Override
 	public int compare(IString string, boolean caseSensitive) throws CoreException {
+		if (isSameRecord(string))
+			return 0;
 		return compare(getChars(), string.getChars(), caseSensitive);
 	}
 
@@ -183,9 +186,18 @@ public class ShortString implements IString {
 
 	@Override
 	public int compareCompatibleWithIgnoreCase(IString string) throws CoreException {
+		if (isSameRecord(string))
+			return 0;
 		return compareCompatibleWithIgnoreCase(string.getChars());
 	}
 
+	/**
+	 * Strings shared via {@link PDOMStringTable} are equal if they are stored in the same record.
+	 */
+	private boolean isSameRecord(IString string) {
+		return string instanceof ShortString && ((ShortString) string).db == db && string.getRecord() == record;
+	}
+
 	@Override
 	public int compareCompatibleWithIgnoreCase(char[] other) throws CoreException {
 		return compareCompatibleWithIgnoreCase(getChars(), other);
@@ -242,6 +254,22 @@ public class ShortString implements IString {
 		return Math.abs(db.getInt(record + LENGTH));
 	}
 
+	/**
+	 * Returns the first {@link #KEY_PREFIX_LENGTH} characters of a name as an unsigned int for B-trees caching
+	 * key prefixes, see {@link IBTreeComparator#getKeyPrefix(long)}. Names with different prefixes compare
+	 * like their prefixes, both by {@link #compareCompatibleWithIgnoreCase(char[], char[])} and by a
+	 * case-insensitive {@link #compare(char[], char[], boolean)}.
+	 */
+	public static int getKeyPrefix(char[] chars) {
+		int prefix = 0;
+		for (int i = 0; i < KEY_PREFIX_LENGTH; i++) {
+			char c = i < chars.length ? chars[i] : 0;
+			// Same mapping as compareChars(), such that the prefix is ordered like the names.
+			prefix = (prefix << 16) | (c >= 'a' && c <= 'z' ? c - 32 : c);
+		}
+		return prefix;
+	}
+
 	/**
 	 * Compare characters case-sensitively, or case-insensitively.
 	 *
@@ -22,6 +22,7 @@ import org.eclipse.cdt.internal.core.pdom.db.Database;
 import org.eclipse.cdt.internal.core.pdom.db.IBTreeComparator;
 import org.eclipse.cdt.internal.core.pdom.db.IBTreeVisitor;
 import org.eclipse.cdt.internal.core.pdom.db.IString;
+import org.eclipse.cdt.internal.core.pdom.db.ShortString;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.OperationCanceledException;
 
@@ -59,6 +60,11 @@ public class FindBinding {
 			}
 			return cmp;
 		}
+
+		@Override
+		public int getKeyPrefix(long record) throws CoreException {
+			return ShortString.getKeyPrefix(PDOMNamedNode.getDBName(database, record).getChars());
+		}
 	}
 
 	public static class DefaultFindBindingVisitor implements IBTreeVisitor, IPDOMVisitor {
@@ -89,6 +95,12 @@ public class FindBinding {
 			return cmp;
 		}
 
+		// IBTreeVisitor
+		@Override
+		public long getKeyPrefix() {
+			return Integer.toUnsignedLong(ShortString.getKeyPrefix(fName));
+		}
+
 		// IBTreeVisitor
 		@Override
 		public boolean visit(long record) throws CoreException {
@@ -170,6 +182,11 @@ public class FindBinding {
 		private int compare(IString nameInDB, IString nameInDB2) throws CoreException {
 			return nameInDB.compareCompatibleWithIgnoreCase(nameInDB2);
 		}
+
+		@Override
+		public int getKeyPrefix(long record) throws CoreException {
+			return ShortString.getKeyPrefix(PDOMNamedNode.getDBName(db, record).getChars());
+		}
 	}
 
 	public static PDOMBinding findBinding(BTree btree, final PDOMLinkage linkage, final char[] name,
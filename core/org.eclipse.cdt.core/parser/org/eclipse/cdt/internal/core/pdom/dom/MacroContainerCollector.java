@@ -21,6 +21,7 @@ import org.eclipse.cdt.core.parser.util.IContentAssistMatcher;
 import org.eclipse.cdt.internal.core.parser.util.ContentAssistMatcherFactory;
 import org.eclipse.cdt.internal.core.pdom.db.IBTreeVisitor;
 import org.eclipse.cdt.internal.core.pdom.db.IString;
+import org.eclipse.cdt.internal.core.pdom.db.ShortString;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
@@ -106,6 +107,14 @@ public final class MacroContainerCollector implements IBTreeVisitor {
 		return cmp;
 	}
 
+	@Override
+	public long getKeyPrefix() {
+		if (prefixLookup && matchChars.length < ShortString.KEY_PREFIX_LENGTH) {
+			return -1; // Names matching the prefix may have different key prefixes.
+		}
+		return Integer.toUnsignedLong(ShortString.getKeyPrefix(matchChars));
+	}
+
 	@Override
 	final public boolean visit(long record) throws CoreException {
 		if (monitor != null)
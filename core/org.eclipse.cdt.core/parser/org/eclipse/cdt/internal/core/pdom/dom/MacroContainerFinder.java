@@ -15,6 +15,7 @@ package org.eclipse.cdt.internal.core.pdom.dom;
 
 import org.eclipse.cdt.internal.core.pdom.db.IBTreeVisitor;
 import org.eclipse.cdt.internal.core.pdom.db.IString;
+import org.eclipse.cdt.internal.core.pdom.db.ShortString;
 import org.eclipse.core.runtime.CoreException;
 
 /**
@@ -44,6 +45,11 @@ public final class MacroContainerFinder implements IBTreeVisitor {
 		return rhsName.compareCompatibleWithIgnoreCase(fName);
 	}
 
+	@Override
+	public long getKeyPrefix() {
+		return Integer.toUnsignedLong(ShortString.getKeyPrefix(fName));
+	}
+
 	@Override
 	final public boolean visit(long record) throws CoreException {
 		if (record == 0)
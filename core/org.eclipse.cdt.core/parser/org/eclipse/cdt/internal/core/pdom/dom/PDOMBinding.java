@@ -18,6 +18,7 @@ package org.eclipse.cdt.internal.core.pdom.dom;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.util.List;
 
 import org.eclipse.cdt.core.CCorePlugin;
 import org.eclipse.cdt.core.dom.ast.ASTTypeUtil;
@@ -149,6 +150,22 @@ public abstract class PDOMBinding extends PDOMNamedNode implements IPDOMBinding
 		setFirstReference(name);
 	}
 
+	/**
+	 * Adds references of the linkage of this binding in a single pass. The list of references is the
+	 * same as if the names were added one after the other with {@link #addReference(PDOMName)}.
+	 */
+	final void addReferences(List<PDOMName> names) throws CoreException {
+		PDOMName first = getFirstReference();
+		for (PDOMName name : names) {
+			if (first != null) {
+				first.setPrevInBinding(name);
+				name.setNextInBinding(first);
+			}
+			first = name;
+		}
+		setFirstReference(first);
+	}
+
 	public PDOMName getFirstDeclaration() throws CoreException {
 		long namerec = getDB().getRecPtr(record + FIRST_DECL);
 		return namerec != 0 ? new PDOMName(getLinkage(), namerec) : null;
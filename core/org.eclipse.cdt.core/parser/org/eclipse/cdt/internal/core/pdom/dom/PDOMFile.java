@@ -69,6 +69,12 @@ public class PDOMFile implements IIndexFragmentFile {
 	private IIndexFileLocation location; // No need to make volatile, all fields of IndexFileLocation are final.
 	private ISignificantMacros sigMacros; // No need to make volatile, all fields of SignificantMacros are either final or atomically updated.
 
+	/**
+	 * System property that disables adding the names of a file in batches, for comparing the time
+	 * it takes to write the names.
+	 */
+	public static final String PROPERTY_DISABLE_BATCH_NAME_INSERTION = "org.eclipse.cdt.core.pdom.disableBatchNames"; //$NON-NLS-1$
+
 	private static final int FIRST_NAME = 0;
 	private static final int FIRST_INCLUDE = FIRST_NAME + Database.PTR_SIZE;
 	private static final int FIRST_INCLUDED_BY = FIRST_INCLUDE + Database.PTR_SIZE;
@@ -84,7 +90,8 @@ public class PDOMFile implements IIndexFragmentFile {
 	private static final int FIRST_MACRO_REFERENCE = LAST_USING_DIRECTIVE + Database.PTR_SIZE;
 	private static final int SIGNIFICANT_MACROS = FIRST_MACRO_REFERENCE + Database.PTR_SIZE;
 	private static final int REPLACEMENT_HEADER = SIGNIFICANT_MACROS + Database.PTR_SIZE;
-	private static final int RECORD_SIZE = REPLACEMENT_HEADER + Database.PTR_SIZE; // 9*PTR_SIZE + 3+1+8+8+8+4 = 68
+	private static final int INCLUDE_GUARD = REPLACEMENT_HEADER + Database.PTR_SIZE;
+	private static final int RECORD_SIZE = INCLUDE_GUARD + Database.PTR_SIZE; // 10*PTR_SIZE + 3+1+8+8+8+4 = 72
 
 	private static final int FLAG_PRAGMA_ONCE_SEMANTICS = 0x01;
 
@@ -225,6 +232,10 @@ public class PDOMFile implements IIndexFragmentFile {
 		db.putRecPtr(record + REPLACEMENT_HEADER, db.getRecPtr(sourceFile.record + REPLACEMENT_HEADER));
 		db.putRecPtr(sourceFile.record + REPLACEMENT_HEADER, 0);
 
+		// Transfer the include guard.
+		db.putRecPtr(record + INCLUDE_GUARD, db.getRecPtr(sourceFile.record + INCLUDE_GUARD));
+		db.putRecPtr(sourceFile.record + INCLUDE_GUARD, 0);
+
 		// Delete the source file
 		sourceFile.delete();
 	}
@@ -476,6 +487,33 @@ public class PDOMFile implements IIndexFragmentFile {
 		assert getFirstName() == null;
 		assert getFirstMacroReference() == null;
 		final PDOMLinkage linkage = getLinkage();
+		PDOMNameBatch batch = null;
+		if (isBatchNameInsertion()) {
+			int count = 0;
+			for (IASTName[] name : names) {
+				if (name[0] != null)
+					count++;
+			}
+			batch = new PDOMNameBatch(fLinkage.getDB(), count);
+		}
+		try {
+			addNames(linkage, names, batch, lock);
+		} finally {
+			if (batch != null) {
+				batch.finish();
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the names of a file are added in batches, see {@link PDOMNameBatch}.
+	 */
+	private static boolean isBatchNameInsertion() {
+		return !Boolean.parseBoolean(System.getProperty(PROPERTY_DISABLE_BATCH_NAME_INSERTION));
+	}
+
+	private void addNames(PDOMLinkage linkage, IASTName[][] names, PDOMNameBatch batch, YieldableIndexLock lock)
+			throws CoreException, InterruptedException {
 		HashMap<IASTName, PDOMName> nameCache = new HashMap<>();
 		PDOMName lastName = null;
 		PDOMMacroReferenceName lastMacroName = null;
@@ -485,7 +523,10 @@ public class PDOMFile implements IIndexFragmentFile {
 					lock.yield();
 				}
 				PDOMName caller = nameCache.get(name[1]);
-				IIndexFragmentName fname = createPDOMName(linkage, name[0], caller);
+				IIndexFragmentName fname = createPDOMName(linkage, name[0], caller, batch);
+				if (batch != null) {
+					batch.nameProcessed();
+				}
 				if (fname instanceof PDOMName) {
 					PDOMName pdomName = (PDOMName) fname;
 					nameCache.put(name[0], pdomName);
@@ -508,8 +549,8 @@ public class PDOMFile implements IIndexFragmentFile {
 		}
 	}
 
-	private IIndexFragmentName createPDOMName(PDOMLinkage linkage, IASTName name, PDOMName caller)
-			throws CoreException {
+	private IIndexFragmentName createPDOMName(PDOMLinkage linkage, IASTName name, PDOMName caller,
+			PDOMNameBatch batch) throws CoreException {
 		final IBinding binding = name.getBinding();
 		if (binding instanceof IParameter) {
 			return null;
@@ -522,7 +563,7 @@ public class PDOMFile implements IIndexFragmentFile {
 			PDOMBinding pdomBinding = linkage.addBinding(name);
 			if (pdomBinding != null) {
 				final PDOMName result = new PDOMName(fLinkage, name, this, pdomBinding, caller,
-						false /* exact match */);
+						false /* exact match */, batch);
 				linkage.onCreateName(this, name, result);
 				return result;
 			} else {
@@ -533,7 +574,7 @@ public class PDOMFile implements IIndexFragmentFile {
 						pdomBinding = linkage.adaptBinding(candidate);
 						if (pdomBinding != null) {
 							final PDOMName pdomName = new PDOMName(fLinkage, name, this, pdomBinding, caller,
-									true /* potential match */);
+									true /* potential match */, batch);
 							linkage.onCreateName(this, name, pdomName);
 							if (result == null) {
 								result = pdomName;
@@ -634,6 +675,9 @@ public class PDOMFile implements IIndexFragmentFile {
 		if (locRecord != 0)
 			db.getString(locRecord).delete();
 		locRecord = db.getRecPtr(record + REPLACEMENT_HEADER);
+		if (locRecord != 0)
+			db.getString(locRecord).delete();
+		locRecord = db.getRecPtr(record + INCLUDE_GUARD);
 		if (locRecord != 0)
 			db.getString(locRecord).delete();
 
@@ -1000,6 +1044,23 @@ public class PDOMFile implements IIndexFragmentFile {
 		db.putRecPtr(record + REPLACEMENT_HEADER, newRecord);
 	}
 
+	@Override
+	public char[] getIncludeGuard() throws CoreException {
+		Database db = fLinkage.getDB();
+		long rec = db.getRecPtr(record + INCLUDE_GUARD);
+		return rec == 0 ? null : db.getString(rec).getChars();
+	}
+
+	@Override
+	public void setIncludeGuard(char[] guard) throws CoreException {
+		Database db = fLinkage.getDB();
+		long oldRecord = db.getRecPtr(record + INCLUDE_GUARD);
+		if (oldRecord != 0)
+			db.getString(oldRecord).delete();
+		long newRecord = guard == null ? 0 : db.newString(guard).getRecord();
+		db.putRecPtr(record + INCLUDE_GUARD, newRecord);
+	}
+
 	// Required because we cannot reference CCorePlugin in order for StandaloneIndexer to work
 	private static IStatus createStatus(String msg) {
 		return new Status(IStatus.ERROR, "org.eclipse.cdt.core", msg, null); //$NON-NLS-1$
@@ -21,6 +21,7 @@ package org.eclipse.cdt.internal.core.pdom.dom;
 import java.lang.ref.Reference;
 import java.lang.ref.SoftReference;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.eclipse.cdt.core.dom.IPDOMVisitor;
@@ -150,7 +151,7 @@ public abstract class PDOMLinkage extends PDOMNamedNode implements IIndexLinkage
 	}
 
 	public BTree getIndex() throws CoreException {
-		return new BTree(getDB(), record + INDEX_OFFSET, getIndexComparator());
+		return new BTree(getDB(), record + INDEX_OFFSET, BTree.DEFAULT_DEGREE, getIndexComparator(), true);
 	}
 
 	/**
@@ -158,7 +159,8 @@ public abstract class PDOMLinkage extends PDOMNamedNode implements IIndexLinkage
 	 * @throws CoreException
 	 */
 	public BTree getNestedBindingsIndex() throws CoreException {
-		return new BTree(fDatabase, record + NESTED_BINDINGS_INDEX, getNestedBindingsComparator());
+		return new BTree(fDatabase, record + NESTED_BINDINGS_INDEX, BTree.DEFAULT_DEGREE,
+				getNestedBindingsComparator(), true);
 	}
 
 	@Override
@@ -354,13 +356,54 @@ public abstract class PDOMLinkage extends PDOMNamedNode implements IIndexLinkage
 		}
 	}
 
+	/**
+	 * Moves the nodes of the indexes of this linkage and the auxiliary records of its bindings below
+	 * the limit chosen by {@link Database#startRelocation()}.
+	 */
+	@Override
+	public void relocateRecords() throws CoreException {
+		IBTreeVisitor visitor = new IBTreeVisitor() {
+			@Override
+			public int compare(long record) throws CoreException {
+				return 0;
+			}
+
+			@Override
+			public boolean visit(long record) throws CoreException {
+				PDOMNode node = PDOMNode.load(fPDOM, record);
+				if (node != null) {
+					node.relocateRecords();
+					// The visited nodes of the index are only read, they are not moved until the
+					// records of all bindings have been relocated.
+					getDB().flushRelocationBatch();
+				}
+				return true;
+			}
+		};
+		getIndex().accept(visitor);
+		getNestedBindingsIndex().accept(visitor);
+		getIndex().relocateNodes();
+		getNestedBindingsIndex().relocateNodes();
+		getMacroIndex().relocateNodes();
+	}
+
+	/**
+	 * Adds the indexes of this linkage to the given list, see {@link WritablePDOM#rebuildIndexes}.
+	 */
+	public void collectIndexes(List<BTree> indexes) throws CoreException {
+		indexes.add(getIndex());
+		indexes.add(getNestedBindingsIndex());
+		indexes.add(getMacroIndex());
+	}
+
 	public ICPPUsingDirective[] getUsingDirectives(PDOMFile file) throws CoreException {
 		return ICPPUsingDirective.EMPTY_ARRAY;
 	}
 
 	public BTree getMacroIndex() {
 		if (fMacroIndex == null) {
-			fMacroIndex = new BTree(getDB(), record + MACRO_BTREE, new FindBinding.MacroBTreeComparator(fDatabase));
+			fMacroIndex = new BTree(getDB(), record + MACRO_BTREE, BTree.DEFAULT_DEGREE,
+					new FindBinding.MacroBTreeComparator(fDatabase), true);
 		}
 		return fMacroIndex;
 	}
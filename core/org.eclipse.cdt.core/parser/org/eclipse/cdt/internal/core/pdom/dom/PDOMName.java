@@ -45,7 +45,7 @@ public final class PDOMName implements IIndexFragmentName {
 	private static final int NODE_LENGTH_OFFSET = 27; // short (sufficient for names <= 32k)
 	private static final int FLAGS = 29;
 
-	private static final int RECORD_SIZE = 30; // 30 yields a 32-byte block. (31 would trigger a 40-byte block)
+	static final int RECORD_SIZE = 30; // 30 yields a 32-byte block. (31 would trigger a 40-byte block)
 
 	public static final int IS_DECLARATION = 0x01;
 	public static final int IS_DEFINITION = 0x02;
@@ -70,9 +70,18 @@ public final class PDOMName implements IIndexFragmentName {
 
 	public PDOMName(PDOMLinkage linkage, IASTName name, PDOMFile file, PDOMBinding binding, PDOMName caller,
 			boolean isPotentialMatch) throws CoreException {
+		this(linkage, name, file, binding, caller, isPotentialMatch, null);
+	}
+
+	/**
+	 * Creates a name with a record of the given batch, a reference is added to its binding when
+	 * the batch is finished.
+	 */
+	PDOMName(PDOMLinkage linkage, IASTName name, PDOMFile file, PDOMBinding binding, PDOMName caller,
+			boolean isPotentialMatch, PDOMNameBatch batch) throws CoreException {
 		this.linkage = linkage;
 		Database db = linkage.getDB();
-		record = db.malloc(RECORD_SIZE);
+		record = batch != null ? batch.allocateRecord() : db.malloc(RECORD_SIZE);
 
 		// What kind of name are we
 		int flags = getRoleOfName(name);
@@ -93,7 +102,9 @@ public final class PDOMName implements IIndexFragmentName {
 			binding.addDeclaration(this);
 			break;
 		case IS_REFERENCE:
-			binding.addReference(this);
+			if (batch == null || !batch.addReference(binding, this)) {
+				binding.addReference(this);
+			}
 			break;
 		}
 
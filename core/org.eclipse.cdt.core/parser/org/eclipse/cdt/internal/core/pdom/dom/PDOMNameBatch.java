@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Eclipse CDT contributors and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.pdom.dom;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.cdt.internal.core.pdom.db.Database;
+import org.eclipse.core.runtime.CoreException;
+
+/**
+ * Supports adding the names of a file in batches, see {@link PDOMFile#addNames}. The records of
+ * the names are allocated in blocks of consecutive records, and the references are linked into
+ * the lists of their bindings per binding after all names of the file have been created.
+ * <p>
+ * Declarations and definitions are linked immediately, because the linkage consults them when
+ * it updates a binding for a subsequent name of the file.
+ */
+final class PDOMNameBatch {
+	private static final int MAX_RECORDS_PER_ALLOCATION = 64;
+
+	private final Database fDB;
+	private int fRemainingNames;
+	private long[] fRecords = {};
+	private int fNextRecord;
+	private final Map<PDOMBinding, List<PDOMName>> fReferences = new LinkedHashMap<>();
+
+	/**
+	 * @param db the database of the file
+	 * @param names the number of names that are going to be added
+	 */
+	PDOMNameBatch(Database db, int names) {
+		fDB = db;
+		fRemainingNames = names;
+	}
+
+	/**
+	 * Returns a record for a name. The records are allocated in advance for the names that remain
+	 * to be added.
+	 */
+	long allocateRecord() throws CoreException {
+		if (fNextRecord == fRecords.length) {
+			final int count = Math.max(1, Math.min(fRemainingNames, MAX_RECORDS_PER_ALLOCATION));
+			fRecords = new long[count];
+			fDB.malloc(PDOMName.RECORD_SIZE, fRecords);
+			fNextRecord = 0;
+		}
+		return fRecords[fNextRecord++];
+	}
+
+	/**
+	 * Notifies the batch that a name of the file has been processed.
+	 */
+	void nameProcessed() {
+		if (fRemainingNames > 0) {
+			fRemainingNames--;
+		}
+	}
+
+	/**
+	 * Defers the addition of a reference to its binding until the batch is finished.
+	 *
+	 * @return <code>false</code> if the reference has to be added to the binding immediately.
+	 */
+	boolean addReference(PDOMBinding binding, PDOMName name) {
+		// References from other linkages are stored in separate lists.
+		if (!binding.getLinkage().equals(name.getLinkage()))
+			return false;
+
+		List<PDOMName> names = fReferences.get(binding);
+		if (names == null) {
+			names = new ArrayList<>(2);
+			fReferences.put(binding, names);
+		}
+		names.add(name);
+		return true;
+	}
+
+	/**
+	 * Adds the deferred references to their bindings and frees the records that have not been used.
+	 * Has to be called also when adding the names fails, such that the names of the file can be
+	 * deleted.
+	 */
+	void finish() throws CoreException {
+		for (Map.Entry<PDOMBinding, List<PDOMName>> entry : fReferences.entrySet()) {
+			entry.getKey().addReferences(entry.getValue());
+		}
+		fReferences.clear();
+		while (fNextRecord < fRecords.length) {
+			fDB.free(fRecords[fNextRecord++]);
+		}
+	}
+}
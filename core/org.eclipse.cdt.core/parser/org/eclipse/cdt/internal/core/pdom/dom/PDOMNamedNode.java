@@ -23,6 +23,7 @@ import org.eclipse.cdt.core.parser.util.CharArrayUtils;
 import org.eclipse.cdt.internal.core.index.IIndexFragmentBinding;
 import org.eclipse.cdt.internal.core.pdom.db.Database;
 import org.eclipse.cdt.internal.core.pdom.db.IString;
+import org.eclipse.cdt.internal.core.pdom.db.PDOMStringTable;
 import org.eclipse.core.runtime.CoreException;
 
 /**
@@ -51,7 +52,7 @@ public abstract class PDOMNamedNode extends PDOMNode {
 
 		fName = name;
 		final Database db = linkage.getDB();
-		db.putRecPtr(record + NAME, name != null ? db.newString(name).getRecord() : 0);
+		db.putRecPtr(record + NAME, name != null ? linkage.getPDOM().getStringTable().acquire(name) : 0);
 	}
 
 	/**
@@ -99,23 +100,26 @@ public abstract class PDOMNamedNode extends PDOMNode {
 
 		IString name = getDBName();
 		if (!name.equals(nameCharArray)) {
-			name.delete();
-			final Database db = getDB();
-			db.putRecPtr(record + NAME, db.newString(nameCharArray).getRecord());
+			final PDOMStringTable stringTable = getPDOM().getStringTable();
+			stringTable.release(name.getRecord());
+			getDB().putRecPtr(record + NAME, stringTable.acquire(nameCharArray));
 		}
 		fName = nameCharArray;
 	}
 
 	@Override
 	public void delete(PDOMLinkage linkage) throws CoreException {
-		final Database db = getDB();
-		final long namerec = db.getRecPtr(record + NAME);
-		if (namerec != 0) {
-			db.free(namerec);
-		}
+		deleteName();
 		super.delete(linkage);
 	}
 
+	/**
+	 * Releases the name of this node, the name is shared with other nodes of the same name.
+	 */
+	protected void deleteName() throws CoreException {
+		getPDOM().getStringTable().release(getDB().getRecPtr(record + NAME));
+	}
+
 	public boolean mayHaveChildren() {
 		return false;
 	}
@@ -250,6 +250,13 @@ public abstract class PDOMNode implements IInternalPDOMNode {
 		return (bitVector & mask) != 0;
 	}
 
+	/**
+	 * Moves the auxiliary records owned by this node, e.g. the items of its member lists, below the
+	 * limit chosen by {@link Database#startRelocation()}. The record of the node itself is not moved.
+	 */
+	public void relocateRecords() throws CoreException {
+	}
+
 	/**
 	 * Delete this PDOMNode, make sure you are actually the owner of this record!
 	 * @param linkage
@@ -216,4 +216,10 @@ class PDOMCEnumeration extends PDOMBinding implements IEnumeration, IIndexType,
 	public Object clone() {
 		throw new IllegalArgumentException("Enums must not be cloned"); //$NON-NLS-1$
 	}
+
+	@Override
+	public void relocateRecords() throws CoreException {
+		super.relocateRecords();
+		new PDOMNodeLinkedList(getLinkage(), record + OFFSET_ENUMERATOR_LIST).relocateItems();
+	}
 }
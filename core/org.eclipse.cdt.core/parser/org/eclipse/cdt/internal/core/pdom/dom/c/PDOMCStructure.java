@@ -323,4 +323,10 @@ public class PDOMCStructure extends PDOMBinding
 	public IIndexBinding getScopeBinding() {
 		return this;
 	}
+
+	@Override
+	public void relocateRecords() throws CoreException {
+		super.relocateRecords();
+		new PDOMNodeLinkedList(getLinkage(), record + MEMBERLIST).relocateItems();
+	}
 }
@@ -85,6 +85,23 @@ class PDOMCPPBase implements ICPPBase, ICPPInternalBase {
 		return rec != 0 ? new PDOMCPPBase(linkage, rec) : null;
 	}
 
+	/**
+	 * Moves the bases of the list stored at the given offset below the limit chosen by
+	 * {@link Database#startRelocation()} and updates the pointers to them.
+	 */
+	static void relocateBases(Database db, long firstBaseOffset) throws CoreException {
+		long pointer = firstBaseOffset;
+		long base;
+		while ((base = db.getRecPtr(pointer)) != 0) {
+			final long newBase = db.relocate(base);
+			if (newBase != base) {
+				db.putRecPtr(pointer, newBase);
+			}
+			db.flushRelocationBatch();
+			pointer = newBase + NEXTBASE;
+		}
+	}
+
 	private int getFlags() throws CoreException {
 		return getDB().getByte(record + FLAGS);
 	}
@@ -585,4 +585,11 @@ class PDOMCPPClassSpecialization extends PDOMCPPSpecialization
 	@Override
 	public void setVisibleToAdlOnly(boolean visibleToAdlOnly) throws CoreException {
 	}
+
+	@Override
+	public void relocateRecords() throws CoreException {
+		super.relocateRecords();
+		new PDOMCPPMemberBlock(getLinkage(), record + MEMBERLIST).relocateNextBlocks();
+		PDOMCPPBase.relocateBases(getDB(), record + FIRST_BASE);
+	}
 }
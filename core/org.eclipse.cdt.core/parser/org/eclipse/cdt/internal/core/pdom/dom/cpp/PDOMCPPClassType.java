@@ -490,4 +490,11 @@ class PDOMCPPClassType extends PDOMCPPBinding implements IPDOMCPPClassType, IPDO
 			return v_private; // Fallback visibility
 		}
 	}
+
+	@Override
+	public void relocateRecords() throws CoreException {
+		super.relocateRecords();
+		new PDOMCPPMemberBlock(getLinkage(), record + MEMBERLIST).relocateNextBlocks();
+		PDOMCPPBase.relocateBases(getDB(), record + FIRSTBASE);
+	}
 }
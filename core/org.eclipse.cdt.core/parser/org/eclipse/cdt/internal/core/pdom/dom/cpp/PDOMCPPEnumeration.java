@@ -262,4 +262,10 @@ class PDOMCPPEnumeration extends PDOMCPPBinding implements IPDOMCPPEnumType, IPD
 			CCorePlugin.log(e);
 		}
 	}
+
+	@Override
+	public void relocateRecords() throws CoreException {
+		super.relocateRecords();
+		new PDOMNodeLinkedList(getLinkage(), record + OFFSET_ENUMERATOR_LIST).relocateItems();
+	}
 }
@@ -276,4 +276,10 @@ class PDOMCPPEnumerationSpecialization extends PDOMCPPSpecialization
 		}
 		return enumerator;
 	}
+
+	@Override
+	public void relocateRecords() throws CoreException {
+		super.relocateRecords();
+		new PDOMNodeLinkedList(getLinkage(), record + OFFSET_ENUMERATOR_LIST).relocateItems();
+	}
 }
@@ -172,6 +172,7 @@ import org.eclipse.cdt.internal.core.pdom.WritablePDOM;
 import org.eclipse.cdt.internal.core.pdom.db.BTree;
 import org.eclipse.cdt.internal.core.pdom.db.Database;
 import org.eclipse.cdt.internal.core.pdom.db.IBTreeComparator;
+import org.eclipse.cdt.internal.core.pdom.db.IBTreeVisitor;
 import org.eclipse.cdt.internal.core.pdom.dom.IPDOMMemberOwner;
 import org.eclipse.cdt.internal.core.pdom.dom.PDOMASTAdapter;
 import org.eclipse.cdt.internal.core.pdom.dom.PDOMBinding;
@@ -1411,6 +1412,32 @@ class PDOMCPPLinkage extends PDOMLinkage implements IIndexCPPBindingConstants {
 		return new CPPFindBinding.CPPBindingBTreeComparator(this);
 	}
 
+	@Override
+	public void collectIndexes(List<BTree> indexes) throws CoreException {
+		// Namespaces own an index of their members, they are found in both indexes of the linkage.
+		final List<Long> namespaces = new ArrayList<>();
+		IBTreeVisitor visitor = new IBTreeVisitor() {
+			@Override
+			public int compare(long record) throws CoreException {
+				return 0;
+			}
+
+			@Override
+			public boolean visit(long record) throws CoreException {
+				if (PDOMNode.getNodeType(getDB(), record) == CPPNAMESPACE) {
+					namespaces.add(record);
+				}
+				return true;
+			}
+		};
+		getIndex().accept(visitor);
+		getNestedBindingsIndex().accept(visitor);
+		for (long record : namespaces) {
+			indexes.add(new PDOMCPPNamespace(this, record).getIndex());
+		}
+		super.collectIndexes(indexes);
+	}
+
 	@Override
 	public PDOMGlobalScope getGlobalScope() {
 		return PDOMCPPGlobalScope.INSTANCE;
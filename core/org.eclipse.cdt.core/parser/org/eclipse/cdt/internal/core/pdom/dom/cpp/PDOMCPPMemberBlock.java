@@ -150,6 +150,25 @@ public class PDOMCPPMemberBlock {
 		getDB().free(record);
 	}
 
+	/**
+	 * Moves the blocks following this one below the limit chosen by {@link Database#startRelocation()}
+	 * and updates the pointers to them. This block is part of the record of the composite type and is
+	 * not moved.
+	 */
+	public void relocateNextBlocks() throws CoreException {
+		final Database db = getDB();
+		long block = record;
+		long next;
+		while ((next = db.getRecPtr(block + NEXT_MEMBER_BLOCK)) != 0) {
+			final long newNext = db.relocate(next);
+			if (newNext != next) {
+				db.putRecPtr(block + NEXT_MEMBER_BLOCK, newNext);
+			}
+			db.flushRelocationBatch();
+			block = newNext;
+		}
+	}
+
 	private long getMemberRecord(int memberIndex) throws CoreException {
 		return getDB().getRecPtr(getMemberOffset(memberIndex));
 	}
@@ -106,7 +106,8 @@ class PDOMCPPNamespace extends PDOMCPPBinding implements ICPPNamespace, ICPPName
 	}
 
 	public BTree getIndex() throws CoreException {
-		return new BTree(getDB(), record + INDEX_OFFSET, getLinkage().getIndexComparator());
+		return new BTree(getDB(), record + INDEX_OFFSET, BTree.DEFAULT_DEGREE, getLinkage().getIndexComparator(),
+				true);
 	}
 
 	@Override
@@ -339,4 +340,10 @@ class PDOMCPPNamespace extends PDOMCPPBinding implements ICPPNamespace, ICPPName
 		}
 		return (fFlag & INLINE_FLAG) != 0;
 	}
+
+	@Override
+	public void relocateRecords() throws CoreException {
+		super.relocateRecords();
+		getIndex().relocateNodes();
+	}
 }
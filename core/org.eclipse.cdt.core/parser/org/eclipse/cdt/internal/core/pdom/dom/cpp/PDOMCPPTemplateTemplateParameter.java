@@ -238,7 +238,7 @@ public class PDOMCPPTemplateTemplateParameter extends PDOMCPPBinding implements
 
 	@Override
 	public void forceDelete(PDOMLinkage linkage) throws CoreException {
-		getDBName().delete();
+		deleteName();
 		linkage.storeType(record + DEFAULT_TYPE, null);
 
 		final Database db = getDB();
@@ -385,4 +385,10 @@ public class PDOMCPPTemplateTemplateParameter extends PDOMCPPBinding implements
 	public int getVisibility(IBinding member) {
 		throw new IllegalArgumentException(member.getName() + " is not a member of " + getName()); //$NON-NLS-1$
 	}
+
+	@Override
+	public void relocateRecords() throws CoreException {
+		super.relocateRecords();
+		new PDOMNodeLinkedList(getLinkage(), record + MEMBERLIST).relocateItems();
+	}
 }
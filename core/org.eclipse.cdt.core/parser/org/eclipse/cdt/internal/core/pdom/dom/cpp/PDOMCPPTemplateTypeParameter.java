@@ -204,7 +204,13 @@ class PDOMCPPTemplateTypeParameter extends PDOMCPPBinding
 
 	@Override
 	public void forceDelete(PDOMLinkage linkage) throws CoreException {
-		getDBName().delete();
+		deleteName();
 		getLinkage().storeType(record + DEFAULT_TYPE, null);
 	}
+
+	@Override
+	public void relocateRecords() throws CoreException {
+		super.relocateRecords();
+		new PDOMNodeLinkedList(getLinkage(), record + MEMBERLIST).relocateItems();
+	}
 }
@@ -92,4 +92,10 @@ class PDOMCPPUsingDeclarationSpecialization extends PDOMCPPSpecialization implem
 		}
 		return delegates;
 	}
+
+	@Override
+	public void relocateRecords() throws CoreException {
+		super.relocateRecords();
+		new PDOMNodeLinkedList(getLinkage(), record + TARGET_BINDINGS).relocateItems();
+	}
 }
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Eclipse CDT contributors and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.pdom.export;
+
+import java.io.File;
+import java.text.MessageFormat;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.cdt.core.index.IIndexFileLocation;
+import org.eclipse.cdt.core.index.IIndexLocationConverter;
+import org.eclipse.cdt.core.model.LanguageManager;
+import org.eclipse.cdt.internal.core.pdom.WritablePDOM;
+import org.eclipse.cdt.internal.core.pdom.db.DBStatus;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+
+/**
+ * An eclipse application for compacting PDOM files without starting the Workbench,
+ * see {@link WritablePDOM#compact()}.
+ */
+public class CompactPDOMApplication implements IApplication {
+	public static final String OPT_TARGET = "-target"; //$NON-NLS-1$
+
+	/**
+	 * Locations are not converted while a PDOM is compacted.
+	 */
+	private static class NullLocationConverter implements IIndexLocationConverter {
+		@Override
+		public IIndexFileLocation fromInternalFormat(String raw) {
+			return null;
+		}
+
+		@Override
+		public String toInternalFormat(IIndexFileLocation location) {
+			return null;
+		}
+	}
+
+	@Override
+	public Object start(IApplicationContext context) throws CoreException {
+		try {
+			startImpl(context);
+		} catch (CoreException ce) {
+			IStatus s = ce.getStatus();
+			if (s.getCode() == GeneratePDOMApplication.ECODE_EXPECTED_FAILURE) {
+				output(s.getMessage());
+			} else {
+				throw ce;
+			}
+		}
+		return IApplication.EXIT_OK;
+	}
+
+	private void startImpl(IApplicationContext context) throws CoreException {
+		String[] appArgs = (String[]) context.getArguments().get(IApplicationContext.APPLICATION_ARGS);
+		Map<String, List<String>> arguments = CLIUtil.parseToMap(appArgs);
+		File target = new File(CLIUtil.getArg(arguments, OPT_TARGET, 1).get(0));
+		if (!target.isFile()) {
+			GeneratePDOMApplication.fail(MessageFormat.format(Messages.CompactPDOMApplication_NoSuchFile,
+					new Object[] { target }));
+		}
+
+		output(MessageFormat.format(Messages.CompactPDOMApplication_CompactionStarts, new Object[] { target }));
+		WritablePDOM pdom = new WritablePDOM(target, new NullLocationConverter(),
+				LanguageManager.getInstance().getPDOMLinkageFactoryMappings());
+		try {
+			pdom.acquireWriteLock(null);
+		} catch (InterruptedException e) {
+			return;
+		}
+		try {
+			if (!pdom.isSupportedVersion()) {
+				GeneratePDOMApplication.fail(MessageFormat.format(Messages.CompactPDOMApplication_UnsupportedVersion,
+						new Object[] { target }));
+			}
+			DBStatus status = pdom.compact();
+			output(status.getMessage());
+		} finally {
+			pdom.close();
+			// Closing has flushed the database, releasing the lock must not flush the closed database.
+			pdom.releaseWriteLock(0, false);
+		}
+	}
+
+	protected void output(String s) {
+		System.out.println(s);
+	}
+
+	@Override
+	public void stop() {
+		// do nothing
+	}
+}
@@ -17,6 +17,11 @@
 package org.eclipse.cdt.internal.core.pdom.export;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.MessageFormat;
 import java.util.Map;
 
@@ -28,6 +33,7 @@ import org.eclipse.cdt.core.model.ICProject;
 import org.eclipse.cdt.core.model.LanguageManager;
 import org.eclipse.cdt.internal.core.CCoreInternals;
 import org.eclipse.cdt.internal.core.pdom.WritablePDOM;
+import org.eclipse.cdt.internal.core.pdom.db.CompressedDatabaseFile;
 import org.eclipse.cdt.internal.core.pdom.indexer.IndexerPreferences;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IStatus;
@@ -50,6 +56,7 @@ public class GeneratePDOM {
 	protected String indexerID;
 	protected boolean deleteOnExit;
 	protected boolean checkIndexStatus;
+	protected boolean compress;
 
 	/**
 	 * Runnable to export a PDOM.
@@ -80,6 +87,15 @@ public class GeneratePDOM {
 		this.deleteOnExit = deleteOnExit;
 	}
 
+	/**
+	 * When set, the PDOM is written in the compressed format, see {@link CompressedDatabaseFile}.
+	 * By default this is not set.
+	 * @param compress
+	 */
+	public void setCompress(boolean compress) {
+		this.compress = compress;
+	}
+
 	/**
 	 * Executes the PDOM generation
 	 * @return {@link IStatus#OK} if the generated content is complete, {@link IStatus#ERROR} otherwise.
@@ -148,6 +164,10 @@ public class GeneratePDOM {
 			} finally {
 				exportedPDOM.releaseWriteLock();
 			}
+
+			if (compress) {
+				compress(targetLocation);
+			}
 		} catch (InterruptedException ie) {
 			String msg = MessageFormat.format(Messages.GeneratePDOM_GenericGenerationFailed,
 					new Object[] { ie.getMessage() });
@@ -161,6 +181,21 @@ public class GeneratePDOM {
 		return new Status(IStatus.OK, CCorePlugin.PLUGIN_ID, Messages.GeneratePDOM_Success);
 	}
 
+	private static void compress(File location) throws CoreException {
+		File tmp = new File(location.getPath() + ".tmp"); //$NON-NLS-1$
+		try {
+			try (OutputStream out = new FileOutputStream(tmp)) {
+				CompressedDatabaseFile.compress(location, out);
+			}
+			Files.move(tmp.toPath(), location.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			tmp.delete();
+			String msg = MessageFormat.format(Messages.GeneratePDOM_GenericGenerationFailed,
+					new Object[] { e.getMessage() });
+			throw new CoreException(CCorePlugin.createStatus(msg, e));
+		}
+	}
+
 	private void fail(String message) throws CoreException {
 		GeneratePDOMApplication.fail(message);
 	}
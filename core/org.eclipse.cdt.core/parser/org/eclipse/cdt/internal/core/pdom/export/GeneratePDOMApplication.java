@@ -27,6 +27,7 @@ import org.eclipse.cdt.core.dom.IPDOMIndexerTask;
 import org.eclipse.cdt.core.dom.IPDOMManager;
 import org.eclipse.cdt.core.index.export.ExternalExportProjectProvider;
 import org.eclipse.cdt.core.index.export.IExportProjectProvider;
+import org.eclipse.cdt.internal.core.pdom.IndexerProfile;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IConfigurationElement;
 import org.eclipse.core.runtime.IExtension;
@@ -52,6 +53,12 @@ public class GeneratePDOMApplication implements IApplication {
 	public static final String OPT_TARGET = "-target"; //$NON-NLS-1$
 	public static final String OPT_QUIET = "-quiet"; //$NON-NLS-1$
 	public static final String OPT_INDEXER_ID = "-indexer"; //$NON-NLS-1$
+	public static final String OPT_COMPRESS = "-compress"; //$NON-NLS-1$
+	/**
+	 * Directory the indexer writes a profile of the timings of the individual files to,
+	 * see {@link IndexerProfile}.
+	 */
+	public static final String OPT_PROFILE = "-profile"; //$NON-NLS-1$
 
 	/**
 	 * Applications needing to fail in an expected way (without stack dump), should throw
@@ -98,6 +105,9 @@ public class GeneratePDOMApplication implements IApplication {
 		}
 		String target = CLIUtil.getArg(arguments, OPT_TARGET, 1).get(0);
 		boolean quiet = arguments.get(OPT_QUIET) != null;
+		boolean compress = arguments.get(OPT_COMPRESS) != null;
+		String profileDirectory = arguments.containsKey(OPT_PROFILE) ? CLIUtil.getArg(arguments, OPT_PROFILE, 1).get(0)
+				: null;
 
 		String indexerID = IPDOMManager.ID_FAST_INDEXER;
 		List<String> indexerIDs = arguments.get(OPT_INDEXER_ID);
@@ -119,6 +129,10 @@ public class GeneratePDOMApplication implements IApplication {
 			System.setProperty(IPDOMIndexerTask.TRACE_PROBLEMS, Boolean.TRUE.toString());
 			System.setProperty(IPDOMIndexerTask.TRACE_STATISTICS, Boolean.TRUE.toString());
 		}
+		String oldProfileDirectory = System.getProperty(IndexerProfile.PROPERTY_DIRECTORY);
+		if (profileDirectory != null) {
+			System.setProperty(IndexerProfile.PROPERTY_DIRECTORY, profileDirectory);
+		}
 		try {
 			IExportProjectProvider pprovider = getExportProjectProvider(pproviderFQN);
 			if (pprovider == null) {
@@ -128,6 +142,7 @@ public class GeneratePDOMApplication implements IApplication {
 			File targetLocation = new File(target);
 
 			GeneratePDOM generate = new GeneratePDOM(pprovider, appArgs, targetLocation, indexerID);
+			generate.setCompress(compress);
 			output(Messages.GeneratePDOMApplication_GenerationStarts);
 			IStatus status = generate.run(); // CoreException handled in start method
 			if (!status.isOK()) {
@@ -140,6 +155,9 @@ public class GeneratePDOMApplication implements IApplication {
 				restoreSystemProperty(IPDOMIndexerTask.TRACE_PROBLEMS, oldvals[1]);
 				restoreSystemProperty(IPDOMIndexerTask.TRACE_STATISTICS, oldvals[2]);
 			}
+			if (profileDirectory != null) {
+				restoreSystemProperty(IndexerProfile.PROPERTY_DIRECTORY, oldProfileDirectory);
+			}
 		}
 		return null;
 	}
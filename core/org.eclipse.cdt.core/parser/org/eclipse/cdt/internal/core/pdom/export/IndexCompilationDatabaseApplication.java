@@ -0,0 +1,249 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Eclipse CDT contributors and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.pdom.export;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.text.MessageFormat;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.cdt.core.CCorePlugin;
+import org.eclipse.cdt.core.index.IIndexFileLocation;
+import org.eclipse.cdt.core.index.IIndexLocationConverter;
+import org.eclipse.cdt.core.model.LanguageManager;
+import org.eclipse.cdt.internal.core.index.IIndexFragment;
+import org.eclipse.cdt.internal.core.index.IndexFileLocation;
+import org.eclipse.cdt.internal.core.indexer.CompilationDatabase;
+import org.eclipse.cdt.internal.core.indexer.StandaloneFastIndexer;
+import org.eclipse.cdt.internal.core.indexer.StdoutLogService;
+import org.eclipse.cdt.internal.core.pdom.IndexerProfile;
+import org.eclipse.cdt.internal.core.pdom.IndexerStatistics;
+import org.eclipse.cdt.internal.core.pdom.WritablePDOM;
+import org.eclipse.cdt.utils.UNCPathConverter;
+import org.eclipse.core.filesystem.URIUtil;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+
+/**
+ * An eclipse application for generating a PDOM from the sources of a compilation database
+ * (<code>compile_commands.json</code>) without a workspace project, see {@link CompilationDatabase}.
+ * The sources are parsed by multiple threads and the PDOM is reproducible: it does not depend on
+ * the time it is generated at or on the order of the commands in the database. Files below the
+ * base directory are stored relative to it in the format of the index of a project, such that the
+ * PDOM can be imported into a project located at the base directory.
+ */
+public class IndexCompilationDatabaseApplication implements IApplication {
+	public static final String OPT_COMPILATION_DATABASE = "-compdb"; //$NON-NLS-1$
+	public static final String OPT_TARGET = "-target"; //$NON-NLS-1$
+	/**
+	 * Directory the locations of the files are relative to, by default the directory of the database.
+	 */
+	public static final String OPT_BASE = "-base"; //$NON-NLS-1$
+	/**
+	 * Number of parser threads, by default the number of processors.
+	 */
+	public static final String OPT_THREADS = "-threads"; //$NON-NLS-1$
+	public static final String OPT_FRAGMENT_ID = "-id"; //$NON-NLS-1$
+	public static final String OPT_QUIET = "-quiet"; //$NON-NLS-1$
+	public static final String OPT_PROFILE = GeneratePDOMApplication.OPT_PROFILE;
+
+	/**
+	 * Stores the locations of files below a directory relative to it, and the locations of all
+	 * other files as URIs. This is the format of the index of a project located at the directory.
+	 */
+	private static class DirectoryRelativeLocationConverter implements IIndexLocationConverter {
+		private static final String EXTERNAL = "<EXT>"; //$NON-NLS-1$
+
+		private final File fDirectory;
+		private final String fPrefix;
+		private final Map<String, IIndexFileLocation> fromInternalFormatCache = new ConcurrentHashMap<>();
+
+		DirectoryRelativeLocationConverter(File directory) {
+			fDirectory = directory;
+			fPrefix = directory.getPath() + File.separatorChar;
+		}
+
+		@Override
+		public IIndexFileLocation fromInternalFormat(String raw) {
+			IIndexFileLocation result = fromInternalFormatCache.get(raw);
+			if (result != null)
+				return result;
+
+			URI uri = null;
+			if (raw.startsWith(EXTERNAL)) {
+				try {
+					uri = new URI(raw.substring(EXTERNAL.length()));
+				} catch (URISyntaxException e) {
+				}
+			} else {
+				uri = UNCPathConverter.getInstance().toURI(new File(fDirectory, raw).getPath());
+			}
+			if (uri == null)
+				return null;
+			result = new IndexFileLocation(uri, null);
+			fromInternalFormatCache.put(raw, result);
+			return result;
+		}
+
+		@Override
+		public String toInternalFormat(IIndexFileLocation location) {
+			final String path = URIUtil.toPath(location.getURI()).toOSString();
+			if (path.startsWith(fPrefix))
+				return path.substring(fPrefix.length()).replace(File.separatorChar, '/');
+			return EXTERNAL + location.getURI().toString();
+		}
+	}
+
+	@Override
+	public Object start(IApplicationContext context) throws CoreException {
+		try {
+			startImpl(context);
+		} catch (CoreException ce) {
+			IStatus s = ce.getStatus();
+			if (s.getCode() == GeneratePDOMApplication.ECODE_EXPECTED_FAILURE) {
+				output(s.getMessage());
+			} else {
+				throw ce;
+			}
+		}
+		return IApplication.EXIT_OK;
+	}
+
+	private void startImpl(IApplicationContext context) throws CoreException {
+		String[] appArgs = (String[]) context.getArguments().get(IApplicationContext.APPLICATION_ARGS);
+		Map<String, List<String>> arguments = CLIUtil.parseToMap(appArgs);
+		File databaseFile = new File(CLIUtil.getArg(arguments, OPT_COMPILATION_DATABASE, 1).get(0)).getAbsoluteFile();
+		File target = new File(CLIUtil.getArg(arguments, OPT_TARGET, 1).get(0));
+		File base = arguments.containsKey(OPT_BASE) ? new File(CLIUtil.getArg(arguments, OPT_BASE, 1).get(0))
+				: databaseFile.getParentFile();
+		int threads = Runtime.getRuntime().availableProcessors();
+		if (arguments.containsKey(OPT_THREADS)) {
+			String value = CLIUtil.getArg(arguments, OPT_THREADS, 1).get(0);
+			try {
+				threads = Integer.parseInt(value);
+			} catch (NumberFormatException e) {
+				threads = 0;
+			}
+			if (threads < 1) {
+				GeneratePDOMApplication.fail(MessageFormat.format(
+						Messages.IndexCompilationDatabaseApplication_InvalidThreads, new Object[] { value }));
+			}
+		}
+		String fragmentId = arguments.containsKey(OPT_FRAGMENT_ID)
+				? CLIUtil.getArg(arguments, OPT_FRAGMENT_ID, 1).get(0)
+				: null;
+		String profileDirectory = arguments.containsKey(OPT_PROFILE) ? CLIUtil.getArg(arguments, OPT_PROFILE, 1).get(0)
+				: null;
+		boolean quiet = arguments.get(OPT_QUIET) != null;
+
+		if (!databaseFile.isFile()) {
+			GeneratePDOMApplication.fail(MessageFormat.format(Messages.IndexCompilationDatabaseApplication_NoSuchFile,
+					new Object[] { databaseFile }));
+		}
+		CompilationDatabase database;
+		try {
+			database = CompilationDatabase.read(databaseFile);
+			base = base.getCanonicalFile();
+		} catch (IOException e) {
+			GeneratePDOMApplication.fail(MessageFormat.format(
+					Messages.IndexCompilationDatabaseApplication_CannotRead, new Object[] { e.getMessage() }));
+			return;
+		}
+		List<String> sources = database.getSourceFiles();
+		Set<String> extensions = new HashSet<>();
+		for (String source : sources) {
+			int dot = source.lastIndexOf('.');
+			if (dot > source.lastIndexOf(File.separatorChar)) {
+				extensions.add(source.substring(dot + 1));
+			}
+		}
+
+		output(MessageFormat.format(Messages.IndexCompilationDatabaseApplication_IndexingStarts,
+				new Object[] { sources.size(), threads }));
+		// A new file, such that the allocations do not depend on the previous content.
+		if (target.exists() && !target.delete()) {
+			GeneratePDOMApplication.fail(MessageFormat.format(
+					Messages.IndexCompilationDatabaseApplication_CannotDelete, new Object[] { target }));
+		}
+		StandaloneFastIndexer indexer = new StandaloneFastIndexer(target, new DirectoryRelativeLocationConverter(base),
+				LanguageManager.getInstance().getPDOMLinkageFactoryMappings(), database, null, database,
+				new StdoutLogService());
+		indexer.setValidSourceUnitNames(extensions);
+		indexer.setParserThreads(threads);
+		indexer.setReproducible(true);
+		indexer.setTraceStatistics(!quiet);
+		IndexerProfile profile = profileDirectory != null ? new IndexerProfile() : null;
+		indexer.setProfile(profile);
+
+		long start = System.currentTimeMillis();
+		try {
+			indexer.rebuild(sources, new NullProgressMonitor());
+		} catch (IOException e) {
+			GeneratePDOMApplication.fail(MessageFormat.format(Messages.GeneratePDOM_GenericGenerationFailed,
+					new Object[] { e.getMessage() }));
+		}
+		long time = Math.max(1, System.currentTimeMillis() - start);
+
+		WritablePDOM pdom = (WritablePDOM) indexer.getIndex().getWritableFragment();
+		try {
+			pdom.acquireWriteLock(null);
+		} catch (InterruptedException e) {
+			return;
+		}
+		try {
+			if (fragmentId != null) {
+				pdom.setProperty(IIndexFragment.PROPERTY_FRAGMENT_ID, fragmentId);
+			}
+			pdom.close();
+		} finally {
+			pdom.releaseWriteLock();
+		}
+
+		IndexerStatistics statistics = indexer.getStatistics();
+		if (statistics != null) {
+			double seconds = time / 1000.0;
+			double megabytes = statistics.fIndexedBytesCount / (1024.0 * 1024.0);
+			output(MessageFormat.format(Messages.IndexCompilationDatabaseApplication_Throughput,
+					new Object[] { statistics.fIndexedFilesCount, format(megabytes), format(seconds),
+							format(statistics.fIndexedFilesCount / seconds), format(megabytes / seconds) }));
+		}
+		if (profile != null) {
+			try {
+				profile.writeToDirectory(new File(profileDirectory), target.getName());
+			} catch (IOException e) {
+				CCorePlugin.log(e);
+			}
+		}
+	}
+
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.1f", value); //$NON-NLS-1$
+	}
+
+	protected void output(String s) {
+		System.out.println(s);
+	}
+
+	@Override
+	public void stop() {
+		// do nothing
+	}
+}
@@ -16,6 +16,9 @@ package org.eclipse.cdt.internal.core.pdom.export;
 import org.eclipse.osgi.util.NLS;
 
 public class Messages extends NLS {
+	public static String CompactPDOMApplication_CompactionStarts;
+	public static String CompactPDOMApplication_NoSuchFile;
+	public static String CompactPDOMApplication_UnsupportedVersion;
 	public static String GeneratePDOM_GenericGenerationFailed;
 	public static String GeneratePDOM_Incomplete;
 	public static String GeneratePDOM_NullLocationConverter;
@@ -27,6 +30,12 @@ public class Messages extends NLS {
 	public static String GeneratePDOMApplication_Initializing;
 	public static String GeneratePDOMApplication_InvalidIndexerID;
 	public static String GeneratePDOMApplication_UsingDefaultProjectProvider;
+	public static String IndexCompilationDatabaseApplication_CannotDelete;
+	public static String IndexCompilationDatabaseApplication_CannotRead;
+	public static String IndexCompilationDatabaseApplication_IndexingStarts;
+	public static String IndexCompilationDatabaseApplication_InvalidThreads;
+	public static String IndexCompilationDatabaseApplication_NoSuchFile;
+	public static String IndexCompilationDatabaseApplication_Throughput;
 
 	static {
 		// Initialize resource bundle.
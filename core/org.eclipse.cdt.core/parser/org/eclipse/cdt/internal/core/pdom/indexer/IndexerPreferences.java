@@ -71,11 +71,21 @@ public class IndexerPreferences {
 	public static final String KEY_REINDEX_ON_INDEXER_CHANGE = "reindexOnIndexerChange"; //$NON-NLS-1$
 	public static final String KEY_INDEX_ALL_HEADER_VERSIONS = "indexAllHeaderVersions"; //$NON-NLS-1$
 	public static final String KEY_INDEX_ALL_VERSIONS_SPECIFIC_HEADERS = "indexAllVersionsSpecificHeaders"; //$NON-NLS-1$
+	public static final String KEY_MEMORY_MAPPED_DATABASE = "memoryMappedDatabase"; //$NON-NLS-1$
+	public static final String KEY_DATABASE_CHUNK_SIZE_KB = "databaseChunkSizeKB"; //$NON-NLS-1$
+	public static final String KEY_DATABASE_JOURNAL = "databaseJournal"; //$NON-NLS-1$
+	public static final String KEY_PARSER_THREADS = "parserThreads"; //$NON-NLS-1$
+	public static final String KEY_UPDATE_BY_CONTENT = "updateByContent"; //$NON-NLS-1$
+	public static final String KEY_SCHEDULE_BY_INCLUDES = "scheduleByIncludes"; //$NON-NLS-1$
+	public static final String KEY_MEMORY_CEILING_PERCENT = "memoryCeilingPercent"; //$NON-NLS-1$
 
 	private static final String DEFAULT_INDEX_IMPORT_LOCATION = ".settings/cdt-index.zip"; //$NON-NLS-1$
 	private static final int DEFAULT_UPDATE_POLICY = 0;
 	public static final int DEFAULT_FILE_SIZE_LIMIT_MB = 8;
 	public static final int DEFAULT_INCLUDED_FILE_SIZE_LIMIT_MB = 16;
+	public static final int DEFAULT_PARSER_THREADS = 1;
+	/** No memory ceiling, the parser threads are not throttled. */
+	public static final int DEFAULT_MEMORY_CEILING_PERCENT = 0;
 
 	private static final String QUALIFIER = CCorePlugin.PLUGIN_ID;
 	private static final String INDEXER_NODE = "indexer"; //$NON-NLS-1$
@@ -392,6 +402,55 @@ public class IndexerPreferences {
 		}
 	}
 
+	/**
+	 * Returns the number of threads the indexer of the given project uses for parsing source files,
+	 * see {@link #KEY_PARSER_THREADS}.
+	 */
+	public static int getParserThreads(IProject project) {
+		String val = get(project, KEY_PARSER_THREADS, null);
+		if (val != null) {
+			try {
+				return Math.max(1, Integer.parseInt(val));
+			} catch (NumberFormatException e) {
+				CCorePlugin.log(e);
+			}
+		}
+		return DEFAULT_PARSER_THREADS;
+	}
+
+	/**
+	 * Returns whether the indexer of the given project decides about the files to update by their
+	 * content rather than by their timestamps, see {@link #KEY_UPDATE_BY_CONTENT}.
+	 */
+	public static boolean isUpdateByContent(IProject project) {
+		return Boolean.parseBoolean(get(project, KEY_UPDATE_BY_CONTENT, null));
+	}
+
+	/**
+	 * Returns whether the indexer of the given project orders the sources by the include graph
+	 * stored in the index, see {@link #KEY_SCHEDULE_BY_INCLUDES}.
+	 */
+	public static boolean isScheduleByIncludes(IProject project) {
+		return Boolean.parseBoolean(get(project, KEY_SCHEDULE_BY_INCLUDES, null));
+	}
+
+	/**
+	 * Returns the percentage of the maximum heap above which the indexer of the given project
+	 * stops parsing sources concurrently, or <code>0</code> for no limit, see
+	 * {@link #KEY_MEMORY_CEILING_PERCENT}.
+	 */
+	public static int getMemoryCeilingPercent(IProject project) {
+		String val = get(project, KEY_MEMORY_CEILING_PERCENT, null);
+		if (val != null) {
+			try {
+				return Math.max(0, Math.min(100, Integer.parseInt(val)));
+			} catch (NumberFormatException e) {
+				CCorePlugin.log(e);
+			}
+		}
+		return DEFAULT_MEMORY_CEILING_PERCENT;
+	}
+
 	public static int getUpdatePolicy(IProject project) {
 		// no support for project specific policies
 		Preferences[] prefs = getInstancePreferencesArray();
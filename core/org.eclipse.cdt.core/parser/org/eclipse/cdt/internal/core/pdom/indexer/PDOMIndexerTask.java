@@ -16,6 +16,8 @@
  *******************************************************************************/
 package org.eclipse.cdt.internal.core.pdom.indexer;
 
+import java.io.File;
+import java.io.IOException;
 import java.text.NumberFormat;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -35,12 +37,18 @@ import org.eclipse.cdt.core.model.ICProject;
 import org.eclipse.cdt.core.model.ITranslationUnit;
 import org.eclipse.cdt.core.parser.IncludeExportPatterns;
 import org.eclipse.cdt.internal.core.index.IWritableIndex;
+import org.eclipse.cdt.internal.core.index.IWritableIndexFragment;
 import org.eclipse.cdt.internal.core.index.IWritableIndexManager;
 import org.eclipse.cdt.internal.core.model.CProject;
 import org.eclipse.cdt.internal.core.pdom.AbstractIndexerTask;
 import org.eclipse.cdt.internal.core.pdom.ITodoTaskUpdater;
+import org.eclipse.cdt.internal.core.pdom.IndexLockStatistics;
+import org.eclipse.cdt.internal.core.pdom.IndexLockStatistics.CallerStatistics;
+import org.eclipse.cdt.internal.core.pdom.IndexerProfile;
 import org.eclipse.cdt.internal.core.pdom.IndexerProgress;
+import org.eclipse.cdt.internal.core.pdom.PDOM;
 import org.eclipse.cdt.internal.core.pdom.db.ChunkCache;
+import org.eclipse.cdt.internal.core.pdom.db.PDOMStringTable;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -71,6 +79,13 @@ public abstract class PDOMIndexerTask extends AbstractIndexerTask implements IPD
 		final long fileLimit = getIntProperty(IndexerPreferences.KEY_SKIP_FILES_LARGER_THAN_MB, 0);
 		final long includedFileLimit = getIntProperty(IndexerPreferences.KEY_SKIP_INCLUDED_FILES_LARGER_THAN_MB, 0);
 		setFileSizeLimits(fileLimit * 1024 * 1024, includedFileLimit * 1024 * 1024);
+		setParserThreads(IndexerPreferences.getParserThreads(getCProject().getProject()));
+		setUpdateByContent(IndexerPreferences.isUpdateByContent(getCProject().getProject()));
+		setScheduleByIncludes(IndexerPreferences.isScheduleByIncludes(getCProject().getProject()));
+		setMemoryCeiling(IndexerPreferences.getMemoryCeilingPercent(getCProject().getProject()));
+		if (IndexerProfile.isEnabled()) {
+			setProfile(new IndexerProfile());
+		}
 		setIndexAllHeaderVersions(checkProperty(IndexerPreferences.KEY_INDEX_ALL_HEADER_VERSIONS));
 		setHeadersToIndexAllVersions(getStringSet(IndexerPreferences.KEY_INDEX_ALL_VERSIONS_SPECIFIC_HEADERS));
 		if (checkProperty(IndexerPreferences.KEY_SKIP_ALL_REFERENCES)) {
@@ -163,6 +178,22 @@ public abstract class PDOMIndexerTask extends AbstractIndexerTask implements IPD
 		long start = System.currentTimeMillis();
 		runTask(monitor);
 		traceEnd(start, fIndex, monitor.isCanceled());
+		writeProfile();
+	}
+
+	/**
+	 * Writes the profile of the task to the directory given by {@link IndexerProfile#PROPERTY_DIRECTORY}.
+	 */
+	private void writeProfile() {
+		final IndexerProfile profile = getProfile();
+		final String directory = System.getProperty(IndexerProfile.PROPERTY_DIRECTORY);
+		if (profile == null || directory == null || profile.getFiles().isEmpty())
+			return;
+		try {
+			profile.writeToDirectory(new File(directory), getCProject().getElementName());
+		} catch (IOException e) {
+			CCorePlugin.log(e);
+		}
 	}
 
 	/**
@@ -229,6 +260,25 @@ public abstract class PDOMIndexerTask extends AbstractIndexerTask implements IPD
 		return new IncludeExportPatterns(exportPattern, beginExportsPattern, endExportsPattern);
 	}
 
+	private void traceStringTable(String indent, PDOM pdom) {
+		try {
+			pdom.acquireReadLock();
+			try {
+				PDOMStringTable strings = pdom.getStringTable();
+				System.out.println(indent + " Strings: " //$NON-NLS-1$
+						+ strings.getStringCount() + " interned, " //$NON-NLS-1$
+						+ strings.getReferenceCount() + " references, " //$NON-NLS-1$
+						+ strings.getBytesSaved() + " bytes saved."); //$NON-NLS-1$
+			} finally {
+				pdom.releaseReadLock();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (CoreException e) {
+			CCorePlugin.log(e);
+		}
+	}
+
 	protected void traceEnd(long start, IWritableIndex index, boolean wasCancelled) {
 		// log entry
 		if (fWriteInfoToLog && !wasCancelled && index != null) {
@@ -308,6 +358,18 @@ public abstract class PDOMIndexerTask extends AbstractIndexerTask implements IPD
 					+ fStatistics.fDeclarationCount + " declarations, " //$NON-NLS-1$
 					+ fStatistics.fReferenceCount + " references, " //$NON-NLS-1$
 					+ fStatistics.fProblemBindingCount + "(" + nfPercent.format(problemPct) + ") unresolved."); //$NON-NLS-1$ //$NON-NLS-2$
+			System.out.println(indent + " Headers: " //$NON-NLS-1$
+					+ fStatistics.fHeadersParsedCount + " parsed, " //$NON-NLS-1$
+					+ fStatistics.fHeadersReusedCount + "(" //$NON-NLS-1$
+					+ nfPercent.format(fStatistics.getHeaderReuseRatio()) + ") reused, " //$NON-NLS-1$
+					+ fStatistics.fDependsOnOutdatedFileCount + " TUs depending on outdated headers, " //$NON-NLS-1$
+					+ fStatistics.fScheduledSourcesCount + " TUs scheduled by includes, " //$NON-NLS-1$
+					+ fStatistics.fDeferredSourcesCount + " TUs deferred by the memory ceiling, " //$NON-NLS-1$
+					+ fStatistics.fCachesDroppedCount + " times caches dropped by the memory ceiling."); //$NON-NLS-1$
+			System.out.println(indent + " Macro expansions: " //$NON-NLS-1$
+					+ fStatistics.fMacroExpansionCacheHits + "(" //$NON-NLS-1$
+					+ nfPercent.format(fStatistics.getMacroExpansionCacheHitRatio()) + ") reused, " //$NON-NLS-1$
+					+ fStatistics.fMacroExpansionCacheMisses + " cache misses."); //$NON-NLS-1$
 
 			long misses = index.getCacheMisses();
 			long hits = index.getCacheHits();
@@ -318,6 +380,17 @@ public abstract class PDOMIndexerTask extends AbstractIndexerTask implements IPD
 					+hits + " hits, " //$NON-NLS-1$
 					+ misses + "(" + nfPercent.format(missPct) + ") misses."); //$NON-NLS-1$ //$NON-NLS-2$
 
+			IWritableIndexFragment fragment = index.getWritableFragment();
+			if (fragment instanceof PDOM) {
+				IndexLockStatistics lockStatistics = ((PDOM) fragment).getLockStatistics();
+				System.out.println(indent + " Lock: " //$NON-NLS-1$
+						+ lockStatistics.getReadLockCount() + " read locks."); //$NON-NLS-1$
+				for (CallerStatistics caller : lockStatistics.getCallerStatistics()) {
+					System.out.println(indent + "   " + caller); //$NON-NLS-1$
+				}
+				traceStringTable(indent, (PDOM) fragment);
+			}
+
 			if (Boolean.parseBoolean(System.getProperty("SHOW_COMPRESSED_INDEXER_INFO"))) { //$NON-NLS-1$
 				Calendar cal = Calendar.getInstance();
 				NumberFormat twoDigits = NumberFormat.getNumberInstance();
@@ -30,6 +30,7 @@ import org.eclipse.cdt.internal.core.index.IWritableIndexManager;
 import org.eclipse.cdt.internal.core.pdom.IndexerProgress;
 import org.eclipse.cdt.internal.core.pdom.PDOMManager;
 import org.eclipse.cdt.internal.core.pdom.WritablePDOM;
+import org.eclipse.cdt.internal.core.pdom.YieldableIndexLock;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -92,6 +93,9 @@ public class PDOMRebuildTask implements IPDOMIndexerTask {
 
 			if (fDelegate != null) {
 				fDelegate.run(monitor);
+				if (!monitor.isCanceled()) {
+					rebuildIndexes(fIndexer.getProject());
+				}
 			}
 		} finally {
 			fProgressMonitor = null;
@@ -112,6 +116,30 @@ public class PDOMRebuildTask implements IPDOMIndexerTask {
 		}
 	}
 
+	/**
+	 * Once the index has been built from scratch, its B-trees are rebuilt with nodes that are filled
+	 * completely. Readers may access the index in between the trees.
+	 */
+	private void rebuildIndexes(ICProject project) throws InterruptedException {
+		try {
+			IWritableIndex index = ((IWritableIndexManager) CCorePlugin.getIndexManager()).getWritableIndex(project);
+			if (index == null)
+				return;
+			IWritableIndexFragment wf = index.getWritableFragment();
+			if (!(wf instanceof WritablePDOM))
+				return;
+			YieldableIndexLock lock = new YieldableIndexLock(index, true, fProgressMonitor);
+			lock.acquire();
+			try {
+				((WritablePDOM) wf).rebuildIndexes(lock, fProgressMonitor);
+			} finally {
+				lock.release();
+			}
+		} catch (CoreException e) {
+			CCorePlugin.log(e);
+		}
+	}
+
 	private void createDelegate(ICProject project, IProgressMonitor monitor) throws CoreException {
 		boolean allFiles = TRUE
 				.equals(fIndexer.getProperty(IndexerPreferences.KEY_INDEX_UNUSED_HEADERS_WITH_DEFAULT_LANG))
@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Eclipse CDT contributors and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+package org.eclipse.cdt.internal.ui.actions;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.eclipse.cdt.core.CCorePlugin;
+import org.eclipse.cdt.core.model.ICElement;
+import org.eclipse.cdt.core.model.ICProject;
+import org.eclipse.cdt.internal.core.pdom.PDOMManager;
+
+/**
+ * Compacts the index of the selected projects.
+ */
+public class CompactIndexAction extends AbstractUpdateIndexAction {
+	@Override
+	protected void doRun(ICElement[] elements) {
+		Set<ICProject> projects = new LinkedHashSet<>();
+		for (ICElement element : elements) {
+			if (element != null) {
+				projects.add(element.getCProject());
+			}
+		}
+		PDOMManager manager = (PDOMManager) CCorePlugin.getIndexManager();
+		for (ICProject project : projects) {
+			manager.compact(project);
+		}
+	}
+
+	@Override
+	protected int getUpdateOptions() {
+		return 0;
+	}
+}
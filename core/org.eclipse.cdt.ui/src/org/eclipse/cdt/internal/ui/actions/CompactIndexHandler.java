@@ -0,0 +1,26 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Eclipse CDT contributors and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+package org.eclipse.cdt.internal.ui.actions;
+
+/**
+ * Handler for {@link org.eclipse.cdt.internal.ui.actions.CompactIndexAction}
+ *
+ * @noextend This class is not intended to be subclassed by clients.
+ * @noinstantiate This class is not intended to be instantiated by clients.
+ */
+public class CompactIndexHandler extends AbstractUpdateIndexHandler {
+	private final CompactIndexAction compactIndexAction = new CompactIndexAction();
+
+	@Override
+	public AbstractUpdateIndexAction getAction() {
+		return compactIndexAction;
+	}
+}